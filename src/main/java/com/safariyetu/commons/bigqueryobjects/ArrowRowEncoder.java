@@ -0,0 +1,466 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+
+/**
+ * Encodes batches of objects column by column into an Arrow {@link VectorSchemaRoot}.
+ *
+ * <p>The Arrow schema is derived from the same schema as {@link BigQueryObjectWriter#getFieldsFromClass(Class)}:</p>
+ * <ul>
+ * <li><code>INTEGER</code>, <code>FLOAT</code> and <code>BOOLEAN</code> -> <code>BigIntVector</code>,
+ * <code>Float8Vector</code> and <code>BitVector</code>. Primitive fields are copied in a loop per column
+ * through unboxed accessors.</li>
+ * <li><code>STRING</code> -> <code>VarCharVector</code>, which can be dictionary encoded with
+ * <code>DictionaryEncoder</code> for low-cardinality columns.</li>
+ * <li><code>NUMERIC</code> -> <code>DecimalVector</code> with BigQuery's precision 38 and scale 9,
+ * rejecting values with more fractional digits, and <code>BYTES</code> -> <code>VarBinaryVector</code>.</li>
+ * <li><code>TIMESTAMP</code> -> <code>TimeStampMicroTZVector</code> in UTC, <code>DATETIME</code> -> <code>TimeStampMicroVector</code>,
+ * <code>DATE</code> -> <code>DateDayVector</code> and <code>TIME</code> -> <code>TimeMicroVector</code>.</li>
+ * <li><code>REPEATED</code> -> <code>ListVector</code> and <code>RECORD</code> -> <code>StructVector</code>. The elements
+ * of primitive array fields are copied into the list's data vector without boxing.</li>
+ * </ul>
+ *
+ * <p>Null values are left unset and are therefore null in the vectors. On Java 9 and later, Arrow needs
+ * <code>--add-opens=java.base/java.nio=ALL-UNNAMED</code> to allocate memory.</p>
+ */
+public final class ArrowRowEncoder {
+
+    // BigQuery NUMERIC has a precision of 38 digits with 9 of them after the decimal point.
+    private static final int NUMERIC_PRECISION = 38;
+    private static final int NUMERIC_SCALE = 9;
+
+    private static final ClassValue<ArrowRowEncoder> ENCODERS = new ClassValue<ArrowRowEncoder>() {
+        @Override
+        protected ArrowRowEncoder computeValue(Class<?> type) {
+            return new ArrowRowEncoder(type);
+        }
+    };
+
+    private final Schema schema;
+    private final Column[] columns;
+
+    private ArrowRowEncoder(Class<?> clazz) {
+        FieldList fields = BigQueryObjectWriter.schemaOf(clazz).getFields();
+        List<Field> arrowFields = new ArrayList<>(fields.size());
+        for (com.google.cloud.bigquery.Field field : fields) {
+            arrowFields.add(arrowFieldOf(field));
+        }
+        this.schema = new Schema(arrowFields);
+        this.columns = columnsOf(clazz, fields).toArray(new Column[0]);
+    }
+
+    /**
+     * Returns the cached encoder for the given class, deriving it on first use.
+     * @param clazz The class to encode.
+     * @return The encoder of the class.
+     */
+    public static ArrowRowEncoder forClass(Class<?> clazz) {
+        return ENCODERS.get(clazz);
+    }
+
+    /**
+     * @return The Arrow schema of the encoded batches.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Encodes a batch of objects of the encoder's class.
+     * @param objects The objects to encode.
+     * @param allocator The allocator of the vectors.
+     * @return A new root with one row per object. The caller owns it and must close it.
+     */
+    public VectorSchemaRoot encode(List<?> objects, BufferAllocator allocator) {
+        VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+        try {
+            for (FieldVector vector : root.getFieldVectors()) {
+                vector.setInitialCapacity(objects.size());
+            }
+            root.allocateNew();
+            for (Column column : columns) {
+                column.fill(objects, root.getVector(column.name));
+            }
+            root.setRowCount(objects.size());
+            return root;
+        } catch (RuntimeException e) {
+            root.close();
+            throw e;
+        }
+    }
+
+    private static Field arrowFieldOf(com.google.cloud.bigquery.Field field) {
+        Field element;
+        LegacySQLTypeName type = field.getType();
+        if (LegacySQLTypeName.RECORD.equals(type)) {
+            List<Field> children = new ArrayList<>();
+            if (field.getSubFields() != null) {
+                for (com.google.cloud.bigquery.Field subField : field.getSubFields()) {
+                    children.add(arrowFieldOf(subField));
+                }
+            }
+            element = new Field(field.getName(), FieldType.nullable(ArrowType.Struct.INSTANCE), children);
+        } else {
+            element = new Field(field.getName(), FieldType.nullable(ValueWriter.of(type).arrowType), null);
+        }
+        if (field.getMode() == com.google.cloud.bigquery.Field.Mode.REPEATED) {
+            Field item = new Field("element", element.getFieldType(), element.getChildren());
+            return new Field(field.getName(), FieldType.nullable(ArrowType.List.INSTANCE), Collections.singletonList(item));
+        }
+        return element;
+    }
+
+    private static List<Column> columnsOf(Class<?> clazz, FieldList fields) {
+        DeserializationPlan plan = DeserializationPlan.forClass(clazz);
+        List<Column> columns = new ArrayList<>(fields.size());
+        for (com.google.cloud.bigquery.Field field : fields) {
+            FieldAccessor accessor = plan.accessor(field.getName());
+            if (accessor != null) {
+                columns.add(new Column(field.getName(), accessor, writerOf(field, accessor)));
+            }
+        }
+        return columns;
+    }
+
+    private static VectorWriter writerOf(com.google.cloud.bigquery.Field field, FieldAccessor accessor) {
+        PrimitiveArray primitiveArray = PrimitiveArray.of(accessor.getField().getType());
+        if (primitiveArray != null) {
+            return new PrimitiveListWriter(primitiveArray);
+        }
+        Class<?> valueClass = accessor.getValueClass();
+        VectorWriter element;
+        if (LegacySQLTypeName.RECORD.equals(field.getType())) {
+            FieldList subFields = field.getSubFields() == null ? FieldList.of() : field.getSubFields();
+            element = new StructWriter(columnsOf(valueClass, subFields));
+        } else {
+            element = new CodecWriter(TypeCodecs.codecFor(valueClass), ValueWriter.of(field.getType()));
+        }
+        return field.getMode() == com.google.cloud.bigquery.Field.Mode.REPEATED ? new ListWriter(element) : element;
+    }
+
+
+    /**
+     * Writes a non-null value at an index of a vector, growing the vector as needed.
+     */
+    private interface VectorWriter {
+        void write(FieldVector vector, int index, Object value);
+    }
+
+    /**
+     * A field of a class and the writer of its vector.
+     */
+    private static final class Column {
+        private final String name;
+        private final FieldAccessor accessor;
+        private final VectorWriter writer;
+
+        private Column(String name, FieldAccessor accessor, VectorWriter writer) {
+            this.name = name;
+            this.accessor = accessor;
+            this.writer = writer;
+        }
+
+        /**
+         * Fills the vector with the field of each object. Primitive fields are read without boxing.
+         */
+        private void fill(List<?> objects, FieldVector vector) {
+            int size = objects.size();
+            switch (accessor.getKind()) {
+                case INT: {
+                    BigIntVector longs = (BigIntVector) vector;
+                    for (int i = 0; i < size; i++) {
+                        longs.setSafe(i, accessor.getInt(objects.get(i)));
+                    }
+                    return;
+                }
+                case LONG: {
+                    BigIntVector longs = (BigIntVector) vector;
+                    for (int i = 0; i < size; i++) {
+                        longs.setSafe(i, accessor.getLong(objects.get(i)));
+                    }
+                    return;
+                }
+                case DOUBLE: {
+                    Float8Vector doubles = (Float8Vector) vector;
+                    for (int i = 0; i < size; i++) {
+                        doubles.setSafe(i, accessor.getDouble(objects.get(i)));
+                    }
+                    return;
+                }
+                case BOOLEAN: {
+                    BitVector bits = (BitVector) vector;
+                    for (int i = 0; i < size; i++) {
+                        bits.setSafe(i, accessor.getBoolean(objects.get(i)) ? 1 : 0);
+                    }
+                    return;
+                }
+                default:
+                    for (int i = 0; i < size; i++) {
+                        Object value = accessor.get(objects.get(i));
+                        if (value != null) {
+                            writer.write(vector, i, value);
+                        }
+                    }
+            }
+        }
+
+        private void write(StructVector struct, int index, Object obj) {
+            Object value = accessor.get(obj);
+            if (value != null) {
+                writer.write((FieldVector) struct.getChild(name), index, value);
+            }
+        }
+    }
+
+    /**
+     * Encodes values with the codec of their type before writing them.
+     */
+    private static final class CodecWriter implements VectorWriter {
+        private final TypeCodec<Object> codec;
+        private final ValueWriter writer;
+
+        private CodecWriter(TypeCodec<Object> codec, ValueWriter writer) {
+            this.codec = codec;
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(FieldVector vector, int index, Object value) {
+            writer.write(vector, index, codec.encode(value));
+        }
+    }
+
+    private static final class StructWriter implements VectorWriter {
+        private final List<Column> columns;
+
+        private StructWriter(List<Column> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(FieldVector vector, int index, Object value) {
+            StructVector struct = (StructVector) vector;
+            struct.setIndexDefined(index);
+            for (Column column : columns) {
+                column.write(struct, index, value);
+            }
+        }
+    }
+
+    private static final class ListWriter implements VectorWriter {
+        private final VectorWriter elementWriter;
+
+        private ListWriter(VectorWriter elementWriter) {
+            this.elementWriter = elementWriter;
+        }
+
+        @Override
+        public void write(FieldVector vector, int index, Object value) {
+            ListVector list = (ListVector) vector;
+            FieldVector elements = list.getDataVector();
+            int offset = list.startNewValue(index);
+            int count = 0;
+            for (Object element : (Collection<?>) value) {
+                if (element != null) {
+                    elementWriter.write(elements, offset + count, element);
+                }
+                count++;
+            }
+            list.endValue(index, count);
+        }
+    }
+
+    /**
+     * Writes primitive arrays to a list vector, copying the elements into its data vector unboxed.
+     */
+    private static final class PrimitiveListWriter implements VectorWriter {
+        private final PrimitiveArray primitiveArray;
+
+        private PrimitiveListWriter(PrimitiveArray primitiveArray) {
+            this.primitiveArray = primitiveArray;
+        }
+
+        @Override
+        public void write(FieldVector vector, int index, Object value) {
+            ListVector list = (ListVector) vector;
+            FieldVector elements = list.getDataVector();
+            int offset = list.startNewValue(index);
+            int count = primitiveArray.length(value);
+            switch (primitiveArray) {
+                case INT: {
+                    int[] values = (int[]) value;
+                    for (int i = 0; i < count; i++) {
+                        ((BigIntVector) elements).setSafe(offset + i, values[i]);
+                    }
+                    break;
+                }
+                case LONG: {
+                    long[] values = (long[]) value;
+                    for (int i = 0; i < count; i++) {
+                        ((BigIntVector) elements).setSafe(offset + i, values[i]);
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    double[] values = (double[]) value;
+                    for (int i = 0; i < count; i++) {
+                        ((Float8Vector) elements).setSafe(offset + i, values[i]);
+                    }
+                    break;
+                }
+                case FLOAT: {
+                    float[] values = (float[]) value;
+                    for (int i = 0; i < count; i++) {
+                        ((Float8Vector) elements).setSafe(offset + i, values[i]);
+                    }
+                    break;
+                }
+                default: {
+                    boolean[] values = (boolean[]) value;
+                    for (int i = 0; i < count; i++) {
+                        ((BitVector) elements).setSafe(offset + i, values[i] ? 1 : 0);
+                    }
+                    break;
+                }
+            }
+            list.endValue(index, count);
+        }
+    }
+
+    /**
+     * Writes values of a BigQuery column type to the matching Arrow vector.
+     */
+    private enum ValueWriter implements VectorWriter {
+        INT64(new ArrowType.Int(64, true)) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((BigIntVector) vector).setSafe(index, ((Number) value).longValue());
+            }
+        },
+        FLOAT64(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((Float8Vector) vector).setSafe(index, ((Number) value).doubleValue());
+            }
+        },
+        BOOL(ArrowType.Bool.INSTANCE) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((BitVector) vector).setSafe(index, (Boolean) value ? 1 : 0);
+            }
+        },
+        STRING(ArrowType.Utf8.INSTANCE) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((VarCharVector) vector).setSafe(index, value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        },
+        NUMERIC(new ArrowType.Decimal(NUMERIC_PRECISION, NUMERIC_SCALE, 128)) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((DecimalVector) vector).setSafe(index, TypeCodecs.toNumericScale((BigDecimal) value, NUMERIC_SCALE));
+            }
+        },
+        BYTES(ArrowType.Binary.INSTANCE) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((VarBinaryVector) vector).setSafe(index, (byte[]) value);
+            }
+        },
+        TIMESTAMP(new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC")) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                Instant instant = (Instant) value;
+                long micros = Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000);
+                ((TimeStampMicroTZVector) vector).setSafe(index, micros);
+            }
+        },
+        DATETIME(new ArrowType.Timestamp(TimeUnit.MICROSECOND, null)) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                long micros = Math.addExact(Math.multiplyExact(dateTime.toEpochSecond(ZoneOffset.UTC), 1_000_000L), dateTime.getNano() / 1000);
+                ((TimeStampMicroVector) vector).setSafe(index, micros);
+            }
+        },
+        DATE(new ArrowType.Date(DateUnit.DAY)) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((DateDayVector) vector).setSafe(index, Math.toIntExact(((LocalDate) value).toEpochDay()));
+            }
+        },
+        TIME(new ArrowType.Time(TimeUnit.MICROSECOND, 64)) {
+            @Override
+            public void write(FieldVector vector, int index, Object value) {
+                ((TimeMicroVector) vector).setSafe(index, ((LocalTime) value).toNanoOfDay() / 1000);
+            }
+        };
+
+        private final ArrowType arrowType;
+
+        ValueWriter(ArrowType arrowType) {
+            this.arrowType = arrowType;
+        }
+
+        static ValueWriter of(LegacySQLTypeName type) {
+            if (LegacySQLTypeName.INTEGER.equals(type)) {
+                return INT64;
+            } else if (LegacySQLTypeName.FLOAT.equals(type)) {
+                return FLOAT64;
+            } else if (LegacySQLTypeName.BOOLEAN.equals(type)) {
+                return BOOL;
+            } else if (LegacySQLTypeName.STRING.equals(type)) {
+                return STRING;
+            } else if (LegacySQLTypeName.NUMERIC.equals(type)) {
+                return NUMERIC;
+            } else if (LegacySQLTypeName.BYTES.equals(type)) {
+                return BYTES;
+            } else if (LegacySQLTypeName.TIMESTAMP.equals(type)) {
+                return TIMESTAMP;
+            } else if (LegacySQLTypeName.DATETIME.equals(type)) {
+                return DATETIME;
+            } else if (LegacySQLTypeName.DATE.equals(type)) {
+                return DATE;
+            } else if (LegacySQLTypeName.TIME.equals(type)) {
+                return TIME;
+            }
+            throw new IllegalArgumentException("Unsupported BigQuery type for Arrow encoding: " + type);
+        }
+    }
+}
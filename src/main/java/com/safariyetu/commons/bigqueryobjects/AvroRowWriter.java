@@ -0,0 +1,525 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.avro.JsonProperties;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+
+/**
+ * Streams objects into an Avro container file, with the Avro schema derived from the BigQuery
+ * schema of their class.
+ *
+ * <p>The BigQuery types map to the Avro types read by BigQuery load jobs with
+ * <code>useAvroLogicalTypes</code>:</p>
+ * <ul>
+ * <li><code>INTEGER</code>, <code>FLOAT</code>, <code>BOOLEAN</code> and <code>STRING</code> -> <code>long</code>,
+ * <code>double</code>, <code>boolean</code> and <code>string</code>.</li>
+ * <li><code>NUMERIC</code> -> <code>bytes</code> with the <code>decimal(38, 9)</code> logical type, rejecting values
+ * with more fractional digits, and <code>BYTES</code> -> <code>bytes</code>.</li>
+ * <li><code>TIMESTAMP</code> -> <code>long</code> with <code>timestamp-micros</code>, <code>TIME</code> -> <code>long</code>
+ * with <code>time-micros</code> and <code>DATE</code> -> <code>int</code> with <code>date</code>.</li>
+ * <li><code>DATETIME</code> -> <code>string</code> with BigQuery's <code>datetime</code> logical type.</li>
+ * <li><code>RECORD</code> -> <code>record</code> and <code>REPEATED</code> -> <code>array</code>.</li>
+ * </ul>
+ *
+ * <p>Nullable columns are unions with <code>null</code>. Objects are written field by field to the
+ * file's block encoder, without building intermediate records, and the writers are built once per
+ * class. Instances are not thread-safe.</p>
+ */
+public final class AvroRowWriter implements Closeable {
+
+    private static final int NUMERIC_PRECISION = 38;
+    private static final int NUMERIC_SCALE = 9;
+
+    private static final ClassValue<RecordWriter> WRITERS = new ClassValue<RecordWriter>() {
+        @Override
+        protected RecordWriter computeValue(Class<?> type) {
+            com.google.cloud.bigquery.Schema schema = BigQueryObjectWriter.schemaOf(type);
+            return new RecordWriter(type, schema.getFields(), avroSchemaOf(schema, type.getSimpleName()));
+        }
+    };
+
+    private final Class<?> type;
+    private final DataFileWriter<Object> fileWriter;
+
+    private AvroRowWriter(Class<?> type, DataFileWriter<Object> fileWriter) {
+        this.type = type;
+        this.fileWriter = fileWriter;
+    }
+
+    /**
+     * Starts an Avro container file for objects of the given class.
+     * @param type The class of the objects.
+     * @param out The stream to write the file to. It is closed with the writer.
+     * @param codec The block compression, e.g. <code>CodecFactory.deflateCodec(6)</code> or <code>CodecFactory.snappyCodec()</code>.
+     * @return The writer.
+     * @throws IOException if writing the file header fails.
+     */
+    public static AvroRowWriter open(Class<?> type, OutputStream out, CodecFactory codec) throws IOException {
+        RecordWriter recordWriter = WRITERS.get(type);
+        DataFileWriter<Object> fileWriter = new DataFileWriter<>(new PojoDatumWriter(recordWriter)).setCodec(codec);
+        fileWriter.create(recordWriter.schema, out);
+        return new AvroRowWriter(type, fileWriter);
+    }
+
+    /**
+     * Converts a BigQuery schema to an Avro record schema.
+     * @param schema The BigQuery schema, e.g. from {@link BigQueryObjectWriter#getSchemaFromObjects(List)}.
+     * @param recordName The name of the top-level record. Nested records are named after their path.
+     * @return The Avro schema.
+     */
+    public static Schema avroSchemaOf(com.google.cloud.bigquery.Schema schema, String recordName) {
+        return recordSchema(sanitize(recordName), schema.getFields());
+    }
+
+    /**
+     * @return The Avro schema of the file.
+     */
+    public Schema getSchema() {
+        return WRITERS.get(type).schema;
+    }
+
+    /**
+     * Appends an object to the file.
+     * @param obj The object, an instance of the writer's class.
+     * @throws IOException if writing fails.
+     */
+    public void write(Object obj) throws IOException {
+        if (obj.getClass() != type) {
+            throw new IllegalArgumentException("Expected an instance of " + type.getName() + " but got " + obj.getClass().getName());
+        }
+        fileWriter.append(obj);
+    }
+
+    /**
+     * Appends objects to the file.
+     * @param objects The objects, instances of the writer's class.
+     * @throws IOException if writing fails.
+     */
+    public void writeAll(Iterable<?> objects) throws IOException {
+        for (Object obj : objects) {
+            write(obj);
+        }
+    }
+
+    /**
+     * Writes the pending block to the stream.
+     * @throws IOException if writing fails.
+     */
+    public void flush() throws IOException {
+        fileWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileWriter.close();
+    }
+
+    private static Schema recordSchema(String name, FieldList fields) {
+        List<Schema.Field> avroFields = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            Schema valueSchema;
+            if (LegacySQLTypeName.RECORD.equals(field.getType())) {
+                FieldList subFields = field.getSubFields() == null ? FieldList.of() : field.getSubFields();
+                valueSchema = recordSchema(name + "_" + field.getName(), subFields);
+            } else {
+                valueSchema = ValueWriter.of(field.getType()).schema();
+            }
+            if (field.getMode() == Field.Mode.REPEATED) {
+                // BigQuery arrays are never null, a missing collection is written as an empty array.
+                avroFields.add(new Schema.Field(field.getName(), Schema.createArray(valueSchema), null, (Object) null));
+            } else {
+                Schema nullable = Schema.createUnion(Schema.create(Schema.Type.NULL), valueSchema);
+                avroFields.add(new Schema.Field(field.getName(), nullable, null, JsonProperties.NULL_VALUE));
+            }
+        }
+        return Schema.createRecord(name, null, null, false, avroFields);
+    }
+
+    private static String sanitize(String name) {
+        String sanitized = name.replaceAll("[^A-Za-z0-9_]", "_");
+        return sanitized.isEmpty() || Character.isDigit(sanitized.charAt(0)) ? "_" + sanitized : sanitized;
+    }
+
+    /**
+     * Writes the objects of the file through their class's {@link RecordWriter}.
+     */
+    private static final class PojoDatumWriter implements DatumWriter<Object> {
+        private final RecordWriter recordWriter;
+
+        private PojoDatumWriter(RecordWriter recordWriter) {
+            this.recordWriter = recordWriter;
+        }
+
+        @Override
+        public void setSchema(Schema schema) {
+            // The schema is fixed by the record writer.
+        }
+
+        @Override
+        public void write(Object datum, Encoder out) throws IOException {
+            recordWriter.writeFields(datum, out);
+        }
+    }
+
+    /**
+     * Writes a non-null value in its Avro encoding.
+     */
+    private interface AvroValueWriter {
+        void write(Object value, Encoder out) throws IOException;
+    }
+
+    /**
+     * Writes the fields of one class in schema order, with a nested writer per RECORD column.
+     */
+    private static final class RecordWriter implements AvroValueWriter {
+        private final Schema schema;
+        private final FieldWriter[] fields;
+
+        private RecordWriter(Class<?> clazz, FieldList schemaFields, Schema schema) {
+            this.schema = schema;
+            DeserializationPlan plan = DeserializationPlan.forClass(clazz);
+            List<FieldWriter> writers = new ArrayList<>(schemaFields.size());
+            for (Field schemaField : schemaFields) {
+                FieldAccessor accessor = plan.accessor(schemaField.getName());
+                if (accessor == null) {
+                    // Kept in the schema but never set, as generated writers may map fields differently.
+                    writers.add(new FieldWriter(null, null, schemaField.getMode() == Field.Mode.REPEATED));
+                    continue;
+                }
+                AvroValueWriter valueWriter;
+                if (LegacySQLTypeName.RECORD.equals(schemaField.getType())) {
+                    FieldList subFields = schemaField.getSubFields() == null ? FieldList.of() : schemaField.getSubFields();
+                    Schema fieldSchema = schema.getField(schemaField.getName()).schema();
+                    Schema recordSchema = fieldSchema.getType() == Schema.Type.ARRAY ? fieldSchema.getElementType() : fieldSchema.getTypes().get(1);
+                    valueWriter = new RecordWriter(accessor.getValueClass(), subFields, recordSchema);
+                } else {
+                    valueWriter = new CodecWriter(TypeCodecs.codecFor(accessor.getValueClass()), ValueWriter.of(schemaField.getType()));
+                }
+                writers.add(new FieldWriter(accessor, valueWriter, schemaField.getMode() == Field.Mode.REPEATED));
+            }
+            this.fields = writers.toArray(new FieldWriter[0]);
+        }
+
+        @Override
+        public void write(Object value, Encoder out) throws IOException {
+            writeFields(value, out);
+        }
+
+        private void writeFields(Object obj, Encoder out) throws IOException {
+            for (FieldWriter field : fields) {
+                field.write(obj, out);
+            }
+        }
+    }
+
+    /**
+     * Encodes values with the codec of their type before writing them.
+     */
+    private static final class CodecWriter implements AvroValueWriter {
+        private final TypeCodec<Object> codec;
+        private final ValueWriter writer;
+
+        private CodecWriter(TypeCodec<Object> codec, ValueWriter writer) {
+            this.codec = codec;
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(Object value, Encoder out) throws IOException {
+            writer.write(codec.encode(value), out);
+        }
+    }
+
+    private static final class FieldWriter {
+        private final FieldAccessor accessor;
+        private final AvroValueWriter writer;
+        private final boolean repeated;
+        private final PrimitiveArray primitiveArray;
+
+        private FieldWriter(FieldAccessor accessor, AvroValueWriter writer, boolean repeated) {
+            this.accessor = accessor;
+            this.writer = writer;
+            this.repeated = repeated;
+            this.primitiveArray = accessor == null ? null : PrimitiveArray.of(accessor.getField().getType());
+        }
+
+        private void write(Object obj, Encoder out) throws IOException {
+            if (primitiveArray != null) {
+                writePrimitiveArray(accessor.get(obj), out);
+                return;
+            }
+            if (repeated) {
+                writeArray(accessor == null ? null : (Collection<?>) accessor.get(obj), out);
+                return;
+            }
+            if (accessor == null) {
+                out.writeIndex(0);
+                return;
+            }
+            // Primitive fields are never null and are read without boxing.
+            switch (accessor.getKind()) {
+                case INT:
+                    out.writeIndex(1);
+                    out.writeLong(accessor.getInt(obj));
+                    return;
+                case LONG:
+                    out.writeIndex(1);
+                    out.writeLong(accessor.getLong(obj));
+                    return;
+                case DOUBLE:
+                    out.writeIndex(1);
+                    out.writeDouble(accessor.getDouble(obj));
+                    return;
+                case BOOLEAN:
+                    out.writeIndex(1);
+                    out.writeBoolean(accessor.getBoolean(obj));
+                    return;
+                default:
+                    Object value = accessor.get(obj);
+                    if (value == null) {
+                        out.writeIndex(0);
+                    } else {
+                        out.writeIndex(1);
+                        writer.write(value, out);
+                    }
+            }
+        }
+
+        private void writeArray(Collection<?> values, Encoder out) throws IOException {
+            out.writeArrayStart();
+            if (values != null) {
+                // BigQuery arrays cannot contain nulls, they are skipped.
+                long count = 0;
+                for (Object value : values) {
+                    if (value != null) {
+                        count++;
+                    }
+                }
+                out.setItemCount(count);
+                for (Object value : values) {
+                    if (value != null) {
+                        out.startItem();
+                        writer.write(value, out);
+                    }
+                }
+            } else {
+                out.setItemCount(0);
+            }
+            out.writeArrayEnd();
+        }
+
+        /**
+         * Writes the elements of a primitive array field without boxing them.
+         */
+        private void writePrimitiveArray(Object array, Encoder out) throws IOException {
+            out.writeArrayStart();
+            int count = array == null ? 0 : primitiveArray.length(array);
+            out.setItemCount(count);
+            switch (primitiveArray) {
+                case INT: {
+                    for (int i = 0; i < count; i++) {
+                        out.startItem();
+                        out.writeLong(((int[]) array)[i]);
+                    }
+                    break;
+                }
+                case LONG: {
+                    for (int i = 0; i < count; i++) {
+                        out.startItem();
+                        out.writeLong(((long[]) array)[i]);
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    for (int i = 0; i < count; i++) {
+                        out.startItem();
+                        out.writeDouble(((double[]) array)[i]);
+                    }
+                    break;
+                }
+                case FLOAT: {
+                    for (int i = 0; i < count; i++) {
+                        out.startItem();
+                        out.writeDouble(((float[]) array)[i]);
+                    }
+                    break;
+                }
+                default: {
+                    for (int i = 0; i < count; i++) {
+                        out.startItem();
+                        out.writeBoolean(((boolean[]) array)[i]);
+                    }
+                    break;
+                }
+            }
+            out.writeArrayEnd();
+        }
+    }
+
+    /**
+     * Writes values of a BigQuery column type in their Avro encoding.
+     */
+    private enum ValueWriter implements AvroValueWriter {
+        LONG {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeLong(((Number) value).longValue());
+            }
+
+            @Override
+            Schema schema() {
+                return Schema.create(Schema.Type.LONG);
+            }
+        },
+        DOUBLE {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeDouble(((Number) value).doubleValue());
+            }
+
+            @Override
+            Schema schema() {
+                return Schema.create(Schema.Type.DOUBLE);
+            }
+        },
+        BOOLEAN {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeBoolean((Boolean) value);
+            }
+
+            @Override
+            Schema schema() {
+                return Schema.create(Schema.Type.BOOLEAN);
+            }
+        },
+        STRING {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeString(value.toString());
+            }
+
+            @Override
+            Schema schema() {
+                return Schema.create(Schema.Type.STRING);
+            }
+        },
+        NUMERIC {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                BigDecimal decimal = TypeCodecs.toNumericScale((BigDecimal) value, NUMERIC_SCALE);
+                out.writeBytes(decimal.unscaledValue().toByteArray());
+            }
+
+            @Override
+            Schema schema() {
+                return LogicalTypes.decimal(NUMERIC_PRECISION, NUMERIC_SCALE).addToSchema(Schema.create(Schema.Type.BYTES));
+            }
+        },
+        BYTES {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeBytes((byte[]) value);
+            }
+
+            @Override
+            Schema schema() {
+                return Schema.create(Schema.Type.BYTES);
+            }
+        },
+        TIMESTAMP {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                Instant instant = (Instant) value;
+                out.writeLong(Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000));
+            }
+
+            @Override
+            Schema schema() {
+                return LogicalTypes.timestampMicros().addToSchema(Schema.create(Schema.Type.LONG));
+            }
+        },
+        DATETIME {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeString(((LocalDateTime) value).toString());
+            }
+
+            @Override
+            Schema schema() {
+                Schema schema = Schema.create(Schema.Type.STRING);
+                schema.addProp("logicalType", "datetime");
+                return schema;
+            }
+        },
+        DATE {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeInt(Math.toIntExact(((LocalDate) value).toEpochDay()));
+            }
+
+            @Override
+            Schema schema() {
+                return LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+            }
+        },
+        TIME {
+            @Override
+            public void write(Object value, Encoder out) throws IOException {
+                out.writeLong(((LocalTime) value).toNanoOfDay() / 1000);
+            }
+
+            @Override
+            Schema schema() {
+                return LogicalTypes.timeMicros().addToSchema(Schema.create(Schema.Type.LONG));
+            }
+        };
+
+        abstract Schema schema();
+
+        static ValueWriter of(LegacySQLTypeName type) {
+            if (LegacySQLTypeName.INTEGER.equals(type)) {
+                return LONG;
+            } else if (LegacySQLTypeName.FLOAT.equals(type)) {
+                return DOUBLE;
+            } else if (LegacySQLTypeName.BOOLEAN.equals(type)) {
+                return BOOLEAN;
+            } else if (LegacySQLTypeName.STRING.equals(type)) {
+                return STRING;
+            } else if (LegacySQLTypeName.NUMERIC.equals(type)) {
+                return NUMERIC;
+            } else if (LegacySQLTypeName.BYTES.equals(type)) {
+                return BYTES;
+            } else if (LegacySQLTypeName.TIMESTAMP.equals(type)) {
+                return TIMESTAMP;
+            } else if (LegacySQLTypeName.DATETIME.equals(type)) {
+                return DATETIME;
+            } else if (LegacySQLTypeName.DATE.equals(type)) {
+                return DATE;
+            } else if (LegacySQLTypeName.TIME.equals(type)) {
+                return TIME;
+            }
+            throw new IllegalArgumentException("Unsupported BigQuery type for Avro encoding: " + type);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.safariyetu.commons.bigqueryobjects;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
@@ -32,7 +31,7 @@ import com.google.common.collect.ImmutableList;
 
 /**
  * A fluent API for mapping BigQuery query results (TableResult) to a list of POJOs.
- * This class uses reflection to set field values based on column-to-field mappings.
+ * This class uses cached method handles to set field values based on column-to-field mappings.
  * It automatically maps fields by name by default, but allows for explicit overrides
  * using the fluent API.
  *
@@ -105,42 +104,39 @@ public class BigQueryObjectReader<T> {
             inferMappings(result.getSchema());
         }
 
+        RowReader<T> generated = GeneratedRows.readerFor(pojoClass);
+        if (generated != null) {
+            return readGenerated(result, generated);
+        }
+
         List<T> pojos = new ArrayList<>();
         try {
-            // Get the constructor of the POJO.
-            Constructor<T> constructor = pojoClass.getDeclaredConstructor();
-            constructor.setAccessible(true);
-
-            // Get the fields of the POJO using reflection.
-            java.lang.reflect.Field[] fields = pojoClass.getDeclaredFields();
-            Map<String, java.lang.reflect.Field> fieldMap = new HashMap<>();
-            for (java.lang.reflect.Field field : fields) {
-                fieldMap.put(field.getName(), field);
+            // Get the cached constructor and field accessors of the POJO.
+            DeserializationPlan plan = DeserializationPlan.forClass(pojoClass);
+
+            // Resolve the registered column-to-field mappings once for all rows.
+            List<String> columnNames = new ArrayList<>();
+            List<FieldAccessor> accessors = new ArrayList<>();
+            for (Map.Entry<String, String> entry : explicitColumnToFieldMap.entrySet()) {
+                FieldAccessor accessor = plan.accessor(entry.getValue());
+                if (accessor != null) {
+                    columnNames.add(entry.getKey());
+                    accessors.add(accessor);
+                }
             }
 
             // Iterate through each row in the TableResult.
             for (FieldValueList row : result.iterateAll()) {
                 // Create a new instance of the POJO.
-                T pojo = constructor.newInstance();
-
-                // Iterate through the registered column-to-field mappings.
-                for (Map.Entry<String, String> entry : explicitColumnToFieldMap.entrySet()) {
-                    String columnName = entry.getKey();
-                    String pojoFieldName = entry.getValue();
+                T pojo = pojoClass.cast(plan.newInstance());
 
+                for (int i = 0; i < columnNames.size(); i++) {
                     // Get the FieldValue for the current column.
-                    FieldValue value = row.get(columnName);
-
-                    // Find the corresponding POJO field.
-                    java.lang.reflect.Field field = fieldMap.get(pojoFieldName);
-
-                    if (field != null) {
-                        field.setAccessible(true);
-                        // Set the value of the field based on its type.
-                        if (value != null && !value.isNull()) {
-                            Object typedValue = getTypedValue(value, field);
-                            field.set(pojo, typedValue);
-                        }
+                    FieldValue value = row.get(columnNames.get(i));
+
+                    // Set the value of the field based on its type.
+                    if (value != null && !value.isNull()) {
+                        setFieldValue(pojo, accessors.get(i), value);
                     }
                 }
                 pojos.add(pojo);
@@ -151,6 +147,73 @@ public class BigQueryObjectReader<T> {
         return pojos;
     }
 
+    /**
+     * Maps the results with the {@link RowReader} generated for a {@link BigQueryRow} class.
+     *
+     * @param result    The TableResult containing the query results.
+     * @param generated The generated reader of the POJO class.
+     * @return A List of POJO instances populated with data from the query results.
+     */
+    private List<T> readGenerated(TableResult result, RowReader<T> generated) {
+        List<T> pojos = new ArrayList<>();
+        try {
+            for (FieldValueList row : result.iterateAll()) {
+                T pojo = generated.newInstance();
+                for (Map.Entry<String, String> entry : explicitColumnToFieldMap.entrySet()) {
+                    FieldValue value = row.get(entry.getKey());
+                    if (value != null && !value.isNull()) {
+                        generated.setField(pojo, entry.getValue(), value);
+                    }
+                }
+                pojos.add(pojo);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error mapping BigQuery result to POJO", e);
+        }
+        return pojos;
+    }
+
+    /**
+     * Converts a FieldValue to the type of the given POJO field, including nested records and collections.
+     *
+     * @param value The FieldValue from BigQuery.
+     * @param field The POJO field to which the value will be set.
+     * @return The converted value as an Object.
+     */
+    static Object readValue(FieldValue value, java.lang.reflect.Field field) {
+        return getTypedValue(value, field);
+    }
+
+    /**
+     * Sets a non-null FieldValue on a POJO field. Primitive <code>int</code>, <code>long</code>,
+     * <code>double</code> and <code>boolean</code> fields are written without boxing the value.
+     *
+     * @param pojo     The POJO to populate.
+     * @param accessor The accessor of the target field.
+     * @param value    The FieldValue from BigQuery.
+     */
+    private static void setFieldValue(Object pojo, FieldAccessor accessor, FieldValue value) {
+        if (value.getAttribute() == FieldValue.Attribute.PRIMITIVE) {
+            switch (accessor.getKind()) {
+                case INT:
+                    accessor.setInt(pojo, (int) value.getLongValue());
+                    return;
+                case LONG:
+                    accessor.setLong(pojo, value.getLongValue());
+                    return;
+                case DOUBLE:
+                    accessor.setDouble(pojo, value.getDoubleValue());
+                    return;
+                case BOOLEAN:
+                    accessor.setBoolean(pojo, value.getBooleanValue());
+                    return;
+                default:
+                    break;
+            }
+        }
+        accessor.set(pojo, getTypedValue(value, accessor.getField()));
+    }
+
     /**
      * Infers the column-to-field mappings based on matching names in the schema.
      *
@@ -176,10 +239,15 @@ public class BigQueryObjectReader<T> {
      * @param field The POJO field to which the value will be set.
      * @return The converted value as an Object.
      */
-    private Object getTypedValue(FieldValue value, java.lang.reflect.Field field) {
+    private static Object getTypedValue(FieldValue value, java.lang.reflect.Field field) {
         Class<?> type = field.getType();
         // Handle repeated fields (collections)
         if (value.getAttribute() == FieldValue.Attribute.REPEATED) {
+            // Primitive arrays are filled without boxing the elements
+            PrimitiveArray primitiveArray = PrimitiveArray.of(type);
+            if (primitiveArray != null) {
+                return primitiveArray.read(value.getRepeatedValue());
+            }
             List<Object> collection = new ArrayList<>();
             // Get the generic type of the list
             Type genericType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
@@ -208,7 +276,7 @@ public class BigQueryObjectReader<T> {
      * @param type The Type object of the target field.
      * @return The converted value as an Object.
      */
-    private Object getTypedValue(FieldValue value, Type type) {
+    private static Object getTypedValue(FieldValue value, Type type) {
         if (type instanceof Class) {
             return getTypedValue(value, (Class<?>) type);
         } else if (type instanceof ParameterizedType) {
@@ -227,63 +295,20 @@ public class BigQueryObjectReader<T> {
     }
 
     /**
-     * Helper method to convert a FieldValue to the correct type for the POJO field.
+     * Helper method to convert a FieldValue to the correct type for the POJO field, with the
+     * {@link TypeCodec} of the type or as a nested record.
      *
      * @param value The FieldValue from BigQuery.
      * @param type  The Class of the POJO field.
      * @return The converted value as an Object.
      */
-    private Object getTypedValue(FieldValue value, Class<?> type) {
-        if (type == String.class) {
-            return value.getStringValue();
-        } else if (type == Byte.class || type == byte.class) {
-            return (byte) value.getLongValue();
-        } else if (type == Short.class || type == short.class) {
-            return (short) value.getLongValue();
-        } else if (type == Integer.class || type == int.class) {
-            return (int) value.getLongValue();
-        } else if (type == Long.class || type == long.class) {
-            return value.getLongValue();
-        } else if (type == Double.class || type == double.class) {
-            return value.getDoubleValue();
-        } else if (type == Boolean.class || type == boolean.class) {
-            return value.getBooleanValue();
-        } else if (type == BigDecimal.class) {
-            return new BigDecimal(value.getStringValue());
-        } else if (type == BigInteger.class) {
-            return new BigInteger(value.getStringValue());
-        } else if (type == LocalDate.class) {
-            return LocalDate.parse(value.getStringValue());
-        } else if (type == LocalTime.class) {
-            return LocalTime.parse(value.getStringValue());
-        } else if (type == LocalDateTime.class) {
-        	return parseLocalDateTime(value.getStringValue());
-        } else if (type == OffsetDateTime.class) {
-        	return parseOffsetDateTime(value);
-        } else if (type == Instant.class) {
-        	return parseInstant(value);
-        } else if (type == Date.class) {
-        	return parseDate(value);
-        } else if (isPrimitiveOrWrapper(type)) {
-            // Handle primitive and wrapper types
-            return getTypedValue(value, (Class<?>) type);
-        } else {
-            // Handle nested objects
-            return readNestedObject(value.getRecordValue(), type);
+    private static Object getTypedValue(FieldValue value, Class<?> type) {
+        TypeCodec<?> codec = TypeCodecs.forClass(type);
+        if (codec != null) {
+            return codec.decode(value);
         }
-    }
-
-    /**
-     * Checks if a given class is a primitive or a wrapper class.
-     *
-     * @param type The Class to check.
-     * @return true if the class is a primitive or a wrapper, false otherwise.
-     */
-    private boolean isPrimitiveOrWrapper(Class<?> type) {
-        return type.isPrimitive() ||
-               type == Boolean.class || type == Byte.class || type == Character.class ||
-               type == Short.class || type == Integer.class || type == Long.class ||
-               type == Float.class || type == Double.class;
+        // Handle nested objects
+        return readNestedObject(value.getRecordValue(), type);
     }
 
     /**
@@ -294,26 +319,54 @@ public class BigQueryObjectReader<T> {
      * @param <T> The type of the POJO.
      * @return A new instance of the nested POJO populated with data.
      */
-    private <R> R readNestedObject(FieldValueList record, Class<R> pojoClass) {
+    private static <R> R readNestedObject(FieldValueList record, Class<R> pojoClass) {
+        RowReader<R> generated = GeneratedRows.readerFor(pojoClass);
+        if (generated != null) {
+            return readNestedGenerated(record, generated);
+        }
         try {
-            R pojo = pojoClass.getDeclaredConstructor().newInstance();
-            java.lang.reflect.Field[] fields = pojoClass.getDeclaredFields();
+            DeserializationPlan plan = DeserializationPlan.forClass(pojoClass);
+            R pojo = pojoClass.cast(plan.newInstance());
 
-            for (java.lang.reflect.Field field : fields) {
-                field.setAccessible(true);
+            for (FieldAccessor accessor : plan.accessors().values()) {
                 FieldValue value = null;
                 try {
                     // Get the FieldValue by name, handling cases where the column might be missing.
-                    value = record.get(field.getName());
+                    value = record.get(accessor.getName());
                 } catch (IllegalArgumentException e) {
                     // The column for this field does not exist in the record.
                     // We can simply skip this field. Optionally, log a warning.
-                    System.err.println("Warning: Column '" + field.getName() + "' not found in nested BigQuery record. Skipping field.");
+                    System.err.println("Warning: Column '" + accessor.getName() + "' not found in nested BigQuery record. Skipping field.");
                     continue;
                 }
                 
                 if (value != null && !value.isNull()) {
-                    field.set(pojo, getTypedValue(value, field));
+                    setFieldValue(pojo, accessor, value);
+                }
+            }
+            return pojo;
+        } catch (Exception e) {
+            throw new RuntimeException("Error mapping nested BigQuery record to POJO", e);
+        }
+    }
+
+    /**
+     * Maps a nested BigQuery record with the {@link RowReader} generated for a {@link BigQueryRow} class.
+     * Fields without a column in the record are skipped.
+     */
+    private static <R> R readNestedGenerated(FieldValueList record, RowReader<R> generated) {
+        try {
+            R pojo = generated.newInstance();
+            for (String fieldName : generated.fieldNames()) {
+                FieldValue value;
+                try {
+                    value = record.get(fieldName);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Warning: Column '" + fieldName + "' not found in nested BigQuery record. Skipping field.");
+                    continue;
+                }
+                if (value != null && !value.isNull()) {
+                    generated.setField(pojo, fieldName, value);
                 }
             }
             return pojo;
@@ -325,7 +378,7 @@ public class BigQueryObjectReader<T> {
     /**
      * Parse LocalDateTime from string, handling UTC format
      */
-    private LocalDateTime parseLocalDateTime(String stringValue) {
+    static LocalDateTime parseLocalDateTime(String stringValue) {
         if (stringValue.endsWith(" UTC")) {
             return parseBigQueryUtcString(stringValue).atOffset(ZoneOffset.UTC).toLocalDateTime();
         }
@@ -341,7 +394,7 @@ public class BigQueryObjectReader<T> {
     /**
      * Parse OffsetDateTime from string, handling UTC format
      */
-    private OffsetDateTime parseOffsetDateTime(FieldValue value) {
+    static OffsetDateTime parseOffsetDateTime(FieldValue value) {
     	String stringValue = value.getStringValue();
     	if (NumberUtils.isNumber(stringValue)) {
     		// Assume TIMESTAMP field 
@@ -361,7 +414,7 @@ public class BigQueryObjectReader<T> {
 
     }
     
-    private LocalDateTime parseBigQueryUtcString(String stringValue) {
+    private static LocalDateTime parseBigQueryUtcString(String stringValue) {
     	return LocalDateTime.parse(
                 stringValue.substring(0, stringValue.length() - 4),
                 DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
@@ -371,7 +424,7 @@ public class BigQueryObjectReader<T> {
     /**
      * Parse Instant from string, handling UTC format
      */
-    private Instant parseInstant(FieldValue value) {
+    static Instant parseInstant(FieldValue value) {
     	final String stringValue = value.getStringValue();
 		if (NumberUtils.isNumber(stringValue)) {
     		// Assume TIMESTAMP field 
@@ -395,7 +448,7 @@ public class BigQueryObjectReader<T> {
     /**
      * Parse Date from string, handling UTC format
      */
-    private Date parseDate(FieldValue value) {
+    static Date parseDate(FieldValue value) {
     	final String stringValue = value.getStringValue();
 		if (NumberUtils.isNumber(stringValue)) {
     		// Assume TIMESTAMP field 
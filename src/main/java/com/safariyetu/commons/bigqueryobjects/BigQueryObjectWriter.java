@@ -1,26 +1,36 @@
 package com.safariyetu.commons.bigqueryobjects;
 
-import java.math.BigDecimal;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.temporal.Temporal;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
 
 import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
 import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.Clustering;
 import com.google.cloud.bigquery.FieldList;
-import com.google.cloud.bigquery.InsertAllRequest;
-import com.google.cloud.bigquery.InsertAllResponse;
+import com.google.cloud.bigquery.FormatOptions;
+import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.ParquetOptions;
 import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.Table;
@@ -28,18 +38,119 @@ import com.google.cloud.bigquery.TableDefinition;
 import com.google.cloud.bigquery.TableId;
 import com.google.cloud.bigquery.TableInfo;
 import com.google.cloud.bigquery.TimePartitioning;
-import com.google.common.collect.ImmutableMap;
+import com.google.cloud.bigquery.WriteChannelConfiguration;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteClient;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
 
 /**
  * A utility class to simplify BigQuery operations, including automatic table creation,
  * schema updates, and data insertion via a fluent API.
+ *
+ * <p>A writer created with a {@link BigQueryWriteClient} keeps its Storage Write API connections
+ * open between inserts, and must be closed to release them.</p>
  */
-public class BigQueryObjectWriter {
+public class BigQueryObjectWriter implements AutoCloseable {
+
+    // Schemas derived from classes, including nested record types.
+    private static final ClassValue<Schema> SCHEMAS = new ClassValue<Schema>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return Schema.of(deriveFields(type));
+        }
+    };
+
+    // The classes whose schema is being derived on the current thread, used to detect cycles.
+    private static final ThreadLocal<Deque<Class<?>>> SCHEMA_PATH = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * The default maximum number of rows per <code>insertAll</code> request. BigQuery accepts up to 50,000.
+     */
+    public static final int DEFAULT_MAX_ROWS_PER_REQUEST = 10_000;
+
+    /**
+     * The default maximum estimated size of the rows of an <code>insertAll</code> request, leaving
+     * headroom below BigQuery's 10 MB request size limit for the estimation error.
+     */
+    public static final long DEFAULT_MAX_BYTES_PER_REQUEST = 8L * 1024 * 1024;
+
+    /**
+     * The default maximum number of <code>insertAll</code> requests of one insert in flight at a time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    /**
+     * The default number of times rows rejected for a transient reason are sent again.
+     */
+    public static final int DEFAULT_MAX_ROW_RETRIES = 3;
 
     private final BigQuery bigquery;
+    // The Storage Write API connections, null without a write client.
+    private final StorageWriteAppender storageWriteAppender;
+    private final RetryPolicy retryPolicy;
+    // Shared by all inserts of the writer, so that retries stop when most inserts fail.
+    private final RetryBudget retryBudget;
+    // Set when a subclass derives the fields or types itself, so that its tables are not given the cached schema.
+    private final boolean fieldsOverridden = isOverridden("getFieldsFromClass", Class.class);
+    private final boolean typeOverridden = isOverridden("getTypeFromClass", Class.class);
 
     public BigQueryObjectWriter(BigQuery bigquery) {
+        this(bigquery, null);
+    }
+
+    /**
+     * Creates a writer that can also insert through the Storage Write API, see {@link WriteMode#STORAGE_WRITE}.
+     * @param bigquery The BigQuery client, used for table management and <code>insertAll</code>.
+     * @param writeClient The Storage Write API client. It is not closed by this writer, but its
+     *        connections opened by this writer are.
+     */
+    public BigQueryObjectWriter(BigQuery bigquery, BigQueryWriteClient writeClient) {
+        this(bigquery, writeClient, RetryPolicy.defaults());
+    }
+
+    /**
+     * Creates a writer that retries transient failures with the given policy.
+     * @param bigquery The BigQuery client, used for table management and <code>insertAll</code>.
+     * @param writeClient The Storage Write API client, or null to only use <code>insertAll</code>.
+     * @param retryPolicy The retry policy, whose budget is shared by all inserts of this writer.
+     */
+    public BigQueryObjectWriter(BigQuery bigquery, BigQueryWriteClient writeClient, RetryPolicy retryPolicy) {
         this.bigquery = bigquery;
+        this.storageWriteAppender = writeClient != null ? new StorageWriteAppender(writeClient) : null;
+        this.retryPolicy = retryPolicy;
+        this.retryBudget = new RetryBudget(retryPolicy);
+    }
+
+    /**
+     * @return True if the class of this writer overrides the public method of this class.
+     */
+    private boolean isOverridden(String name, Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod(name, parameterTypes).getDeclaringClass() != BigQueryObjectWriter.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Missing method " + name, e);
+        }
+    }
+
+    /**
+     * @return True if a request failed because the table is missing or its schema is out of date.
+     */
+    static boolean isTableError(RuntimeException e) {
+        return e instanceof BigQueryException
+                && ("notFound".equals(((BigQueryException) e).getReason()) || String.valueOf(e.getMessage()).contains("schema mismatch"));
+    }
+
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Closes the Storage Write API connections opened by this writer. The clients are not closed.
+     */
+    @Override
+    public void close() {
+        if (storageWriteAppender != null) {
+            storageWriteAppender.close();
+        }
     }
 
     /**
@@ -52,15 +163,58 @@ public class BigQueryObjectWriter {
         return new InsertBuilder(dataset, table);
     }
 
+    /**
+     * Entry point for a long-lived writer that buffers single rows from many threads and inserts
+     * them in batches in the background.
+     * @param dataset The BigQuery dataset ID.
+     * @param table The BigQuery table ID.
+     * @return A builder for the buffered writer.
+     */
+    public BufferedBigQueryWriter.Builder buffered(String dataset, String table) {
+        return new BufferedBigQueryWriter.Builder(this, dataset, table);
+    }
+
+    /**
+     * Entry point for a reactive sink that inserts the rows of a <code>Flow.Publisher</code> in
+     * batches, requesting rows as the inserts finish.
+     * @param dataset The BigQuery dataset ID.
+     * @param table The BigQuery table ID.
+     * @param <T> The row type.
+     * @return A builder for the subscriber.
+     */
+    public <T> BigQuerySubscriber.Builder<T> subscriber(String dataset, String table) {
+        return new BigQuerySubscriber.Builder<>(this, dataset, table);
+    }
+
     /**
      * Builder class for constructing and executing BigQuery insert requests.
      */
     public class InsertBuilder {
         private final TableId tableId;
         private final List<Object> objects = new ArrayList<>();
+        // The insert row content of the objects when converted before execute(), see convertedRows.
+        private List<Map<String, Object>> rowContents;
+        // The class of the rows given by spooledRows, whose objects are not available, or null.
+        private Class<?> rowClass;
+        // False for spooled rows of a class that is not known, whose table cannot be created or updated.
+        private boolean schemaKnown = true;
         private String timePartitioningField;
         private TimePartitioning.Type timePartitioningType = TimePartitioning.Type.DAY;
         private List<String> clusteringFields;
+        private WriteMode writeMode = WriteMode.INSERT_ALL;
+        private String streamName;
+        private JobInfo.WriteDisposition writeDisposition = JobInfo.WriteDisposition.WRITE_APPEND;
+        private Path stagingDirectory;
+        private LoadFormat loadFormat = LoadFormat.JSON;
+        private int maxRowsPerRequest = DEFAULT_MAX_ROWS_PER_REQUEST;
+        private long maxBytesPerRequest = DEFAULT_MAX_BYTES_PER_REQUEST;
+        private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+        private int maxRowRetries = DEFAULT_MAX_ROW_RETRIES;
+        private InsertIdStrategy insertIdStrategy;
+        private HedgePolicy hedgePolicy;
+        // The insertIds of the rows sent so far, kept so that every retry of a row uses the same id.
+        private String[] insertIds = new String[0];
+        private Executor executor;
 
         public InsertBuilder(String dataset, String table) {
             this.tableId = TableId.of(dataset, table);
@@ -86,6 +240,48 @@ public class BigQueryObjectWriter {
             return this;
         }
 
+        /**
+         * Adds objects that were already converted with {@link BigQueryObjectWriter#insertRowContent(Object)},
+         * so that <code>insertAll</code> sends the given content instead of converting them again.
+         * Must not be combined with {@link #row(Object)} or {@link #rows(Collection)}.
+         * @param objects The objects, still used for the schema when the table is created or updated.
+         * @param contents The insert row content of each object, in the same order.
+         * @param ids The insertIds of the objects, given beforehand, or null to use the insertId strategy.
+         * @return This builder instance for chaining.
+         */
+        InsertBuilder convertedRows(List<Object> objects, List<Map<String, Object>> contents, String[] ids) {
+            this.objects.addAll(objects);
+            this.rowContents = contents;
+            if (ids != null) {
+                this.insertIds = ids;
+                if (insertIdStrategy == null) {
+                    insertIdStrategy = InsertIdStrategy.none();
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Adds rows that are only known by their insert row content, e.g. rows read back from a
+         * {@link RowSpool}, and sends them with <code>insertAll</code>. The table is created or updated
+         * with the schema of the given class, and not at all if the class is null.
+         * Must not be combined with other rows.
+         * @param rowClass The class of the rows, or null if it is not known.
+         * @param contents The insert row content of the rows.
+         * @param ids The insertIds of the rows, or null to send the rows without one.
+         * @return This builder instance for chaining.
+         */
+        InsertBuilder spooledRows(Class<?> rowClass, List<Map<String, Object>> contents, String[] ids) {
+            // The contents stand in for the objects, which are only used for their number and schema.
+            convertedRows(new ArrayList<Object>(contents), contents, ids != null ? ids : new String[contents.size()]);
+            // The insertIds were given when the rows were spooled, a strategy would only see the stand-ins.
+            this.insertIdStrategy = InsertIdStrategy.none();
+            this.rowClass = rowClass;
+            this.schemaKnown = rowClass != null;
+            this.writeMode = WriteMode.INSERT_ALL;
+            return this;
+        }
+
         /**
          * Specifies the field and type for time-based partitioning.
          * Defaults to DAY partitioning if not specified.
@@ -118,75 +314,550 @@ public class BigQueryObjectWriter {
             this.clusteringFields = Arrays.asList(fields);
             return this;
         }
+
+        /**
+         * Specifies the API used to write the rows. Defaults to {@link WriteMode#INSERT_ALL}.
+         * @param mode The write mode.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder writeMode(WriteMode mode) {
+            this.writeMode = mode;
+            return this;
+        }
+
+        /**
+         * Appends the rows to an application-created Storage Write API stream instead of the table's
+         * default stream. Implies {@link WriteMode#STORAGE_WRITE}. Finalizing and committing pending
+         * or buffered streams is left to the application.
+         * @param streamName The full stream name, <code>projects/{p}/datasets/{d}/tables/{t}/streams/{s}</code>.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder toStream(String streamName) {
+            this.streamName = streamName;
+            this.writeMode = WriteMode.STORAGE_WRITE;
+            return this;
+        }
+
+        /**
+         * Specifies whether {@link #load()} appends to the table or replaces its content.
+         * Defaults to <code>WRITE_APPEND</code>.
+         * @param disposition <code>WRITE_APPEND</code> or <code>WRITE_TRUNCATE</code>.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder writeDisposition(JobInfo.WriteDisposition disposition) {
+            this.writeDisposition = disposition;
+            return this;
+        }
+
+        /**
+         * Specifies the directory where {@link #load()} stages the rows before uploading them.
+         * Defaults to the system temporary directory.
+         * @param directory The staging directory.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder stagingDirectory(Path directory) {
+            this.stagingDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Specifies the format of the file staged by {@link #load()}. Defaults to {@link LoadFormat#JSON}.
+         * @param format The staging format.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder loadFormat(LoadFormat format) {
+            this.loadFormat = format;
+            return this;
+        }
         
+        /**
+         * Specifies the maximum number of rows sent in one <code>insertAll</code> request.
+         * Defaults to {@link BigQueryObjectWriter#DEFAULT_MAX_ROWS_PER_REQUEST}.
+         * @param maxRows The maximum number of rows, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder maxRowsPerRequest(int maxRows) {
+            if (maxRows < 1) {
+                throw new IllegalArgumentException("The maximum number of rows per request must be positive: " + maxRows);
+            }
+            this.maxRowsPerRequest = maxRows;
+            return this;
+        }
+
+        /**
+         * Specifies the maximum estimated size of the rows sent in one <code>insertAll</code> request.
+         * A single row larger than this is sent in a request of its own.
+         * Defaults to {@link BigQueryObjectWriter#DEFAULT_MAX_BYTES_PER_REQUEST}.
+         * @param maxBytes The maximum number of bytes, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder maxBytesPerRequest(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("The maximum number of bytes per request must be positive: " + maxBytes);
+            }
+            this.maxBytesPerRequest = maxBytes;
+            return this;
+        }
+
+        /**
+         * Specifies how many <code>insertAll</code> requests are sent concurrently.
+         * Defaults to {@link BigQueryObjectWriter#DEFAULT_MAX_CONCURRENT_REQUESTS}, and 1 sends the requests one after the other.
+         * @param maxConcurrent The maximum number of requests in flight, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder maxConcurrentRequests(int maxConcurrent) {
+            if (maxConcurrent < 1) {
+                throw new IllegalArgumentException("The maximum number of concurrent requests must be positive: " + maxConcurrent);
+            }
+            this.maxConcurrentRequests = maxConcurrent;
+            return this;
+        }
+
+        /**
+         * Specifies how many times the rows rejected for a transient reason are sent again, e.g. rows
+         * that were <code>stopped</code> because another row of their request was invalid, or that hit
+         * a backend error. Only these rows are resent, the rows BigQuery accepted are not. Each retry
+         * waits for a backoff and takes a token of the retry budget of the writer's {@link RetryPolicy}.
+         * Defaults to {@link BigQueryObjectWriter#DEFAULT_MAX_ROW_RETRIES}, and 0 disables the retries.
+         * @param maxRetries The maximum number of retries of a row, at least 0.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder maxRowRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("The maximum number of row retries must not be negative: " + maxRetries);
+            }
+            this.maxRowRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Specifies how the insertIds of the rows are given, which lets BigQuery drop the copies of rows
+         * that are sent again after a timeout or a transient failure. The id of a row is computed the
+         * first time it is sent and reused by its retries. The Storage Write API has no insertIds, so
+         * {@link #execute()} throws an {@link IllegalStateException} for a strategy in {@link WriteMode#STORAGE_WRITE}.
+         * Defaults to {@link InsertIdStrategy#none()}.
+         * @param strategy The insertId strategy.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder insertIds(InsertIdStrategy strategy) {
+            this.insertIdStrategy = strategy;
+            return this;
+        }
+
+        /**
+         * Enables hedging: an <code>insertAll</code> request that is slower than most recent requests
+         * of the policy is sent a second time, and the first answer wins. The copies carry the same
+         * insertIds, so hedging requires an {@link #insertIds(InsertIdStrategy)} strategy giving an id for
+         * every row: {@link #execute()} throws an {@link IllegalStateException} for a row without one,
+         * and in {@link WriteMode#STORAGE_WRITE}, whose appends are not hedged.
+         * @param policy The hedge policy, which records the latencies and hedges, or null to disable hedging.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder hedging(HedgePolicy policy) {
+            this.hedgePolicy = policy;
+            return this;
+        }
+
+        /**
+         * Specifies the executor that sends the <code>insertAll</code> requests. The number of requests
+         * in flight is bounded by {@link #maxConcurrentRequests(int)} whatever the executor.
+         * Defaults to a virtual thread per request on Java 21 and later, and to a shared pool of
+         * daemon threads before that.
+         * @param executor The executor. It is not shut down by the builder.
+         * @return This builder instance for chaining.
+         */
+        public InsertBuilder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
         /**
          * Executes the insert operation, handling table creation and schema updates on failure.
+         * With <code>insertAll</code>, the rows are split into requests of at most
+         * {@link #maxRowsPerRequest(int)} rows and {@link #maxBytesPerRequest(long)} estimated bytes,
+         * and up to {@link #maxConcurrentRequests(int)} of them are sent at a time on the
+         * {@link #executor(Executor)}. Rows rejected by BigQuery do not stop the remaining requests.
+         * Once all requests are sent, the rows rejected for a transient reason are sent again, up to
+         * {@link #maxRowRetries(int)} times, and the rows that still failed are printed and reported
+         * together by an {@link InsertException}.
+         * If requests fail because the table is missing or out of date, the table is created or updated
+         * and only the failed requests are sent again. Requests and table changes that fail for a
+         * transient reason, e.g. <code>rateLimitExceeded</code>, are retried after a backoff according
+         * to the {@link RetryPolicy} of the writer.
+         * @return The requests the rows were sent in and the outcome of each row.
+         * @throws InsertException if rows were not inserted.
          */
-        public void execute() {
-            try {
-                // First, attempt to insert directly without checking the table.
-                executeInsertInternal();
-            } catch (BigQueryException e) {
-                // Catch specific errors related to table or schema issues.
-                if ("notFound".equals(e.getReason()) || e.getMessage().contains("schema mismatch")) {
-                    System.err.println("BigQuery table not found or schema mismatch. Attempting to create/update table.");
-                    try {
-                        // Create or update the table based on the object's schema
-                        createOrUpdateTable();
-                        // Retry the insert after fixing the table.
-                        executeInsertInternal();
-                    } catch (BigQueryException createOrUpdateEx) {
-                        System.err.println("Failed to create/update table or retry insert: " + createOrUpdateEx.getMessage());
-                        throw new RuntimeException("Failed to handle BigQuery table error.", createOrUpdateEx);
+        public InsertResult execute() {
+            if (writeMode == WriteMode.STORAGE_WRITE && (hedgePolicy != null || insertIdStrategy != null)) {
+                throw new IllegalStateException("Storage Write API appends are neither hedged nor deduplicated by insertIds, "
+                        + "see hedging(HedgePolicy) and insertIds(InsertIdStrategy).");
+            }
+            if (hedgePolicy != null && insertIdStrategy == null) {
+                throw new IllegalStateException("Hedged requests need insertIds to avoid duplicate rows, see insertIds(InsertIdStrategy).");
+            }
+            List<InsertResult.Chunk> chunks = new ArrayList<>();
+            List<InsertAllSubmitter.PendingChunk> failed = new ArrayList<>();
+            boolean tableRepaired = false;
+            int attempt = 1;
+            while (true) {
+                try {
+                    // First, attempt to insert directly without checking the table.
+                    executeInsertInternal(chunks, failed);
+                    retryBudget.onSuccess();
+                    break;
+                } catch (BigQueryException e) {
+                    // Catch specific errors related to table or schema issues, once.
+                    if (isTableError(e) && !tableRepaired && schemaKnown) {
+                        System.err.println("BigQuery table not found or schema mismatch. Attempting to create/update table.");
+                        try {
+                            // Create or update the table based on the object's schema
+                            createOrUpdateTableWithRetries();
+                        } catch (BigQueryException createOrUpdateEx) {
+                            System.err.println("Failed to create/update table or retry insert: " + createOrUpdateEx.getMessage());
+                            throw new RuntimeException("Failed to handle BigQuery table error.", createOrUpdateEx);
+                        }
+                        // Retry the requests that failed after fixing the table, without waiting.
+                        tableRepaired = true;
+                    } else if (awaitRetry(e, attempt, "insert")) {
+                        // Retry the requests that failed for a transient reason after a backoff.
+                        attempt++;
+                    } else if (tableRepaired) {
+                        System.err.println("Failed to create/update table or retry insert: " + e.getMessage());
+                        throw new RuntimeException("Failed to handle BigQuery table error.", e);
+                    } else if (retryPolicy.isRetryable(e)) {
+                        throw new RuntimeException("Failed to insert data into BigQuery after " + attempt + " attempts.", e);
+                    } else {
+                        // Re-throw other unexpected BigQuery exceptions.
+                        throw new RuntimeException("Failed to insert data into BigQuery with an unexpected error.", e);
                     }
-                } else {
-                    // Re-throw other unexpected BigQuery exceptions.
-                    throw new RuntimeException("Failed to insert data into BigQuery with an unexpected error.", e);
                 }
             }
+            chunks.sort(Comparator.comparingInt(InsertResult.Chunk::getFirstRow));
+            Map<Long, List<BigQueryError>> insertErrors = new TreeMap<>();
+            for (InsertResult.Chunk chunk : chunks) {
+                insertErrors.putAll(chunk.getInsertErrors());
+            }
+            retryRows(chunks, insertErrors);
+            insertErrors.forEach((row, errors) -> System.err.println("Error inserting row " + row + ": " + errors));
+            InsertResult result = new InsertResult(objects.size(), chunks, insertErrors);
+            if (result.hasErrors()) {
+                throw new InsertException("Failed to insert " + result.getFailedRowCount() + " of " + result.getRowCount()
+                        + " rows into BigQuery. See errors above.", result);
+            }
+            return result;
         }
         
-        private void executeInsertInternal() {
+        /**
+         * Sends the rows rejected for a transient reason again until they are inserted, fail for another
+         * reason or run out of retries, adding a chunk per retry request. The errors of the inserted
+         * rows are removed, and a failed retry request leaves the errors of its rows as they were.
+         */
+        private void retryRows(List<InsertResult.Chunk> chunks, Map<Long, List<BigQueryError>> insertErrors) {
+            InsertAllSubmitter submitter = writeMode == WriteMode.INSERT_ALL
+                    ? new InsertAllSubmitter(bigquery, tableId, executor, maxConcurrentRequests, hedgePolicy) : null;
+            for (int attempt = 2; attempt <= maxRowRetries + 1; attempt++) {
+                int[] rows = insertErrors.entrySet().stream()
+                        .filter(entry -> InsertAllSubmitter.isRetryable(entry.getValue()))
+                        .mapToInt(entry -> entry.getKey().intValue())
+                        .toArray();
+                if (rows.length == 0) {
+                    return;
+                }
+                if (!retryBudget.tryAcquire()) {
+                    System.err.println("Not retrying " + rows.length + " rows, the retry budget is exhausted.");
+                    return;
+                }
+                sleep(retryPolicy.backoffMillis(attempt - 1));
+                if (submitter == null) {
+                    appendAgain(rows, chunks, insertErrors);
+                    continue;
+                }
+                for (InsertAllSubmitter.Outcome outcome : submitter.retry(insertRows(), rows, attempt,
+                        maxRowsPerRequest, maxBytesPerRequest)) {
+                    if (outcome.getFailure() != null) {
+                        System.err.println("Failed to retry " + outcome.getPending().getRows().length + " rows: "
+                                + outcome.getFailure().getMessage());
+                        continue;
+                    }
+                    for (int row : outcome.getPending().getRows()) {
+                        insertErrors.remove((long) row);
+                    }
+                    insertErrors.putAll(outcome.getChunk().getInsertErrors());
+                    chunks.add(outcome.getChunk());
+                }
+            }
+        }
+
+        /**
+         * Appends rows to the Storage Write API stream again, like {@link #retryRows(List, Map)} sends them
+         * with <code>insertAll</code>. A failed append leaves the errors of the rows it did not answer.
+         */
+        private void appendAgain(int[] rows, List<InsertResult.Chunk> chunks, Map<Long, List<BigQueryError>> insertErrors) {
+            List<Integer> positions = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                positions.add(row);
+            }
+            List<InsertResult.Chunk> answered = new ArrayList<>();
+            try {
+                storageWriteAppender().append(storageWriteStream(), objects, positions, answered);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to retry the append of " + rows.length + " rows: " + e.getMessage());
+            }
+            for (InsertResult.Chunk chunk : answered) {
+                for (int row : chunk.getRows()) {
+                    insertErrors.remove((long) row);
+                }
+                insertErrors.putAll(chunk.getInsertErrors());
+                chunks.add(chunk);
+            }
+        }
+
+        /**
+         * Executes the insert asynchronously, like {@link #execute()}. The insert is coordinated on the
+         * default executor, which starts a thread per waiting task, and its requests are sent on the
+         * executor of the builder (see {@link #executor(Executor)}), so a bounded request executor only
+         * limits the requests in flight.
+         * @return A future completed with the result, or completed exceptionally with the exception
+         *         {@link #execute()} would throw, e.g. an {@link InsertException}.
+         * @see #executeAsync(Executor)
+         */
+        public CompletableFuture<InsertResult> executeAsync() {
+            return executeAsync(InsertAllSubmitter.defaultExecutor());
+        }
+
+        /**
+         * Executes the insert asynchronously, like {@link #execute()}: the rows are converted, the table is
+         * created or updated if needed and the requests are retried on the given executor, so the calling
+         * thread does not wait for BigQuery. The builder must not be changed until the future completes.
+         *
+         * <p>The task waits for the requests, which are sent on the executor of the builder. So the given
+         * executor must not be the one sending the requests: a bounded pool running both could fill up
+         * with inserts waiting for requests that never start.</p>
+         *
+         * @param executor The executor that coordinates the insert.
+         * @return A future completed with the result, or completed exceptionally with the exception
+         *         {@link #execute()} would throw, e.g. an {@link InsertException}.
+         * @throws IllegalArgumentException if the executor is the executor of the builder.
+         */
+        public CompletableFuture<InsertResult> executeAsync(Executor executor) {
+            if (executor != null && executor == this.executor) {
+                throw new IllegalArgumentException("The insert must be coordinated on another executor than the one sending its requests, see executor(Executor).");
+            }
+            return CompletableFuture.supplyAsync(this::execute, executor);
+        }
+
+        /**
+         * Loads the rows with a batch load job instead of streaming inserts. The rows are staged to a
+         * gzip-compressed newline-delimited JSON file, which is uploaded with the derived schema, or
+         * to an Avro or Parquet file carrying its own schema with {@link LoadFormat#AVRO} or
+         * {@link LoadFormat#PARQUET}.
+         * The table is created if needed with the configured partitioning and clustering, and new
+         * fields are added to the schema of an existing table when appending.
+         * Load jobs have no streaming insert costs or quotas, which suits large backfills.
+         */
+        public void load() {
             if (objects.isEmpty()) {
                 return;
             }
 
-            InsertAllRequest.Builder builder = InsertAllRequest.newBuilder(tableId);
+            WriteChannelConfiguration.Builder configuration = WriteChannelConfiguration.newBuilder(tableId);
+            switch (loadFormat) {
+                case AVRO:
+                    requireSingleClass();
+                    configuration.setFormatOptions(FormatOptions.avro()).setUseAvroLogicalTypes(true);
+                    break;
+                case PARQUET:
+                    requireSingleClass();
+                    configuration.setFormatOptions(ParquetOptions.newBuilder().setEnableListInference(true).build());
+                    break;
+                default:
+                    configuration.setFormatOptions(FormatOptions.json()).setSchema(getSchemaFromObjects(objects));
+            }
+            configuration.setCreateDisposition(JobInfo.CreateDisposition.CREATE_IF_NEEDED)
+                    .setWriteDisposition(writeDisposition);
+            if (writeDisposition == JobInfo.WriteDisposition.WRITE_APPEND) {
+                configuration.setSchemaUpdateOptions(Collections.singletonList(JobInfo.SchemaUpdateOption.ALLOW_FIELD_ADDITION));
+            }
+            TimePartitioning timePartitioning = timePartitioning();
+            if (timePartitioning != null) {
+                configuration.setTimePartitioning(timePartitioning);
+            }
+            Clustering clustering = clustering();
+            if (clustering != null) {
+                configuration.setClustering(clustering);
+            }
+
+            new LoadJobRunner(bigquery, stagingDirectory).load(objects, loadFormat, configuration.build());
+        }
 
+        /**
+         * Checks that the rows share one class, as Avro and Parquet files have a single schema.
+         */
+        private void requireSingleClass() {
+            Class<?> clazz = objects.get(0).getClass();
             for (Object obj : objects) {
-                Map<String, Object> rowContent = objectToMap(obj);
-                builder.addRow(rowContent);
+                if (obj.getClass() != clazz) {
+                    throw new IllegalArgumentException(loadFormat + " loads require rows of a single class, but got "
+                            + clazz.getName() + " and " + obj.getClass().getName());
+                }
+            }
+        }
+
+        /**
+         * Sends the rows, or only the requests that failed if a previous attempt left any, adding a chunk
+         * per answered request. Requests that failed are kept for the next attempt and the failure of
+         * one of them is thrown, preferring a missing table or a schema mismatch that the caller can fix.
+         */
+        private void executeInsertInternal(List<InsertResult.Chunk> chunks, List<InsertAllSubmitter.PendingChunk> failed) {
+            if (objects.isEmpty()) {
+                return;
+            }
+
+            if (writeMode == WriteMode.STORAGE_WRITE) {
+                // Only the rows of the requests that were not answered are appended again.
+                boolean[] answered = new boolean[objects.size()];
+                for (InsertResult.Chunk chunk : chunks) {
+                    for (int row : chunk.getRows()) {
+                        answered[row] = true;
+                    }
+                }
+                List<Integer> pending = new ArrayList<>();
+                for (int i = 0; i < answered.length; i++) {
+                    if (!answered[i]) {
+                        pending.add(i);
+                    }
+                }
+                storageWriteAppender().append(storageWriteStream(), objects, pending, chunks);
+                return;
+            }
+
+            InsertAllSubmitter submitter = new InsertAllSubmitter(bigquery, tableId, executor, maxConcurrentRequests, hedgePolicy);
+            List<InsertAllSubmitter.Outcome> outcomes = failed.isEmpty()
+                    ? submitter.insert(insertRows(), maxRowsPerRequest, maxBytesPerRequest)
+                    : submitter.resend(new ArrayList<>(failed));
+            failed.clear();
+            RuntimeException failure = null;
+            for (InsertAllSubmitter.Outcome outcome : outcomes) {
+                if (outcome.getFailure() == null) {
+                    chunks.add(outcome.getChunk());
+                    continue;
+                }
+                failed.add(outcome.getPending());
+                if (failure == null || (!isTableError(failure) && isTableError(outcome.getFailure()))) {
+                    failure = outcome.getFailure();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * @return The rows for the submitter, sharing the insertIds of the rows sent so far.
+         */
+        private InsertAllSubmitter.Rows insertRows() {
+            if (insertIds.length != objects.size()) {
+                insertIds = Arrays.copyOf(insertIds, objects.size());
+            }
+            return new InsertAllSubmitter.Rows(objects, rowContents,
+                    insertIdStrategy != null ? insertIdStrategy : InsertIdStrategy.none(), insertIds);
+        }
+
+        /**
+         * Creates or updates the table, retrying the BigQuery calls that failed for a transient reason.
+         */
+        private void createOrUpdateTableWithRetries() {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    createOrUpdateTable();
+                    return;
+                } catch (RuntimeException e) {
+                    // Table creation and update failures are wrapped.
+                    Throwable cause = e instanceof BigQueryException ? e : e.getCause();
+                    if (!(cause instanceof BigQueryException) || !awaitRetry((BigQueryException) cause, attempt, "table update")) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits before retrying an operation if the failure is transient, the policy allows another
+         * attempt and the writer's retry budget has a token left.
+         * @return False if the operation must not be retried.
+         */
+        private boolean awaitRetry(BigQueryException e, int attempt, String operation) {
+            if (!retryPolicy.isRetryable(e) || attempt >= retryPolicy.getMaxAttempts()) {
+                return false;
+            }
+            if (!retryBudget.tryAcquire()) {
+                System.err.println("Not retrying the " + operation + ", the retry budget is exhausted.");
+                return false;
             }
+            long backoff = retryPolicy.backoffMillis(attempt);
+            System.err.println("Retrying the " + operation + " of " + tableId.getDataset() + "." + tableId.getTable()
+                    + " in " + backoff + " ms after a transient failure: " + e.getMessage());
+            sleep(backoff);
+            return true;
+        }
 
-            InsertAllResponse response = bigquery.insertAll(builder.build());
+        private void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to retry the insert into BigQuery.", e);
+            }
+        }
 
-            if (response.hasErrors()) {
-                response.getInsertErrors().forEach((row, errors) -> {
-                    System.err.println("Error inserting row: " + errors);
-                });
-                throw new RuntimeException("Failed to insert all rows into BigQuery. See errors above.");
+        private TimePartitioning timePartitioning() {
+            if (timePartitioningField == null || timePartitioningField.isEmpty()) {
+                return null;
             }
+            return TimePartitioning.newBuilder(timePartitioningType)
+                .setField(timePartitioningField)
+                .build();
+        }
+
+        private Clustering clustering() {
+            if (clusteringFields == null || clusteringFields.isEmpty()) {
+                return null;
+            }
+            return Clustering.newBuilder().setFields(clusteringFields).build();
+        }
+
+        private StorageWriteAppender storageWriteAppender() {
+            if (storageWriteAppender == null) {
+                throw new IllegalStateException("The Storage Write API requires a writer created with a BigQueryWriteClient.");
+            }
+            return storageWriteAppender;
+        }
+
+        private String storageWriteStream() {
+            if (streamName != null) {
+                return streamName;
+            }
+            String project = tableId.getProject() != null ? tableId.getProject() : bigquery.getOptions().getProjectId();
+            return StorageWriteAppender.defaultStreamName(project, tableId.getDataset(), tableId.getTable());
         }
 
         private void createOrUpdateTable() {
             Table table = bigquery.getTable(tableId);
-            Schema requiredSchema = getSchemaFromObjects(objects);
+            Schema requiredSchema = rowClass != null ? tableSchemaOf(rowClass) : getSchemaFromObjects(objects);
 
             // Start with a standard table definition builder
             StandardTableDefinition.Builder tableDefBuilder = StandardTableDefinition.newBuilder()
                 .setSchema(requiredSchema);
             
             // Add time partitioning if specified
-            if (timePartitioningField != null && !timePartitioningField.isEmpty()) {
-                TimePartitioning timePartitioning = TimePartitioning.newBuilder(timePartitioningType)
-                    .setField(timePartitioningField)
-                    .build();
+            TimePartitioning timePartitioning = timePartitioning();
+            if (timePartitioning != null) {
                 tableDefBuilder.setTimePartitioning(timePartitioning);
             }
 
             // Add clustering if specified
-            if (clusteringFields != null && !clusteringFields.isEmpty()) {
-                Clustering clustering = Clustering.newBuilder().setFields(clusteringFields).build();
+            Clustering clustering = clustering();
+            if (clustering != null) {
                 tableDefBuilder.setClustering(clustering);
             }
 
@@ -233,19 +904,18 @@ public class BigQueryObjectWriter {
      *
      * <h3>Supported Type Mappings:</h3>
      * <ul>
-     * <li><code>int</code>, <code>long</code>, <code>Integer</code>, <code>Long</code>, <code>byte</code>, <code>Byte</code> -> <code>INTEGER</code></li>
-     * <li><code>float</code>, <code>double</code>, <code>Float</code>, <code>Double</code> -> <code>FLOAT</code></li>
-     * <li><code>boolean</code>, <code>Boolean</code> -> <code>BOOLEAN</code></li>
-     * <li><code>String</code> -> <code>STRING</code></li>
-     * <li><code>BigDecimal</code> -> <code>NUMERIC</code> (stored as a string)</li>
-     * <li><code>LocalDate</code> -> <code>DATE</code> (stored as a string)</li>
-     * <li><code>LocalDateTime</code> -> <code>DATETIME</code></li>
-     * <li><code>Instant</code>, <code>Date</code>, <code>java.sql.Date</code> -> <code>TIMESTAMP</code></li>
-     * <li><code>LocalTime</code> -> <code>TIME</code></li>
+     * <li>Value types with a {@link TypeCodec} -> the codec's column type. The built-in codecs listed in
+     * {@link TypeCodecs} cover primitives and their wrappers, <code>String</code>, <code>BigDecimal</code>,
+     * the <code>java.time</code> types, <code>Date</code>, <code>UUID</code>, enums and <code>byte[]</code>.</li>
      * <li><code>Collection&lt;T&gt;</code> -> <code>REPEATED</code> field, where <code>T</code> is a supported type or a nested object.</li>
+     * <li><code>int[]</code>, <code>long[]</code>, <code>double[]</code>, <code>float[]</code> and <code>boolean[]</code> -> <code>REPEATED</code>
+     * field of the element type.</li>
      * <li>Any other class -> <code>RECORD</code> field for nested objects.</li>
      * </ul>
      *
+     * <p>The schema is derived once per class and cached. Self-referencing classes are rejected
+     * with an <code>IllegalArgumentException</code>, as they cannot be represented in BigQuery.</p>
+     *
      * @param objects A list of objects to infer the schema from.
      * @return The generated BigQuery Schema.
      */
@@ -253,18 +923,29 @@ public class BigQueryObjectWriter {
         if (objects.isEmpty()) {
             throw new IllegalArgumentException("Cannot generate schema from an empty list of objects.");
         }
-        return Schema.of(getFieldsFromClass(objects.get(0).getClass()));
+        return tableSchemaOf(objects.get(0).getClass());
+    }
+
+    /**
+     * @return The schema of the tables holding rows of a class: the cached schema, or the fields of
+     *         {@link #getFieldsFromClass(Class)} if a subclass overrides it.
+     */
+    private Schema tableSchemaOf(Class<?> clazz) {
+        return fieldsOverridden || typeOverridden ? Schema.of(getFieldsFromClass(clazz)) : schemaOf(clazz);
     }
 
     /**
      * Converts an object to a map of key-value pairs, recursively handling nested objects
      * and collections. It handles the type conversions for BigQuery-compatible types.
+     * The field accessors and converters are compiled once per class and cached, so repeated
+     * calls for the same class do not repeat the reflective inspection.
      *
      * <h3>Type Conversion:</h3>
      * <ul>
-     * <li><code>Temporal</code> and <code>Date</code> objects are converted to their <code>toString()</code> representation.</li>
-     * <li><code>BigDecimal</code> is converted to its plain string representation via <code>toPlainString()</code>.</li>
-     * <li><code>Collection</code> objects are mapped to a list of nested maps.</li>
+     * <li>Values are encoded by their {@link TypeCodec}: temporal types and <code>Date</code> as ISO 8601 strings,
+     * <code>BigDecimal</code> as its plain string representation and <code>byte[]</code> as base64.</li>
+     * <li><code>Collection</code> objects are mapped to a list of encoded values or nested maps.</li>
+     * <li>Primitive arrays are mapped to a list backed by a copy of the array.</li>
      * <li>Primitive wrappers and <code>String</code>s are used directly.</li>
      * <li>Other objects are recursively converted to nested maps.</li>
      * </ul>
@@ -273,131 +954,247 @@ public class BigQueryObjectWriter {
      * @return A map representing the object's fields and their values.
      */
     public Map<String, Object> objectToMap(Object obj) {
-        ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
-        for (java.lang.reflect.Field reflectField : obj.getClass().getDeclaredFields()) {
-            // Skip static and synthetic fields
-            if (java.lang.reflect.Modifier.isStatic(reflectField.getModifiers()) || reflectField.isSynthetic()) {
-                continue;
-            }
-            
-            reflectField.setAccessible(true);
-            try {
-                Object value = reflectField.get(obj);
-                if (value != null) {
-                    // Handle collections first
-                    if (Collection.class.isAssignableFrom(reflectField.getType())) {
-                        java.lang.reflect.Type genericType = reflectField.getGenericType();
-                        if (genericType instanceof java.lang.reflect.ParameterizedType) {
-                            java.lang.reflect.Type elementType = ((java.lang.reflect.ParameterizedType) genericType).getActualTypeArguments()[0];
-                            if (elementType instanceof Class) {
-                                Class<?> elementClass = (Class<?>) elementType;
-                                
-                                Collection<?> collection = (Collection<?>) value;
-                                List<?> mappedCollection;
-                                // Check if the collection contains primitive types or strings
-                                if (isPrimitiveWrapperOrString(elementClass)) {
-                                   mappedCollection = new ArrayList<>(collection);
-                                } else {
-                                   // Assume it's a collection of complex objects and map them
-                                   mappedCollection = collection.stream()
-                                       .map(this::objectToMap)
-                                       .collect(Collectors.toList());
-                                }
-                                builder.put(reflectField.getName(), mappedCollection);
-                            }
-                        }
-                    } else {
-                        // Handle non-collection types
-                        LegacySQLTypeName type = getTypeFromClass(reflectField.getType());
-                        if (type != null) {
-                            // Primitive and supported simple types
-                            builder.put(reflectField.getName(), getValueForSupportedSimpleType(reflectField.getType(), value));
-                        } else {
-                            // Handle nested objects recursively
-                            builder.put(reflectField.getName(), objectToMap(value));
-                        }
-                    }
-                }
-            } catch (IllegalAccessException e) {
-                System.err.println("Error accessing field: " + reflectField.getName());
-            }
+        return mapObject(obj);
+    }
+
+    /**
+     * Serializes an object directly to a JSON object, with the same type conversions as
+     * {@link #objectToMap(Object)} but without building the intermediate map.
+     * @param obj The object to serialize.
+     * @return The UTF-8 bytes of the JSON object.
+     * @see JsonRowEncoder
+     */
+    public byte[] objectToJson(Object obj) {
+        return JsonRowEncoder.encode(obj);
+    }
+
+    /**
+     * Serializes objects as newline-delimited JSON, the format of BigQuery JSON load files.
+     * @param objects The objects to serialize.
+     * @param stream The stream to write to. It is not closed.
+     * @return The number of bytes written.
+     * @throws IOException if writing to the stream fails.
+     * @see JsonRowEncoder
+     */
+    public long writeJsonRows(Iterable<?> objects, OutputStream stream) throws IOException {
+        return JsonRowEncoder.writeRows(objects, stream);
+    }
+
+    /**
+     * Encodes a batch of objects column by column into Arrow vectors, for Arrow-format ingestion
+     * or local Arrow and Parquet files. All objects must be of the same class.
+     * @param objects The objects to encode.
+     * @param allocator The allocator of the vectors.
+     * @return A new root with one row per object. The caller owns it and must close it.
+     * @see ArrowRowEncoder
+     */
+    public VectorSchemaRoot objectsToArrow(List<?> objects, BufferAllocator allocator) {
+        if (objects.isEmpty()) {
+            throw new IllegalArgumentException("Cannot encode an empty list of objects to Arrow.");
+        }
+        return ArrowRowEncoder.forClass(objects.get(0).getClass()).encode(objects, allocator);
+    }
+
+    /**
+     * Converts an object to the content of an insert row. Unlike {@link #objectToMap(Object)}, the
+     * top-level map is immutable so that it is not copied again by the insert request.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> insertRowContent(Object obj) {
+        RowWriter<Object> generated = (RowWriter<Object>) GeneratedRows.writerFor(obj.getClass());
+        if (generated != null) {
+            return generated.toMap(obj);
+        }
+        return SerializationPlan.forClass(obj.getClass()).toInsertRow(obj);
+    }
+
+    /**
+     * Converts an object to a map using the {@link RowWriter} generated for its class if available,
+     * or the cached reflective serialization plan otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> mapObject(Object obj) {
+        RowWriter<Object> generated = (RowWriter<Object>) GeneratedRows.writerFor(obj.getClass());
+        if (generated != null) {
+            return generated.toMap(obj);
         }
-        return builder.build();
+        return SerializationPlan.forClass(obj.getClass()).toMap(obj);
     }
 
     /**
-     * Dynamically gets the BigQuery fields from a Java class using reflection.
+     * Dynamically gets the BigQuery fields from a Java class using reflection, or from the
+     * {@link RowWriter} generated for classes annotated with {@link BigQueryRow}.
      * Ignores static fields as they are class-level, not instance-level data.
+     * The fields are derived once per class and cached.
+     *
+     * <p>An override gives the schema of the tables this writer creates or updates, and is called
+     * each time instead of the cached schema. The rows are still encoded with the derived schema.
+     * If a subclass overrides {@link #getTypeFromClass(Class)}, the fields are derived with it
+     * through reflection instead of being cached.</p>
      * @param clazz The class to inspect.
      * @return A list of BigQuery fields.
      */
     public List<com.google.cloud.bigquery.Field> getFieldsFromClass(Class<?> clazz) {
+        if (!typeOverridden) {
+            return new ArrayList<>(fieldsOf(clazz));
+        }
+        return withinSchemaPath(clazz, () -> {
+            List<com.google.cloud.bigquery.Field> bqFields = new ArrayList<>();
+            for (java.lang.reflect.Field reflectField : clazz.getDeclaredFields()) {
+                if (java.lang.reflect.Modifier.isStatic(reflectField.getModifiers()) || reflectField.isSynthetic()) {
+                    continue;
+                }
+                com.google.cloud.bigquery.Field bqField = fieldOf(reflectField, this::getTypeFromClass,
+                        nested -> FieldList.of(getFieldsFromClass(nested)));
+                if (bqField != null) {
+                    bqFields.add(bqField);
+                }
+            }
+            return bqFields;
+        });
+    }
+
+    /**
+     * Gets the protobuf message type matching the BigQuery schema of a Java class, as used by
+     * the Storage Write API. Rows of the class are encoded with {@link ProtoRowEncoder#forClass(Class)}.
+     * @param clazz The class to inspect.
+     * @return A self-contained descriptor, with nested records declared as nested types.
+     */
+    public DescriptorProto getDescriptorFromClass(Class<?> clazz) {
+        return ProtoRowEncoder.forClass(clazz).getDescriptorProto();
+    }
+
+    /**
+     * Returns the cached schema derived from a class, deriving it on first use.
+     * Nested record types are cached as well and shared by all classes that contain them.
+     * @param clazz The class to inspect.
+     * @return The BigQuery schema of the class.
+     * @throws IllegalArgumentException if the class references itself, directly or through nested records.
+     */
+    static Schema schemaOf(Class<?> clazz) {
+        return withinSchemaPath(clazz, () -> SCHEMAS.get(clazz));
+    }
+
+    /**
+     * Derives the schema of a class, or part of it, after checking that the class is not already
+     * being derived on this thread.
+     * @throws IllegalArgumentException if the class references itself, directly or through nested records.
+     */
+    private static <T> T withinSchemaPath(Class<?> clazz, Supplier<T> derivation) {
+        Deque<Class<?>> path = SCHEMA_PATH.get();
+        if (path.contains(clazz)) {
+            StringBuilder cycle = new StringBuilder();
+            for (Iterator<Class<?>> it = path.descendingIterator(); it.hasNext();) {
+                cycle.append(it.next().getName()).append(" -> ");
+            }
+            throw new IllegalArgumentException("Cannot derive a BigQuery schema for self-referencing type: "
+                    + cycle.append(clazz.getName()));
+        }
+        path.push(clazz);
+        try {
+            return derivation.get();
+        } finally {
+            path.pop();
+        }
+    }
+
+    private static FieldList fieldsOf(Class<?> clazz) {
+        return schemaOf(clazz).getFields();
+    }
+
+    private static List<com.google.cloud.bigquery.Field> deriveFields(Class<?> clazz) {
+        RowWriter<?> generated = GeneratedRows.writerFor(clazz);
+        if (generated != null) {
+            return generated.fields();
+        }
         List<com.google.cloud.bigquery.Field> bqFields = new ArrayList<>();
         for (java.lang.reflect.Field reflectField : clazz.getDeclaredFields()) {
             // Skip static and synthetic fields
             if (java.lang.reflect.Modifier.isStatic(reflectField.getModifiers()) || reflectField.isSynthetic()) {
                 continue;
             }
-            
-            // Handle collections first
-            if (Collection.class.isAssignableFrom(reflectField.getType())) {
-                java.lang.reflect.Type genericType = reflectField.getGenericType();
-                if (genericType instanceof java.lang.reflect.ParameterizedType) {
-                    java.lang.reflect.Type elementType = ((java.lang.reflect.ParameterizedType) genericType).getActualTypeArguments()[0];
-                    if (elementType instanceof Class) {
-                        Class<?> elementClass = (Class<?>) elementType;
-                        LegacySQLTypeName repeatedType = getTypeFromClass(elementClass);
-                        if (repeatedType != null) {
-                            // Repeated primitive and supported simple types
-                            bqFields.add(
-                                    com.google.cloud.bigquery.Field.newBuilder(reflectField.getName(), repeatedType)
-                                    .setMode(com.google.cloud.bigquery.Field.Mode.REPEATED).build());
-                        } else {
-                            // Repeated nested objects
-                            final FieldList objectFields = FieldList.of(getFieldsFromClass(elementClass));
-                            bqFields.add(
-                                    com.google.cloud.bigquery.Field.newBuilder(reflectField.getName(), LegacySQLTypeName.RECORD, objectFields)
-                                    .setMode(com.google.cloud.bigquery.Field.Mode.REPEATED).build());
-                        }
+            com.google.cloud.bigquery.Field bqField = fieldOf(reflectField);
+            if (bqField != null) {
+                bqFields.add(bqField);
+            }
+        }
+        return bqFields;
+    }
+
+    /**
+     * Derives the BigQuery field for a single Java field.
+     * @param reflectField The Java field.
+     * @return The BigQuery field, or null for collections whose element type cannot be resolved.
+     */
+    static com.google.cloud.bigquery.Field fieldOf(java.lang.reflect.Field reflectField) {
+        return fieldOf(reflectField, BigQueryObjectWriter::typeOf, BigQueryObjectWriter::fieldsOf);
+    }
+
+    /**
+     * Derives the BigQuery field for a single Java field with the given lookups.
+     * @param reflectField The Java field.
+     * @param types The column type of a value class, null for nested records.
+     * @param records The fields of a nested record class.
+     * @return The BigQuery field, or null for collections whose element type cannot be resolved.
+     */
+    private static com.google.cloud.bigquery.Field fieldOf(java.lang.reflect.Field reflectField,
+            Function<Class<?>, LegacySQLTypeName> types, Function<Class<?>, FieldList> records) {
+        // Handle collections first
+        if (Collection.class.isAssignableFrom(reflectField.getType())) {
+            java.lang.reflect.Type genericType = reflectField.getGenericType();
+            if (genericType instanceof java.lang.reflect.ParameterizedType) {
+                java.lang.reflect.Type elementType = ((java.lang.reflect.ParameterizedType) genericType).getActualTypeArguments()[0];
+                if (elementType instanceof Class) {
+                    Class<?> elementClass = (Class<?>) elementType;
+                    LegacySQLTypeName repeatedType = types.apply(elementClass);
+                    if (repeatedType != null) {
+                        // Repeated primitive and supported simple types
+                        return com.google.cloud.bigquery.Field.newBuilder(reflectField.getName(), repeatedType)
+                                .setMode(com.google.cloud.bigquery.Field.Mode.REPEATED).build();
+                    } else {
+                        // Repeated nested objects
+                        final FieldList objectFields = records.apply(elementClass);
+                        return com.google.cloud.bigquery.Field.newBuilder(reflectField.getName(), LegacySQLTypeName.RECORD, objectFields)
+                                .setMode(com.google.cloud.bigquery.Field.Mode.REPEATED).build();
                     }
                 }
+            }
+            return null;
+        } else if (PrimitiveArray.of(reflectField.getType()) != null) {
+            // Repeated primitives stored unboxed
+            LegacySQLTypeName elementType = types.apply(reflectField.getType().getComponentType());
+            return com.google.cloud.bigquery.Field.newBuilder(reflectField.getName(), elementType)
+                    .setMode(com.google.cloud.bigquery.Field.Mode.REPEATED).build();
+        } else {
+            // Handle non-collection types
+            LegacySQLTypeName type = types.apply(reflectField.getType());
+            if (type != null) {
+                // Primitive and supported simple types
+                return com.google.cloud.bigquery.Field.of(reflectField.getName(), type);
             } else {
-                // Handle non-collection types
-                LegacySQLTypeName type = getTypeFromClass(reflectField.getType());
-                if (type != null) {
-                    // Primitive and supported simple types
-                    bqFields.add(com.google.cloud.bigquery.Field.of(reflectField.getName(), type));
-                } else {
-                    // This is a nested record
-                    final FieldList nestedObjectFields = FieldList.of(getFieldsFromClass(reflectField.getType()));
-                    bqFields.add(com.google.cloud.bigquery.Field.newBuilder(reflectField.getName(), LegacySQLTypeName.RECORD, nestedObjectFields).build());
-                }
+                // This is a nested record
+                final FieldList nestedObjectFields = records.apply(reflectField.getType());
+                return com.google.cloud.bigquery.Field.newBuilder(reflectField.getName(), LegacySQLTypeName.RECORD, nestedObjectFields).build();
             }
         }
-        return bqFields;
     }
 
+    /**
+     * Returns the BigQuery type of a value class, as given by its {@link TypeCodec}.
+     * An override changes the column types of the tables this writer creates or updates, see
+     * {@link #getFieldsFromClass(Class)}. To write another value class, register a codec with
+     * {@link TypeCodecs#register(TypeCodec)} instead.
+     * @param clazz The class to look up.
+     * @return The column type, or null for nested objects.
+     * @see TypeCodecs
+     */
     public LegacySQLTypeName getTypeFromClass(Class<?> clazz) {
-        if (clazz == Integer.class || clazz == int.class || clazz == Long.class || clazz == long.class || clazz == Byte.class || clazz == byte.class) {
-            return LegacySQLTypeName.INTEGER;
-        } else if (clazz == String.class) {
-            return LegacySQLTypeName.STRING;
-        } else if (clazz == Boolean.class || clazz == boolean.class) {
-            return LegacySQLTypeName.BOOLEAN;
-        } else if (clazz == Double.class || clazz == double.class || clazz == Float.class || clazz == float.class) {
-            return LegacySQLTypeName.FLOAT;
-        } else if (clazz == BigDecimal.class) {
-            return LegacySQLTypeName.NUMERIC;
-        } else if (clazz == LocalDate.class) {
-            return LegacySQLTypeName.DATE;
-        } else if (clazz == LocalDateTime.class) {
-            return LegacySQLTypeName.DATETIME;
-        } else if (clazz == Instant.class || clazz == Date.class || clazz == java.sql.Date.class) {
-            return LegacySQLTypeName.TIMESTAMP;
-        } else if (clazz == LocalTime.class) {
-            return LegacySQLTypeName.TIME;
-        }
-        return null; // Return null for nested objects or unsupported types.
+        return typeOf(clazz);
+    }
+
+    static LegacySQLTypeName typeOf(Class<?> clazz) {
+        TypeCodec<?> codec = TypeCodecs.forClass(clazz);
+        return codec == null ? null : codec.getSqlType(); // Return null for nested objects.
     }
     
     public boolean isPrimitiveWrapperOrString(Object obj) {
@@ -405,26 +1202,11 @@ public class BigQueryObjectWriter {
     }
     
     public boolean isPrimitiveWrapperOrString(Class<?> clazz) {
-        return Number.class.isAssignableFrom(clazz) || clazz == Boolean.class || clazz == String.class || clazz.isPrimitive();
+        return isPrimitiveWrapperOrStringClass(clazz);
     }
-    
-    private Object getValueForSupportedSimpleType(Class<?> clazz, Object value) {
-        if (value instanceof BigDecimal) {
-            // NUMERIC
-            return ((BigDecimal)value).toPlainString();
-        } else if (value instanceof Date) {
-        	return Instant.ofEpochMilli(((Date)value).getTime()).toString();
-        } else if (value instanceof Temporal) {
-            // Handle java.time.temporal.Temporal types by converting to ISO 8601 string
-            // DATE, DATETIME, TIMESTAMP, TIME
-            return value.toString();
-        } else if (isPrimitiveWrapperOrString(value)) {
-            //(clazz == Integer.class || clazz == int.class || clazz == Long.class || clazz == long.class || clazz == Byte.class || clazz == byte.class)
-            return value;
-        }
-        // Should not happen. 
-        // If we reach here the type was recognized by getTypeFromClass() 
-        throw new IllegalArgumentException("Unsupported type: "+clazz+" ("+value+")");
+
+    static boolean isPrimitiveWrapperOrStringClass(Class<?> clazz) {
+        return Number.class.isAssignableFrom(clazz) || clazz == Boolean.class || clazz == String.class || clazz.isPrimitive();
     }
 
 }
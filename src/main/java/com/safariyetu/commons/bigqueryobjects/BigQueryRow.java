@@ -0,0 +1,30 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a POJO for which a {@link RowWriter} and a {@link RowReader} are generated at build time
+ * by the {@link com.safariyetu.commons.bigqueryobjects.processor.BigQueryRowProcessor}.
+ *
+ * <p>The generated classes are placed next to the POJO and are picked up automatically by
+ * {@link BigQueryObjectWriter} and {@link BigQueryObjectReader}, which then map the POJO without
+ * runtime reflection. Fields must be non-private or have non-private getters (for the writer)
+ * and setters (for the reader), and the reader requires a non-private no-argument constructor.
+ * If a class does not meet these requirements, no code is generated for it and the reflective
+ * mapping is used.</p>
+ *
+ * <p>The processor is optional and is not registered as a service, so it only runs when a build
+ * names it, e.g. with Maven by adding this artifact to the <code>annotationProcessorPaths</code> of
+ * the compiler plugin and <code>com.safariyetu.commons.bigqueryobjects.processor.BigQueryRowProcessor</code>
+ * to its <code>annotationProcessors</code>, or with <code>javac -processor</code>. Without it, the
+ * annotation has no effect.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface BigQueryRow {
+}
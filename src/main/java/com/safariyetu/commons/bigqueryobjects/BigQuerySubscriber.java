@@ -0,0 +1,424 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Flow.Subscriber} that inserts the rows of a reactive stream into one table, in batches of
+ * at most {@link Builder#maxBatchRows(int)} rows and {@link Builder#maxBatchBytes(long)} estimated
+ * bytes, or of the rows received during {@link Builder#linger(long, TimeUnit)}. Reactor and RxJava
+ * publishers can be subscribed through their <code>Flow</code> adapters, e.g.
+ * <code>JdkFlowAdapter.publisherToFlowPublisher(flux).subscribe(subscriber)</code>.
+ *
+ * <p>The demand follows the free capacity: the subscriber requests
+ * <code>maxBatchRows * maxInFlight</code> rows up front, and requests the rows of a batch again only
+ * once its insert has finished. So at most {@link Builder#maxInFlight(int)} inserts run at a time,
+ * the rows received but not inserted are bounded, and a slow table slows the publisher down instead
+ * of buffering the stream or blocking it on each insert.</p>
+ *
+ * <p>Each batch is inserted with {@link BigQueryObjectWriter.InsertBuilder#executeAsync()}, so it gets
+ * the request splitting, retries and table creation of the insert builder. When the stream completes,
+ * the last batch is inserted and {@link #getCompletion()} completes with the number of rows inserted.
+ * When the stream fails, the rows received are still inserted and the completion fails with the
+ * stream's error. When a batch fails, e.g. with an {@link InsertException}, or a row cannot be
+ * converted, the subscription is cancelled and the completion fails with the failure.</p>
+ *
+ * <p>A subscriber can be subscribed once. The rows are converted on the thread calling
+ * {@link #onNext(Object)}.</p>
+ * @param <T> The row type.
+ */
+public final class BigQuerySubscriber<T> implements Flow.Subscriber<T> {
+
+    /**
+     * The default maximum number of batches inserted at the same time.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    // Shared by all subscribers, only to seal the batches that linger.
+    private static final ScheduledExecutorService LINGER_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bigquery-subscriber-linger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BigQueryObjectWriter writer;
+    private final String dataset;
+    private final String table;
+    private final int maxBatchRows;
+    private final long maxBatchBytes;
+    private final long lingerNanos;
+    private final int maxInFlight;
+    private final Executor executor;
+    private final Consumer<BigQueryObjectWriter.InsertBuilder> insertOptions;
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+
+    // Guarded by this.
+    private Flow.Subscription subscription;
+    private List<Object> objects = new ArrayList<>();
+    private List<Map<String, Object>> contents = new ArrayList<>();
+    private long batchBytes;
+    private ScheduledFuture<?> lingerTask;
+    // The sealed batches waiting for a free insert.
+    private final Deque<Batch> queued = new ArrayDeque<>();
+    private int inFlight;
+    private long insertedRows;
+    // Set when the stream has terminated, with its error if it failed.
+    private boolean terminated;
+    private Throwable streamError;
+
+    private BigQuerySubscriber(Builder<T> builder) {
+        this.writer = builder.writer;
+        this.dataset = builder.dataset;
+        this.table = builder.table;
+        this.maxBatchRows = builder.maxBatchRows;
+        this.maxBatchBytes = builder.maxBatchBytes;
+        this.lingerNanos = builder.lingerNanos;
+        this.maxInFlight = builder.maxInFlight;
+        this.executor = builder.executor;
+        this.insertOptions = builder.insertOptions;
+    }
+
+    /**
+     * @return A future completed with the number of inserted rows once the stream has completed and
+     *         all its rows are inserted, or failed with the error of the stream or of an insert.
+     */
+    public CompletableFuture<Long> getCompletion() {
+        return completion;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        }
+        subscription.request((long) maxBatchRows * maxInFlight);
+    }
+
+    @Override
+    public void onNext(T item) {
+        if (item == null) {
+            throw new NullPointerException("A stream row must not be null.");
+        }
+        if (completion.isDone()) {
+            // A row sent before the cancellation reached the publisher.
+            return;
+        }
+        Map<String, Object> content;
+        try {
+            content = BigQueryObjectWriter.insertRowContent(item);
+        } catch (RuntimeException e) {
+            // onNext must not throw, the row cannot be inserted so the stream is cancelled instead.
+            fail(e);
+            return;
+        }
+        long bytes = RowSizeEstimator.estimateRow(content);
+        List<Batch> toSend;
+        synchronized (this) {
+            if (!objects.isEmpty() && batchBytes + bytes > maxBatchBytes) {
+                seal();
+            }
+            objects.add(item);
+            contents.add(content);
+            batchBytes += bytes;
+            if (objects.size() >= maxBatchRows || batchBytes >= maxBatchBytes) {
+                seal();
+            } else if (objects.size() == 1) {
+                List<Object> batch = objects;
+                lingerTask = LINGER_TIMER.schedule(() -> sealLingering(batch), lingerNanos, TimeUnit.NANOSECONDS);
+            }
+            toSend = takeSendable();
+        }
+        send(toSend);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        terminate(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        terminate(null);
+    }
+
+    private void terminate(Throwable error) {
+        List<Batch> toSend;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            streamError = error;
+            if (!objects.isEmpty()) {
+                seal();
+            }
+            toSend = takeSendable();
+            completeIfDone();
+        }
+        send(toSend);
+    }
+
+    private void sealLingering(List<Object> batch) {
+        List<Batch> toSend;
+        synchronized (this) {
+            if (objects != batch || objects.isEmpty()) {
+                return;
+            }
+            seal();
+            toSend = takeSendable();
+        }
+        send(toSend);
+    }
+
+    /**
+     * Fails the completion and cancels the subscription, unless the completion is already done.
+     */
+    private void fail(Throwable failure) {
+        Flow.Subscription toCancel = null;
+        synchronized (this) {
+            if (completion.completeExceptionally(failure)) {
+                queued.clear();
+                toCancel = subscription;
+            }
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+    }
+
+    /**
+     * Moves the current batch to the queue of batches to insert.
+     */
+    private void seal() {
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        queued.addLast(new Batch(objects, contents));
+        objects = new ArrayList<>();
+        contents = new ArrayList<>();
+        batchBytes = 0;
+    }
+
+    /**
+     * Takes the queued batches that can be inserted, up to the maximum number of inserts in flight,
+     * and counts them as in flight. The caller starts them with {@link #send(List)} once it has
+     * released the lock.
+     */
+    private List<Batch> takeSendable() {
+        List<Batch> toSend = new ArrayList<>();
+        while (inFlight < maxInFlight && !queued.isEmpty() && !completion.isDone()) {
+            toSend.add(queued.removeFirst());
+            inFlight++;
+        }
+        return toSend;
+    }
+
+    /**
+     * Starts the inserts of batches taken with {@link #takeSendable()}. Called without the lock, as an
+     * insert on a synchronous executor finishes here and requests more rows from the publisher.
+     */
+    private void send(List<Batch> batches) {
+        for (Batch batch : batches) {
+            CompletableFuture<InsertResult> result;
+            try {
+                BigQueryObjectWriter.InsertBuilder insert = writer.insert(dataset, table);
+                insertOptions.accept(insert);
+                insert.convertedRows(batch.objects, batch.contents, null);
+                result = executor != null ? insert.executeAsync(executor) : insert.executeAsync();
+            } catch (RuntimeException e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+            }
+            result.whenComplete((insertResult, failure) -> inserted(batch, failure));
+        }
+    }
+
+    private void inserted(Batch batch, Throwable failure) {
+        Flow.Subscription toCancel = null;
+        Flow.Subscription toRequestFrom;
+        long toRequest = 0;
+        List<Batch> toSend = Collections.emptyList();
+        synchronized (this) {
+            toRequestFrom = subscription;
+            inFlight--;
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                if (completion.completeExceptionally(cause)) {
+                    queued.clear();
+                    toCancel = subscription;
+                }
+            } else {
+                insertedRows += batch.objects.size();
+                if (!terminated) {
+                    toRequest = batch.objects.size();
+                }
+                toSend = takeSendable();
+                completeIfDone();
+            }
+        }
+        // Signal the publisher outside the lock, it may call onNext synchronously.
+        if (toCancel != null) {
+            toCancel.cancel();
+        } else if (toRequest > 0) {
+            toRequestFrom.request(toRequest);
+        }
+        send(toSend);
+    }
+
+    private void completeIfDone() {
+        if (terminated && inFlight == 0 && queued.isEmpty()) {
+            if (streamError != null) {
+                completion.completeExceptionally(streamError);
+            } else {
+                completion.complete(insertedRows);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BigQuerySubscriber{table=" + dataset + "." + table + ", inFlight=" + inFlight + ", queued=" + queued.size()
+                + ", insertedRows=" + insertedRows + "}";
+    }
+
+    /**
+     * A sealed batch with its converted rows.
+     */
+    private static final class Batch {
+        private final List<Object> objects;
+        private final List<Map<String, Object>> contents;
+
+        private Batch(List<Object> objects, List<Map<String, Object>> contents) {
+            this.objects = objects;
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * Builder for {@link BigQuerySubscriber}, obtained from {@link BigQueryObjectWriter#subscriber(String, String)}.
+     * @param <T> The row type.
+     */
+    public static final class Builder<T> {
+        private final BigQueryObjectWriter writer;
+        private final String dataset;
+        private final String table;
+        private int maxBatchRows = BufferedBigQueryWriter.DEFAULT_MAX_BATCH_ROWS;
+        private long maxBatchBytes = BufferedBigQueryWriter.DEFAULT_MAX_BATCH_BYTES;
+        private long lingerNanos = TimeUnit.MILLISECONDS.toNanos(BufferedBigQueryWriter.DEFAULT_LINGER_MILLIS);
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private Executor executor;
+        private Consumer<BigQueryObjectWriter.InsertBuilder> insertOptions = insert -> { };
+
+        Builder(BigQueryObjectWriter writer, String dataset, String table) {
+            this.writer = writer;
+            this.dataset = dataset;
+            this.table = table;
+        }
+
+        /**
+         * Specifies the number of rows that seals a batch.
+         * Defaults to {@link BufferedBigQueryWriter#DEFAULT_MAX_BATCH_ROWS}.
+         * @param maxRows The maximum number of rows, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder<T> maxBatchRows(int maxRows) {
+            if (maxRows < 1) {
+                throw new IllegalArgumentException("The maximum number of rows per batch must be positive: " + maxRows);
+            }
+            this.maxBatchRows = maxRows;
+            return this;
+        }
+
+        /**
+         * Specifies the estimated size of the rows that seals a batch.
+         * Defaults to {@link BufferedBigQueryWriter#DEFAULT_MAX_BATCH_BYTES}.
+         * @param maxBytes The maximum number of bytes, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder<T> maxBatchBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("The maximum number of bytes per batch must be positive: " + maxBytes);
+            }
+            this.maxBatchBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Specifies how long the first row of a batch waits for more rows before the batch is inserted.
+         * Defaults to {@link BufferedBigQueryWriter#DEFAULT_LINGER_MILLIS} milliseconds.
+         * @param linger The time, at least 1 unit.
+         * @param unit The unit of the time.
+         * @return This builder instance for chaining.
+         */
+        public Builder<T> linger(long linger, TimeUnit unit) {
+            if (linger < 1) {
+                throw new IllegalArgumentException("The linger time must be positive: " + linger);
+            }
+            this.lingerNanos = unit.toNanos(linger);
+            return this;
+        }
+
+        /**
+         * Specifies the maximum number of batches inserted at the same time, which with the batch size
+         * bounds the rows requested from the publisher. Defaults to {@link BigQuerySubscriber#DEFAULT_MAX_IN_FLIGHT}.
+         * @param maxInFlight The maximum number of inserts, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder<T> maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("The maximum number of inserts in flight must be positive: " + maxInFlight);
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Specifies the executor coordinating the inserts, see {@link BigQueryObjectWriter.InsertBuilder#executeAsync(Executor)}.
+         * It must not be the executor of the insert options, which sends the requests. Defaults to the
+         * executor of {@link BigQueryObjectWriter.InsertBuilder#executeAsync()}.
+         * @param executor The executor.
+         * @return This builder instance for chaining.
+         */
+        public Builder<T> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Specifies options applied to the insert of every batch, e.g. partitioning, clustering or
+         * insertIds. The rows must not be set here.
+         * @param options Configures the insert builder of a batch.
+         * @return This builder instance for chaining.
+         */
+        public Builder<T> insertOptions(Consumer<BigQueryObjectWriter.InsertBuilder> options) {
+            this.insertOptions = options;
+            return this;
+        }
+
+        /**
+         * @return A new subscriber, to subscribe to one publisher.
+         */
+        public BigQuerySubscriber<T> build() {
+            return new BigQuerySubscriber<>(this);
+        }
+    }
+}
@@ -0,0 +1,708 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.google.cloud.bigquery.BigQueryException;
+
+/**
+ * A long-lived, thread-safe writer that buffers single rows and inserts them into one table in
+ * batches, like the <code>batch.size</code> and <code>linger.ms</code> settings of a Kafka producer.
+ * A batch is flushed in the background as soon as it reaches {@link Builder#maxBatchRows(int)} rows
+ * or {@link Builder#maxBatchBytes(long)} estimated bytes, or when its first row has waited for
+ * {@link Builder#linger(long, TimeUnit)}.
+ *
+ * <p>Rows are converted on the producer thread that adds them, which also gives their size, and the
+ * batches are inserted one after the other on a background thread with an
+ * {@link BigQueryObjectWriter.InsertBuilder}, so they get its request splitting, concurrent requests
+ * and table creation. A failed batch is not sent again, its failure is passed to
+ * {@link Builder#onError(Consumer)}.</p>
+ *
+ * <p>The rows that are buffered, waiting to be sent or being sent are bounded by
+ * {@link Builder#maxBufferedBytes(long)}, counted with the same size estimate as the requests.
+ * When BigQuery is slower than the producers, the {@link OverflowPolicy} decides whether producers
+ * wait, fail or lose rows, instead of the buffer growing until the JVM runs out of memory.</p>
+ *
+ * <p>With {@link Builder#spool(Path, long)}, the batches that fail for a transient reason, e.g. while
+ * BigQuery is unavailable, are written to a {@link RowSpool} on disk instead of failing, which also
+ * frees their share of the buffer budget. Other failures, such as an invalid request or a denied
+ * access, are passed to the error handler as without a spool. The spooled rows are sent again in
+ * order every {@link #SPOOL_REPLAY_MILLIS} milliseconds and when the writer is closed, with the
+ * insert options of the writer, and each sent request is acknowledged in the spool so that its rows
+ * are not sent twice. Until they are sent, new batches are spooled behind them, and the spool
+ * directory keeps them across restarts. Use an {@link Builder#insertIds(InsertIdStrategy) insertId
+ * strategy} so that BigQuery drops the rows of a batch that reached it before failing.</p>
+ *
+ * <p>{@link #close()} flushes the buffered rows, waits for them to be sent and stops the background
+ * thread. Rows added afterwards are rejected.</p>
+ */
+public final class BufferedBigQueryWriter implements AutoCloseable {
+
+    /**
+     * The default maximum number of rows of a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_ROWS = 500;
+
+    /**
+     * The default maximum estimated size of the rows of a batch.
+     */
+    public static final long DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+
+    /**
+     * The default time the first row of a batch waits for more rows, in milliseconds.
+     */
+    public static final long DEFAULT_LINGER_MILLIS = 1000;
+
+    /**
+     * The default maximum estimated size of the rows held by the writer.
+     */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * How often spooled rows are sent again while no batch is flushed, in milliseconds.
+     */
+    public static final long SPOOL_REPLAY_MILLIS = 5000;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final BigQueryObjectWriter writer;
+    private final String dataset;
+    private final String table;
+    private final Consumer<BigQueryObjectWriter.InsertBuilder> insertOptions;
+    private final InsertIdStrategy insertIdStrategy;
+    private final int maxBatchRows;
+    private final long maxBatchBytes;
+    private final long lingerNanos;
+    private final long maxBufferedBytes;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<? super RuntimeException> errorHandler;
+    private final ScheduledExecutorService scheduler;
+    // Only used on the background thread, null without a spool directory.
+    private final RowSpool spool;
+    // Only used on the background thread. Whether the spool holds rows that could not be sent yet, in which
+    // case new batches are spooled without reading the spool again until the next periodic replay.
+    private boolean spoolStalled;
+
+    // Guarded by this. The batch being filled and its pending linger timer.
+    private Batch current = new Batch();
+    private ScheduledFuture<?> lingerTimer;
+    // The batches waiting for the background thread, oldest first.
+    private final Deque<Batch> queued = new ArrayDeque<>();
+    // The size of the rows of the current, queued and in-flight batches.
+    private long bufferedBytes;
+    // Batches handed to the background thread, and the ones it has finished or found dropped.
+    private long sealedBatches;
+    private long completedBatches;
+    private long droppedRows;
+    private boolean closed;
+
+    private BufferedBigQueryWriter(Builder builder) {
+        this.writer = builder.writer;
+        this.dataset = builder.dataset;
+        this.table = builder.table;
+        this.insertOptions = builder.insertOptions;
+        this.insertIdStrategy = builder.insertIdStrategy;
+        this.maxBatchRows = builder.maxBatchRows;
+        this.maxBatchBytes = builder.maxBatchBytes;
+        this.lingerNanos = builder.lingerNanos;
+        this.maxBufferedBytes = builder.maxBufferedBytes;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.errorHandler = builder.errorHandler;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bigquery-buffered-writer-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (builder.spoolDirectory != null) {
+            this.spool = new RowSpool(builder.spoolDirectory, builder.maxSpoolBytes, RowSpool.DEFAULT_SEGMENT_BYTES);
+            scheduler.scheduleWithFixedDelay(this::replaySpool, SPOOL_REPLAY_MILLIS, SPOOL_REPLAY_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            this.spool = null;
+        }
+    }
+
+    /**
+     * Adds a row to the current batch, flushing the batch in the background if it is full.
+     * If the row does not fit in the buffer budget, the {@link OverflowPolicy} of the writer applies.
+     * @param object The object to insert.
+     * @throws IllegalStateException if the writer is closed.
+     * @throws RejectedExecutionException if the buffer is full and the policy is {@link OverflowPolicy#FAIL}.
+     */
+    public void add(Object object) {
+        // Convert outside the lock, so that producers convert their rows in parallel.
+        Map<String, Object> content = BigQueryObjectWriter.insertRowContent(object);
+        String insertId = insertIdStrategy != null ? insertIdStrategy.insertId(object) : null;
+        Row row = new Row(object, content, insertId, RowSizeEstimator.estimateRow(content));
+        synchronized (this) {
+            checkOpen();
+            if (!reserve(row)) {
+                droppedRows++;
+                return;
+            }
+            current.add(row);
+            if (current.rows.size() >= maxBatchRows || current.bytes >= maxBatchBytes) {
+                sendBatch();
+            } else if (current.rows.size() == 1) {
+                lingerTimer = scheduler.schedule(this::lingerExpired, lingerNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Sends the buffered rows and waits until all rows added before the call have been sent.
+     * Failures are passed to the error handler rather than thrown.
+     */
+    public void flush() {
+        synchronized (this) {
+            sendBatch();
+            long target = sealedBatches;
+            boolean interrupted = false;
+            while (completedBatches < target) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffered rows, sends the spooled rows once more and stops the background thread.
+     * Rows that are still spooled stay in the spool directory.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // Producers waiting for room fail rather than wait for a flush that does not accept their rows.
+            notifyAll();
+        }
+        flush();
+        if (spool != null) {
+            scheduler.execute(this::replaySpool);
+        }
+        scheduler.shutdown();
+        if (spool != null) {
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            spool.close();
+        }
+    }
+
+    /**
+     * @return The number of rows waiting in the current batch.
+     */
+    public synchronized int getBufferedRowCount() {
+        return current.rows.size();
+    }
+
+    /**
+     * @return The estimated size of the rows held by the writer: buffered, waiting to be sent or being sent.
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * @return The size of the spooled rows in bytes, 0 without a spool.
+     */
+    public long getSpooledBytes() {
+        return spool != null ? spool.size() : 0;
+    }
+
+    /**
+     * @return The number of rows dropped by the {@link OverflowPolicy#DROP_OLDEST} or
+     *         {@link OverflowPolicy#DROP_NEWEST} policy.
+     */
+    public synchronized long getDroppedRowCount() {
+        return droppedRows;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The buffered writer of " + dataset + "." + table + " is closed.");
+        }
+    }
+
+    /**
+     * Makes room for a row in the buffer budget according to the overflow policy. A row larger than
+     * the whole budget is accepted when the buffer is empty, so that it is not blocked forever.
+     * Must be called holding the lock.
+     * @return False if the row must be dropped.
+     */
+    private boolean reserve(Row row) {
+        while (bufferedBytes > 0 && bufferedBytes + row.bytes > maxBufferedBytes) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    // Send the current batch, so that it does not wait for its linger time to free room.
+                    sendBatch();
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for room in the buffer of " + dataset + "." + table + ".", e);
+                    }
+                    checkOpen();
+                    break;
+                case FAIL:
+                    throw new RejectedExecutionException("The buffer of " + dataset + "." + table + " is full: "
+                            + bufferedBytes + " of " + maxBufferedBytes + " bytes.");
+                case DROP_OLDEST:
+                    if (!dropOldest()) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        bufferedBytes += row.bytes;
+        return true;
+    }
+
+    /**
+     * Drops the oldest row that is not being sent, from the queued batches or else from the current one.
+     * @return False if all buffered rows are being sent.
+     */
+    private boolean dropOldest() {
+        for (Batch batch : queued) {
+            if (!batch.rows.isEmpty()) {
+                dropFirst(batch);
+                return true;
+            }
+        }
+        if (!current.rows.isEmpty()) {
+            dropFirst(current);
+            return true;
+        }
+        return false;
+    }
+
+    private void dropFirst(Batch batch) {
+        Row dropped = batch.rows.pollFirst();
+        batch.bytes -= dropped.bytes;
+        bufferedBytes -= dropped.bytes;
+        droppedRows++;
+    }
+
+    private synchronized void lingerExpired() {
+        // The batch may have been sent by a producer or flush() since the timer was scheduled.
+        if (!current.rows.isEmpty()) {
+            sendBatch();
+        }
+    }
+
+    /**
+     * Queues the current batch for the background thread and starts a new batch. Must be called holding the lock.
+     */
+    private void sendBatch() {
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+        if (current.rows.isEmpty()) {
+            return;
+        }
+        queued.addLast(current);
+        current = new Batch();
+        sealedBatches++;
+        scheduler.execute(this::sendNext);
+    }
+
+    /**
+     * Inserts the oldest queued batch on the background thread, one task per queued batch.
+     */
+    private void sendNext() {
+        Batch batch;
+        synchronized (this) {
+            batch = queued.pollFirst();
+        }
+        try {
+            // The rows of the batch may all have been dropped while it was queued.
+            if (batch != null && !batch.rows.isEmpty()) {
+                insert(batch);
+            }
+        } finally {
+            synchronized (this) {
+                if (batch != null) {
+                    bufferedBytes -= batch.bytes;
+                }
+                completedBatches++;
+                notifyAll();
+            }
+        }
+    }
+
+    private void insert(Batch batch) {
+        List<Object> objects = new ArrayList<>(batch.rows.size());
+        List<Map<String, Object>> contents = new ArrayList<>(batch.rows.size());
+        String[] ids = insertIdStrategy != null ? new String[batch.rows.size()] : null;
+        for (Row row : batch.rows) {
+            if (ids != null) {
+                ids[objects.size()] = row.insertId;
+            }
+            objects.add(row.object);
+            contents.add(row.content);
+        }
+        // Keep the order of the rows: while spooled rows cannot be sent, new batches are spooled behind them.
+        if (spool != null && (spoolStalled || !replaySpool())) {
+            spoolBatch(ids, objects, contents, null);
+            return;
+        }
+        try {
+            BigQueryObjectWriter.InsertBuilder insert = writer.insert(dataset, table);
+            insertOptions.accept(insert);
+            insert.convertedRows(objects, contents, ids).execute();
+        } catch (InsertException e) {
+            // BigQuery answered and rejected rows, sending them again would not help.
+            errorHandler.accept(e);
+        } catch (RuntimeException e) {
+            if (spool != null && isTransient(e)) {
+                spoolBatch(ids, objects, contents, e);
+            } else {
+                errorHandler.accept(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a batch to the spool, or passes the failure to the error handler if the spool is full.
+     */
+    private void spoolBatch(String[] ids, List<Object> objects, List<Map<String, Object>> contents, RuntimeException failure) {
+        List<String> insertIds = ids != null ? Arrays.asList(ids) : Collections.<String>nCopies(contents.size(), null);
+        List<String> rowClasses = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            rowClasses.add(object.getClass().getName());
+        }
+        try {
+            if (spool.append(insertIds, rowClasses, contents)) {
+                spoolStalled = true;
+                System.err.println("Spooled " + contents.size() + " rows for " + dataset + "." + table
+                        + (failure != null ? " after a failure: " + failure.getMessage() : "."));
+                return;
+            }
+            errorHandler.accept(new RuntimeException("The row spool of " + dataset + "." + table + " is full, dropped "
+                    + contents.size() + " rows.", failure));
+        } catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    /**
+     * Returns whether a failed insert can succeed when sent again: its {@link BigQueryException} is
+     * transient for the {@link RetryPolicy}, or a network failure that the client marks retryable.
+     */
+    private boolean isTransient(RuntimeException failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BigQueryException) {
+                BigQueryException e = (BigQueryException) cause;
+                return e.isRetryable() || writer.getRetryPolicy().isRetryable(e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends the spooled rows in order, oldest segment first, acknowledging the rows of each request
+     * once it is sent and deleting each segment once all its rows are. Stops at the first request that
+     * fails for a transient reason or because of the table, and the rows that were not acknowledged
+     * are sent again the next time. Runs on the background thread.
+     * @return True if the spool is empty.
+     */
+    private boolean replaySpool() {
+        spoolStalled = true;
+        try {
+            RowSpool.Segment segment;
+            while ((segment = spool.oldest()) != null) {
+                if (!replay(segment)) {
+                    return false;
+                }
+                if (segment.getSkippedBytes() > 0) {
+                    errorHandler.accept(new RuntimeException("Skipped " + segment.getSkippedBytes()
+                            + " unreadable bytes of the row spool segment " + segment.getPath() + " of " + dataset + "." + table
+                            + ", the rows they held are lost."));
+                }
+                spool.remove(segment);
+            }
+        } catch (RuntimeException e) {
+            errorHandler.accept(e);
+            return false;
+        }
+        spoolStalled = false;
+        return true;
+    }
+
+    /**
+     * Sends the rows of a segment like new batches, with the insert options of the writer, in inserts of
+     * at most the batch size and of one row class each, so that the table can be created or updated.
+     * Rows rejected by BigQuery are passed to the error handler as an {@link InsertException}, and so
+     * are the rows of an insert that failed for a reason that is neither transient nor a table error.
+     * @return False if an insert failed for a transient reason or because of the table.
+     */
+    private boolean replay(RowSpool.Segment segment) {
+        List<RowSpool.SpooledRow> rows = segment.getRows();
+        int first = 0;
+        while (first < rows.size()) {
+            String rowClass = rows.get(first).getRowClass();
+            List<Map<String, Object>> contents = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            int end = first;
+            long bytes = 0;
+            while (end < rows.size() && end - first < maxBatchRows && (end == first || bytes < maxBatchBytes)
+                    && rows.get(end).getRowClass().equals(rowClass)) {
+                RowSpool.SpooledRow row = rows.get(end++);
+                bytes += RowSizeEstimator.estimateRow(row.getContent());
+                contents.add(row.getContent());
+                ids.add(row.getInsertId());
+            }
+            try {
+                BigQueryObjectWriter.InsertBuilder insert = writer.insert(dataset, table);
+                insertOptions.accept(insert);
+                insert.spooledRows(loadRowClass(rowClass), contents, ids.toArray(new String[0])).execute();
+            } catch (InsertException e) {
+                errorHandler.accept(e);
+            } catch (RuntimeException e) {
+                if (isTransient(e) || isTableError(e)) {
+                    System.err.println("Failed to send spooled rows of " + dataset + "." + table + ": " + e.getMessage());
+                    return false;
+                }
+                // Sending the rows again would fail the same way and hold back the rows behind them.
+                errorHandler.accept(new RuntimeException("Dropped " + (end - first) + " spooled rows of " + dataset + "."
+                        + table + " that BigQuery refused.", e));
+            }
+            spool.acknowledge(segment, end);
+            first = end;
+        }
+        return true;
+    }
+
+    /**
+     * @return True if the failure, or its cause, is a missing table or a schema mismatch.
+     */
+    private static boolean isTableError(RuntimeException failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BigQueryException) {
+                return BigQueryObjectWriter.isTableError((BigQueryException) cause);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The class of spooled rows, or null if it cannot be loaded, e.g. after it was renamed.
+     */
+    private static Class<?> loadRowClass(String name) {
+        try {
+            return Class.forName(name, false, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException e) {
+            System.err.println("Cannot load the class of spooled rows " + name + ", their table is not created or updated.");
+            return null;
+        }
+    }
+
+    /**
+     * A buffered row with its insert row content, insertId and estimated size.
+     */
+    private static final class Row {
+        private final Object object;
+        private final Map<String, Object> content;
+        private final String insertId;
+        private final long bytes;
+
+        private Row(Object object, Map<String, Object> content, String insertId, long bytes) {
+            this.object = object;
+            this.content = content;
+            this.insertId = insertId;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The rows of a batch, oldest first so that {@link OverflowPolicy#DROP_OLDEST} drops from the head.
+     */
+    private static final class Batch {
+        private final Deque<Row> rows = new ArrayDeque<>();
+        private long bytes;
+
+        private void add(Row row) {
+            rows.addLast(row);
+            bytes += row.bytes;
+        }
+    }
+
+    /**
+     * Builder for {@link BufferedBigQueryWriter}, see {@link BigQueryObjectWriter#buffered(String, String)}.
+     */
+    public static final class Builder {
+        private final BigQueryObjectWriter writer;
+        private final String dataset;
+        private final String table;
+        private Consumer<BigQueryObjectWriter.InsertBuilder> insertOptions = insert -> { };
+        private InsertIdStrategy insertIdStrategy;
+        private Path spoolDirectory;
+        private long maxSpoolBytes;
+        private int maxBatchRows = DEFAULT_MAX_BATCH_ROWS;
+        private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+        private long lingerNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LINGER_MILLIS);
+        private long maxBufferedBytes = DEFAULT_MAX_BUFFERED_BYTES;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private Consumer<? super RuntimeException> errorHandler = e ->
+                System.err.println("Failed to insert buffered rows into BigQuery: " + e.getMessage());
+
+        Builder(BigQueryObjectWriter writer, String dataset, String table) {
+            this.writer = writer;
+            this.dataset = dataset;
+            this.table = table;
+        }
+
+        /**
+         * Specifies the number of rows that flushes a batch.
+         * Defaults to {@link BufferedBigQueryWriter#DEFAULT_MAX_BATCH_ROWS}.
+         * @param maxRows The maximum number of rows, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder maxBatchRows(int maxRows) {
+            if (maxRows < 1) {
+                throw new IllegalArgumentException("The maximum number of rows per batch must be positive: " + maxRows);
+            }
+            this.maxBatchRows = maxRows;
+            return this;
+        }
+
+        /**
+         * Specifies the estimated size of the rows that flushes a batch.
+         * Defaults to {@link BufferedBigQueryWriter#DEFAULT_MAX_BATCH_BYTES}.
+         * @param maxBytes The maximum number of bytes, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder maxBatchBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("The maximum number of bytes per batch must be positive: " + maxBytes);
+            }
+            this.maxBatchBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Specifies how long the first row of a batch waits for more rows before the batch is flushed.
+         * Defaults to {@link BufferedBigQueryWriter#DEFAULT_LINGER_MILLIS} milliseconds.
+         * @param linger The time, at least 1 unit.
+         * @param unit The unit of the time.
+         * @return This builder instance for chaining.
+         */
+        public Builder linger(long linger, TimeUnit unit) {
+            if (linger < 1) {
+                throw new IllegalArgumentException("The linger time must be positive: " + linger);
+            }
+            this.lingerNanos = unit.toNanos(linger);
+            return this;
+        }
+
+        /**
+         * Specifies the maximum estimated size of the rows held by the writer, including the batches
+         * waiting to be sent and the one being sent.
+         * Defaults to {@link BufferedBigQueryWriter#DEFAULT_MAX_BUFFERED_BYTES}.
+         * @param maxBytes The maximum number of bytes, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder maxBufferedBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("The maximum number of buffered bytes must be positive: " + maxBytes);
+            }
+            this.maxBufferedBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Specifies what happens to a row that does not fit in {@link #maxBufferedBytes(long)}.
+         * Defaults to {@link OverflowPolicy#BLOCK}.
+         * @param policy The overflow policy.
+         * @return This builder instance for chaining.
+         */
+        public Builder overflowPolicy(OverflowPolicy policy) {
+            this.overflowPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Specifies options applied to the insert of every batch, e.g. partitioning, clustering or
+         * the maximum number of concurrent requests. The rows must not be set here.
+         * @param options Configures the insert builder of a batch.
+         * @return This builder instance for chaining.
+         */
+        public Builder insertOptions(Consumer<BigQueryObjectWriter.InsertBuilder> options) {
+            this.insertOptions = options;
+            return this;
+        }
+
+        /**
+         * Specifies how the insertIds of the rows are given. The id of a row is computed when it is added
+         * and kept while it is retried, spooled and sent again from the spool.
+         * Defaults to no insertIds, see {@link InsertIdStrategy#none()}.
+         * @param strategy The insertId strategy.
+         * @return This builder instance for chaining.
+         */
+        public Builder insertIds(InsertIdStrategy strategy) {
+            this.insertIdStrategy = strategy;
+            return this;
+        }
+
+        /**
+         * Spools the batches that cannot be sent to disk until BigQuery is available again, instead of
+         * passing their failure to the error handler. Rows that do not fit in the spool are dropped and
+         * reported to the error handler. By default failed batches are not spooled.
+         * @param directory The spool directory, which must not be shared with another writer.
+         * @param maxBytes The maximum size of the spooled rows on disk, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder spool(Path directory, long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("The maximum spool size must be positive: " + maxBytes);
+            }
+            this.spoolDirectory = directory;
+            this.maxSpoolBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Specifies what to do with the failure of a batch, such as an {@link InsertException} with
+         * the rejected rows. Called on the background thread. Defaults to printing the failure.
+         * @param handler The error handler.
+         * @return This builder instance for chaining.
+         */
+        public Builder onError(Consumer<? super RuntimeException> handler) {
+            this.errorHandler = handler;
+            return this;
+        }
+
+        /**
+         * @return A new buffered writer, which must be closed to send its last rows.
+         */
+        public BufferedBigQueryWriter build() {
+            return new BufferedBigQueryWriter(this);
+        }
+    }
+}
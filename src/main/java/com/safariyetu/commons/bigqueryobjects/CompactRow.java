@@ -0,0 +1,129 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable row map backed by a value array that is indexed by a {@link Layout} shared by all
+ * rows of the same class. Compared to a hash map per object, a row only allocates its value array,
+ * which reduces the per-row allocation for nested records and collection elements.
+ *
+ * <p>Null values are treated as absent keys, matching the maps produced by
+ * {@link BigQueryObjectWriter#objectToMap(Object)}, which omit null fields.</p>
+ */
+final class CompactRow extends AbstractMap<String, Object> {
+
+    /**
+     * The field names of a class, shared by all rows of that class.
+     */
+    static final class Layout {
+        private final String[] keys;
+        private final Map<String, Integer> index;
+
+        Layout(String[] keys) {
+            this.keys = keys.clone();
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < keys.length; i++) {
+                positions.put(keys[i], i);
+            }
+            this.index = Collections.unmodifiableMap(positions);
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        String key(int position) {
+            return keys[position];
+        }
+    }
+
+    private final Layout layout;
+    private final Object[] values;
+    private final int size;
+
+    /**
+     * @param layout The layout of the row.
+     * @param values The values by layout position, null for absent fields. The array is not copied.
+     */
+    CompactRow(Layout layout, Object[] values) {
+        this.layout = layout;
+        this.values = values;
+        int count = 0;
+        for (Object value : values) {
+            if (value != null) {
+                count++;
+            }
+        }
+        this.size = count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Integer position = layout.index.get(key);
+        return position == null ? null : values[position];
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int next = advance(0);
+
+        private int advance(int from) {
+            int position = from;
+            while (position < values.length && values[position] == null) {
+                position++;
+            }
+            return position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, Object> entry = new SimpleImmutableEntry<>(layout.key(next), values[next]);
+            next = advance(next + 1);
+            return entry;
+        }
+    }
+}
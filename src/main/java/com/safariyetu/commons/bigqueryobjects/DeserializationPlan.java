@@ -0,0 +1,96 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compiled, per-class plan for populating POJOs from BigQuery rows.
+ * The default constructor and the {@link FieldAccessor}s of the instance fields are resolved
+ * once per class and cached in a {@link ClassValue}, so reading a row no longer repeats
+ * the reflective lookups or the <code>setAccessible</code> calls.
+ */
+final class DeserializationPlan {
+
+    private static final ClassValue<DeserializationPlan> PLANS = new ClassValue<DeserializationPlan>() {
+        @Override
+        protected DeserializationPlan computeValue(Class<?> type) {
+            return new DeserializationPlan(type);
+        }
+    };
+
+    private final Class<?> pojoClass;
+    private final MethodHandle constructor;
+    private final Map<String, FieldAccessor> accessors;
+
+    private DeserializationPlan(Class<?> pojoClass) {
+        this.pojoClass = pojoClass;
+        this.constructor = findConstructor(pojoClass);
+        Map<String, FieldAccessor> fieldAccessors = new LinkedHashMap<>();
+        for (java.lang.reflect.Field field : pojoClass.getDeclaredFields()) {
+            // Skip static and synthetic fields, they are not populated from rows
+            if (java.lang.reflect.Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            fieldAccessors.put(field.getName(), new FieldAccessor(field));
+        }
+        this.accessors = Collections.unmodifiableMap(fieldAccessors);
+    }
+
+    private static MethodHandle findConstructor(Class<?> pojoClass) {
+        try {
+            Constructor<?> constructor = pojoClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // Reported when an instance is requested, the plan is still usable for the accessors.
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached plan for the given class, compiling it on first use.
+     * @param pojoClass The class to get the plan for.
+     * @return The deserialization plan of the class.
+     */
+    static DeserializationPlan forClass(Class<?> pojoClass) {
+        return PLANS.get(pojoClass);
+    }
+
+    /**
+     * Creates a new instance of the planned class using its default constructor.
+     * @return The new instance.
+     */
+    Object newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException("No accessible default constructor found for " + pojoClass.getName());
+        }
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to instantiate " + pojoClass.getName(), t);
+        }
+    }
+
+    /**
+     * @param fieldName The name of the POJO field.
+     * @return The accessor of the field, or null if the class has no such instance field.
+     */
+    FieldAccessor accessor(String fieldName) {
+        return accessors.get(fieldName);
+    }
+
+    /**
+     * @return The accessors of all instance fields, keyed by field name, in declaration order.
+     */
+    Map<String, FieldAccessor> accessors() {
+        return accessors;
+    }
+}
@@ -0,0 +1,210 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Reads and writes a single instance field through cached {@link MethodHandle}s instead of
+ * {@link java.lang.reflect.Field#get(Object)} and {@link java.lang.reflect.Field#set(Object, Object)}.
+ * The handles are created once, with their types adapted so that they can be called with
+ * {@code invokeExact}, which saves the access checks and argument boxing of the reflective calls.
+ *
+ * <p>The handles are held in instance fields, not in <code>static final</code> fields, so the JIT
+ * does not treat them as constants: each call is an indirect handle invocation, not inlined like a
+ * direct field access. Classes annotated with {@link BigQueryRow} get generated writers and readers
+ * that access their fields directly.</p>
+ *
+ * <p>Fields of type <code>int</code>, <code>long</code>, <code>double</code> and <code>boolean</code>
+ * additionally get primitive-specialized getters and setters, so that callers which know the field
+ * kind can read and write the values without boxing them.</p>
+ */
+final class FieldAccessor {
+
+    /**
+     * The storage kind of a field, used to pick the unboxed access path.
+     */
+    enum Kind {
+        INT, LONG, DOUBLE, BOOLEAN, OTHER
+    }
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final java.lang.reflect.Field field;
+    private final Kind kind;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final MethodHandle primitiveGetter;
+    private final MethodHandle primitiveSetter;
+
+    FieldAccessor(java.lang.reflect.Field field) {
+        this.field = field;
+        this.kind = kindOf(field.getType());
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            MethodHandle rawGetter = lookup.unreflectGetter(field);
+            this.getter = rawGetter.asType(GETTER_TYPE);
+            this.primitiveGetter = kind == Kind.OTHER
+                    ? null
+                    : rawGetter.asType(MethodType.methodType(field.getType(), Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access field: " + field.getName(), e);
+        }
+        MethodHandle rawSetter = null;
+        try {
+            rawSetter = lookup.unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            // Static final fields cannot be written. Only reading is supported for these.
+        }
+        this.setter = rawSetter == null ? null : rawSetter.asType(SETTER_TYPE);
+        this.primitiveSetter = rawSetter == null || kind == Kind.OTHER
+                ? null
+                : rawSetter.asType(MethodType.methodType(void.class, Object.class, field.getType()));
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == int.class) {
+            return Kind.INT;
+        } else if (type == long.class) {
+            return Kind.LONG;
+        } else if (type == double.class) {
+            return Kind.DOUBLE;
+        } else if (type == boolean.class) {
+            return Kind.BOOLEAN;
+        }
+        return Kind.OTHER;
+    }
+
+    java.lang.reflect.Field getField() {
+        return field;
+    }
+
+    String getName() {
+        return field.getName();
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the declared class of the field's values: the element class for collections and
+     * {@link PrimitiveArray}s, the field type otherwise. Only collections with a class element type
+     * are mapped to columns.
+     */
+    Class<?> getValueClass() {
+        PrimitiveArray primitiveArray = PrimitiveArray.of(field.getType());
+        if (primitiveArray != null) {
+            return primitiveArray.getElementType();
+        }
+        if (Collection.class.isAssignableFrom(field.getType())
+                && field.getGenericType() instanceof ParameterizedType) {
+            Type elementType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+            if (elementType instanceof Class) {
+                return (Class<?>) elementType;
+            }
+        }
+        return field.getType();
+    }
+
+    Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    int getInt(Object target) {
+        try {
+            return (int) primitiveGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    long getLong(Object target) {
+        try {
+            return (long) primitiveGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    double getDouble(Object target) {
+        try {
+            return (double) primitiveGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    boolean getBoolean(Object target) {
+        try {
+            return (boolean) primitiveGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    void set(Object target, Object value) {
+        try {
+            writableSetter(setter).invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    void setInt(Object target, int value) {
+        try {
+            writableSetter(primitiveSetter).invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    void setLong(Object target, long value) {
+        try {
+            writableSetter(primitiveSetter).invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    void setDouble(Object target, double value) {
+        try {
+            writableSetter(primitiveSetter).invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    void setBoolean(Object target, boolean value) {
+        try {
+            writableSetter(primitiveSetter).invokeExact(target, value);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    private MethodHandle writableSetter(MethodHandle handle) {
+        if (handle == null) {
+            throw new IllegalStateException("Field is not writable: " + field.getName());
+        }
+        return handle;
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,182 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.cloud.bigquery.FieldValue;
+
+/**
+ * Locates the {@link RowWriter}s and {@link RowReader}s generated for {@link BigQueryRow} classes
+ * and provides the runtime support used by the generated code.
+ *
+ * <p>Generated classes are found by name next to the annotated class, e.g.
+ * <code>Outer_Inner_BigQueryRowWriter</code> for <code>Outer.Inner</code>. The lookup result is
+ * cached per class, so classes without generated code fall back to the reflective mapping
+ * without repeating the lookup.</p>
+ *
+ * <p>The public static methods are called from generated code and are not intended to be used
+ * directly.</p>
+ */
+public final class GeneratedRows {
+
+    public static final String WRITER_SUFFIX = "_BigQueryRowWriter";
+    public static final String READER_SUFFIX = "_BigQueryRowReader";
+
+    private static final ClassValue<Optional<RowWriter<?>>> WRITERS = new ClassValue<Optional<RowWriter<?>>>() {
+        @Override
+        protected Optional<RowWriter<?>> computeValue(Class<?> type) {
+            return Optional.ofNullable((RowWriter<?>) instantiate(type, WRITER_SUFFIX));
+        }
+    };
+
+    private static final ClassValue<Optional<RowReader<?>>> READERS = new ClassValue<Optional<RowReader<?>>>() {
+        @Override
+        protected Optional<RowReader<?>> computeValue(Class<?> type) {
+            return Optional.ofNullable((RowReader<?>) instantiate(type, READER_SUFFIX));
+        }
+    };
+
+    private GeneratedRows() {
+    }
+
+    /**
+     * Returns the name of the class generated for a POJO.
+     * @param binaryName The binary name of the POJO class, as returned by {@link Class#getName()}.
+     * @param suffix Either {@link #WRITER_SUFFIX} or {@link #READER_SUFFIX}.
+     * @return The binary name of the generated class.
+     */
+    public static String generatedClassName(String binaryName, String suffix) {
+        int packageEnd = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, packageEnd + 1)
+                + binaryName.substring(packageEnd + 1).replace('$', '_')
+                + suffix;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RowWriter<T> writerFor(Class<T> clazz) {
+        return (RowWriter<T>) WRITERS.get(clazz).orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RowReader<T> readerFor(Class<T> clazz) {
+        return (RowReader<T>) READERS.get(clazz).orElse(null);
+    }
+
+    private static Object instantiate(Class<?> type, String suffix) {
+        if (type.isPrimitive() || type.isArray()) {
+            return null;
+        }
+        try {
+            Class<?> generated = Class.forName(generatedClassName(type.getName(), suffix), true, type.getClassLoader());
+            return generated.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Warning: Cannot instantiate generated class for " + type.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Converts a nested object to a map, using its generated writer if available.
+     * @param value The nested object.
+     * @return A map representing the object's fields and their values.
+     */
+    public static Map<String, Object> toMap(Object value) {
+        return BigQueryObjectWriter.mapObject(value);
+    }
+
+    /**
+     * Converts a collection of nested objects to a list of maps.
+     * @param values The nested objects.
+     * @return A list with one map per element.
+     */
+    public static List<Object> toMaps(Collection<?> values) {
+        List<Object> mapped = new ArrayList<>(values.size());
+        for (Object value : values) {
+            mapped.add(BigQueryObjectWriter.mapObject(value));
+        }
+        return mapped;
+    }
+
+    /**
+     * Converts a value of a type without inline conversion: values of types with a {@link TypeCodec}
+     * are encoded by the codec, primitive arrays are converted to lists and other objects are converted
+     * to maps as nested records.
+     * @param value The value.
+     * @return The BigQuery-compatible representation of the value.
+     */
+    public static Object toValue(Object value) {
+        TypeCodec<Object> codec = TypeCodecs.codecFor(value.getClass());
+        if (codec != null) {
+            return codec.toJson(value);
+        }
+        PrimitiveArray primitiveArray = PrimitiveArray.of(value.getClass());
+        return primitiveArray != null ? primitiveArray.toList(value) : BigQueryObjectWriter.mapObject(value);
+    }
+
+    /**
+     * Converts a collection with {@link #toValue(Object)} element by element.
+     * @param values The values.
+     * @return A list with one converted value per element.
+     */
+    public static List<Object> toValues(Collection<?> values) {
+        List<Object> converted = new ArrayList<>(values.size());
+        for (Object value : values) {
+            converted.add(value == null ? null : toValue(value));
+        }
+        return converted;
+    }
+
+    /**
+     * Derives the BigQuery field for a single declared field of a class.
+     * @param owner The class declaring the field.
+     * @param fieldName The name of the field.
+     * @return The BigQuery field.
+     */
+    public static com.google.cloud.bigquery.Field fieldOf(Class<?> owner, String fieldName) {
+        try {
+            return BigQueryObjectWriter.fieldOf(owner.getDeclaredField(fieldName));
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("No field '" + fieldName + "' in " + owner.getName(), e);
+        }
+    }
+
+    /**
+     * Decodes a value for a declared field of a class, e.g. a nested record or a collection.
+     * @param value The FieldValue from BigQuery.
+     * @param owner The class declaring the field.
+     * @param fieldName The name of the field.
+     * @return The decoded value.
+     */
+    public static Object readField(FieldValue value, Class<?> owner, String fieldName) {
+        FieldAccessor accessor = DeserializationPlan.forClass(owner).accessor(fieldName);
+        if (accessor == null) {
+            throw new IllegalArgumentException("No field '" + fieldName + "' in " + owner.getName());
+        }
+        return BigQueryObjectReader.readValue(value, accessor.getField());
+    }
+
+    public static LocalDateTime readLocalDateTime(FieldValue value) {
+        return BigQueryObjectReader.parseLocalDateTime(value.getStringValue());
+    }
+
+    public static OffsetDateTime readOffsetDateTime(FieldValue value) {
+        return BigQueryObjectReader.parseOffsetDateTime(value);
+    }
+
+    public static Instant readInstant(FieldValue value) {
+        return BigQueryObjectReader.parseInstant(value);
+    }
+
+    public static Date readDate(FieldValue value) {
+        return BigQueryObjectReader.parseDate(value);
+    }
+}
@@ -0,0 +1,185 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a second copy of an <code>insertAll</code> request that is slower than most recent requests,
+ * and keeps the answer that arrives first, to cut the tail latency of inserts. Enable it with
+ * {@link BigQueryObjectWriter.InsertBuilder#hedging(HedgePolicy)}.
+ *
+ * <p>A request is hedged when it has not been answered after the configured percentile of the
+ * latencies of the recent requests, measured over a sliding window. Hedging starts once the window
+ * has {@link Builder#window(int, int) enough samples}, never waits less than
+ * {@link Builder#minDelay(long, TimeUnit)}, and sends at most {@link Builder#maxHedgeRate(double)}
+ * hedges per request, so that a slow service does not receive twice the load. The copy carries the
+ * same insertIds, so BigQuery drops the rows of the request that arrives second.</p>
+ *
+ * <p>A policy records the latencies and hedges of all the inserts it is used by, and can be shared
+ * by the inserts of a table. It is thread-safe.</p>
+ */
+public final class HedgePolicy {
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final double maxHedgeRate;
+    private final int minSamples;
+
+    // Guarded by this. The latencies of the recent requests, as a ring buffer.
+    private final long[] latencies;
+    private int sampleCount;
+    private int nextSample;
+    private long requests;
+    private long hedgesSent;
+    private long hedgesWon;
+
+    private HedgePolicy(Builder builder) {
+        this.percentile = builder.percentile;
+        this.minDelayNanos = builder.minDelayNanos;
+        this.maxHedgeRate = builder.maxHedgeRate;
+        this.minSamples = builder.minSamples;
+        this.latencies = new long[builder.window];
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The number of requests sent with this policy, not counting the hedges.
+     */
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * @return The number of hedges sent.
+     */
+    public synchronized long getHedgesSent() {
+        return hedgesSent;
+    }
+
+    /**
+     * @return The number of hedges that were answered before the request they copied.
+     */
+    public synchronized long getHedgesWon() {
+        return hedgesWon;
+    }
+
+    /**
+     * Counts a request and returns how long to wait for it before hedging it.
+     * @return The delay in nanoseconds, or -1 if there are not enough samples yet.
+     */
+    synchronized long startRequest() {
+        requests++;
+        if (sampleCount < minSamples) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return Math.max(minDelayNanos, sorted[Math.max(index, 0)]);
+    }
+
+    /**
+     * Takes a hedge, if the hedge rate allows one more.
+     * @return False if the request must not be hedged.
+     */
+    synchronized boolean tryHedge() {
+        if (hedgesSent + 1 > maxHedgeRate * requests) {
+            return false;
+        }
+        hedgesSent++;
+        return true;
+    }
+
+    synchronized void hedgeWon() {
+        hedgesWon++;
+    }
+
+    /**
+     * Records the latency of an answered request or hedge.
+     */
+    synchronized void recordLatency(long nanos) {
+        latencies[nextSample] = nanos;
+        nextSample = (nextSample + 1) % latencies.length;
+        sampleCount = Math.min(sampleCount + 1, latencies.length);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "HedgePolicy{percentile=" + percentile + ", requests=" + requests + ", hedgesSent=" + hedgesSent
+                + ", hedgesWon=" + hedgesWon + "}";
+    }
+
+    /**
+     * Builder for {@link HedgePolicy}. By default requests slower than the 95th percentile of the last
+     * 100 requests are hedged, after at least 10 milliseconds, for at most 5% of the requests.
+     */
+    public static final class Builder {
+        private double percentile = 0.95;
+        private long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        private double maxHedgeRate = 0.05;
+        private int window = 100;
+        private int minSamples = 20;
+
+        private Builder() {
+        }
+
+        /**
+         * @param percentile The percentile of the recent latencies after which a request is hedged, between 0 and 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder percentile(double percentile) {
+            if (!(percentile > 0 && percentile <= 1)) {
+                throw new IllegalArgumentException("The percentile must be between 0 and 1: " + percentile);
+            }
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * @param delay The minimum time to wait for a request before hedging it, at least 0.
+         * @param unit The unit of the time.
+         * @return This builder instance for chaining.
+         */
+        public Builder minDelay(long delay, TimeUnit unit) {
+            if (delay < 0) {
+                throw new IllegalArgumentException("The minimum hedge delay must not be negative: " + delay);
+            }
+            this.minDelayNanos = unit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * @param rate The maximum number of hedges per request, between 0 and 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder maxHedgeRate(double rate) {
+            if (!(rate >= 0 && rate <= 1)) {
+                throw new IllegalArgumentException("The maximum hedge rate must be between 0 and 1: " + rate);
+            }
+            this.maxHedgeRate = rate;
+            return this;
+        }
+
+        /**
+         * @param window The number of recent latencies the percentile is computed over, at least 1.
+         * @param minSamples The number of latencies needed before hedging, between 1 and the window.
+         * @return This builder instance for chaining.
+         */
+        public Builder window(int window, int minSamples) {
+            if (window < 1 || minSamples < 1 || minSamples > window) {
+                throw new IllegalArgumentException("The latency window must be positive and hold the minimum samples: "
+                        + window + ", " + minSamples);
+            }
+            this.window = window;
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        public HedgePolicy build() {
+            return new HedgePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.google.cloud.bigquery.TableId;
+
+/**
+ * Splits rows into <code>insertAll</code> requests and sends them concurrently, for
+ * {@link BigQueryObjectWriter.InsertBuilder#execute()}.
+ *
+ * <p>Rows are converted on the calling thread one request at a time. Each request is sent on the
+ * executor, and the calling thread waits before building the next request while the maximum
+ * number of requests is in flight. This bounds both the concurrency and the converted rows held
+ * in memory. The outcomes are returned in row order once all requests have completed.</p>
+ *
+ * <p>With a {@link HedgePolicy}, a timer sends a copy of a slow request on the executor, so a hedged
+ * request briefly takes two executor threads but no executor thread waits for another. A hedged
+ * request holds its place among the requests in flight until both copies are answered. Hedging needs
+ * an insertId for every row, so that BigQuery drops the copy that arrives second.</p>
+ *
+ * <p>The default executor runs each request on a virtual thread when the JVM supports them
+ * (Java 21 and later), and on a shared pool of daemon threads otherwise.</p>
+ */
+final class InsertAllSubmitter {
+
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+
+    // Sends the hedges once their delay is over. The requests themselves run on the executor.
+    private static final ScheduledExecutorService HEDGE_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bigquery-insert-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The insertAll error reasons of rows that can succeed when sent again.
+    private static final Set<String> RETRYABLE_REASONS = new HashSet<>(Arrays.asList(
+            "stopped", "backendError", "internalError", "timeout", "rateLimitExceeded"));
+
+    private final BigQuery bigquery;
+    private final TableId tableId;
+    private final Executor executor;
+    private final int maxConcurrentRequests;
+    private final HedgePolicy hedgePolicy;
+
+    InsertAllSubmitter(BigQuery bigquery, TableId tableId, Executor executor, int maxConcurrentRequests) {
+        this(bigquery, tableId, executor, maxConcurrentRequests, null);
+    }
+
+    /**
+     * @param hedgePolicy The policy for hedging slow requests, or null to send each request once.
+     */
+    InsertAllSubmitter(BigQuery bigquery, TableId tableId, Executor executor, int maxConcurrentRequests,
+            HedgePolicy hedgePolicy) {
+        this.bigquery = bigquery;
+        this.tableId = tableId;
+        this.executor = executor != null ? executor : DEFAULT_EXECUTOR;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * @return The executor used when the builder has none: virtual threads if available, a shared pool of daemon threads otherwise.
+     */
+    static Executor defaultExecutor() {
+        return DEFAULT_EXECUTOR;
+    }
+
+    /**
+     * Splits rows into requests of at most <code>maxRows</code> rows and <code>maxBytes</code>
+     * estimated bytes, and sends them.
+     * @param rows The rows.
+     * @param maxRows The maximum number of rows per request.
+     * @param maxBytes The maximum estimated size of the rows of a request.
+     * @return The outcome of each request, in row order.
+     */
+    List<Outcome> insert(Rows rows, int maxRows, long maxBytes) {
+        return send(new ChunkIterator(rows, null, 1, maxRows, maxBytes));
+    }
+
+    /**
+     * Sends some of the rows again, e.g. the ones BigQuery rejected for a transient reason.
+     * @param rows The rows.
+     * @param positions The indexes of the rows to send, in ascending order.
+     * @param attempt The attempt of the rows, 2 for their first retry.
+     * @param maxRows The maximum number of rows per request.
+     * @param maxBytes The maximum estimated size of the rows of a request.
+     * @return The outcome of each request, in row order.
+     */
+    List<Outcome> retry(Rows rows, int[] positions, int attempt, int maxRows, long maxBytes) {
+        return send(new ChunkIterator(rows, positions, attempt, maxRows, maxBytes));
+    }
+
+    /**
+     * Sends requests again, e.g. the ones that failed before the table was created.
+     * @param chunks The requests.
+     * @return The outcome of each request, in the given order.
+     */
+    List<Outcome> resend(List<PendingChunk> chunks) {
+        return send(chunks.iterator());
+    }
+
+    private List<Outcome> send(Iterator<PendingChunk> chunks) {
+        Semaphore permits = new Semaphore(maxConcurrentRequests);
+        List<CompletableFuture<Outcome>> futures = new ArrayList<>();
+        try {
+            while (chunks.hasNext()) {
+                PendingChunk chunk = chunks.next();
+                permits.acquire();
+                try {
+                    if (hedgePolicy != null) {
+                        // The permit is held until the hedge is answered too, even if the request won.
+                        futures.add(sendHedged(chunk, permits::release));
+                    } else {
+                        CompletableFuture<Outcome> future = CompletableFuture.supplyAsync(() -> send(chunk), executor);
+                        future.whenComplete((outcome, failure) -> permits.release());
+                        futures.add(future);
+                    }
+                } catch (RuntimeException e) {
+                    // The executor rejected the request.
+                    permits.release();
+                    futures.add(CompletableFuture.completedFuture(new Outcome(chunk, null, e)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while inserting rows into BigQuery.", e);
+        }
+
+        List<Outcome> outcomes = new ArrayList<>(futures.size());
+        for (CompletableFuture<Outcome> future : futures) {
+            outcomes.add(future.join());
+        }
+        return outcomes;
+    }
+
+    /**
+     * Sends one request and collects its row errors, keyed by the index of the row in the builder.
+     * Failures of the request itself are returned in the outcome rather than thrown, so that the
+     * other requests complete.
+     */
+    private Outcome send(PendingChunk chunk) {
+        try {
+            InsertAllResponse response = bigquery.insertAll(chunk.request);
+
+            Map<Long, List<BigQueryError>> insertErrors = new LinkedHashMap<>();
+            if (response.hasErrors()) {
+                response.getInsertErrors().forEach((row, errors) -> insertErrors.put((long) chunk.rows[row.intValue()], errors));
+            }
+            return new Outcome(chunk, new InsertResult.Chunk(chunk.rows, chunk.estimatedBytes, chunk.attempt,
+                    insertErrors), null);
+        } catch (RuntimeException e) {
+            return new Outcome(chunk, null, e);
+        }
+    }
+
+    /**
+     * Sends one request, and a copy of it if it is not answered within the hedge delay of the policy.
+     * The first answered request wins, and the outcome of the request is returned if both fail.
+     * @param settled Called once the request and its hedge, if one was sent, have both completed.
+     */
+    private CompletableFuture<Outcome> sendHedged(PendingChunk chunk, Runnable settled) {
+        long delay = hedgePolicy.startRequest();
+        CompletableFuture<Outcome> primary = sendTimed(chunk);
+        if (delay < 0) {
+            primary.thenRun(settled);
+            return primary;
+        }
+        // Completed with the outcome of the hedge, or with null if no hedge was sent.
+        CompletableFuture<Outcome> hedge = new CompletableFuture<>();
+        ScheduledFuture<?> timer = HEDGE_TIMER.schedule(() -> {
+            if (primary.isDone() || !hedgePolicy.tryHedge()) {
+                hedge.complete(null);
+                return;
+            }
+            try {
+                sendTimed(chunk).thenAccept(hedge::complete);
+            } catch (RuntimeException e) {
+                // The executor rejected the hedge, the request is still in flight.
+                hedge.complete(null);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+        primary.thenRun(() -> {
+            if (timer.cancel(false)) {
+                hedge.complete(null);
+            }
+        });
+
+        // The answer that claims the win is counted before it completes the winner, so callers see the count.
+        AtomicBoolean won = new AtomicBoolean();
+        CompletableFuture<Outcome> winner = new CompletableFuture<>();
+        primary.thenAccept(outcome -> {
+            if (outcome.getFailure() == null && won.compareAndSet(false, true)) {
+                winner.complete(outcome);
+            }
+        });
+        hedge.thenAccept(outcome -> {
+            if (outcome != null && outcome.getFailure() == null && won.compareAndSet(false, true)) {
+                hedgePolicy.hedgeWon();
+                winner.complete(outcome);
+            }
+        });
+        CompletableFuture.allOf(primary, hedge).thenRun(() -> {
+            winner.complete(primary.join());
+            settled.run();
+        });
+        return winner;
+    }
+
+    /**
+     * Sends a request on the executor, recording its latency if BigQuery answered it.
+     */
+    private CompletableFuture<Outcome> sendTimed(PendingChunk chunk) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            Outcome outcome = send(chunk);
+            if (outcome.getFailure() == null) {
+                hedgePolicy.recordLatency(System.nanoTime() - start);
+            }
+            return outcome;
+        }, executor);
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            Method virtualThreads = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreads.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Virtual threads need Java 21, requests are sent on platform threads before that.
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "bigquery-insert-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    /**
+     * Returns whether BigQuery may accept a rejected row if it is sent again: the row was only
+     * stopped because another row of its request was invalid, or it hit a transient backend error.
+     * Rows with any other reason, such as <code>invalid</code>, fail again when resent.
+     * @param errors The errors of the row.
+     * @return True if every error of the row has a transient reason.
+     */
+    static boolean isRetryable(List<BigQueryError> errors) {
+        if (errors == null || errors.isEmpty()) {
+            return false;
+        }
+        for (BigQueryError error : errors) {
+            if (!RETRYABLE_REASONS.contains(error.getReason())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The rows of an insert builder, with their insert row content if it was converted beforehand and
+     * the insertIds of the rows sent so far, which are reused when the rows are sent again.
+     */
+    static final class Rows {
+        private final List<Object> objects;
+        private final List<Map<String, Object>> contents;
+        private final InsertIdStrategy insertIdStrategy;
+        private final String[] insertIds;
+
+        /**
+         * @param objects The rows.
+         * @param contents The rows already converted to insert row content, or null to convert them while sending.
+         * @param insertIdStrategy Gives the insertIds of the rows.
+         * @param insertIds The insertIds of the rows, null until a row is first sent.
+         */
+        Rows(List<Object> objects, List<Map<String, Object>> contents, InsertIdStrategy insertIdStrategy, String[] insertIds) {
+            this.objects = objects;
+            this.contents = contents;
+            this.insertIdStrategy = insertIdStrategy;
+            this.insertIds = insertIds;
+        }
+
+        int size() {
+            return objects.size();
+        }
+
+        Map<String, Object> content(int row) {
+            return contents != null ? contents.get(row) : BigQueryObjectWriter.insertRowContent(objects.get(row));
+        }
+
+        /**
+         * @return The insertId of the row, computed when the row is first sent.
+         */
+        String insertId(int row) {
+            if (insertIds[row] == null) {
+                insertIds[row] = insertIdStrategy.insertId(objects.get(row));
+            }
+            return insertIds[row];
+        }
+    }
+
+    /**
+     * An <code>insertAll</code> request together with the indexes of its rows.
+     */
+    static final class PendingChunk {
+        private final InsertAllRequest request;
+        private final int[] rows;
+        private final int attempt;
+        private final long estimatedBytes;
+
+        private PendingChunk(InsertAllRequest request, int[] rows, int attempt, long estimatedBytes) {
+            this.request = request;
+            this.rows = rows;
+            this.attempt = attempt;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        /**
+         * @return The indexes of the rows of the request in the builder.
+         */
+        int[] getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * The outcome of a request: the chunk with its row errors if BigQuery answered, or the failure of the request.
+     */
+    static final class Outcome {
+        private final PendingChunk pending;
+        private final InsertResult.Chunk chunk;
+        private final RuntimeException failure;
+
+        private Outcome(PendingChunk pending, InsertResult.Chunk chunk, RuntimeException failure) {
+            this.pending = pending;
+            this.chunk = chunk;
+            this.failure = failure;
+        }
+
+        PendingChunk getPending() {
+            return pending;
+        }
+
+        /**
+         * @return The chunk, or null if the request failed.
+         */
+        InsertResult.Chunk getChunk() {
+            return chunk;
+        }
+
+        /**
+         * @return The failure of the request, or null if BigQuery answered.
+         */
+        RuntimeException getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Converts the rows into requests lazily, starting a new request when the next row would
+     * exceed the row or byte limit. A single row larger than the byte limit gets a request of its own.
+     */
+    private final class ChunkIterator implements Iterator<PendingChunk> {
+        private final Rows source;
+        // The indexes of the rows to send, or null for all rows.
+        private final int[] positions;
+        private final int attempt;
+        private final int maxRows;
+        private final long maxBytes;
+        private final int size;
+        private int next;
+        // The first row of the next request, converted while filling the previous one.
+        private InsertAllRequest.RowToInsert carriedRow;
+        private long carriedBytes;
+
+        private ChunkIterator(Rows source, int[] positions, int attempt, int maxRows, long maxBytes) {
+            this.source = source;
+            this.positions = positions;
+            this.attempt = attempt;
+            this.maxRows = maxRows;
+            this.maxBytes = maxBytes;
+            this.size = positions != null ? positions.length : source.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return carriedRow != null || next < size;
+        }
+
+        @Override
+        public PendingChunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            InsertAllRequest.Builder builder = InsertAllRequest.newBuilder(tableId);
+            int first = carriedRow != null ? next - 1 : next;
+            int rows = 0;
+            long bytes = 0;
+            if (carriedRow != null) {
+                builder.addRow(carriedRow);
+                rows++;
+                bytes += carriedBytes;
+                carriedRow = null;
+            }
+            while (next < size) {
+                int row = position(next);
+                Map<String, Object> rowContent = source.content(row);
+                String insertId = source.insertId(row);
+                if (insertId == null && hedgePolicy != null) {
+                    throw new IllegalStateException("Hedged requests need an insertId for every row to avoid duplicate rows, "
+                            + "but row " + row + " has none.");
+                }
+                long rowBytes = RowSizeEstimator.estimateRow(rowContent) + RowSizeEstimator.estimateInsertId(insertId);
+                InsertAllRequest.RowToInsert rowToInsert = insertId != null
+                        ? InsertAllRequest.RowToInsert.of(insertId, rowContent)
+                        : InsertAllRequest.RowToInsert.of(rowContent);
+                next++;
+                if (rows > 0 && (rows == maxRows || bytes + rowBytes > maxBytes)) {
+                    carriedRow = rowToInsert;
+                    carriedBytes = rowBytes;
+                    break;
+                }
+                builder.addRow(rowToInsert);
+                rows++;
+                bytes += rowBytes;
+            }
+            int[] indexes = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                indexes[i] = position(first + i);
+            }
+            return new PendingChunk(builder.build(), indexes, attempt, bytes);
+        }
+
+        private int position(int i) {
+            return positions != null ? positions[i] : i;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+/**
+ * Thrown by {@link BigQueryObjectWriter.InsertBuilder#execute()} when BigQuery rejected rows. All requests
+ * have been sent, so the rows that are not listed in the result's errors were inserted.
+ */
+public class InsertException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient InsertResult result;
+
+    InsertException(String message, InsertResult result) {
+        super(message);
+        this.result = result;
+    }
+
+    /**
+     * @return The result of the insert, with the errors of the rejected rows per request.
+     */
+    public InsertResult getResult() {
+        return result;
+    }
+}
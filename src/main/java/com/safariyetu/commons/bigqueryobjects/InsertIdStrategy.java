@@ -0,0 +1,66 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Gives the <code>insertId</code> of a row sent with <code>insertAll</code>, which BigQuery uses to
+ * drop the rows it receives again within about a minute. With an insertId, the requests that
+ * {@link BigQueryObjectWriter.InsertBuilder#execute()} resends after a timeout or a transient failure
+ * do not duplicate rows that were already inserted.
+ *
+ * <p>The id of a row is computed once per insert builder, the first time the row is sent, and kept
+ * for all its retries, so that even {@link #randomUuid()} gives the same id to every copy of a row.
+ * The Storage Write API does not use insertIds.</p>
+ */
+@FunctionalInterface
+public interface InsertIdStrategy {
+
+    /**
+     * @param row A row object.
+     * @return The insertId of the row, at most 128 characters, or null to send the row without one.
+     */
+    String insertId(Object row);
+
+    /**
+     * @return A strategy sending rows without insertId, the default. BigQuery does not deduplicate
+     *         these rows, which allows higher streaming throughput.
+     */
+    static InsertIdStrategy none() {
+        return row -> null;
+    }
+
+    /**
+     * @return A strategy using a random UUID per row, which makes the retries of an insert idempotent.
+     */
+    static InsertIdStrategy randomUuid() {
+        return row -> UUID.randomUUID().toString();
+    }
+
+    /**
+     * Returns a strategy using a 128-bit hash of the JSON encoding of the row, as written by the
+     * compiled plan of its class. The same row sent by different inserts or processes gets the same id,
+     * and rows with equal content are deduplicated, so the rows need a distinguishing field such as
+     * an event id or a timestamp.
+     * @return The content hash strategy.
+     */
+    static InsertIdStrategy contentHash() {
+        return row -> Hashing.murmur3_128().hashBytes(JsonRowEncoder.encode(row)).toString();
+    }
+
+    /**
+     * Returns a strategy using a key of the row, e.g. an event id that is unique for each logical row.
+     * @param keyExtractor Gives the key of a row, or null for no insertId.
+     * @param <T> The row type.
+     * @return The key strategy.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> InsertIdStrategy key(Function<? super T, ?> keyExtractor) {
+        return row -> {
+            Object key = keyExtractor.apply((T) row);
+            return key == null ? null : key.toString();
+        };
+    }
+}
@@ -0,0 +1,211 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.cloud.bigquery.BigQueryError;
+
+/**
+ * The outcome of {@link BigQueryObjectWriter.InsertBuilder#execute()}: the requests the rows were split
+ * into, including the retries of rejected rows, and the outcome of each row. Row indexes are
+ * positions in the order the rows were added to the builder.
+ */
+public final class InsertResult {
+
+    private final int rowCount;
+    private final List<Chunk> chunks;
+    // The errors of the rows that were not inserted, after the retries.
+    private final Map<Long, List<BigQueryError>> insertErrors;
+
+    InsertResult(int rowCount, List<Chunk> chunks) {
+        this(rowCount, chunks, errorsOf(chunks));
+    }
+
+    InsertResult(int rowCount, List<Chunk> chunks, Map<Long, List<BigQueryError>> insertErrors) {
+        this.rowCount = rowCount;
+        this.chunks = Collections.unmodifiableList(new ArrayList<>(chunks));
+        this.insertErrors = Collections.unmodifiableMap(new LinkedHashMap<>(insertErrors));
+    }
+
+    /**
+     * @return The number of rows of the insert.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The requests the rows were sent in, in row order, followed by the retries in attempt and row order.
+     */
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return True if rows were not inserted.
+     */
+    public boolean hasErrors() {
+        return !insertErrors.isEmpty();
+    }
+
+    /**
+     * @return The number of rows that were not inserted.
+     */
+    public int getFailedRowCount() {
+        return insertErrors.size();
+    }
+
+    /**
+     * @return The errors of the rows that were not inserted, keyed by row index. A row rejected for a
+     *         transient reason and inserted by a retry is not listed.
+     */
+    public Map<Long, List<BigQueryError>> getInsertErrors() {
+        return insertErrors;
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return True if the row was inserted, possibly after retries.
+     */
+    public boolean isInserted(long row) {
+        return row >= 0 && row < rowCount && !insertErrors.containsKey(row);
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The number of requests the row was sent in, 1 if it was not retried.
+     */
+    public int getAttempts(long row) {
+        int attempts = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.getAttempt() > attempts && chunk.containsRow(row)) {
+                attempts = chunk.getAttempt();
+            }
+        }
+        return attempts;
+    }
+
+    /**
+     * @return The number of rows that were sent more than once.
+     */
+    public int getRetriedRowCount() {
+        Set<Long> retried = new HashSet<>();
+        for (Chunk chunk : chunks) {
+            if (chunk.getAttempt() > 1) {
+                for (int row : chunk.rows) {
+                    retried.add((long) row);
+                }
+            }
+        }
+        return retried.size();
+    }
+
+    private static Map<Long, List<BigQueryError>> errorsOf(List<Chunk> chunks) {
+        Map<Long, List<BigQueryError>> errors = new LinkedHashMap<>();
+        for (Chunk chunk : chunks) {
+            errors.putAll(chunk.getInsertErrors());
+        }
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "InsertResult{rows=" + rowCount + ", requests=" + chunks.size() + ", retriedRows=" + getRetriedRowCount()
+                + ", failedRows=" + getFailedRowCount() + "}";
+    }
+
+    /**
+     * The rows sent in one request: a contiguous range on the first attempt, and the rows rejected
+     * for a transient reason by the previous attempt on a retry.
+     */
+    public static final class Chunk {
+        private final int[] rows;
+        private final long estimatedBytes;
+        private final int attempt;
+        private final Map<Long, List<BigQueryError>> insertErrors;
+
+        Chunk(int firstRow, int rowCount, long estimatedBytes, Map<Long, List<BigQueryError>> insertErrors) {
+            this(range(firstRow, rowCount), estimatedBytes, 1, insertErrors);
+        }
+
+        Chunk(int[] rows, long estimatedBytes, int attempt, Map<Long, List<BigQueryError>> insertErrors) {
+            this.rows = rows;
+            this.estimatedBytes = estimatedBytes;
+            this.attempt = attempt;
+            this.insertErrors = Collections.unmodifiableMap(new LinkedHashMap<>(insertErrors));
+        }
+
+        /**
+         * @return The index of the first row of the request.
+         */
+        public int getFirstRow() {
+            return rows[0];
+        }
+
+        /**
+         * @return The number of rows of the request.
+         */
+        public int getRowCount() {
+            return rows.length;
+        }
+
+        /**
+         * @return The indexes of the rows of the request, in ascending order.
+         */
+        public int[] getRows() {
+            return rows.clone();
+        }
+
+        /**
+         * @return 1 for the first request of the rows, and the retry number plus 1 for retries.
+         */
+        public int getAttempt() {
+            return attempt;
+        }
+
+        /**
+         * @return The estimated size of the rows in the JSON request body.
+         */
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        /**
+         * @return True if BigQuery rejected rows of the request.
+         */
+        public boolean hasErrors() {
+            return !insertErrors.isEmpty();
+        }
+
+        /**
+         * @return The errors of the rejected rows, keyed by row index.
+         */
+        public Map<Long, List<BigQueryError>> getInsertErrors() {
+            return insertErrors;
+        }
+
+        boolean containsRow(long row) {
+            return row <= Integer.MAX_VALUE && Arrays.binarySearch(rows, (int) row) >= 0;
+        }
+
+        private static int[] range(int firstRow, int rowCount) {
+            int[] rows = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                rows[i] = firstRow + i;
+            }
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk{firstRow=" + getFirstRow() + ", rows=" + rows.length + ", attempt=" + attempt
+                    + ", estimatedBytes=" + estimatedBytes + ", failedRows=" + insertErrors.size() + "}";
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that writes JSON tokens directly as UTF-8 bytes.
+ * Instances are not thread-safe and are meant to be reused, see {@link JsonRowEncoder}.
+ */
+final class JsonOutput {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int count;
+
+    JsonOutput(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Encodes a field name as the bytes of <code>"name":</code>, to be written with {@link #writeRaw(byte[])}.
+     * @param name The field name.
+     * @return The encoded name, including quotes and colon.
+     */
+    static byte[] encodeName(String name) {
+        JsonOutput out = new JsonOutput(name.length() + 8);
+        out.writeString(name);
+        out.writeByte(':');
+        return out.toByteArray();
+    }
+
+    int size() {
+        return count;
+    }
+
+    int capacity() {
+        return buf.length;
+    }
+
+    void reset() {
+        count = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    void writeByte(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    void writeRaw(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * Writes a string that is known to contain only ASCII characters that need no escaping, without quotes.
+     */
+    void writeAscii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buf[count++] = (byte) value.charAt(i);
+        }
+    }
+
+    void writeBoolean(boolean value) {
+        writeRaw(value ? TRUE : FALSE);
+    }
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(MIN_LONG);
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+        int start = count;
+        do {
+            buf[count++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        // Digits were written least significant first.
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte digit = buf[i];
+            buf[i] = buf[j];
+            buf[j] = digit;
+        }
+    }
+
+    /**
+     * Writes a double as a JSON number. NaN and infinities, which JSON numbers cannot represent,
+     * are written as the quoted strings BigQuery accepts for FLOAT columns.
+     */
+    void writeDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeByte('"');
+            writeAscii(Double.toString(value));
+            writeByte('"');
+        } else if (value != 0 && value == (long) value && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+            writeAscii(".0");
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    void writeFloat(float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            writeDouble(value);
+        } else {
+            writeAscii(Float.toString(value));
+        }
+    }
+
+    /**
+     * Writes a quoted, escaped JSON string encoded as UTF-8.
+     */
+    void writeString(String value) {
+        int length = value.length();
+        // Escaped and non-ASCII chars reserve more space as they are written, ASCII needs one byte per char.
+        ensureCapacity(length + 2);
+        buf[count++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                if (count == buf.length) {
+                    ensureCapacity(1);
+                }
+                buf[count++] = (byte) c;
+            } else {
+                writeSpecialChar(value, i, c);
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+            }
+        }
+        ensureCapacity(1);
+        buf[count++] = '"';
+    }
+
+    private void writeSpecialChar(String value, int index, char c) {
+        ensureCapacity(6);
+        switch (c) {
+            case '"':
+                buf[count++] = '\\';
+                buf[count++] = '"';
+                return;
+            case '\\':
+                buf[count++] = '\\';
+                buf[count++] = '\\';
+                return;
+            case '\n':
+                buf[count++] = '\\';
+                buf[count++] = 'n';
+                return;
+            case '\r':
+                buf[count++] = '\\';
+                buf[count++] = 'r';
+                return;
+            case '\t':
+                buf[count++] = '\\';
+                buf[count++] = 't';
+                return;
+            default:
+                break;
+        }
+        if (c < 0x20) {
+            buf[count++] = '\\';
+            buf[count++] = 'u';
+            buf[count++] = '0';
+            buf[count++] = '0';
+            buf[count++] = HEX[c >> 4];
+            buf[count++] = HEX[c & 0xF];
+        } else if (c < 0x800) {
+            buf[count++] = (byte) (0xC0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+            buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+            buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            // Unpaired surrogates cannot be encoded in UTF-8, replace them like String.getBytes does.
+            buf[count++] = '?';
+        } else {
+            buf[count++] = (byte) (0xE0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = count + additional;
+        if (required > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(required, buf.length * 2));
+        }
+    }
+}
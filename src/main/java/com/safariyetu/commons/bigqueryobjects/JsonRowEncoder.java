@@ -0,0 +1,161 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Serializes objects directly to BigQuery-compatible JSON bytes, without building the intermediate
+ * maps of {@link BigQueryObjectWriter#objectToMap(Object)}.
+ *
+ * <p>The output follows the same type rules as the map conversion: <code>BigDecimal</code> is written
+ * as its plain string, <code>java.time</code> types as ISO 8601 strings, <code>Date</code> as an
+ * <code>Instant</code> string, and null fields are omitted. Rows are written as newline-delimited
+ * JSON (NDJSON) by {@link #writeRows(Iterable, OutputStream)}, which is the format of BigQuery JSON
+ * load files. Each thread reuses its own scratch buffer, so encoding does not allocate per row
+ * beyond the returned or written bytes.</p>
+ */
+public final class JsonRowEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    // Buffers that grew beyond this size for a large row are not kept for reuse.
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<JsonOutput> SCRATCH = ThreadLocal.withInitial(() -> new JsonOutput(INITIAL_BUFFER_SIZE));
+
+    private JsonRowEncoder() {
+    }
+
+    /**
+     * Serializes an object to a JSON object.
+     * @param obj The object to serialize.
+     * @return The UTF-8 bytes of the JSON object.
+     */
+    public static byte[] encode(Object obj) {
+        JsonOutput out = scratch();
+        try {
+            writeObject(obj, out);
+            return out.toByteArray();
+        } finally {
+            release(out);
+        }
+    }
+
+    /**
+     * Serializes a value that has already been converted to a BigQuery-compatible representation,
+     * such as the content of an insert row.
+     * @param value The value to serialize.
+     * @return The UTF-8 bytes of the JSON value.
+     */
+    static byte[] encodeValue(Object value) {
+        JsonOutput out = scratch();
+        try {
+            writeValue(value, out);
+            return out.toByteArray();
+        } finally {
+            release(out);
+        }
+    }
+
+    /**
+     * Serializes objects as newline-delimited JSON, one object per line.
+     * @param objects The objects to serialize.
+     * @param stream The stream to write to. It is not closed.
+     * @return The number of bytes written.
+     * @throws IOException if writing to the stream fails.
+     */
+    public static long writeRows(Iterable<?> objects, OutputStream stream) throws IOException {
+        JsonOutput out = scratch();
+        long written = 0;
+        try {
+            for (Object obj : objects) {
+                out.reset();
+                writeObject(obj, out);
+                out.writeByte('\n');
+                out.writeTo(stream);
+                written += out.size();
+            }
+        } finally {
+            release(out);
+        }
+        return written;
+    }
+
+    private static JsonOutput scratch() {
+        JsonOutput out = SCRATCH.get();
+        out.reset();
+        return out;
+    }
+
+    private static void release(JsonOutput out) {
+        if (out.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            SCRATCH.remove();
+        }
+    }
+
+    /**
+     * Writes an object as a JSON object, using the generated writer of its class if available,
+     * or the cached serialization plan otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    static void writeObject(Object obj, JsonOutput out) {
+        RowWriter<Object> generated = (RowWriter<Object>) GeneratedRows.writerFor(obj.getClass());
+        if (generated != null) {
+            writeValue(generated.toMap(obj), out);
+        } else {
+            SerializationPlan.forClass(obj.getClass()).writeJson(obj, out);
+        }
+    }
+
+    /**
+     * Writes a value that has already been converted to a BigQuery-compatible representation:
+     * strings, numbers, booleans, maps and collections of these.
+     */
+    static void writeValue(Object value, JsonOutput out) {
+        if (value == null) {
+            out.writeAscii("null");
+        } else if (value instanceof String) {
+            out.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeAscii(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number) {
+            out.writeAscii(value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Map) {
+            out.writeByte('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    out.writeByte(',');
+                }
+                first = false;
+                out.writeString(String.valueOf(entry.getKey()));
+                out.writeByte(':');
+                writeValue(entry.getValue(), out);
+            }
+            out.writeByte('}');
+        } else if (value instanceof Iterable) {
+            out.writeByte('[');
+            boolean first = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!first) {
+                    out.writeByte(',');
+                }
+                first = false;
+                writeValue(element, out);
+            }
+            out.writeByte(']');
+        } else {
+            out.writeString(value.toString());
+        }
+    }
+}
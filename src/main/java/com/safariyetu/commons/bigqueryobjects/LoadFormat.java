@@ -0,0 +1,19 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+/**
+ * The format of the file staged by {@link BigQueryObjectWriter.InsertBuilder#load()}.
+ */
+public enum LoadFormat {
+    /** Gzip-compressed newline-delimited JSON, loaded with the derived schema. */
+    JSON,
+    /**
+     * A snappy-compressed Avro container file written by {@link AvroRowWriter}, loaded with Avro
+     * logical types. Faster to load than JSON and keeps exact types, but all rows must be of one class.
+     */
+    AVRO,
+    /**
+     * A snappy-compressed Parquet file written by {@link ParquetRowWriter}, loaded with list inference.
+     * Keeps exact types like Avro and is columnar, but all rows must be of one class.
+     */
+    PARQUET
+}
@@ -0,0 +1,160 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.avro.file.CodecFactory;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.TableDataWriteChannel;
+import com.google.cloud.bigquery.WriteChannelConfiguration;
+
+/**
+ * Runs a load job for a batch of objects: stages the rows to a compressed local file, uploads the
+ * file through {@link BigQuery#writer(WriteChannelConfiguration)} and waits for the job to complete.
+ * The staged file is deleted once the load has finished or failed.
+ */
+final class LoadJobRunner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BigQuery bigquery;
+    private final Path stagingDirectory;
+
+    /**
+     * @param bigquery The BigQuery client.
+     * @param stagingDirectory The directory of the staged files, or null for the default temporary directory.
+     */
+    LoadJobRunner(BigQuery bigquery, Path stagingDirectory) {
+        this.bigquery = bigquery;
+        this.stagingDirectory = stagingDirectory;
+    }
+
+    /**
+     * Stages the objects and loads them with the given configuration.
+     * @param objects The objects to load.
+     * @param format The format of the staged file, which must match the configuration's format.
+     * @param configuration The load configuration, including the destination table and format.
+     * @return The completed job.
+     */
+    Job load(List<Object> objects, LoadFormat format, WriteChannelConfiguration configuration) {
+        Path file = null;
+        try {
+            file = stage(objects, format);
+            return upload(file, configuration);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to stage or upload rows for a BigQuery load job.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the BigQuery load job.", e);
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private Path stage(List<Object> objects, LoadFormat format) throws IOException {
+        switch (format) {
+            case AVRO:
+                return stageAvro(objects);
+            case PARQUET:
+                return stageParquet(objects);
+            default:
+                return stageJson(objects);
+        }
+    }
+
+    /**
+     * Writes the objects as gzip-compressed newline-delimited JSON.
+     */
+    private Path stageJson(List<Object> objects) throws IOException {
+        Path file = createStagingFile(".json.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+            JsonRowEncoder.writeRows(objects, out);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Writes the objects, all of one class, as a snappy-compressed Avro container file.
+     */
+    private Path stageAvro(List<Object> objects) throws IOException {
+        Path file = createStagingFile(".avro");
+        try (AvroRowWriter out = AvroRowWriter.open(objects.get(0).getClass(),
+                new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE), CodecFactory.snappyCodec())) {
+            out.writeAll(objects);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Writes the objects, all of one class, as a snappy-compressed Parquet file.
+     */
+    private Path stageParquet(List<Object> objects) throws IOException {
+        Path file = createStagingFile(".parquet");
+        try (ParquetRowWriter out = ParquetRowWriter.open(objects.get(0).getClass(), file)) {
+            out.writeAll(objects);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private Path createStagingFile(String suffix) throws IOException {
+        return stagingDirectory == null
+                ? Files.createTempFile("bigquery-load-", suffix)
+                : Files.createTempFile(stagingDirectory, "bigquery-load-", suffix);
+    }
+
+    private Job upload(Path file, WriteChannelConfiguration configuration) throws IOException, InterruptedException {
+        TableDataWriteChannel writer = bigquery.writer(configuration);
+        // Closing the stream closes the channel, which completes the upload and starts the job.
+        try (OutputStream out = new BufferedOutputStream(Channels.newOutputStream(writer), BUFFER_SIZE)) {
+            Files.copy(file, out);
+        }
+
+        Job job = writer.getJob();
+        if (job == null) {
+            throw new RuntimeException("The BigQuery load job was not created for table " + configuration.getDestinationTable());
+        }
+        job = job.waitFor();
+        if (job == null) {
+            throw new RuntimeException("The BigQuery load job no longer exists for table " + configuration.getDestinationTable());
+        }
+        BigQueryError error = job.getStatus().getError();
+        if (error != null) {
+            if (job.getStatus().getExecutionErrors() != null) {
+                job.getStatus().getExecutionErrors().forEach(executionError -> {
+                    System.err.println("Error loading rows: " + executionError);
+                });
+            }
+            throw new RuntimeException("Failed to load rows into BigQuery: " + error.getMessage());
+        }
+        return job;
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete staged file " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+/**
+ * What {@link BufferedBigQueryWriter#add(Object)} does with a row that does not fit in the buffer
+ * budget, see {@link BufferedBigQueryWriter.Builder#maxBufferedBytes(long)}.
+ */
+public enum OverflowPolicy {
+    /** The producer waits until sent batches free enough of the budget. */
+    BLOCK,
+    /** The row is rejected with a <code>RejectedExecutionException</code>. */
+    FAIL,
+    /**
+     * The oldest rows that are not being sent yet are dropped to make room for the row. The row is
+     * dropped itself if the rows being sent use the whole budget.
+     */
+    DROP_OLDEST,
+    /** The row is dropped. */
+    DROP_NEWEST
+}
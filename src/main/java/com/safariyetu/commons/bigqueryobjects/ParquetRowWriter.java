@@ -0,0 +1,611 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Type;
+import org.apache.parquet.schema.Types;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+
+/**
+ * Streams objects into a Parquet file, with the Parquet schema derived from the BigQuery schema of
+ * their class.
+ *
+ * <p>The BigQuery types map to the Parquet types read by BigQuery load jobs:</p>
+ * <ul>
+ * <li><code>INTEGER</code>, <code>FLOAT</code> and <code>BOOLEAN</code> -> <code>INT64</code>, <code>DOUBLE</code>
+ * and <code>BOOLEAN</code>, and <code>STRING</code> -> <code>BINARY</code> annotated as a string.</li>
+ * <li><code>NUMERIC</code> -> <code>BINARY</code> with the <code>DECIMAL(38, 9)</code> annotation, rejecting values
+ * with more fractional digits, and <code>BYTES</code> -> <code>BINARY</code>.</li>
+ * <li><code>TIMESTAMP</code> and <code>DATETIME</code> -> <code>INT64</code> microsecond timestamps, adjusted to UTC
+ * for <code>TIMESTAMP</code> only, <code>TIME</code> -> <code>INT64</code> microseconds and <code>DATE</code> ->
+ * <code>INT32</code> days.</li>
+ * <li><code>RECORD</code> -> group and <code>REPEATED</code> -> the three-level <code>LIST</code> group, which
+ * BigQuery reads as an array with list inference enabled.</li>
+ * </ul>
+ *
+ * <p>Rows are buffered in column form up to the row group size and flushed as a row group, so memory
+ * stays bounded by the row group size whatever the number of rows. String columns are dictionary
+ * encoded, falling back to plain encoding once a column chunk's dictionary outgrows the dictionary
+ * page size, so only low-cardinality columns keep it. Instances are not thread-safe.</p>
+ */
+public final class ParquetRowWriter implements Closeable {
+
+    /** The default row group size, which bounds the rows buffered in memory. */
+    public static final long DEFAULT_ROW_GROUP_SIZE = 32L * 1024 * 1024;
+
+    private static final int NUMERIC_PRECISION = 38;
+    private static final int NUMERIC_SCALE = 9;
+    private static final String LIST_FIELD = "list";
+    private static final String ELEMENT_FIELD = "element";
+
+    private static final ClassValue<GroupWriter> WRITERS = new ClassValue<GroupWriter>() {
+        @Override
+        protected GroupWriter computeValue(Class<?> type) {
+            com.google.cloud.bigquery.Schema schema = BigQueryObjectWriter.schemaOf(type);
+            return new GroupWriter(type, schema.getFields(), parquetSchemaOf(schema, type.getSimpleName()));
+        }
+    };
+
+    private final Class<?> type;
+    private final MessageType schema;
+    private final ParquetWriter<Object> writer;
+
+    private ParquetRowWriter(Class<?> type, MessageType schema, ParquetWriter<Object> writer) {
+        this.type = type;
+        this.schema = schema;
+        this.writer = writer;
+    }
+
+    /**
+     * Creates a Parquet file for objects of the given class, with snappy compression and the
+     * default row group size. An existing file is overwritten.
+     * @param type The class of the objects.
+     * @param file The file to write.
+     * @return The writer.
+     * @throws IOException if the file cannot be created.
+     */
+    public static ParquetRowWriter open(Class<?> type, Path file) throws IOException {
+        return open(type, new LocalOutputFile(file), CompressionCodecName.SNAPPY, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Creates a Parquet file for objects of the given class. An existing file is overwritten.
+     * @param type The class of the objects.
+     * @param file The file to write, e.g. a <code>LocalOutputFile</code>.
+     * @param codec The page compression.
+     * @param rowGroupSize The size in bytes of the row groups, which bounds the rows buffered in memory.
+     * @return The writer.
+     * @throws IOException if the file cannot be created.
+     */
+    public static ParquetRowWriter open(Class<?> type, OutputFile file, CompressionCodecName codec, long rowGroupSize) throws IOException {
+        GroupWriter groupWriter = WRITERS.get(type);
+        MessageType schema = (MessageType) groupWriter.type;
+        ParquetWriter<Object> writer = new Builder(file, new PojoWriteSupport(groupWriter, schema))
+                .withConf(new PlainParquetConfiguration())
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .withCompressionCodec(codec)
+                .withRowGroupSize(rowGroupSize)
+                .withDictionaryEncoding(true)
+                .build();
+        return new ParquetRowWriter(type, schema, writer);
+    }
+
+    /**
+     * Converts a BigQuery schema to a Parquet message type.
+     * @param schema The BigQuery schema, e.g. from {@link BigQueryObjectWriter#getSchemaFromObjects(List)}.
+     * @param name The name of the message.
+     * @return The Parquet schema.
+     */
+    public static MessageType parquetSchemaOf(com.google.cloud.bigquery.Schema schema, String name) {
+        return new MessageType(name, fieldTypes(schema.getFields()));
+    }
+
+    /**
+     * @return The Parquet schema of the file.
+     */
+    public MessageType getSchema() {
+        return schema;
+    }
+
+    /**
+     * Appends an object to the file. A row group is written once the buffered rows reach the row group size.
+     * @param obj The object, an instance of the writer's class.
+     * @throws IOException if writing fails.
+     */
+    public void write(Object obj) throws IOException {
+        if (obj.getClass() != type) {
+            throw new IllegalArgumentException("Expected an instance of " + type.getName() + " but got " + obj.getClass().getName());
+        }
+        writer.write(obj);
+    }
+
+    /**
+     * Appends objects to the file.
+     * @param objects The objects, instances of the writer's class.
+     * @throws IOException if writing fails.
+     */
+    public void writeAll(Iterable<?> objects) throws IOException {
+        for (Object obj : objects) {
+            write(obj);
+        }
+    }
+
+    /**
+     * @return The number of bytes written to the file or buffered for the current row group.
+     */
+    public long getDataSize() {
+        return writer.getDataSize();
+    }
+
+    /**
+     * Writes the buffered row group and the file footer, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static List<Type> fieldTypes(FieldList fields) {
+        List<Type> types = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            if (field.getMode() == Field.Mode.REPEATED) {
+                // BigQuery arrays are never null, a missing collection is written as an empty list.
+                types.add(Types.requiredList().element(valueType(field, Type.Repetition.REQUIRED, ELEMENT_FIELD)).named(field.getName()));
+            } else {
+                types.add(valueType(field, Type.Repetition.OPTIONAL, field.getName()));
+            }
+        }
+        return types;
+    }
+
+    private static Type valueType(Field field, Type.Repetition repetition, String name) {
+        if (LegacySQLTypeName.RECORD.equals(field.getType())) {
+            FieldList subFields = field.getSubFields() == null ? FieldList.of() : field.getSubFields();
+            return new GroupType(repetition, name, fieldTypes(subFields));
+        }
+        return ValueWriter.of(field.getType()).type(repetition, name);
+    }
+
+    /**
+     * A builder for a writer with a fixed write support, configured without Hadoop.
+     */
+    private static final class Builder extends ParquetWriter.Builder<Object, Builder> {
+        private final WriteSupport<Object> writeSupport;
+
+        private Builder(OutputFile file, WriteSupport<Object> writeSupport) {
+            super(file);
+            this.writeSupport = writeSupport;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<Object> getWriteSupport(ParquetConfiguration conf) {
+            return writeSupport;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected WriteSupport<Object> getWriteSupport(org.apache.hadoop.conf.Configuration conf) {
+            return writeSupport;
+        }
+    }
+
+    /**
+     * Writes the objects of the file through their class's {@link GroupWriter}.
+     */
+    private static final class PojoWriteSupport extends WriteSupport<Object> {
+        private final GroupWriter groupWriter;
+        private final MessageType schema;
+        private RecordConsumer consumer;
+
+        private PojoWriteSupport(GroupWriter groupWriter, MessageType schema) {
+            this.groupWriter = groupWriter;
+            this.schema = schema;
+        }
+
+        @Override
+        public WriteContext init(ParquetConfiguration configuration) {
+            return new WriteContext(schema, Collections.<String, String>emptyMap());
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public WriteContext init(org.apache.hadoop.conf.Configuration configuration) {
+            return new WriteContext(schema, Collections.<String, String>emptyMap());
+        }
+
+        @Override
+        public void prepareForWrite(RecordConsumer recordConsumer) {
+            this.consumer = recordConsumer;
+        }
+
+        @Override
+        public void write(Object record) {
+            consumer.startMessage();
+            groupWriter.writeFields(record, consumer);
+            consumer.endMessage();
+        }
+    }
+
+    /**
+     * Writes a non-null value to the current field.
+     */
+    private interface ParquetValueWriter {
+        void write(Object value, RecordConsumer consumer);
+    }
+
+    /**
+     * Writes the fields of one class in schema order, with a nested writer per RECORD column.
+     */
+    private static final class GroupWriter implements ParquetValueWriter {
+        private final GroupType type;
+        private final FieldWriter[] fields;
+
+        private GroupWriter(Class<?> clazz, FieldList schemaFields, GroupType type) {
+            this.type = type;
+            DeserializationPlan plan = DeserializationPlan.forClass(clazz);
+            List<FieldWriter> writers = new ArrayList<>(schemaFields.size());
+            for (int i = 0; i < schemaFields.size(); i++) {
+                Field schemaField = schemaFields.get(i);
+                boolean repeated = schemaField.getMode() == Field.Mode.REPEATED;
+                FieldAccessor accessor = plan.accessor(schemaField.getName());
+                if (accessor == null) {
+                    // Kept in the schema but never set, as generated writers may map fields differently.
+                    writers.add(new FieldWriter(schemaField.getName(), i, null, null, repeated));
+                    continue;
+                }
+                ParquetValueWriter valueWriter;
+                if (LegacySQLTypeName.RECORD.equals(schemaField.getType())) {
+                    FieldList subFields = schemaField.getSubFields() == null ? FieldList.of() : schemaField.getSubFields();
+                    GroupType fieldType = type.getType(i).asGroupType();
+                    GroupType recordType = repeated
+                            ? fieldType.getType(0).asGroupType().getType(0).asGroupType()
+                            : fieldType;
+                    valueWriter = new GroupWriter(accessor.getValueClass(), subFields, recordType);
+                } else {
+                    valueWriter = new CodecWriter(TypeCodecs.codecFor(accessor.getValueClass()), ValueWriter.of(schemaField.getType()));
+                }
+                writers.add(new FieldWriter(schemaField.getName(), i, accessor, valueWriter, repeated));
+            }
+            this.fields = writers.toArray(new FieldWriter[0]);
+        }
+
+        @Override
+        public void write(Object value, RecordConsumer consumer) {
+            consumer.startGroup();
+            writeFields(value, consumer);
+            consumer.endGroup();
+        }
+
+        private void writeFields(Object obj, RecordConsumer consumer) {
+            for (FieldWriter field : fields) {
+                field.write(obj, consumer);
+            }
+        }
+    }
+
+    /**
+     * Encodes values with the codec of their type before writing them.
+     */
+    private static final class CodecWriter implements ParquetValueWriter {
+        private final TypeCodec<Object> codec;
+        private final ValueWriter writer;
+
+        private CodecWriter(TypeCodec<Object> codec, ValueWriter writer) {
+            this.codec = codec;
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(Object value, RecordConsumer consumer) {
+            writer.write(codec.encode(value), consumer);
+        }
+    }
+
+    private static final class FieldWriter {
+        private final String name;
+        private final int index;
+        private final FieldAccessor accessor;
+        private final ParquetValueWriter writer;
+        private final boolean repeated;
+        private final PrimitiveArray primitiveArray;
+
+        private FieldWriter(String name, int index, FieldAccessor accessor, ParquetValueWriter writer, boolean repeated) {
+            this.name = name;
+            this.index = index;
+            this.accessor = accessor;
+            this.writer = writer;
+            this.repeated = repeated;
+            this.primitiveArray = accessor == null ? null : PrimitiveArray.of(accessor.getField().getType());
+        }
+
+        private void write(Object obj, RecordConsumer consumer) {
+            if (primitiveArray != null) {
+                writePrimitiveList(accessor.get(obj), consumer);
+                return;
+            }
+            if (repeated) {
+                writeList(accessor == null ? null : (Collection<?>) accessor.get(obj), consumer);
+                return;
+            }
+            if (accessor == null) {
+                // Null values are written by leaving the field out.
+                return;
+            }
+            // Primitive fields are never null and are read without boxing.
+            switch (accessor.getKind()) {
+                case INT:
+                    consumer.startField(name, index);
+                    consumer.addLong(accessor.getInt(obj));
+                    consumer.endField(name, index);
+                    return;
+                case LONG:
+                    consumer.startField(name, index);
+                    consumer.addLong(accessor.getLong(obj));
+                    consumer.endField(name, index);
+                    return;
+                case DOUBLE:
+                    consumer.startField(name, index);
+                    consumer.addDouble(accessor.getDouble(obj));
+                    consumer.endField(name, index);
+                    return;
+                case BOOLEAN:
+                    consumer.startField(name, index);
+                    consumer.addBoolean(accessor.getBoolean(obj));
+                    consumer.endField(name, index);
+                    return;
+                default:
+                    Object value = accessor.get(obj);
+                    if (value != null) {
+                        consumer.startField(name, index);
+                        writer.write(value, consumer);
+                        consumer.endField(name, index);
+                    }
+            }
+        }
+
+        private void writeList(Collection<?> values, RecordConsumer consumer) {
+            consumer.startField(name, index);
+            consumer.startGroup();
+            if (values != null && !values.isEmpty()) {
+                consumer.startField(LIST_FIELD, 0);
+                for (Object value : values) {
+                    // BigQuery arrays cannot contain nulls, they are skipped.
+                    if (value != null) {
+                        consumer.startGroup();
+                        consumer.startField(ELEMENT_FIELD, 0);
+                        writer.write(value, consumer);
+                        consumer.endField(ELEMENT_FIELD, 0);
+                        consumer.endGroup();
+                    }
+                }
+                consumer.endField(LIST_FIELD, 0);
+            }
+            consumer.endGroup();
+            consumer.endField(name, index);
+        }
+
+        /**
+         * Writes the elements of a primitive array field without boxing them.
+         */
+        private void writePrimitiveList(Object array, RecordConsumer consumer) {
+            consumer.startField(name, index);
+            consumer.startGroup();
+            int count = array == null ? 0 : primitiveArray.length(array);
+            if (count > 0) {
+                consumer.startField(LIST_FIELD, 0);
+                for (int i = 0; i < count; i++) {
+                    consumer.startGroup();
+                    consumer.startField(ELEMENT_FIELD, 0);
+                    switch (primitiveArray) {
+                        case INT:
+                            consumer.addLong(((int[]) array)[i]);
+                            break;
+                        case LONG:
+                            consumer.addLong(((long[]) array)[i]);
+                            break;
+                        case DOUBLE:
+                            consumer.addDouble(((double[]) array)[i]);
+                            break;
+                        case FLOAT:
+                            consumer.addDouble(((float[]) array)[i]);
+                            break;
+                        default:
+                            consumer.addBoolean(((boolean[]) array)[i]);
+                            break;
+                    }
+                    consumer.endField(ELEMENT_FIELD, 0);
+                    consumer.endGroup();
+                }
+                consumer.endField(LIST_FIELD, 0);
+            }
+            consumer.endGroup();
+            consumer.endField(name, index);
+        }
+    }
+
+    /**
+     * Writes values of a BigQuery column type in their Parquet encoding.
+     */
+    private enum ValueWriter implements ParquetValueWriter {
+        LONG {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addLong(((Number) value).longValue());
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.INT64, repetition).named(name);
+            }
+        },
+        DOUBLE {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addDouble(((Number) value).doubleValue());
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.DOUBLE, repetition).named(name);
+            }
+        },
+        BOOLEAN {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addBoolean((Boolean) value);
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.BOOLEAN, repetition).named(name);
+            }
+        },
+        STRING {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addBinary(Binary.fromString(value.toString()));
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.BINARY, repetition).as(LogicalTypeAnnotation.stringType()).named(name);
+            }
+        },
+        NUMERIC {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                BigDecimal decimal = TypeCodecs.toNumericScale((BigDecimal) value, NUMERIC_SCALE);
+                consumer.addBinary(Binary.fromConstantByteArray(decimal.unscaledValue().toByteArray()));
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.BINARY, repetition)
+                        .as(LogicalTypeAnnotation.decimalType(NUMERIC_SCALE, NUMERIC_PRECISION)).named(name);
+            }
+        },
+        BYTES {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addBinary(Binary.fromConstantByteArray((byte[]) value));
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.BINARY, repetition).named(name);
+            }
+        },
+        TIMESTAMP {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addLong(epochMicros((Instant) value));
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.INT64, repetition)
+                        .as(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MICROS)).named(name);
+            }
+        },
+        DATETIME {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addLong(epochMicros(((LocalDateTime) value).toInstant(ZoneOffset.UTC)));
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.INT64, repetition)
+                        .as(LogicalTypeAnnotation.timestampType(false, LogicalTypeAnnotation.TimeUnit.MICROS)).named(name);
+            }
+        },
+        DATE {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addInteger(Math.toIntExact(((LocalDate) value).toEpochDay()));
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.INT32, repetition).as(LogicalTypeAnnotation.dateType()).named(name);
+            }
+        },
+        TIME {
+            @Override
+            public void write(Object value, RecordConsumer consumer) {
+                consumer.addLong(((LocalTime) value).toNanoOfDay() / 1000);
+            }
+
+            @Override
+            Type type(Type.Repetition repetition, String name) {
+                return Types.primitive(PrimitiveTypeName.INT64, repetition)
+                        .as(LogicalTypeAnnotation.timeType(false, LogicalTypeAnnotation.TimeUnit.MICROS)).named(name);
+            }
+        };
+
+        abstract Type type(Type.Repetition repetition, String name);
+
+        private static long epochMicros(Instant instant) {
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000);
+        }
+
+        static ValueWriter of(LegacySQLTypeName type) {
+            if (LegacySQLTypeName.INTEGER.equals(type)) {
+                return LONG;
+            } else if (LegacySQLTypeName.FLOAT.equals(type)) {
+                return DOUBLE;
+            } else if (LegacySQLTypeName.BOOLEAN.equals(type)) {
+                return BOOLEAN;
+            } else if (LegacySQLTypeName.STRING.equals(type)) {
+                return STRING;
+            } else if (LegacySQLTypeName.NUMERIC.equals(type)) {
+                return NUMERIC;
+            } else if (LegacySQLTypeName.BYTES.equals(type)) {
+                return BYTES;
+            } else if (LegacySQLTypeName.TIMESTAMP.equals(type)) {
+                return TIMESTAMP;
+            } else if (LegacySQLTypeName.DATETIME.equals(type)) {
+                return DATETIME;
+            } else if (LegacySQLTypeName.DATE.equals(type)) {
+                return DATE;
+            } else if (LegacySQLTypeName.TIME.equals(type)) {
+                return TIME;
+            }
+            throw new IllegalArgumentException("Unsupported BigQuery type for Parquet encoding: " + type);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.List;
+
+import com.google.cloud.bigquery.FieldValue;
+import com.google.common.primitives.Booleans;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Floats;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+/**
+ * The primitive array types mapped to <code>REPEATED</code> columns: <code>int[]</code>,
+ * <code>long[]</code>, <code>double[]</code>, <code>float[]</code> and <code>boolean[]</code>.
+ * The elements are written to JSON and read from BigQuery values without boxing them, and the
+ * binary encoders switch on the constant to use the unboxed element writers of their format.
+ *
+ * <p><code>byte[]</code> is not a repeated column, it is the <code>BYTES</code> value type.</p>
+ *
+ * <p>Read values that do not fit the element type, e.g. an <code>INTEGER</code> above
+ * <code>Integer.MAX_VALUE</code> for <code>int[]</code>, are rejected with an
+ * {@link ArithmeticException} rather than truncated.</p>
+ */
+enum PrimitiveArray {
+    INT(int[].class) {
+        @Override
+        int length(Object array) {
+            return ((int[]) array).length;
+        }
+
+        @Override
+        Object get(Object array, int index) {
+            return ((int[]) array)[index];
+        }
+
+        @Override
+        List<?> toList(Object array) {
+            return Ints.asList(((int[]) array).clone());
+        }
+
+        @Override
+        void writeJson(Object array, JsonOutput out) {
+            int[] values = (int[]) array;
+            out.writeByte('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeLong(values[i]);
+            }
+            out.writeByte(']');
+        }
+
+        @Override
+        Object read(List<FieldValue> values) {
+            int[] array = new int[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = Math.toIntExact(values.get(i).getLongValue());
+            }
+            return array;
+        }
+    },
+    LONG(long[].class) {
+        @Override
+        int length(Object array) {
+            return ((long[]) array).length;
+        }
+
+        @Override
+        Object get(Object array, int index) {
+            return ((long[]) array)[index];
+        }
+
+        @Override
+        List<?> toList(Object array) {
+            return Longs.asList(((long[]) array).clone());
+        }
+
+        @Override
+        void writeJson(Object array, JsonOutput out) {
+            long[] values = (long[]) array;
+            out.writeByte('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeLong(values[i]);
+            }
+            out.writeByte(']');
+        }
+
+        @Override
+        Object read(List<FieldValue> values) {
+            long[] array = new long[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i).getLongValue();
+            }
+            return array;
+        }
+    },
+    DOUBLE(double[].class) {
+        @Override
+        int length(Object array) {
+            return ((double[]) array).length;
+        }
+
+        @Override
+        Object get(Object array, int index) {
+            return ((double[]) array)[index];
+        }
+
+        @Override
+        List<?> toList(Object array) {
+            return Doubles.asList(((double[]) array).clone());
+        }
+
+        @Override
+        void writeJson(Object array, JsonOutput out) {
+            double[] values = (double[]) array;
+            out.writeByte('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeDouble(values[i]);
+            }
+            out.writeByte(']');
+        }
+
+        @Override
+        Object read(List<FieldValue> values) {
+            double[] array = new double[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i).getDoubleValue();
+            }
+            return array;
+        }
+    },
+    FLOAT(float[].class) {
+        @Override
+        int length(Object array) {
+            return ((float[]) array).length;
+        }
+
+        @Override
+        Object get(Object array, int index) {
+            return ((float[]) array)[index];
+        }
+
+        @Override
+        List<?> toList(Object array) {
+            return Floats.asList(((float[]) array).clone());
+        }
+
+        @Override
+        void writeJson(Object array, JsonOutput out) {
+            float[] values = (float[]) array;
+            out.writeByte('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeFloat(values[i]);
+            }
+            out.writeByte(']');
+        }
+
+        @Override
+        Object read(List<FieldValue> values) {
+            float[] array = new float[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = toFloatExact(values.get(i).getDoubleValue());
+            }
+            return array;
+        }
+    },
+    BOOLEAN(boolean[].class) {
+        @Override
+        int length(Object array) {
+            return ((boolean[]) array).length;
+        }
+
+        @Override
+        Object get(Object array, int index) {
+            return ((boolean[]) array)[index];
+        }
+
+        @Override
+        List<?> toList(Object array) {
+            return Booleans.asList(((boolean[]) array).clone());
+        }
+
+        @Override
+        void writeJson(Object array, JsonOutput out) {
+            boolean[] values = (boolean[]) array;
+            out.writeByte('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                out.writeBoolean(values[i]);
+            }
+            out.writeByte(']');
+        }
+
+        @Override
+        Object read(List<FieldValue> values) {
+            boolean[] array = new boolean[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i).getBooleanValue();
+            }
+            return array;
+        }
+    };
+
+    private final Class<?> arrayType;
+
+    PrimitiveArray(Class<?> arrayType) {
+        this.arrayType = arrayType;
+    }
+
+    /**
+     * @param type A field type.
+     * @return The primitive array type, or null if the type is not a supported primitive array.
+     */
+    static PrimitiveArray of(Class<?> type) {
+        if (!type.isArray()) {
+            return null;
+        }
+        for (PrimitiveArray primitiveArray : values()) {
+            if (primitiveArray.arrayType == type) {
+                return primitiveArray;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The primitive element type.
+     */
+    Class<?> getElementType() {
+        return arrayType.getComponentType();
+    }
+
+    abstract int length(Object array);
+
+    /**
+     * Returns a boxed element, for the encoders whose APIs only accept objects.
+     */
+    abstract Object get(Object array, int index);
+
+    /**
+     * Returns a list of the elements, backed by a copy of the array so that the row does not change
+     * when the array is modified later. Elements are boxed only when they are read from the list.
+     */
+    abstract List<?> toList(Object array);
+
+    /**
+     * Writes the elements as a JSON array.
+     */
+    abstract void writeJson(Object array, JsonOutput out);
+
+    /**
+     * Reads the elements of a REPEATED value into a new array of this type.
+     * @throws ArithmeticException if a value does not fit the element type.
+     */
+    abstract Object read(List<FieldValue> values);
+
+    /**
+     * Narrows a <code>FLOAT</code> value to a float, like {@link Math#toIntExact(long)} does for ints.
+     * Only the precision beyond a float is rounded away.
+     * @throws ArithmeticException if a finite value is beyond the range of a float.
+     */
+    private static float toFloatExact(double value) {
+        float narrowed = (float) value;
+        if (Float.isInfinite(narrowed) && !Double.isInfinite(value)) {
+            throw new ArithmeticException("float overflow: " + value);
+        }
+        return narrowed;
+    }
+}
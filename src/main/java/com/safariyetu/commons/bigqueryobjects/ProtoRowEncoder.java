@@ -0,0 +1,313 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.storage.v1.BigDecimalByteStringEncoder;
+import com.google.cloud.bigquery.storage.v1.CivilTimeEncoder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+
+/**
+ * Encodes objects as protobuf messages for binary ingestion through the BigQuery Storage Write API.
+ *
+ * <p>The message type is derived from the same schema as {@link BigQueryObjectWriter#getFieldsFromClass(Class)},
+ * with one proto field per column in schema order and nested records declared as nested types, so the
+ * {@link DescriptorProto} is self-contained as the Storage Write API requires. Values use the wire
+ * representations of the Storage Write API:</p>
+ * <ul>
+ * <li><code>TIMESTAMP</code> as <code>int64</code> microseconds since the epoch.</li>
+ * <li><code>DATETIME</code> and <code>TIME</code> as <code>int64</code> packed civil time.</li>
+ * <li><code>DATE</code> as <code>int32</code> days since the epoch.</li>
+ * <li><code>NUMERIC</code> as the binary <code>BigDecimal</code> encoding in <code>bytes</code>.</li>
+ * </ul>
+ *
+ * <p>Field values are first encoded by the {@link TypeCodec} of their type.</p>
+ *
+ * <p>The descriptor and the per-field encoders are built once per class and cached.</p>
+ */
+public final class ProtoRowEncoder {
+
+    // Suffix of the nested message type declared for a RECORD column, kept apart from column names.
+    private static final String NESTED_TYPE_SUFFIX = "__Record";
+
+    private static final ClassValue<ProtoRowEncoder> ENCODERS = new ClassValue<ProtoRowEncoder>() {
+        @Override
+        protected ProtoRowEncoder computeValue(Class<?> type) {
+            return new ProtoRowEncoder(type);
+        }
+    };
+
+    private final DescriptorProto descriptorProto;
+    private final Descriptor descriptor;
+    private final MessageEncoder encoder;
+
+    private ProtoRowEncoder(Class<?> clazz) {
+        FieldList fields = BigQueryObjectWriter.schemaOf(clazz).getFields();
+        this.descriptorProto = messageProto(clazz.getName().replaceAll("[^A-Za-z0-9_]", "_"), fields);
+        FileDescriptorProto fileProto = FileDescriptorProto.newBuilder()
+                .setName(descriptorProto.getName() + ".proto")
+                .addMessageType(descriptorProto)
+                .build();
+        try {
+            this.descriptor = FileDescriptor.buildFrom(fileProto, new FileDescriptor[0]).getMessageTypes().get(0);
+        } catch (DescriptorValidationException e) {
+            throw new IllegalArgumentException("Cannot build a protobuf descriptor for " + clazz.getName(), e);
+        }
+        this.encoder = new MessageEncoder(clazz, fields, descriptor);
+    }
+
+    /**
+     * Returns the cached encoder for the given class, deriving it on first use.
+     * @param clazz The class to encode.
+     * @return The encoder of the class.
+     * @throws IllegalArgumentException if the class references itself or has fields that cannot be encoded.
+     */
+    public static ProtoRowEncoder forClass(Class<?> clazz) {
+        return ENCODERS.get(clazz);
+    }
+
+    /**
+     * @return The self-contained message type of the rows, as sent in the writer schema of the Storage Write API.
+     */
+    public DescriptorProto getDescriptorProto() {
+        return descriptorProto;
+    }
+
+    /**
+     * @return The message type of the rows.
+     */
+    public Descriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Encodes an object as a message. Null field values are left unset.
+     * @param obj The object to encode, an instance of the encoder's class.
+     * @return The encoded message.
+     */
+    public DynamicMessage encode(Object obj) {
+        return encoder.encode(obj);
+    }
+
+    private static DescriptorProto messageProto(String name, FieldList fields) {
+        DescriptorProto.Builder message = DescriptorProto.newBuilder().setName(name);
+        int number = 1;
+        for (Field field : fields) {
+            FieldDescriptorProto.Builder protoField = FieldDescriptorProto.newBuilder()
+                    .setName(field.getName())
+                    .setNumber(number++)
+                    .setLabel(field.getMode() == Field.Mode.REPEATED
+                            ? FieldDescriptorProto.Label.LABEL_REPEATED
+                            : FieldDescriptorProto.Label.LABEL_OPTIONAL);
+            if (LegacySQLTypeName.RECORD.equals(field.getType())) {
+                String nestedName = field.getName() + NESTED_TYPE_SUFFIX;
+                FieldList subFields = field.getSubFields() == null ? FieldList.of() : field.getSubFields();
+                message.addNestedType(messageProto(nestedName, subFields));
+                protoField.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(nestedName);
+            } else {
+                protoField.setType(ProtoConverter.of(field.getType()).protoType);
+            }
+            message.addField(protoField);
+        }
+        return message.build();
+    }
+
+    /**
+     * Encodes the fields of one class into messages of one type, with a nested encoder per RECORD column.
+     */
+    private static final class MessageEncoder {
+        private final Descriptor descriptor;
+        private final FieldEncoder[] fields;
+
+        private MessageEncoder(Class<?> clazz, FieldList schemaFields, Descriptor descriptor) {
+            this.descriptor = descriptor;
+            DeserializationPlan plan = DeserializationPlan.forClass(clazz);
+            List<FieldEncoder> encoders = new ArrayList<>(schemaFields.size());
+            for (Field schemaField : schemaFields) {
+                FieldAccessor accessor = plan.accessor(schemaField.getName());
+                if (accessor == null) {
+                    continue;
+                }
+                FieldDescriptor fieldDescriptor = descriptor.findFieldByName(schemaField.getName());
+                MessageEncoder nested = null;
+                ProtoConverter converter = null;
+                TypeCodec<Object> codec = null;
+                if (LegacySQLTypeName.RECORD.equals(schemaField.getType())) {
+                    FieldList subFields = schemaField.getSubFields() == null ? FieldList.of() : schemaField.getSubFields();
+                    nested = new MessageEncoder(accessor.getValueClass(), subFields, fieldDescriptor.getMessageType());
+                } else {
+                    converter = ProtoConverter.of(schemaField.getType());
+                    codec = TypeCodecs.codecFor(accessor.getValueClass());
+                }
+                encoders.add(new FieldEncoder(accessor, fieldDescriptor, converter, codec, nested));
+            }
+            this.fields = encoders.toArray(new FieldEncoder[0]);
+        }
+
+        private DynamicMessage encode(Object obj) {
+            DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+            for (FieldEncoder field : fields) {
+                Object value = field.accessor.get(obj);
+                if (value == null) {
+                    continue;
+                }
+                if (field.primitiveArray != null) {
+                    // DynamicMessage stores repeated scalars boxed, so each element is boxed here
+                    for (int i = 0, length = field.primitiveArray.length(value); i < length; i++) {
+                        builder.addRepeatedField(field.descriptor, field.convert(field.primitiveArray.get(value, i)));
+                    }
+                } else if (field.descriptor.isRepeated()) {
+                    for (Object element : (Collection<?>) value) {
+                        if (element != null) {
+                            builder.addRepeatedField(field.descriptor, field.convert(element));
+                        }
+                    }
+                } else {
+                    builder.setField(field.descriptor, field.convert(value));
+                }
+            }
+            return builder.build();
+        }
+
+    }
+
+    private static final class FieldEncoder {
+        private final FieldAccessor accessor;
+        private final FieldDescriptor descriptor;
+        private final ProtoConverter converter;
+        private final TypeCodec<Object> codec;
+        private final MessageEncoder nested;
+        private final PrimitiveArray primitiveArray;
+
+        private FieldEncoder(FieldAccessor accessor, FieldDescriptor descriptor, ProtoConverter converter,
+                TypeCodec<Object> codec, MessageEncoder nested) {
+            this.accessor = accessor;
+            this.descriptor = descriptor;
+            this.converter = converter;
+            this.codec = codec;
+            this.nested = nested;
+            this.primitiveArray = PrimitiveArray.of(accessor.getField().getType());
+        }
+
+        private Object convert(Object value) {
+            return nested != null ? nested.encode(value) : converter.convert(codec.encode(value));
+        }
+    }
+
+    /**
+     * Converts a non-null value of a BigQuery column type to its Storage Write API proto representation.
+     */
+    private enum ProtoConverter {
+        INT64(FieldDescriptorProto.Type.TYPE_INT64) {
+            @Override
+            Object convert(Object value) {
+                return ((Number) value).longValue();
+            }
+        },
+        DOUBLE(FieldDescriptorProto.Type.TYPE_DOUBLE) {
+            @Override
+            Object convert(Object value) {
+                return ((Number) value).doubleValue();
+            }
+        },
+        BOOL(FieldDescriptorProto.Type.TYPE_BOOL) {
+            @Override
+            Object convert(Object value) {
+                return value;
+            }
+        },
+        STRING(FieldDescriptorProto.Type.TYPE_STRING) {
+            @Override
+            Object convert(Object value) {
+                return value.toString();
+            }
+        },
+        NUMERIC(FieldDescriptorProto.Type.TYPE_BYTES) {
+            @Override
+            Object convert(Object value) {
+                return BigDecimalByteStringEncoder.encodeToNumericByteString((BigDecimal) value);
+            }
+        },
+        BYTES(FieldDescriptorProto.Type.TYPE_BYTES) {
+            @Override
+            Object convert(Object value) {
+                return ByteString.copyFrom((byte[]) value);
+            }
+        },
+        TIMESTAMP(FieldDescriptorProto.Type.TYPE_INT64) {
+            @Override
+            Object convert(Object value) {
+                Instant instant = (Instant) value;
+                return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000);
+            }
+        },
+        DATETIME(FieldDescriptorProto.Type.TYPE_INT64) {
+            @Override
+            Object convert(Object value) {
+                return CivilTimeEncoder.encodePacked64DatetimeMicrosLocalDateTime((LocalDateTime) value);
+            }
+        },
+        TIME(FieldDescriptorProto.Type.TYPE_INT64) {
+            @Override
+            Object convert(Object value) {
+                return CivilTimeEncoder.encodePacked64TimeMicrosLocalTime((LocalTime) value);
+            }
+        },
+        DATE(FieldDescriptorProto.Type.TYPE_INT32) {
+            @Override
+            Object convert(Object value) {
+                return Math.toIntExact(((LocalDate) value).toEpochDay());
+            }
+        };
+
+        private final FieldDescriptorProto.Type protoType;
+
+        ProtoConverter(FieldDescriptorProto.Type protoType) {
+            this.protoType = protoType;
+        }
+
+        abstract Object convert(Object value);
+
+        static ProtoConverter of(LegacySQLTypeName type) {
+            if (LegacySQLTypeName.INTEGER.equals(type)) {
+                return INT64;
+            } else if (LegacySQLTypeName.FLOAT.equals(type)) {
+                return DOUBLE;
+            } else if (LegacySQLTypeName.BOOLEAN.equals(type)) {
+                return BOOL;
+            } else if (LegacySQLTypeName.STRING.equals(type)) {
+                return STRING;
+            } else if (LegacySQLTypeName.NUMERIC.equals(type)) {
+                return NUMERIC;
+            } else if (LegacySQLTypeName.BYTES.equals(type)) {
+                return BYTES;
+            } else if (LegacySQLTypeName.TIMESTAMP.equals(type)) {
+                return TIMESTAMP;
+            } else if (LegacySQLTypeName.DATETIME.equals(type)) {
+                return DATETIME;
+            } else if (LegacySQLTypeName.TIME.equals(type)) {
+                return TIME;
+            } else if (LegacySQLTypeName.DATE.equals(type)) {
+                return DATE;
+            }
+            throw new IllegalArgumentException("Unsupported BigQuery type for protobuf encoding: " + type);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+/**
+ * A token bucket limiting the retries of a {@link BigQueryObjectWriter}, see {@link RetryPolicy}.
+ * Each retry takes a whole token and each success gives back a fraction of one, up to the capacity.
+ */
+final class RetryBudget {
+
+    private final double capacity;
+    private final double refill;
+    private double tokens;
+
+    RetryBudget(RetryPolicy policy) {
+        this.capacity = policy.getBudgetTokens();
+        this.refill = policy.getBudgetRefill();
+        this.tokens = capacity;
+    }
+
+    /**
+     * Takes a token for a retry.
+     * @return False if the budget is exhausted, and the operation must not be retried.
+     */
+    synchronized boolean tryAcquire() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Gives back a fraction of a token after a successful operation.
+     */
+    synchronized void onSuccess() {
+        tokens = Math.min(capacity, tokens + refill);
+    }
+
+    synchronized double getTokens() {
+        return tokens;
+    }
+}
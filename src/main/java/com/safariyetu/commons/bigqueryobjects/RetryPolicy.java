@@ -0,0 +1,211 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+
+/**
+ * How {@link BigQueryObjectWriter} retries inserts and table changes that failed for a transient
+ * reason: the maximum number of attempts, an exponential backoff with full jitter between them, and
+ * a retry budget shared by all inserts of a writer.
+ *
+ * <p>The delay before retry <i>n</i> is drawn uniformly between 0 and
+ * <code>min(maxBackoff, initialBackoff * 2<sup>n-1</sup>)</code>, so that clients throttled together
+ * do not retry together. The budget is a token bucket: each retry takes a token and each successful
+ * insert gives back a fraction of one, so when most requests fail the retries stop instead of
+ * multiplying the load on a service that is already overloaded.</p>
+ *
+ * <p>Failures are retried when BigQuery reports a rate limit, a quota, a timeout or a backend
+ * error, or a 500, 502, 503 or 504 status. Other failures, such as invalid requests, are not.</p>
+ */
+public final class RetryPolicy {
+
+    // The BigQueryException reasons of failures that can succeed when retried.
+    private static final Set<String> RETRYABLE_REASONS = new HashSet<>(Arrays.asList(
+            "rateLimitExceeded", "quotaExceeded", "backendError", "internalError", "timeout"));
+    private static final Set<Integer> RETRYABLE_CODES = new HashSet<>(Arrays.asList(500, 502, 503, 504));
+
+    private static final RetryPolicy DEFAULT = newBuilder().build();
+    private static final RetryPolicy NONE = newBuilder().maxAttempts(1).build();
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int budgetTokens;
+    private final double budgetRefill;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffMillis = builder.initialBackoffMillis;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+        this.budgetTokens = builder.budgetTokens;
+        this.budgetRefill = builder.budgetRefill;
+    }
+
+    /**
+     * @return The default policy: 5 attempts, a backoff from 100 milliseconds up to 30 seconds and a budget of 20 retries.
+     */
+    public static RetryPolicy defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return A policy that does not retry transient failures.
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The maximum number of attempts of an operation, including the first one.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return The maximum delay before the first retry, in milliseconds.
+     */
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * @return The maximum delay before any retry, in milliseconds.
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * @return The number of retry tokens of a writer's budget, which is also its initial number.
+     */
+    public int getBudgetTokens() {
+        return budgetTokens;
+    }
+
+    /**
+     * @return The fraction of a token a successful insert gives back to the budget.
+     */
+    public double getBudgetRefill() {
+        return budgetRefill;
+    }
+
+    /**
+     * @param e A failure of a BigQuery call.
+     * @return True if the call can succeed when retried.
+     */
+    boolean isRetryable(BigQueryException e) {
+        if (RETRYABLE_CODES.contains(e.getCode()) || RETRYABLE_REASONS.contains(e.getReason())) {
+            return true;
+        }
+        BigQueryError error = e.getError();
+        return error != null && RETRYABLE_REASONS.contains(error.getReason());
+    }
+
+    /**
+     * @param retry The number of the retry, from 1.
+     * @return A random delay before the retry, in milliseconds.
+     */
+    long backoffMillis(int retry) {
+        // Cap the shift, the delay reaches the maximum long before.
+        long ceiling = initialBackoffMillis << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxAttempts=" + maxAttempts + ", initialBackoffMillis=" + initialBackoffMillis
+                + ", maxBackoffMillis=" + maxBackoffMillis + ", budgetTokens=" + budgetTokens
+                + ", budgetRefill=" + budgetRefill + "}";
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}, starting from the defaults.
+     */
+    public static final class Builder {
+        private int maxAttempts = 5;
+        private long initialBackoffMillis = 100;
+        private long maxBackoffMillis = 30_000;
+        private int budgetTokens = 20;
+        private double budgetRefill = 0.1;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxAttempts The maximum number of attempts of an operation including the first one, at least 1.
+         * @return This builder instance for chaining.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("The maximum number of attempts must be positive: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param backoff The maximum delay before the first retry, at least 1 millisecond.
+         * @param unit The unit of the delay.
+         * @return This builder instance for chaining.
+         */
+        public Builder initialBackoff(long backoff, TimeUnit unit) {
+            long millis = unit.toMillis(backoff);
+            if (millis < 1) {
+                throw new IllegalArgumentException("The initial backoff must be at least 1 millisecond: " + backoff + " " + unit);
+            }
+            this.initialBackoffMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param backoff The maximum delay before any retry, at least 1 millisecond.
+         * @param unit The unit of the delay.
+         * @return This builder instance for chaining.
+         */
+        public Builder maxBackoff(long backoff, TimeUnit unit) {
+            long millis = unit.toMillis(backoff);
+            if (millis < 1) {
+                throw new IllegalArgumentException("The maximum backoff must be at least 1 millisecond: " + backoff + " " + unit);
+            }
+            this.maxBackoffMillis = millis;
+            return this;
+        }
+
+        /**
+         * Specifies the retry budget of a writer.
+         * @param tokens The number of retries the budget holds, at least 0. 0 disables the retries.
+         * @param refill The fraction of a retry a successful insert gives back, at least 0.
+         * @return This builder instance for chaining.
+         */
+        public Builder retryBudget(int tokens, double refill) {
+            if (tokens < 0 || refill < 0) {
+                throw new IllegalArgumentException("The retry budget must not be negative: " + tokens + ", " + refill);
+            }
+            this.budgetTokens = tokens;
+            this.budgetRefill = refill;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            if (maxBackoffMillis < initialBackoffMillis) {
+                throw new IllegalArgumentException("The maximum backoff must not be less than the initial backoff: "
+                        + maxBackoffMillis + " < " + initialBackoffMillis);
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
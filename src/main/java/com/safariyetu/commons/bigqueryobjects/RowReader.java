@@ -0,0 +1,34 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.List;
+
+import com.google.cloud.bigquery.FieldValue;
+
+/**
+ * Populates objects of a single class from BigQuery rows without reflection.
+ * Implementations are generated for classes annotated with {@link BigQueryRow} and set
+ * the same values as {@link BigQueryObjectReader#read(com.google.cloud.bigquery.TableResult)}.
+ *
+ * @param <T> The type of the objects to populate.
+ */
+public interface RowReader<T> {
+
+    /**
+     * @return A new instance created with the no-argument constructor.
+     */
+    T newInstance();
+
+    /**
+     * @return The names of the instance fields that can be set, in declaration order.
+     */
+    List<String> fieldNames();
+
+    /**
+     * Sets a non-null value on a field of the object.
+     * @param object The object to populate.
+     * @param fieldName The name of the field.
+     * @param value The FieldValue from BigQuery.
+     * @return true if the field exists and was set, false if the class has no such field.
+     */
+    boolean setField(T object, String fieldName, FieldValue value);
+}
@@ -0,0 +1,75 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Estimates the size of converted insert rows in the JSON body of an <code>insertAll</code> request,
+ * without serializing them. The row content is walked once: strings count their length and quotes,
+ * numbers and booleans a fixed upper bound, and maps and lists their elements and separators.
+ *
+ * <p>The estimate assumes mostly ASCII text, so strings with many escaped or multi-byte characters
+ * are underestimated. The default request size limit of {@link BigQueryObjectWriter} leaves headroom
+ * below BigQuery's 10 MB limit for this.</p>
+ */
+final class RowSizeEstimator {
+
+    // The {"json":...} wrapper of each row and the separator between rows.
+    static final int ROW_OVERHEAD = 12;
+
+    // Upper bounds of the JSON representations of numbers and booleans.
+    private static final int INT_SIZE = 11;
+    private static final int LONG_SIZE = 20;
+    private static final int DECIMAL_SIZE = 24;
+    private static final int BOOLEAN_SIZE = 5;
+
+    private RowSizeEstimator() {
+    }
+
+    /**
+     * @param row The converted content of an insert row.
+     * @return The estimated number of bytes of the row in the request body.
+     */
+    static long estimateRow(Map<String, Object> row) {
+        return ROW_OVERHEAD + estimate(row);
+    }
+
+    /**
+     * @param insertId The insertId of a row, or null.
+     * @return The estimated number of bytes the insertId adds to the row in the request body.
+     */
+    static long estimateInsertId(String insertId) {
+        // "insertId":"...",
+        return insertId == null ? 0 : insertId.length() + 14;
+    }
+
+    private static long estimate(Object value) {
+        if (value == null) {
+            return 4;
+        } else if (value instanceof String) {
+            return ((String) value).length() + 2;
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return INT_SIZE;
+        } else if (value instanceof Long) {
+            return LONG_SIZE;
+        } else if (value instanceof Number) {
+            return DECIMAL_SIZE;
+        } else if (value instanceof Boolean) {
+            return BOOLEAN_SIZE;
+        } else if (value instanceof Map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                // "name": and the separator
+                size += String.valueOf(entry.getKey()).length() + 4 + estimate(entry.getValue());
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            long size = 2;
+            for (Object element : (Collection<?>) value) {
+                size += 1 + estimate(element);
+            }
+            return size;
+        }
+        return value.toString().length() + 2;
+    }
+}
@@ -0,0 +1,401 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * An append-only, disk-backed queue of converted insert rows, used by {@link BufferedBigQueryWriter}
+ * to keep the batches it could not send while BigQuery is unavailable.
+ *
+ * <p>Rows are appended to segment files in a directory, each row as its insertId, the name of its
+ * class and the JSON of its insert row content, and read back oldest segment first. The offset of
+ * the first row not sent yet is kept in an acknowledgement file next to the segment, so that the
+ * rows already sent are not read again, and the segment is deleted once all its rows are sent.
+ * The rows of the segments left in the directory are read again by the next spool opened on it,
+ * e.g. after a restart. Each record carries a checksum, and a segment is read up to its first
+ * incomplete or corrupt record, which a crash while appending can leave behind; the size of the
+ * part that could not be read is reported by {@link Segment#getSkippedBytes()}.</p>
+ *
+ * <p>The JSON is read back with numbers as <code>BigDecimal</code>, so that integers and
+ * <code>NUMERIC</code> values are sent unchanged.</p>
+ */
+final class RowSpool implements Closeable {
+
+    // The default size after which the segment being written is closed and a new one started.
+    static final long DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String ACK_SUFFIX = ".ack";
+    // The length and CRC32 of a record.
+    private static final int RECORD_HEADER = 8;
+
+    private static final Gson GSON = new GsonBuilder().setObjectToNumberStrategy(ToNumberPolicy.BIG_DECIMAL).create();
+    private static final java.lang.reflect.Type CONTENT_TYPE = new TypeToken<Map<String, Object>>() { }.getType();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long segmentBytes;
+    // The segments, oldest first. The last one is being written if channel is open.
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private long size;
+    private long nextSequence;
+    private FileChannel channel;
+    private long channelSize;
+
+    /**
+     * Opens the spool of a directory, creating the directory if needed and picking up the segments
+     * left by a previous spool.
+     * @param directory The directory of the segment files.
+     * @param maxBytes The maximum total size of the segments.
+     * @param segmentBytes The size after which a new segment is started.
+     */
+    RowSpool(Path directory, long maxBytes, long segmentBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path segment : stream) {
+                    existing.add(segment);
+                }
+            }
+            // The zero-padded sequence numbers sort by name.
+            Collections.sort(existing);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX + ACK_SUFFIX)) {
+                for (Path ack : stream) {
+                    // Left behind if the spool stopped between deleting a segment and its acknowledgement.
+                    String name = ack.getFileName().toString();
+                    if (!existing.contains(ack.resolveSibling(name.substring(0, name.length() - ACK_SUFFIX.length())))) {
+                        Files.delete(ack);
+                    }
+                }
+            }
+            for (Path segment : existing) {
+                segments.addLast(segment);
+                size += Files.size(segment);
+                nextSequence = Math.max(nextSequence, sequenceOf(segment) + 1);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open the row spool in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends rows and forces them to disk.
+     * @param insertIds The insertId of each row, or null entries for rows without one.
+     * @param rowClasses The name of the class of each row.
+     * @param contents The insert row content of each row.
+     * @return False if the rows would exceed the maximum size of the spool, in which case none is appended.
+     */
+    synchronized boolean append(List<String> insertIds, List<String> rowClasses, List<Map<String, Object>> contents) {
+        List<ByteBuffer> records = new ArrayList<>(contents.size());
+        long bytes = 0;
+        for (int i = 0; i < contents.size(); i++) {
+            ByteBuffer record = encode(insertIds.get(i), rowClasses.get(i), contents.get(i));
+            records.add(record);
+            bytes += record.remaining();
+        }
+        if (size + bytes > maxBytes) {
+            return false;
+        }
+        try {
+            if (channel == null || channelSize >= segmentBytes) {
+                startSegment();
+            }
+            for (ByteBuffer record : records) {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append rows to the row spool in " + directory, e);
+        }
+        channelSize += bytes;
+        size += bytes;
+        return true;
+    }
+
+    /**
+     * @return True if no rows are spooled.
+     */
+    synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * @return The total size of the segments in bytes.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Reads the rows of the oldest segment that were not acknowledged. If it is being written, it is
+     * closed first and the next rows go to a new segment, so that the rows read are the whole segment.
+     * @return The oldest segment, or null if the spool is empty.
+     */
+    synchronized Segment oldest() {
+        Path path = segments.peekFirst();
+        if (path == null) {
+            return null;
+        }
+        if (channel != null && segments.size() == 1) {
+            closeChannel();
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long start = Math.min(acknowledgedOffset(path), file.size());
+            ByteBuffer buffer = ByteBuffer.allocate((int) (file.size() - start));
+            while (buffer.hasRemaining() && file.read(buffer, start + buffer.position()) >= 0) {
+                // Read until the buffer is full.
+            }
+            ((Buffer) buffer).flip();
+            return readRecords(path, start, buffer);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read the row spool segment " + path, e);
+        }
+    }
+
+    /**
+     * Records that the first rows of a segment were sent, so that they are not read again.
+     * @param segment The oldest segment.
+     * @param rowCount The number of rows of the segment that were sent, from its first row.
+     */
+    synchronized void acknowledge(Segment segment, int rowCount) {
+        if (rowCount == 0 || !segment.path.equals(segments.peekFirst())) {
+            return;
+        }
+        ByteBuffer offset = ByteBuffer.allocate(Long.BYTES);
+        offset.putLong(0, segment.ends[rowCount - 1]);
+        try (FileChannel ack = FileChannel.open(ackPath(segment.path), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            while (offset.hasRemaining()) {
+                ack.write(offset);
+            }
+            ack.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to acknowledge rows of the row spool segment " + segment.path, e);
+        }
+    }
+
+    /**
+     * Deletes a segment whose rows have all been sent.
+     */
+    synchronized void remove(Segment segment) {
+        if (!segment.path.equals(segments.peekFirst())) {
+            return;
+        }
+        try {
+            long bytes = Files.size(segment.path);
+            Files.delete(segment.path);
+            Files.deleteIfExists(ackPath(segment.path));
+            segments.removeFirst();
+            size -= bytes;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete the row spool segment " + segment.path, e);
+        }
+    }
+
+    /**
+     * Closes the segment being written. The spooled rows stay in the directory.
+     */
+    @Override
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    private void startSegment() throws IOException {
+        closeChannel();
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        Files.deleteIfExists(ackPath(path));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        channelSize = 0;
+        segments.addLast(path);
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close the row spool segment: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * @return The offset of the first row of a segment that was not sent, 0 if none was acknowledged.
+     */
+    private static long acknowledgedOffset(Path segment) throws IOException {
+        Path ack = ackPath(segment);
+        if (!Files.exists(ack)) {
+            return 0;
+        }
+        ByteBuffer offset = ByteBuffer.wrap(Files.readAllBytes(ack));
+        return offset.remaining() == Long.BYTES ? offset.getLong() : 0;
+    }
+
+    private static Path ackPath(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + ACK_SUFFIX);
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Encodes a row as a record: the length and CRC32 of the payload, then the payload, which is the
+     * length of the insertId (-1 for none), the insertId, the length of the class name, the class name
+     * and the JSON of the content, in UTF-8.
+     */
+    private static ByteBuffer encode(String insertId, String rowClass, Map<String, Object> content) {
+        byte[] id = insertId != null ? insertId.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] className = rowClass.getBytes(StandardCharsets.UTF_8);
+        byte[] json = JsonRowEncoder.encodeValue(content);
+        int payload = 8 + id.length + className.length + json.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload);
+        // Called on Buffer, whose methods Java 8 does not override with ByteBuffer return types.
+        ((Buffer) record).position(RECORD_HEADER);
+        record.putInt(insertId != null ? id.length : -1).put(id).putInt(className.length).put(className).put(json);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER, payload);
+        record.putInt(0, payload).putInt(4, (int) crc.getValue());
+        ((Buffer) record).rewind();
+        return record;
+    }
+
+    /**
+     * @param start The offset of the buffer in the segment.
+     */
+    private static Segment readRecords(Path path, long start, ByteBuffer buffer) {
+        List<SpooledRow> rows = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int recordStart = buffer.position();
+            int payload = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (payload < 8 || payload > buffer.remaining()) {
+                // An incomplete record left by a crash while appending.
+                ((Buffer) buffer).position(recordStart);
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), buffer.position(), payload);
+            if ((int) crc.getValue() != checksum) {
+                ((Buffer) buffer).position(recordStart);
+                break;
+            }
+            int end = buffer.position() + payload;
+            int idLength = buffer.getInt();
+            String insertId = null;
+            if (idLength >= 0) {
+                insertId = new String(buffer.array(), buffer.position(), idLength, StandardCharsets.UTF_8);
+                ((Buffer) buffer).position(buffer.position() + idLength);
+            }
+            int classLength = buffer.getInt();
+            String rowClass = new String(buffer.array(), buffer.position(), classLength, StandardCharsets.UTF_8);
+            ((Buffer) buffer).position(buffer.position() + classLength);
+            String json = new String(buffer.array(), buffer.position(), end - buffer.position(), StandardCharsets.UTF_8);
+            ((Buffer) buffer).position(end);
+            rows.add(new SpooledRow(insertId, rowClass, GSON.fromJson(json, CONTENT_TYPE)));
+            ends.add(start + end);
+        }
+        long[] rowEnds = new long[ends.size()];
+        for (int i = 0; i < rowEnds.length; i++) {
+            rowEnds[i] = ends.get(i);
+        }
+        return new Segment(path, rows, rowEnds, buffer.remaining());
+    }
+
+    /**
+     * The rows of a segment file, in the order they were appended.
+     */
+    static final class Segment {
+        private final Path path;
+        private final List<SpooledRow> rows;
+        // The offset after the record of each row.
+        private final long[] ends;
+        private final long skippedBytes;
+
+        private Segment(Path path, List<SpooledRow> rows, long[] ends, long skippedBytes) {
+            this.path = path;
+            this.rows = rows;
+            this.ends = ends;
+            this.skippedBytes = skippedBytes;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return The rows that were not acknowledged, in the order they were appended.
+         */
+        List<SpooledRow> getRows() {
+            return rows;
+        }
+
+        /**
+         * @return The size of the end of the segment that could not be read, from its first incomplete or corrupt record.
+         */
+        long getSkippedBytes() {
+            return skippedBytes;
+        }
+    }
+
+    /**
+     * A spooled row: its insertId, or null, the name of its class and its insert row content.
+     */
+    static final class SpooledRow {
+        private final String insertId;
+        private final String rowClass;
+        private final Map<String, Object> content;
+
+        private SpooledRow(String insertId, String rowClass, Map<String, Object> content) {
+            this.insertId = insertId;
+            this.rowClass = rowClass;
+            this.content = content;
+        }
+
+        String getInsertId() {
+            return insertId;
+        }
+
+        String getRowClass() {
+            return rowClass;
+        }
+
+        Map<String, Object> getContent() {
+            return content;
+        }
+    }
+}
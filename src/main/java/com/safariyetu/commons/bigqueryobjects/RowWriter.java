@@ -0,0 +1,27 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts objects of a single class into BigQuery rows without reflection.
+ * Implementations are generated for classes annotated with {@link BigQueryRow} and produce
+ * the same output as {@link BigQueryObjectWriter#objectToMap(Object)} and
+ * {@link BigQueryObjectWriter#getFieldsFromClass(Class)}.
+ *
+ * @param <T> The type of the objects to convert.
+ */
+public interface RowWriter<T> {
+
+    /**
+     * Converts an object to a map of BigQuery-compatible values.
+     * @param object The object to convert.
+     * @return A map representing the object's fields and their values.
+     */
+    Map<String, Object> toMap(T object);
+
+    /**
+     * @return The BigQuery fields of the class.
+     */
+    List<com.google.cloud.bigquery.Field> fields();
+}
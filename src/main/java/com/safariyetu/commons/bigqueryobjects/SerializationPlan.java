@@ -0,0 +1,297 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A compiled, per-class plan for converting objects into BigQuery row maps.
+ * The plan is built once per class (field accessors, target names and value converters)
+ * and cached in a {@link ClassValue}, so the per-row work is reduced to reading the
+ * field values through {@link FieldAccessor}s and applying the pre-selected converters.
+ */
+final class SerializationPlan {
+
+    private static final ClassValue<SerializationPlan> PLANS = new ClassValue<SerializationPlan>() {
+        @Override
+        protected SerializationPlan computeValue(Class<?> type) {
+            return new SerializationPlan(type);
+        }
+    };
+
+    private final FieldPlan[] fields;
+    private final CompactRow.Layout layout;
+
+    private SerializationPlan(Class<?> clazz) {
+        List<FieldPlan> plans = new ArrayList<>();
+        for (java.lang.reflect.Field reflectField : clazz.getDeclaredFields()) {
+            // Skip static and synthetic fields
+            if (java.lang.reflect.Modifier.isStatic(reflectField.getModifiers()) || reflectField.isSynthetic()) {
+                continue;
+            }
+            ValueConverter converter = converterFor(reflectField);
+            if (converter != null) {
+                FieldAccessor accessor = new FieldAccessor(reflectField);
+                plans.add(new FieldPlan(accessor, converter, TypeCodecs.codecFor(accessor.getValueClass())));
+            }
+        }
+        this.fields = plans.toArray(new FieldPlan[0]);
+        String[] names = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].name;
+        }
+        this.layout = new CompactRow.Layout(names);
+    }
+
+    /**
+     * Returns the cached plan for the given class, compiling it on first use.
+     * @param clazz The class to get the plan for.
+     * @return The serialization plan of the class.
+     */
+    static SerializationPlan forClass(Class<?> clazz) {
+        return PLANS.get(clazz);
+    }
+
+    /**
+     * Converts an object of the planned class to a compact map of BigQuery-compatible values,
+     * indexed by the field layout shared by all rows of the class.
+     * Null field values are omitted from the map.
+     * @param obj The object to convert.
+     * @return A map representing the object's fields and their values.
+     */
+    Map<String, Object> toMap(Object obj) {
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Object value = fields[i].accessor.get(obj);
+            if (value != null) {
+                values[i] = fields[i].converter.convert(value, fields[i]);
+            }
+        }
+        return new CompactRow(layout, values);
+    }
+
+    /**
+     * Converts an object of the planned class to the content of an insert row.
+     * {@link com.google.cloud.bigquery.InsertAllRequest.RowToInsert} copies any map that is not
+     * an {@link ImmutableMap}, so the top-level row is built as one, while nested records and
+     * collection elements use the compact representation.
+     * @param obj The object to convert.
+     * @return An immutable map representing the object's fields and their values.
+     */
+    Map<String, Object> toInsertRow(Object obj) {
+        ImmutableMap.Builder<String, Object> builder = ImmutableMap.builderWithExpectedSize(fields.length);
+        for (FieldPlan field : fields) {
+            Object value = field.accessor.get(obj);
+            if (value != null) {
+                builder.put(field.name, field.converter.convert(value, field));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes an object of the planned class as a JSON object, applying the same conversions
+     * as {@link #toMap(Object)} without building the intermediate map.
+     * Primitive fields are read without boxing and null field values are omitted.
+     * @param obj The object to write.
+     * @param out The buffer to write to.
+     */
+    void writeJson(Object obj, JsonOutput out) {
+        out.writeByte('{');
+        boolean first = true;
+        for (FieldPlan field : fields) {
+            FieldAccessor accessor = field.accessor;
+            FieldAccessor.Kind kind = accessor.getKind();
+            Object value = null;
+            if (kind == FieldAccessor.Kind.OTHER) {
+                value = accessor.get(obj);
+                if (value == null) {
+                    continue;
+                }
+            }
+            if (!first) {
+                out.writeByte(',');
+            }
+            first = false;
+            out.writeRaw(field.jsonName);
+            switch (kind) {
+                case INT:
+                    out.writeLong(accessor.getInt(obj));
+                    break;
+                case LONG:
+                    out.writeLong(accessor.getLong(obj));
+                    break;
+                case DOUBLE:
+                    out.writeDouble(accessor.getDouble(obj));
+                    break;
+                case BOOLEAN:
+                    out.writeBoolean(accessor.getBoolean(obj));
+                    break;
+                default:
+                    field.converter.writeJson(value, field, out);
+                    break;
+            }
+        }
+        out.writeByte('}');
+    }
+
+    /**
+     * Selects the converter for a field based on its declared type: values, collections of values
+     * of types with a {@link TypeCodec} and primitive arrays, or nested records otherwise.
+     * Returns null for collections whose element type cannot be resolved, as these are not mapped.
+     */
+    private static ValueConverter converterFor(java.lang.reflect.Field reflectField) {
+        Class<?> type = reflectField.getType();
+        // Handle collections first
+        if (Collection.class.isAssignableFrom(type)) {
+            java.lang.reflect.Type genericType = reflectField.getGenericType();
+            if (genericType instanceof java.lang.reflect.ParameterizedType) {
+                java.lang.reflect.Type elementType = ((java.lang.reflect.ParameterizedType) genericType).getActualTypeArguments()[0];
+                if (elementType instanceof Class) {
+                    return TypeCodecs.forClass((Class<?>) elementType) != null
+                            ? ValueConverter.REPEATED_VALUE
+                            : ValueConverter.REPEATED_RECORD;
+                }
+            }
+            return null;
+        }
+        if (PrimitiveArray.of(type) != null) {
+            return ValueConverter.PRIMITIVE_ARRAY;
+        }
+        // Nested objects are converted recursively
+        return TypeCodecs.forClass(type) != null ? ValueConverter.VALUE : ValueConverter.RECORD;
+    }
+
+    /**
+     * A field of the planned class together with its target name, converter, value codec and,
+     * for primitive array fields, the array type.
+     */
+    private static final class FieldPlan {
+        private final FieldAccessor accessor;
+        private final String name;
+        private final byte[] jsonName;
+        private final ValueConverter converter;
+        private final TypeCodec<Object> codec;
+        private final PrimitiveArray primitiveArray;
+
+        private FieldPlan(FieldAccessor accessor, ValueConverter converter, TypeCodec<Object> codec) {
+            this.accessor = accessor;
+            this.name = accessor.getName();
+            this.jsonName = JsonOutput.encodeName(name);
+            this.converter = converter;
+            this.codec = codec;
+            this.primitiveArray = PrimitiveArray.of(accessor.getField().getType());
+        }
+    }
+
+    /**
+     * Converts a non-null field value to its BigQuery-compatible representation.
+     */
+    private enum ValueConverter {
+        /** Values are encoded by the codec of the field type. */
+        VALUE {
+            @Override
+            Object convert(Object value, FieldPlan field) {
+                return field.codec.toJson(value);
+            }
+
+            @Override
+            void writeJson(Object value, FieldPlan field, JsonOutput out) {
+                field.codec.writeJson(value, out);
+            }
+        },
+        /** Nested objects are converted with the plan (or generated writer) of their runtime class. */
+        RECORD {
+            @Override
+            Object convert(Object value, FieldPlan field) {
+                return BigQueryObjectWriter.mapObject(value);
+            }
+
+            @Override
+            void writeJson(Object value, FieldPlan field, JsonOutput out) {
+                JsonRowEncoder.writeObject(value, out);
+            }
+        },
+        /** Collections of values are encoded element by element by the codec of the element type. */
+        REPEATED_VALUE {
+            @Override
+            Object convert(Object value, FieldPlan field) {
+                Collection<?> collection = (Collection<?>) value;
+                List<Object> encoded = new ArrayList<>(collection.size());
+                for (Object element : collection) {
+                    encoded.add(element == null ? null : field.codec.toJson(element));
+                }
+                return encoded;
+            }
+
+            @Override
+            void writeJson(Object value, FieldPlan field, JsonOutput out) {
+                out.writeByte('[');
+                boolean first = true;
+                for (Object element : (Collection<?>) value) {
+                    if (!first) {
+                        out.writeByte(',');
+                    }
+                    first = false;
+                    if (element == null) {
+                        out.writeAscii("null");
+                    } else {
+                        field.codec.writeJson(element, out);
+                    }
+                }
+                out.writeByte(']');
+            }
+        },
+        /** Primitive arrays are written without boxing their elements. */
+        PRIMITIVE_ARRAY {
+            @Override
+            Object convert(Object value, FieldPlan field) {
+                return field.primitiveArray.toList(value);
+            }
+
+            @Override
+            void writeJson(Object value, FieldPlan field, JsonOutput out) {
+                field.primitiveArray.writeJson(value, out);
+            }
+        },
+        /** Collections of complex objects are mapped element by element. */
+        REPEATED_RECORD {
+            @Override
+            Object convert(Object value, FieldPlan field) {
+                Collection<?> collection = (Collection<?>) value;
+                List<Object> mappedCollection = new ArrayList<>(collection.size());
+                for (Object element : collection) {
+                    mappedCollection.add(BigQueryObjectWriter.mapObject(element));
+                }
+                return mappedCollection;
+            }
+
+            @Override
+            void writeJson(Object value, FieldPlan field, JsonOutput out) {
+                out.writeByte('[');
+                boolean first = true;
+                for (Object element : (Collection<?>) value) {
+                    if (!first) {
+                        out.writeByte(',');
+                    }
+                    first = false;
+                    JsonRowEncoder.writeObject(element, out);
+                }
+                out.writeByte(']');
+            }
+        };
+
+        /**
+         * @param field The plan of the field, with the codec of the field type or collection element type.
+         */
+        abstract Object convert(Object value, FieldPlan field);
+
+        /**
+         * Writes a non-null field value as the JSON form of {@link #convert(Object, FieldPlan)}.
+         */
+        abstract void writeJson(Object value, FieldPlan field, JsonOutput out);
+    }
+}
@@ -0,0 +1,315 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.storage.v1.AppendRowsResponse;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1.Exceptions;
+import com.google.cloud.bigquery.storage.v1.ProtoRows;
+import com.google.cloud.bigquery.storage.v1.ProtoSchema;
+import com.google.cloud.bigquery.storage.v1.RowError;
+import com.google.cloud.bigquery.storage.v1.StreamWriter;
+import com.google.cloud.bigquery.storage.v1.TableName;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+
+import io.grpc.Status;
+
+/**
+ * Appends objects to Storage Write API streams as protobuf rows encoded by {@link ProtoRowEncoder}.
+ *
+ * <p>A {@link StreamWriter}, and so an <code>AppendRows</code> connection, is opened per stream and
+ * writer schema on first use and kept for the following inserts, until the {@link BigQueryObjectWriter}
+ * owning this appender is closed. A writer whose append failed is closed and replaced on the next
+ * append, as its connection may be broken or hold an outdated table schema.</p>
+ *
+ * <p>The rows are split into requests below the <code>AppendRows</code> request size limit, which are
+ * sent one after the other on the connection without waiting for the previous answers. Failures are
+ * reported like the <code>insertAll</code> path of {@link BigQueryObjectWriter.InsertBuilder}: a
+ * missing table or a schema mismatch is raised as a {@link BigQueryException} that the builder
+ * handles by creating or updating the table, a transient gRPC failure such as <code>UNAVAILABLE</code>
+ * is raised with the reason of the matching <code>insertAll</code> error so that it is retried, and
+ * the rejected rows are reported in the chunk of their request. A request with rejected rows appends
+ * none of its rows, so its other rows are reported as <code>stopped</code>.</p>
+ */
+final class StorageWriteAppender implements AutoCloseable {
+
+    // Headroom below the request size limit for the stream name, the writer schema and the framing.
+    private static final long REQUEST_OVERHEAD_BYTES = 64 * 1024;
+
+    private final BigQueryWriteClient client;
+    private final long maxRequestBytes;
+    private final Map<WriterKey, StreamWriter> writers = new ConcurrentHashMap<>();
+
+    StorageWriteAppender(BigQueryWriteClient client) {
+        this(client, StreamWriter.getApiMaxRequestBytes() - REQUEST_OVERHEAD_BYTES);
+    }
+
+    /**
+     * @param maxRequestBytes The maximum size of the serialized rows of a request.
+     */
+    StorageWriteAppender(BigQueryWriteClient client, long maxRequestBytes) {
+        this.client = client;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    /**
+     * @return The name of the default stream of a table.
+     */
+    static String defaultStreamName(String project, String dataset, String table) {
+        return TableName.of(project, dataset, table).toString() + "/_default";
+    }
+
+    /**
+     * Appends some of the objects, in requests per class as each class has its own writer schema,
+     * adding a chunk per answered request. The failure of a request that was not answered is thrown
+     * once all requests are sent, and its rows have no chunk, so that they can be appended again.
+     * @param streamName The stream to append to.
+     * @param objects The objects of the insert.
+     * @param positions The indexes of the objects to append, in ascending order.
+     * @param chunks The chunks of the insert, which the answered requests are added to.
+     */
+    void append(String streamName, List<Object> objects, List<Integer> positions, List<InsertResult.Chunk> chunks) {
+        // Row positions by class, to report row errors against the builder's rows.
+        Map<Class<?>, List<Integer>> rowsByClass = new LinkedHashMap<>();
+        for (int position : positions) {
+            rowsByClass.computeIfAbsent(objects.get(position).getClass(), k -> new ArrayList<>()).add(position);
+        }
+        RuntimeException failure = null;
+        for (Map.Entry<Class<?>, List<Integer>> entry : rowsByClass.entrySet()) {
+            RuntimeException classFailure = appendRows(streamName, entry.getKey(), objects, entry.getValue(), chunks);
+            if (failure == null) {
+                failure = classFailure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Closes the stream writers. The client is not closed.
+     */
+    @Override
+    public void close() {
+        for (WriterKey key : new ArrayList<>(writers.keySet())) {
+            StreamWriter writer = writers.remove(key);
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * @return The failure of the first request that was not answered, or null.
+     */
+    private RuntimeException appendRows(String streamName, Class<?> clazz, List<Object> objects, List<Integer> positions,
+            List<InsertResult.Chunk> chunks) {
+        ProtoRowEncoder encoder = ProtoRowEncoder.forClass(clazz);
+        WriterKey key = new WriterKey(streamName, encoder.getDescriptorProto());
+        StreamWriter writer;
+        try {
+            writer = writerFor(key);
+        } catch (IOException | ApiException e) {
+            return translate(e, streamName);
+        }
+
+        // Send all the requests before waiting for their answers.
+        List<Request> requests = new ArrayList<>();
+        Request request = new Request();
+        for (int position : positions) {
+            ByteString row = encoder.encode(objects.get(position)).toByteString();
+            long rowBytes = CodedOutputStream.computeBytesSize(1, row);
+            if (!request.positions.isEmpty() && request.bytes + rowBytes > maxRequestBytes) {
+                requests.add(request.send(writer));
+                request = new Request();
+            }
+            request.add(position, row, rowBytes);
+        }
+        requests.add(request.send(writer));
+
+        RuntimeException failure = null;
+        for (Request sent : requests) {
+            Map<Integer, String> rowErrors;
+            try {
+                AppendRowsResponse response = sent.response.get();
+                rowErrors = new LinkedHashMap<>();
+                for (RowError rowError : response.getRowErrorsList()) {
+                    rowErrors.put((int) rowError.getIndex(), rowError.getMessage());
+                }
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof Exceptions.AppendSerializtionError)) {
+                    if (failure == null) {
+                        failure = translate(e.getCause(), streamName);
+                        invalidate(key, writer);
+                    }
+                    continue;
+                }
+                rowErrors = ((Exceptions.AppendSerializtionError) e.getCause()).getRowIndexToErrorMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while appending rows to BigQuery.", e);
+            }
+            chunks.add(sent.chunk(rowErrors));
+        }
+        return failure;
+    }
+
+    private StreamWriter writerFor(WriterKey key) throws IOException {
+        StreamWriter writer = writers.get(key);
+        if (writer != null && !writer.isClosed()) {
+            return writer;
+        }
+        synchronized (writers) {
+            writer = writers.get(key);
+            if (writer == null || writer.isClosed()) {
+                ProtoSchema schema = ProtoSchema.newBuilder().setProtoDescriptor(key.descriptor).build();
+                writer = StreamWriter.newBuilder(key.streamName, client).setWriterSchema(schema).build();
+                writers.put(key, writer);
+            }
+            return writer;
+        }
+    }
+
+    /**
+     * Closes a writer whose append failed, so that the next append opens a new connection.
+     */
+    private void invalidate(WriterKey key, StreamWriter writer) {
+        if (writers.remove(key, writer)) {
+            writer.close();
+        }
+    }
+
+    private static RuntimeException translate(Throwable failure, String streamName) {
+        Status.Code code = failure instanceof ApiException
+                ? Status.Code.valueOf(((ApiException) failure).getStatusCode().getCode().name())
+                : Status.fromThrowable(failure).getCode();
+        String message = failure.getMessage();
+        if (code == Status.Code.NOT_FOUND) {
+            return new BigQueryException(404, message, new BigQueryError("notFound", streamName, message));
+        } else if (code == Status.Code.INVALID_ARGUMENT && message != null && message.toLowerCase().contains("schema")) {
+            // Reported with the message the builder checks before updating the table schema.
+            String mismatch = "Storage Write API schema mismatch: " + message;
+            return new BigQueryException(400, mismatch, new BigQueryError("invalid", streamName, mismatch));
+        }
+        String reason = retryableReason(code);
+        if (reason != null) {
+            // Reported like the transient insertAll failures, so that the builder retries the append after a backoff.
+            return new BigQueryException(retryableCode(code), message, new BigQueryError(reason, streamName, message));
+        }
+        return new BigQueryException(0, "Failed to append rows to " + streamName + ": " + message, failure);
+    }
+
+    /**
+     * @return The BigQuery error reason of a transient gRPC failure, or null if the append would fail again.
+     */
+    private static String retryableReason(Status.Code code) {
+        switch (code) {
+            case UNAVAILABLE:
+                return "backendError";
+            case INTERNAL:
+                return "internalError";
+            case DEADLINE_EXCEEDED:
+                return "timeout";
+            case RESOURCE_EXHAUSTED:
+                return "rateLimitExceeded";
+            default:
+                return null;
+        }
+    }
+
+    private static int retryableCode(Status.Code code) {
+        switch (code) {
+            case INTERNAL:
+                return 500;
+            case DEADLINE_EXCEEDED:
+                return 504;
+            case RESOURCE_EXHAUSTED:
+                return 429;
+            default:
+                return 503;
+        }
+    }
+
+    /**
+     * The rows of one <code>AppendRows</code> request.
+     */
+    private static final class Request {
+        private final List<Integer> positions = new ArrayList<>();
+        private final ProtoRows.Builder rows = ProtoRows.newBuilder();
+        private long bytes;
+        private Future<AppendRowsResponse> response;
+
+        private void add(int position, ByteString row, long rowBytes) {
+            positions.add(position);
+            rows.addSerializedRows(row);
+            bytes += rowBytes;
+        }
+
+        private Request send(StreamWriter writer) {
+            response = writer.append(rows.build());
+            return this;
+        }
+
+        /**
+         * @param rowErrors The error messages by index in the request.
+         */
+        private InsertResult.Chunk chunk(Map<Integer, String> rowErrors) {
+            Map<Long, List<BigQueryError>> errors = new LinkedHashMap<>();
+            if (!rowErrors.isEmpty()) {
+                for (int i = 0; i < positions.size(); i++) {
+                    String message = rowErrors.get(i);
+                    BigQueryError error = message != null
+                            ? new BigQueryError("invalid", null, message)
+                            : new BigQueryError("stopped", null, "Not appended, other rows of the request were rejected.");
+                    errors.put((long) positions.get(i), Collections.singletonList(error));
+                }
+            }
+            int[] rows = new int[positions.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = positions.get(i);
+            }
+            return new InsertResult.Chunk(rows, bytes, 1, errors);
+        }
+    }
+
+    /**
+     * A stream and the writer schema of its rows.
+     */
+    private static final class WriterKey {
+        private final String streamName;
+        private final DescriptorProto descriptor;
+
+        private WriterKey(String streamName, DescriptorProto descriptor) {
+            this.streamName = streamName;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof WriterKey)) {
+                return false;
+            }
+            WriterKey other = (WriterKey) o;
+            return streamName.equals(other.streamName) && descriptor.equals(other.descriptor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(streamName, descriptor);
+        }
+    }
+}
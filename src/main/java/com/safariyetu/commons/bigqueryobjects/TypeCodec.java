@@ -0,0 +1,181 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.function.Function;
+
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+
+/**
+ * Maps a Java value type to a BigQuery column type: the column type of the schema, the encoder used
+ * when writing and the decoder used when reading. Codecs are looked up once per class through
+ * {@link TypeCodecs}, which holds the built-in codecs and the ones registered for other value types.
+ *
+ * <p>A codec encodes values to the standard Java representation of its column type, which all write
+ * paths (streaming inserts, JSON, protobuf, Arrow, Avro and Parquet) know how to serialize:</p>
+ * <ul>
+ * <li><code>INTEGER</code> -> an integral <code>Number</code>, <code>FLOAT</code> -> a <code>Number</code></li>
+ * <li><code>BOOLEAN</code> -> <code>Boolean</code>, <code>STRING</code> -> <code>String</code>, <code>BYTES</code> -> <code>byte[]</code></li>
+ * <li><code>NUMERIC</code> -> <code>BigDecimal</code></li>
+ * <li><code>DATE</code> -> <code>LocalDate</code>, <code>TIME</code> -> <code>LocalTime</code>,
+ * <code>DATETIME</code> -> <code>LocalDateTime</code>, <code>TIMESTAMP</code> -> <code>Instant</code></li>
+ * </ul>
+ *
+ * @param <T> The Java value type.
+ */
+public abstract class TypeCodec<T> {
+
+    private final Class<T> type;
+    private final LegacySQLTypeName sqlType;
+    private final JsonForm jsonForm;
+
+    /**
+     * @param type The Java value type.
+     * @param sqlType The BigQuery column type. RECORD is not a value type.
+     */
+    protected TypeCodec(Class<T> type, LegacySQLTypeName sqlType) {
+        if (LegacySQLTypeName.RECORD.equals(sqlType)) {
+            throw new IllegalArgumentException("A codec cannot map " + type.getName() + " to a RECORD column.");
+        }
+        this.type = type;
+        this.sqlType = sqlType;
+        this.jsonForm = JsonForm.of(sqlType);
+    }
+
+    /**
+     * Creates a codec from an encoder and a decoder function.
+     * @param type The Java value type.
+     * @param sqlType The BigQuery column type.
+     * @param encoder Converts a non-null value to the standard representation of the column type.
+     * @param decoder Converts a non-null BigQuery value to a Java value.
+     * @param <T> The Java value type.
+     * @return The codec.
+     */
+    public static <T> TypeCodec<T> of(Class<T> type, LegacySQLTypeName sqlType,
+            Function<? super T, ?> encoder, Function<FieldValue, ? extends T> decoder) {
+        return new TypeCodec<T>(type, sqlType) {
+            @Override
+            public Object encode(T value) {
+                return encoder.apply(value);
+            }
+
+            @Override
+            public T decode(FieldValue value) {
+                return decoder.apply(value);
+            }
+        };
+    }
+
+    /**
+     * @return The Java value type.
+     */
+    public final Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return The BigQuery column type of the values.
+     */
+    public final LegacySQLTypeName getSqlType() {
+        return sqlType;
+    }
+
+    /**
+     * Encodes a value for writing.
+     * @param value The non-null value.
+     * @return The value in the standard Java representation of the column type.
+     */
+    public abstract Object encode(T value);
+
+    /**
+     * Decodes a value read from BigQuery.
+     * @param value The non-null primitive value.
+     * @return The Java value.
+     */
+    public abstract T decode(FieldValue value);
+
+    /**
+     * Encodes a value to its representation in streaming insert rows and JSON.
+     */
+    Object toJson(T value) {
+        return jsonForm.toJson(encode(value));
+    }
+
+    /**
+     * Writes a value as the JSON form of {@link #toJson(Object)}.
+     */
+    void writeJson(T value, JsonOutput out) {
+        jsonForm.writeJson(encode(value), out);
+    }
+
+    /**
+     * The JSON representation of the standard values of a column type.
+     */
+    private enum JsonForm {
+        /** Numbers, booleans and strings are used directly. */
+        VALUE {
+            @Override
+            Object toJson(Object value) {
+                return value;
+            }
+
+            @Override
+            void writeJson(Object value, JsonOutput out) {
+                JsonRowEncoder.writeValue(value, out);
+            }
+        },
+        /** NUMERIC is sent as the plain string representation. */
+        PLAIN_DECIMAL {
+            @Override
+            Object toJson(Object value) {
+                return ((BigDecimal) value).toPlainString();
+            }
+
+            @Override
+            void writeJson(Object value, JsonOutput out) {
+                out.writeString(((BigDecimal) value).toPlainString());
+            }
+        },
+        /** BYTES are sent base64-encoded. */
+        BASE64 {
+            @Override
+            Object toJson(Object value) {
+                return Base64.getEncoder().encodeToString((byte[]) value);
+            }
+
+            @Override
+            void writeJson(Object value, JsonOutput out) {
+                out.writeString(Base64.getEncoder().encodeToString((byte[]) value));
+            }
+        },
+        /** DATE, DATETIME, TIMESTAMP and TIME are sent as ISO 8601 strings. */
+        ISO_STRING {
+            @Override
+            Object toJson(Object value) {
+                return value.toString();
+            }
+
+            @Override
+            void writeJson(Object value, JsonOutput out) {
+                out.writeString(value.toString());
+            }
+        };
+
+        abstract Object toJson(Object value);
+
+        abstract void writeJson(Object value, JsonOutput out);
+
+        static JsonForm of(LegacySQLTypeName sqlType) {
+            if (LegacySQLTypeName.NUMERIC.equals(sqlType) || LegacySQLTypeName.BIGNUMERIC.equals(sqlType)) {
+                return PLAIN_DECIMAL;
+            } else if (LegacySQLTypeName.BYTES.equals(sqlType)) {
+                return BASE64;
+            } else if (LegacySQLTypeName.DATE.equals(sqlType) || LegacySQLTypeName.TIME.equals(sqlType)
+                    || LegacySQLTypeName.DATETIME.equals(sqlType) || LegacySQLTypeName.TIMESTAMP.equals(sqlType)) {
+                return ISO_STRING;
+            }
+            return VALUE;
+        }
+    }
+}
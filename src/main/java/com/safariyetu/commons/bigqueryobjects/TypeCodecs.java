@@ -0,0 +1,221 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+
+/**
+ * The registry of {@link TypeCodec}s, which decides which Java types are BigQuery values rather
+ * than nested records.
+ *
+ * <h3>Built-in codecs:</h3>
+ * <ul>
+ * <li><code>int</code>, <code>long</code>, <code>short</code>, <code>byte</code> and their wrappers -> <code>INTEGER</code></li>
+ * <li><code>float</code>, <code>double</code> and their wrappers -> <code>FLOAT</code></li>
+ * <li><code>boolean</code>, <code>Boolean</code> -> <code>BOOLEAN</code></li>
+ * <li><code>String</code>, <code>UUID</code> and enums (by constant name) -> <code>STRING</code></li>
+ * <li><code>byte[]</code> -> <code>BYTES</code></li>
+ * <li><code>BigDecimal</code>, <code>BigInteger</code> -> <code>NUMERIC</code></li>
+ * <li><code>LocalDate</code> -> <code>DATE</code>, <code>LocalTime</code> -> <code>TIME</code>, <code>LocalDateTime</code> -> <code>DATETIME</code></li>
+ * <li><code>Instant</code>, <code>OffsetDateTime</code>, <code>ZonedDateTime</code>, <code>Date</code>, <code>java.sql.Date</code> -> <code>TIMESTAMP</code></li>
+ * </ul>
+ *
+ * <p>The codec of a class is resolved once and cached, so each lookup is a single
+ * {@link ClassValue} read. Codecs for other value types must be registered before the classes
+ * that use them are first written or read, as schemas and serialization plans are cached too.</p>
+ */
+public final class TypeCodecs {
+
+    private static final Map<Class<?>, TypeCodec<?>> BUILT_IN = new IdentityHashMap<>();
+    private static final Map<Class<?>, TypeCodec<?>> REGISTERED = new ConcurrentHashMap<>();
+
+    private static final ClassValue<Optional<TypeCodec<?>>> CODECS = new ClassValue<Optional<TypeCodec<?>>>() {
+        @Override
+        protected Optional<TypeCodec<?>> computeValue(Class<?> type) {
+            return Optional.ofNullable(resolve(type));
+        }
+    };
+
+    static {
+        TypeCodec<Integer> integerCodec = TypeCodec.of(Integer.class, LegacySQLTypeName.INTEGER,
+                value -> value, value -> (int) value.getLongValue());
+        TypeCodec<Long> longCodec = TypeCodec.of(Long.class, LegacySQLTypeName.INTEGER,
+                value -> value, FieldValue::getLongValue);
+        TypeCodec<Short> shortCodec = TypeCodec.of(Short.class, LegacySQLTypeName.INTEGER,
+                value -> value, value -> (short) value.getLongValue());
+        TypeCodec<Byte> byteCodec = TypeCodec.of(Byte.class, LegacySQLTypeName.INTEGER,
+                value -> value, value -> (byte) value.getLongValue());
+        TypeCodec<Double> doubleCodec = TypeCodec.of(Double.class, LegacySQLTypeName.FLOAT,
+                value -> value, FieldValue::getDoubleValue);
+        TypeCodec<Float> floatCodec = TypeCodec.of(Float.class, LegacySQLTypeName.FLOAT,
+                value -> value, value -> (float) value.getDoubleValue());
+        TypeCodec<Boolean> booleanCodec = TypeCodec.of(Boolean.class, LegacySQLTypeName.BOOLEAN,
+                value -> value, FieldValue::getBooleanValue);
+        builtIn(integerCodec, int.class);
+        builtIn(longCodec, long.class);
+        builtIn(shortCodec, short.class);
+        builtIn(byteCodec, byte.class);
+        builtIn(doubleCodec, double.class);
+        builtIn(floatCodec, float.class);
+        builtIn(booleanCodec, boolean.class);
+
+        builtIn(TypeCodec.of(String.class, LegacySQLTypeName.STRING, value -> value, FieldValue::getStringValue));
+        builtIn(TypeCodec.of(UUID.class, LegacySQLTypeName.STRING,
+                UUID::toString, value -> UUID.fromString(value.getStringValue())));
+        builtIn(TypeCodec.of(byte[].class, LegacySQLTypeName.BYTES, value -> value, FieldValue::getBytesValue));
+
+        builtIn(TypeCodec.of(BigDecimal.class, LegacySQLTypeName.NUMERIC,
+                value -> value, value -> new BigDecimal(value.getStringValue())));
+        builtIn(TypeCodec.of(BigInteger.class, LegacySQLTypeName.NUMERIC,
+                BigDecimal::new, value -> new BigInteger(value.getStringValue())));
+
+        builtIn(TypeCodec.of(LocalDate.class, LegacySQLTypeName.DATE,
+                value -> value, value -> LocalDate.parse(value.getStringValue())));
+        builtIn(TypeCodec.of(LocalTime.class, LegacySQLTypeName.TIME,
+                value -> value, value -> LocalTime.parse(value.getStringValue())));
+        builtIn(TypeCodec.of(LocalDateTime.class, LegacySQLTypeName.DATETIME,
+                value -> value, value -> BigQueryObjectReader.parseLocalDateTime(value.getStringValue())));
+
+        builtIn(TypeCodec.of(Instant.class, LegacySQLTypeName.TIMESTAMP,
+                value -> value, BigQueryObjectReader::parseInstant));
+        builtIn(TypeCodec.of(OffsetDateTime.class, LegacySQLTypeName.TIMESTAMP,
+                OffsetDateTime::toInstant, BigQueryObjectReader::parseOffsetDateTime));
+        builtIn(TypeCodec.of(ZonedDateTime.class, LegacySQLTypeName.TIMESTAMP,
+                ZonedDateTime::toInstant, value -> BigQueryObjectReader.parseOffsetDateTime(value).toZonedDateTime()));
+        builtIn(TypeCodec.of(Date.class, LegacySQLTypeName.TIMESTAMP,
+                value -> Instant.ofEpochMilli(value.getTime()), BigQueryObjectReader::parseDate));
+        builtIn(TypeCodec.of(java.sql.Date.class, LegacySQLTypeName.TIMESTAMP,
+                value -> Instant.ofEpochMilli(value.getTime()), value -> new java.sql.Date(BigQueryObjectReader.parseDate(value).getTime())));
+    }
+
+    private TypeCodecs() {
+    }
+
+    /**
+     * Registers the codec of a value type that has no built-in codec, so that its fields are
+     * written and read as values of the codec's column type instead of nested records.
+     * A codec registered again for the same type replaces the previous one.
+     * @param codec The codec.
+     * @throws IllegalArgumentException if the type has a built-in codec.
+     */
+    public static void register(TypeCodec<?> codec) {
+        Class<?> type = codec.getType();
+        if (BUILT_IN.containsKey(type) || Enum.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException("Cannot replace the built-in codec of " + type.getName());
+        }
+        REGISTERED.put(type, codec);
+        CODECS.remove(type);
+    }
+
+    /**
+     * Returns the codec of a class.
+     * @param clazz The class, e.g. the declared type of a field or the element type of a collection.
+     * @return The codec, or null if values of the class are nested records.
+     */
+    public static TypeCodec<?> forClass(Class<?> clazz) {
+        return CODECS.get(clazz).orElse(null);
+    }
+
+    /**
+     * Returns the codec of a class, typed for encoding values read from fields of that class.
+     */
+    @SuppressWarnings("unchecked")
+    static TypeCodec<Object> codecFor(Class<?> clazz) {
+        return (TypeCodec<Object>) forClass(clazz);
+    }
+
+    /**
+     * Gives a <code>NUMERIC</code> value the fixed scale of a file or columnar encoding. Values with
+     * more fractional digits are rejected rather than rounded, like the Storage Write API does.
+     * @param value The value.
+     * @param scale The scale of the encoding.
+     * @return The value with the given scale.
+     * @throws IllegalArgumentException if the value has more than <code>scale</code> fractional digits.
+     */
+    static BigDecimal toNumericScale(BigDecimal value, int scale) {
+        try {
+            return value.setScale(scale, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("NUMERIC values have at most " + scale + " fractional digits: "
+                    + value.toPlainString(), e);
+        }
+    }
+
+    private static void builtIn(TypeCodec<?> codec, Class<?>... aliases) {
+        BUILT_IN.put(codec.getType(), codec);
+        for (Class<?> alias : aliases) {
+            BUILT_IN.put(alias, codec);
+        }
+    }
+
+    private static TypeCodec<?> resolve(Class<?> type) {
+        TypeCodec<?> codec = BUILT_IN.get(type);
+        if (codec != null) {
+            return codec;
+        }
+        codec = REGISTERED.get(type);
+        if (codec != null) {
+            return codec;
+        }
+        if (Enum.class.isAssignableFrom(type) && type != Enum.class) {
+            // Constants with a body are subclasses of their enum type.
+            Class<?> enumType = type.isEnum() ? type : type.getSuperclass();
+            return type == enumType ? enumCodec(enumType) : forClass(enumType);
+        }
+        return null;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static TypeCodec<?> enumCodec(Class<?> type) {
+        return new EnumCodec(type);
+    }
+
+    /**
+     * Writes enum constants by name, with the names and the reverse lookup cached per enum type.
+     */
+    private static final class EnumCodec<E extends Enum<E>> extends TypeCodec<E> {
+        private final String[] names;
+        private final Map<String, E> constants;
+
+        private EnumCodec(Class<E> type) {
+            super(type, LegacySQLTypeName.STRING);
+            E[] values = type.getEnumConstants();
+            this.names = new String[values.length];
+            this.constants = new HashMap<>(values.length * 2);
+            for (E value : values) {
+                names[value.ordinal()] = value.name();
+                constants.put(value.name(), value);
+            }
+        }
+
+        @Override
+        public Object encode(E value) {
+            return names[value.ordinal()];
+        }
+
+        @Override
+        public E decode(FieldValue value) {
+            E constant = constants.get(value.getStringValue());
+            if (constant == null) {
+                throw new IllegalArgumentException("No constant '" + value.getStringValue() + "' in " + getType().getName());
+            }
+            return constant;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+/**
+ * The API used by {@link BigQueryObjectWriter.InsertBuilder} to write rows.
+ */
+public enum WriteMode {
+    /** Legacy streaming inserts through <code>tabledata.insertAll</code>. */
+    INSERT_ALL,
+    /**
+     * Binary appends through the Storage Write API, to the table's default stream unless another
+     * stream is set. Requires a writer created with a <code>BigQueryWriteClient</code>.
+     */
+    STORAGE_WRITE
+}
@@ -0,0 +1,545 @@
+package com.safariyetu.commons.bigqueryobjects.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import com.safariyetu.commons.bigqueryobjects.GeneratedRows;
+import com.safariyetu.commons.bigqueryobjects.TypeCodec;
+import com.safariyetu.commons.bigqueryobjects.TypeCodecs;
+
+/**
+ * Generates a {@link com.safariyetu.commons.bigqueryobjects.RowWriter} and a
+ * {@link com.safariyetu.commons.bigqueryobjects.RowReader} for every class annotated with
+ * {@link com.safariyetu.commons.bigqueryobjects.BigQueryRow}.
+ *
+ * <p>The generated code mirrors the reflective mapping of {@code BigQueryObjectWriter} and
+ * {@code BigQueryObjectReader}: supported simple types and collections of simple types are
+ * converted inline, while nested records and types without a direct mapping are delegated to
+ * {@link GeneratedRows}. When a class cannot be mapped without reflection (e.g. a private field
+ * without an accessor), a warning is reported and no code is generated for that direction,
+ * so the reflective mapping is used at runtime.</p>
+ */
+@SupportedAnnotationTypes("com.safariyetu.commons.bigqueryobjects.BigQueryRow")
+public class BigQueryRowProcessor extends AbstractProcessor {
+
+    private static final String FIELD = "com.google.cloud.bigquery.Field";
+    private static final String SQL_TYPE = "com.google.cloud.bigquery.LegacySQLTypeName";
+    private static final String SUPPORT = GeneratedRows.class.getName();
+
+    /**
+     * How a field value is converted by the generated writer, matching the reflective plan.
+     */
+    private enum Conversion {
+        PASS_THROUGH, NUMERIC, DATE, TEMPORAL, CODEC, RECORD, REPEATED_SIMPLE, REPEATED_RECORD
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "@BigQueryRow can only be applied to classes", element);
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                if (!isAccessibleFromPackage(type)) {
+                    warn(type, "class is not accessible from its package");
+                    continue;
+                }
+                if (!type.getTypeParameters().isEmpty()) {
+                    warn(type, "generic classes are not supported");
+                    continue;
+                }
+                List<VariableElement> fields = instanceFields(type);
+                generateWriter(type, fields);
+                generateReader(type, fields);
+            }
+        }
+        return true;
+    }
+
+    private void generateWriter(TypeElement type, List<VariableElement> fields) {
+        String typeName = type.getQualifiedName().toString();
+        StringBuilder toMap = new StringBuilder();
+        StringBuilder schema = new StringBuilder();
+        int index = 0;
+        for (VariableElement field : fields) {
+            String name = field.getSimpleName().toString();
+            TypeMirror fieldType = field.asType();
+            Conversion conversion = conversionOf(fieldType);
+            if (conversion == null) {
+                // Collections with an unresolvable element type are not mapped.
+                continue;
+            }
+            String read = readExpression(type, field);
+            if (read == null) {
+                warn(type, "field '" + name + "' is private and has no getter, no RowWriter is generated");
+                return;
+            }
+            String local = "v" + index++;
+            String quoted = quote(name);
+            if (fieldType.getKind().isPrimitive()) {
+                toMap.append("        row.put(").append(quoted).append(", ").append(read).append(");\n");
+            } else {
+                toMap.append("        ").append(fieldType).append(' ').append(local).append(" = ").append(read).append(";\n");
+                toMap.append("        if (").append(local).append(" != null) {\n");
+                toMap.append("            row.put(").append(quoted).append(", ").append(convertExpression(conversion, local)).append(");\n");
+                toMap.append("        }\n");
+            }
+            schema.append("        fields.add(").append(fieldExpression(typeName, name, fieldType, conversion)).append(");\n");
+        }
+
+        String simpleName = generatedSimpleName(type, GeneratedRows.WRITER_SUFFIX);
+        StringBuilder source = new StringBuilder();
+        appendHeader(source, type);
+        source.append("public final class ").append(simpleName)
+                .append(" implements com.safariyetu.commons.bigqueryobjects.RowWriter<").append(typeName).append("> {\n\n");
+        source.append("    @Override\n");
+        source.append("    public java.util.Map<java.lang.String, java.lang.Object> toMap(").append(typeName).append(" object) {\n");
+        source.append("        com.google.common.collect.ImmutableMap.Builder<java.lang.String, java.lang.Object> row = com.google.common.collect.ImmutableMap.builder();\n");
+        source.append(toMap);
+        source.append("        return row.build();\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public java.util.List<").append(FIELD).append("> fields() {\n");
+        source.append("        java.util.List<").append(FIELD).append("> fields = new java.util.ArrayList<").append(FIELD).append(">();\n");
+        source.append(schema);
+        source.append("        return fields;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        write(type, simpleName, source);
+    }
+
+    private void generateReader(TypeElement type, List<VariableElement> fields) {
+        if (!hasAccessibleDefaultConstructor(type)) {
+            warn(type, "no non-private no-argument constructor, no RowReader is generated");
+            return;
+        }
+        String typeName = type.getQualifiedName().toString();
+        StringBuilder cases = new StringBuilder();
+        StringBuilder names = new StringBuilder();
+        for (VariableElement field : fields) {
+            String name = field.getSimpleName().toString();
+            names.append(names.length() == 0 ? "" : ", ").append(quote(name));
+            String decode = decodeExpression(typeName, name, field.asType());
+            String assignment = assignStatement(type, field, decode);
+            if (assignment == null) {
+                warn(type, "field '" + name + "' is private or final and has no setter, no RowReader is generated");
+                return;
+            }
+            cases.append("            case ").append(quote(name)).append(":\n");
+            cases.append("                ").append(assignment).append('\n');
+            cases.append("                return true;\n");
+        }
+
+        String simpleName = generatedSimpleName(type, GeneratedRows.READER_SUFFIX);
+        StringBuilder source = new StringBuilder();
+        appendHeader(source, type);
+        source.append("public final class ").append(simpleName)
+                .append(" implements com.safariyetu.commons.bigqueryobjects.RowReader<").append(typeName).append("> {\n\n");
+        source.append("    private static final java.util.List<java.lang.String> FIELD_NAMES = java.util.Collections.unmodifiableList(\n");
+        source.append("            java.util.Arrays.<java.lang.String>asList(").append(names).append("));\n\n");
+        source.append("    @Override\n");
+        source.append("    public ").append(typeName).append(" newInstance() {\n");
+        source.append("        return new ").append(typeName).append("();\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public java.util.List<java.lang.String> fieldNames() {\n");
+        source.append("        return FIELD_NAMES;\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    @SuppressWarnings(\"unchecked\")\n");
+        source.append("    public boolean setField(").append(typeName)
+                .append(" object, java.lang.String fieldName, com.google.cloud.bigquery.FieldValue value) {\n");
+        source.append("        switch (fieldName) {\n");
+        source.append(cases);
+        source.append("            default:\n");
+        source.append("                return false;\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        source.append("}\n");
+        write(type, simpleName, source);
+    }
+
+    private void appendHeader(StringBuilder source, TypeElement type) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("// Generated by ").append(getClass().getName()).append(" for ")
+                .append(type.getQualifiedName()).append(". Do not edit.\n");
+    }
+
+    private void write(TypeElement type, String simpleName, StringBuilder source) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+            try (PrintWriter out = new PrintWriter(writer)) {
+                out.print(source);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write " + qualifiedName + ": " + e.getMessage(), type);
+        }
+    }
+
+    private String generatedSimpleName(TypeElement type, String suffix) {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        return GeneratedRows.generatedClassName(binaryName, suffix)
+                .substring(binaryName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Selects the conversion of a field value, or null for collections that are not mapped.
+     */
+    private Conversion conversionOf(TypeMirror type) {
+        if (isCollection(type)) {
+            TypeMirror element = collectionElement(type);
+            if (element == null) {
+                return null;
+            }
+            // Only elements whose codec sends them as they are can be copied, the others, e.g. BigDecimal,
+            // are converted by their codec like the reflective plan does.
+            return isJsonValue(element) ? Conversion.REPEATED_SIMPLE : Conversion.REPEATED_RECORD;
+        }
+        if (sqlTypeOf(type) == null) {
+            // Nested records, value types with a TypeCodec registered at runtime, and primitive arrays.
+            return Conversion.RECORD;
+        }
+        if (type.getKind().isPrimitive() || isJsonValue(type)) {
+            return Conversion.PASS_THROUGH;
+        }
+        String name = qualifiedName(type);
+        if ("java.math.BigDecimal".equals(name)) {
+            return Conversion.NUMERIC;
+        } else if ("java.util.Date".equals(name) || "java.sql.Date".equals(name)) {
+            return Conversion.DATE;
+        } else if ("java.time.LocalDate".equals(name) || "java.time.LocalTime".equals(name)
+                || "java.time.LocalDateTime".equals(name) || "java.time.Instant".equals(name)) {
+            return Conversion.TEMPORAL;
+        }
+        // Other built-in value types, e.g. UUID, ZonedDateTime or byte[], are converted by their codec.
+        return Conversion.CODEC;
+    }
+
+    private String convertExpression(Conversion conversion, String value) {
+        switch (conversion) {
+            case NUMERIC:
+                return value + ".toPlainString()";
+            case DATE:
+                return "java.time.Instant.ofEpochMilli(" + value + ".getTime()).toString()";
+            case TEMPORAL:
+                return value + ".toString()";
+            case CODEC:
+            case RECORD:
+                return SUPPORT + ".toValue(" + value + ")";
+            case REPEATED_SIMPLE:
+                return "new java.util.ArrayList<java.lang.Object>(" + value + ")";
+            case REPEATED_RECORD:
+                return SUPPORT + ".toValues(" + value + ")";
+            default:
+                return value;
+        }
+    }
+
+    private String fieldExpression(String typeName, String name, TypeMirror type, Conversion conversion) {
+        String quoted = quote(name);
+        if (conversion == Conversion.REPEATED_SIMPLE) {
+            String sqlType = sqlTypeOf(collectionElement(type));
+            if (sqlType != null) {
+                return FIELD + ".newBuilder(" + quoted + ", " + SQL_TYPE + "." + sqlType + ").setMode("
+                        + FIELD + ".Mode.REPEATED).build()";
+            }
+        } else if (conversion != Conversion.RECORD && conversion != Conversion.REPEATED_RECORD) {
+            return FIELD + ".of(" + quoted + ", " + SQL_TYPE + "." + sqlTypeOf(type) + ")";
+        }
+        // Nested records are derived from the nested class, generated or reflective, other value types from their
+        // codec and primitive arrays from their element type.
+        return SUPPORT + ".fieldOf(" + typeName + ".class, " + quoted + ")";
+    }
+
+    private String decodeExpression(String typeName, String name, TypeMirror type) {
+        switch (type.getKind()) {
+            case BYTE:
+                return "(byte) value.getLongValue()";
+            case SHORT:
+                return "(short) value.getLongValue()";
+            case INT:
+                return "(int) value.getLongValue()";
+            case LONG:
+                return "value.getLongValue()";
+            case DOUBLE:
+                return "value.getDoubleValue()";
+            case FLOAT:
+                return "(float) value.getDoubleValue()";
+            case BOOLEAN:
+                return "value.getBooleanValue()";
+            default:
+                break;
+        }
+        String qualifiedName = qualifiedName(type);
+        if (qualifiedName != null) {
+            switch (qualifiedName) {
+                case "java.lang.String":
+                    return "value.getStringValue()";
+                case "java.lang.Byte":
+                    return "(byte) value.getLongValue()";
+                case "java.lang.Short":
+                    return "(short) value.getLongValue()";
+                case "java.lang.Integer":
+                    return "(int) value.getLongValue()";
+                case "java.lang.Long":
+                    return "value.getLongValue()";
+                case "java.lang.Double":
+                    return "value.getDoubleValue()";
+                case "java.lang.Float":
+                    return "(float) value.getDoubleValue()";
+                case "java.lang.Boolean":
+                    return "value.getBooleanValue()";
+                case "java.math.BigDecimal":
+                    return "new java.math.BigDecimal(value.getStringValue())";
+                case "java.math.BigInteger":
+                    return "new java.math.BigInteger(value.getStringValue())";
+                case "java.time.LocalDate":
+                    return "java.time.LocalDate.parse(value.getStringValue())";
+                case "java.time.LocalTime":
+                    return "java.time.LocalTime.parse(value.getStringValue())";
+                case "java.time.LocalDateTime":
+                    return SUPPORT + ".readLocalDateTime(value)";
+                case "java.time.OffsetDateTime":
+                    return SUPPORT + ".readOffsetDateTime(value)";
+                case "java.time.Instant":
+                    return SUPPORT + ".readInstant(value)";
+                case "java.util.Date":
+                    return SUPPORT + ".readDate(value)";
+                default:
+                    break;
+            }
+        }
+        // Nested records and collections are decoded by the reflective reader.
+        String target = type.getKind().isPrimitive()
+                ? processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString()
+                : type.toString();
+        return "(" + target + ") " + SUPPORT + ".readField(value, " + typeName + ".class, " + quote(name) + ")";
+    }
+
+    /**
+     * Returns the BigQuery type name of a simple field type, from the built-in codecs of {@link TypeCodecs}
+     * as in BigQueryObjectWriter.getTypeFromClass. Only JDK types are looked up, as the other classes
+     * being compiled cannot be loaded, and codecs registered at runtime are resolved by {@link GeneratedRows}.
+     */
+    private String sqlTypeOf(TypeMirror type) {
+        Class<?> clazz = classOf(type);
+        TypeCodec<?> codec = clazz != null ? TypeCodecs.forClass(clazz) : null;
+        return codec != null ? codec.getSqlType().name() : null;
+    }
+
+    /**
+     * Returns the class of a primitive type, of a JDK class or of an array of primitives, otherwise null.
+     */
+    private Class<?> classOf(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return boolean.class;
+            case BYTE:
+                return byte.class;
+            case SHORT:
+                return short.class;
+            case INT:
+                return int.class;
+            case LONG:
+                return long.class;
+            case CHAR:
+                return char.class;
+            case FLOAT:
+                return float.class;
+            case DOUBLE:
+                return double.class;
+            case ARRAY:
+                Class<?> component = classOf(((ArrayType) type).getComponentType());
+                return component != null && component.isPrimitive() ? Array.newInstance(component, 0).getClass() : null;
+            case DECLARED:
+                String name = qualifiedName(type);
+                if (!name.startsWith("java.")) {
+                    return null;
+                }
+                try {
+                    return Class.forName(name, false, BigQueryRowProcessor.class.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    private boolean isCollection(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeMirror collection = processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
+        return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type), collection);
+    }
+
+    /**
+     * Returns the element type of a parameterized collection if it is a plain class, otherwise null.
+     */
+    private TypeMirror collectionElement(TypeMirror type) {
+        List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+        if (arguments.isEmpty()) {
+            return null;
+        }
+        TypeMirror element = arguments.get(0);
+        if (element.getKind() != TypeKind.DECLARED || !((DeclaredType) element).getTypeArguments().isEmpty()) {
+            return null;
+        }
+        return element;
+    }
+
+    /**
+     * Returns whether values of a type are sent as they are, i.e. boxed primitives, booleans and strings.
+     */
+    private boolean isJsonValue(TypeMirror type) {
+        String name = qualifiedName(type);
+        if (name == null) {
+            return false;
+        }
+        switch (name) {
+            case "java.lang.Byte":
+            case "java.lang.Short":
+            case "java.lang.Integer":
+            case "java.lang.Long":
+            case "java.lang.Float":
+            case "java.lang.Double":
+            case "java.lang.Boolean":
+            case "java.lang.String":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private String qualifiedName(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+
+    private List<VariableElement> instanceFields(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (!field.getModifiers().contains(Modifier.STATIC)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private String readExpression(TypeElement type, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+            return "object." + name;
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            String methodName = method.getSimpleName().toString();
+            boolean getterName = methodName.equals("get" + capitalize(name))
+                    || (field.asType().getKind() == TypeKind.BOOLEAN && methodName.equals("is" + capitalize(name)));
+            if (getterName && method.getParameters().isEmpty() && isCallable(method)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                return "object." + methodName + "()";
+            }
+        }
+        return null;
+    }
+
+    private String assignStatement(TypeElement type, VariableElement field, String value) {
+        String name = field.getSimpleName().toString();
+        if (!field.getModifiers().contains(Modifier.PRIVATE) && !field.getModifiers().contains(Modifier.FINAL)) {
+            return "object." + name + " = " + value + ";";
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals("set" + capitalize(name))
+                    && method.getParameters().size() == 1 && isCallable(method)
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), field.asType())) {
+                return "object." + method.getSimpleName() + "(" + value + ");";
+            }
+        }
+        return null;
+    }
+
+    private boolean hasAccessibleDefaultConstructor(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)
+                || (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))) {
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isCallable(ExecutableElement method) {
+        return !method.getModifiers().contains(Modifier.PRIVATE) && !method.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private boolean isAccessibleFromPackage(TypeElement type) {
+        Element current = type;
+        while (current != null && (current.getKind().isClass() || current.getKind().isInterface())) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (((TypeElement) current).getNestingKind() == javax.lang.model.element.NestingKind.LOCAL
+                    || ((TypeElement) current).getNestingKind() == javax.lang.model.element.NestingKind.ANONYMOUS) {
+                return false;
+            }
+            current = current.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private void warn(TypeElement type, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "@BigQueryRow " + type.getQualifiedName() + ": " + message + ", the reflective mapping is used instead", type);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
@@ -0,0 +1,146 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestCollectionObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestComplexObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestPrimitiveArrayObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+public class ArrowRowEncoderTest {
+
+    private BufferAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new RootAllocator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Fails if a test leaked vector memory
+        allocator.close();
+    }
+
+    @Test
+    public void testEncode_whenPrimitiveFields_thenFillPrimitiveVectors() {
+        // Setup
+        List<TestSimpleObject> objects = Arrays.asList(new TestSimpleObject("a", 1, true, 1.5), new TestSimpleObject(null, 2, false, 2.5));
+
+        // Execute
+        try (VectorSchemaRoot root = ArrowRowEncoder.forClass(TestSimpleObject.class).encode(objects, allocator)) {
+            // Verify
+            assertThat(root.getRowCount()).isEqualTo(2);
+            VarCharVector names = (VarCharVector) root.getVector("name");
+            assertThat(names.getObject(0).toString()).isEqualTo("a");
+            assertThat(names.isNull(1)).isTrue();
+            assertThat(((BigIntVector) root.getVector("age")).get(1)).isEqualTo(2L);
+            assertThat(((BitVector) root.getVector("active")).get(0)).isEqualTo(1);
+            assertThat(((Float8Vector) root.getVector("score")).get(1)).isEqualTo(2.5);
+        }
+    }
+
+    @Test
+    public void testEncode_whenPrimitiveArrayFields_thenFillListDataVectors() {
+        // Setup
+        List<TestPrimitiveArrayObject> objects = Arrays.asList(
+                new TestPrimitiveArrayObject("latency", new int[] {1, 2}, new long[] {10L, 20L, 30L},
+                        new double[] {0.5}, new float[] {0.25f}, new boolean[] {true, false}),
+                new TestPrimitiveArrayObject("empty", new int[0], null, null, null, null));
+
+        // Execute
+        try (VectorSchemaRoot root = ArrowRowEncoder.forClass(TestPrimitiveArrayObject.class).encode(objects, allocator)) {
+            // Verify
+            ListVector buckets = (ListVector) root.getVector("buckets");
+            assertThat(buckets.getObject(0)).containsExactly(10L, 20L, 30L).inOrder();
+            assertThat(buckets.isNull(1)).isTrue();
+            assertThat(((ListVector) root.getVector("counts")).getObject(0)).containsExactly(1L, 2L).inOrder();
+            assertThat(((ListVector) root.getVector("counts")).getObject(1)).isEmpty();
+            assertThat(((ListVector) root.getVector("weights")).getObject(0)).containsExactly(0.25);
+            assertThat(((ListVector) root.getVector("flags")).getObject(0)).containsExactly(true, false).inOrder();
+        }
+    }
+
+    @Test
+    public void testEncode_whenObjectHasComplexTypes_thenUseTemporalDecimalAndStructVectors() {
+        // Setup
+        TestComplexObject object = new TestComplexObject("id-1", LocalDate.of(2024, 3, 1),
+                Instant.parse("2024-03-01T10:15:30.5Z"), new BigDecimal("12.34"), new TestSimpleObject("nested", 30, true, 2.0));
+
+        // Execute
+        try (VectorSchemaRoot root = ArrowRowEncoder.forClass(TestComplexObject.class).encode(Collections.singletonList(object), allocator)) {
+            // Verify
+            assertThat(((DateDayVector) root.getVector("date")).get(0)).isEqualTo((int) LocalDate.of(2024, 3, 1).toEpochDay());
+            assertThat(((TimeStampMicroTZVector) root.getVector("timestamp")).get(0)).isEqualTo(1709288130500000L);
+            assertThat(((DecimalVector) root.getVector("amount")).getObject(0)).isEqualToIgnoringScale("12.34");
+            StructVector nested = (StructVector) root.getVector("nested");
+            assertThat(nested.isNull(0)).isFalse();
+            assertThat(((BigIntVector) nested.getChild("age")).get(0)).isEqualTo(30L);
+            assertThat(((VarCharVector) nested.getChild("name")).getObject(0).toString()).isEqualTo("nested");
+        }
+    }
+
+    @Test
+    public void testEncode_whenNumericHasMoreThanNineFractionalDigits_thenThrowIllegalArgumentException() {
+        // Setup
+        TestComplexObject object = new TestComplexObject("id-1", null, null, new BigDecimal("0.1234567891"), null);
+
+        // Execute and Verify
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ArrowRowEncoder.forClass(TestComplexObject.class).encode(Collections.singletonList(object), allocator));
+        assertThat(exception).hasMessageThat().contains("0.1234567891");
+    }
+
+    @Test
+    public void testEncode_whenObjectHasCollections_thenFillListVectors() {
+        // Setup
+        List<TestCollectionObject> objects = Arrays.asList(
+                new TestCollectionObject("books", Arrays.asList("a", "b"),
+                        Arrays.asList(new TestSimpleObject("x", 1, false, 0.5), new TestSimpleObject("y", 2, true, 1.0))),
+                new TestCollectionObject("empty", null, Collections.emptyList()));
+
+        // Execute
+        try (VectorSchemaRoot root = ArrowRowEncoder.forClass(TestCollectionObject.class).encode(objects, allocator)) {
+            // Verify
+            ListVector tags = (ListVector) root.getVector("tags");
+            assertThat(tags.getObject(0).toString()).isEqualTo("[\"a\",\"b\"]");
+            assertThat(tags.isNull(1)).isTrue();
+            ListVector items = (ListVector) root.getVector("items");
+            assertThat(items.getObject(0)).hasSize(2);
+            assertThat(items.getObject(1)).isEmpty();
+            StructVector itemStructs = (StructVector) items.getDataVector();
+            assertThat(((VarCharVector) itemStructs.getChild("name")).getObject(1).toString()).isEqualTo("y");
+        }
+    }
+
+    @Test
+    public void testObjectsToArrow_whenListIsEmpty_thenThrowIllegalArgumentException() {
+        // Execute and Verify
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new BigQueryObjectWriter(null).objectsToArrow(Collections.emptyList(), allocator));
+    }
+}
@@ -0,0 +1,150 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestCollectionObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestComplexObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestPrimitiveArrayObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+public class AvroRowWriterTest {
+
+    @Test
+    public void testAvroSchemaOf_whenObjectHasComplexTypes_thenUseLogicalTypesAndNullableUnions() {
+        // Execute
+        Schema schema = AvroRowWriter.avroSchemaOf(BigQueryObjectWriter.schemaOf(TestComplexObject.class), "TestComplexObject");
+
+        // Verify
+        assertThat(schema.getName()).isEqualTo("TestComplexObject");
+        assertThat(nonNull(schema, "id").getType()).isEqualTo(Schema.Type.STRING);
+        assertThat(nonNull(schema, "date").getLogicalType()).isEqualTo(LogicalTypes.date());
+        assertThat(nonNull(schema, "timestamp").getLogicalType()).isEqualTo(LogicalTypes.timestampMicros());
+        assertThat(nonNull(schema, "amount").getLogicalType()).isEqualTo(LogicalTypes.decimal(38, 9));
+        Schema nested = nonNull(schema, "nested");
+        assertThat(nested.getType()).isEqualTo(Schema.Type.RECORD);
+        assertThat(nested.getName()).isEqualTo("TestComplexObject_nested");
+        assertThat(nonNull(nested, "age").getType()).isEqualTo(Schema.Type.LONG);
+        assertThat(schema.getField("id").schema().getTypes().get(0).getType()).isEqualTo(Schema.Type.NULL);
+    }
+
+    @Test
+    public void testWrite_whenSnappyCodec_thenFileReadsBackWithExactValues() throws Exception {
+        // Setup
+        TestComplexObject object = new TestComplexObject("id-1", LocalDate.of(2024, 3, 1),
+                Instant.parse("2024-03-01T10:15:30.5Z"), new BigDecimal("12.34"), new TestSimpleObject("nested", 30, true, 2.0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Execute
+        try (AvroRowWriter writer = AvroRowWriter.open(TestComplexObject.class, out, CodecFactory.snappyCodec())) {
+            writer.write(object);
+            writer.write(new TestComplexObject("id-2", null, null, null, null));
+        }
+
+        // Verify
+        List<GenericRecord> records = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(new SeekableByteArrayInput(out.toByteArray()), new GenericDatumReader<>())) {
+            assertThat(reader.getMetaString("avro.codec")).isEqualTo("snappy");
+            reader.forEach(records::add);
+        }
+        assertThat(records).hasSize(2);
+        GenericRecord first = records.get(0);
+        assertThat(first.get("id").toString()).isEqualTo("id-1");
+        assertThat(first.get("date")).isEqualTo((int) LocalDate.of(2024, 3, 1).toEpochDay());
+        assertThat(first.get("timestamp")).isEqualTo(1709288130500000L);
+        assertThat(new BigInteger(((ByteBuffer) first.get("amount")).array())).isEqualTo(new BigInteger("12340000000"));
+        GenericRecord nested = (GenericRecord) first.get("nested");
+        assertThat(nested.get("name").toString()).isEqualTo("nested");
+        assertThat(nested.get("age")).isEqualTo(30L);
+        assertThat(nested.get("active")).isEqualTo(true);
+        assertThat(nested.get("score")).isEqualTo(2.0);
+        GenericRecord second = records.get(1);
+        assertThat(second.get("date")).isNull();
+        assertThat(second.get("nested")).isNull();
+    }
+
+    @Test
+    public void testWrite_whenRepeatedFields_thenWriteArraysWithoutNullElements() throws Exception {
+        // Setup
+        TestCollectionObject object = new TestCollectionObject("books", Arrays.asList("a", null, "b"),
+                Collections.singletonList(new TestSimpleObject("item", 1, false, 0.5)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Execute
+        try (AvroRowWriter writer = AvroRowWriter.open(TestCollectionObject.class, out, CodecFactory.deflateCodec(6))) {
+            writer.writeAll(Arrays.asList(object, new TestCollectionObject("empty", null, null)));
+        }
+
+        // Verify
+        List<GenericRecord> records = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(new SeekableByteArrayInput(out.toByteArray()), new GenericDatumReader<>())) {
+            assertThat(reader.getSchema().getField("tags").schema().getType()).isEqualTo(Schema.Type.ARRAY);
+            reader.forEach(records::add);
+        }
+        List<?> tags = (List<?>) records.get(0).get("tags");
+        assertThat(tags).hasSize(2);
+        assertThat(tags.get(1).toString()).isEqualTo("b");
+        List<?> items = (List<?>) records.get(0).get("items");
+        assertThat(((GenericRecord) items.get(0)).get("name").toString()).isEqualTo("item");
+        assertThat((List<?>) records.get(1).get("tags")).isEmpty();
+        assertThat((List<?>) records.get(1).get("items")).isEmpty();
+    }
+
+    @Test
+    public void testWrite_whenPrimitiveArrayFields_thenWriteArraysOfElements() throws Exception {
+        // Setup
+        TestPrimitiveArrayObject object = new TestPrimitiveArrayObject("latency", new int[] {1, 2},
+                new long[] {10L, 20L, 30L}, new double[] {0.5}, new float[] {0.25f}, new boolean[] {true, false});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Execute
+        try (AvroRowWriter writer = AvroRowWriter.open(TestPrimitiveArrayObject.class, out, CodecFactory.nullCodec())) {
+            writer.writeAll(Arrays.asList(object, new TestPrimitiveArrayObject("empty", null, null, null, null, null)));
+        }
+
+        // Verify
+        List<GenericRecord> records = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(new SeekableByteArrayInput(out.toByteArray()), new GenericDatumReader<>())) {
+            reader.forEach(records::add);
+        }
+        assertThat((List<?>) records.get(0).get("counts")).containsExactly(1L, 2L).inOrder();
+        assertThat((List<?>) records.get(0).get("buckets")).containsExactly(10L, 20L, 30L).inOrder();
+        assertThat((List<?>) records.get(0).get("samples")).containsExactly(0.5);
+        assertThat((List<?>) records.get(0).get("weights")).containsExactly(0.25);
+        assertThat((List<?>) records.get(0).get("flags")).containsExactly(true, false).inOrder();
+        assertThat((List<?>) records.get(1).get("buckets")).isEmpty();
+    }
+
+    @Test
+    public void testWrite_whenObjectOfAnotherClass_thenThrowIllegalArgumentException() throws Exception {
+        // Setup
+        try (AvroRowWriter writer = AvroRowWriter.open(TestSimpleObject.class, new ByteArrayOutputStream(), CodecFactory.nullCodec())) {
+            // Execute and Verify
+            Assertions.assertThrows(IllegalArgumentException.class, () -> writer.write(new TestCollectionObject("c", null, null)));
+        }
+    }
+
+    private static Schema nonNull(Schema record, String field) {
+        return record.getField(field).schema().getTypes().get(1);
+    }
+}
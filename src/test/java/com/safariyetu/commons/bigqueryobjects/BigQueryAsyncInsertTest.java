@@ -0,0 +1,161 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+@ExtendWith(MockitoExtension.class)
+public class BigQueryAsyncInsertTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private InsertAllResponse success;
+
+    private BigQueryObjectWriter writer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        writer = new BigQueryObjectWriter(bigquery);
+        executor = Executors.newFixedThreadPool(4, runnable -> new Thread(runnable, "async-insert"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testExecuteAsync_whenTableNotFound_thenRepairAndRetryOnExecutor() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        BigQueryException notFound = new BigQueryException(404, "Table not found", new BigQueryError("notFound", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(notFound).thenReturn(success);
+        when(bigquery.getTable(TableId.of("test_dataset", "test_table"))).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return null;
+        });
+        when(bigquery.create(any(TableInfo.class))).thenReturn(org.mockito.Mockito.mock(Table.class));
+
+        // Execute
+        CompletableFuture<InsertResult> future = writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("John", 30, true, 95.5))
+                .executeAsync(executor);
+
+        // Verify
+        InsertResult result = future.get(10, TimeUnit.SECONDS);
+        assertThat(result.getRowCount()).isEqualTo(1);
+        assertThat(threads).containsExactly("async-insert");
+        verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+    }
+
+    @Test
+    public void testExecuteAsync_whenRowsAreRejected_thenCompleteExceptionallyWithInsertException(@Mock InsertAllResponse failure) {
+        // Setup
+        when(failure.hasErrors()).thenReturn(true);
+        when(failure.getInsertErrors()).thenReturn(Collections.singletonMap(0L,
+                Collections.singletonList(new BigQueryError("invalid", "name", "bad value"))));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(failure);
+
+        // Execute
+        CompletableFuture<InsertResult> future = writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("John", 30, true, 95.5))
+                .executor(executor)
+                .executeAsync();
+
+        // Verify
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertThat(exception.getCause()).isInstanceOf(InsertException.class);
+        assertThat(((InsertException) exception.getCause()).getResult().getFailedRowCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExecuteAsync_whenRequestExecutorHasOneThread_thenComplete() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        ExecutorService singleThread = Executors.newFixedThreadPool(1);
+
+        // Execute
+        try {
+            InsertResult result = writer.insert("test_dataset", "test_table")
+                    .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.0), new TestSimpleObject("b", 2, true, 2.0)))
+                    .maxRowsPerRequest(1)
+                    .executor(singleThread)
+                    .executeAsync()
+                    .get(10, TimeUnit.SECONDS);
+
+            // Verify
+            assertThat(result.getRowCount()).isEqualTo(2);
+            verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+        } finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExecuteAsync_whenCoordinatedOnRequestExecutor_thenThrowIllegalArgumentException() {
+        // Setup
+        BigQueryObjectWriter.InsertBuilder insert = writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("John", 30, true, 95.5))
+                .executor(executor);
+
+        // Execute and Verify
+        Assertions.assertThrows(IllegalArgumentException.class, () -> insert.executeAsync(executor));
+    }
+
+    @Test
+    public void testExecuteAsync_whenComposingTableWrites_thenAllOfCompletesWithEveryResult() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        List<CompletableFuture<InsertResult>> futures = new ArrayList<>();
+
+        // Execute
+        for (int i = 0; i < 3; i++) {
+            futures.add(writer.insert("test_dataset", "table_" + i)
+                    .row(new TestSimpleObject("row", i, true, 1.0))
+                    .executeAsync());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(any(InsertAllRequest.class));
+        for (CompletableFuture<InsertResult> future : futures) {
+            assertThat(future.join().getRowCount()).isEqualTo(1);
+        }
+    }
+}
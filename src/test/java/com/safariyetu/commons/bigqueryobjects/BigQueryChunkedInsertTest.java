@@ -0,0 +1,327 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+@ExtendWith(MockitoExtension.class)
+public class BigQueryChunkedInsertTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private InsertAllResponse success;
+
+    private BigQueryObjectWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        writer = new BigQueryObjectWriter(bigquery);
+    }
+
+    @Test
+    public void testExecute_whenRowsExceedMaxRowsPerRequest_thenSendChunksInRowOrder() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        InsertResult result = writer.insert("test_dataset", "test_table")
+                .rows(objects(5))
+                .maxRowsPerRequest(2)
+                .maxConcurrentRequests(1)
+                .execute();
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(requests.capture());
+        List<Integer> sizes = new ArrayList<>();
+        for (InsertAllRequest request : requests.getAllValues()) {
+            sizes.add(request.getRows().size());
+        }
+        assertThat(sizes).containsExactly(2, 2, 1).inOrder();
+        assertThat(requests.getAllValues().get(2).getRows().get(0).getContent().get("name")).isEqualTo("row-4");
+        assertThat(result.getRowCount()).isEqualTo(5);
+        assertThat(result.getChunks()).hasSize(3);
+        assertThat(result.getChunks().get(1).getFirstRow()).isEqualTo(2);
+        assertThat(result.hasErrors()).isFalse();
+    }
+
+    @Test
+    public void testExecute_whenRowsExceedMaxBytesPerRequest_thenSplitByEstimatedSize() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        long rowBytes = RowSizeEstimator.estimateRow(BigQueryObjectWriter.insertRowContent(new TestSimpleObject("row-0", 0, true, 0.0)));
+
+        // Execute
+        InsertResult result = writer.insert("test_dataset", "test_table")
+                .rows(objects(7))
+                .maxBytesPerRequest(3 * rowBytes)
+                .execute();
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(any(InsertAllRequest.class));
+        assertThat(result.getChunks().get(0).getRowCount()).isEqualTo(3);
+        assertThat(result.getChunks().get(0).getEstimatedBytes()).isEqualTo(3 * rowBytes);
+        assertThat(result.getChunks().get(2).getRowCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExecute_whenChunkHasRowErrors_thenSendAllChunksAndReportErrorsByRowIndex(@Mock InsertAllResponse failure) {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(failure.hasErrors()).thenReturn(true);
+        BigQueryError error = new BigQueryError("invalid", "score", "bad value");
+        when(failure.getInsertErrors()).thenReturn(Collections.singletonMap(1L, Collections.singletonList(error)));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success, failure, success);
+
+        // Execute
+        InsertException exception = Assertions.assertThrows(InsertException.class, () -> writer.insert("test_dataset", "test_table")
+                .rows(objects(6))
+                .maxRowsPerRequest(2)
+                .maxConcurrentRequests(1)
+                .execute());
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(any(InsertAllRequest.class));
+        InsertResult result = exception.getResult();
+        assertThat(result.getFailedRowCount()).isEqualTo(1);
+        assertThat(result.getInsertErrors()).containsExactly(3L, Collections.singletonList(error));
+        assertThat(result.getChunks().get(1).hasErrors()).isTrue();
+        assertThat(result.getChunks().get(2).hasErrors()).isFalse();
+    }
+
+    @Test
+    public void testExecute_whenLaterChunkFindsNoTable_thenCreateTableAndResendOnlyThatChunk() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        BigQueryException notFound = new BigQueryException(404, "Table not found", new BigQueryError("notFound", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success).thenThrow(notFound).thenReturn(success);
+        when(bigquery.getTable(TableId.of("test_dataset", "test_table"))).thenReturn(null);
+        when(bigquery.create(any(TableInfo.class))).thenReturn(org.mockito.Mockito.mock(Table.class));
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        InsertResult result = writer.insert("test_dataset", "test_table")
+                .rows(objects(4))
+                .maxRowsPerRequest(2)
+                .maxConcurrentRequests(1)
+                .execute();
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(requests.capture());
+        Map<String, Object> retried = requests.getAllValues().get(2).getRows().get(0).getContent();
+        assertThat(retried.get("name")).isEqualTo("row-2");
+        assertThat(result.getChunks()).hasSize(2);
+    }
+
+    @Test
+    public void testExecute_whenMaxConcurrentRequests_thenBoundRequestsInFlightOnExecutor() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch firstRequests = new CountDownLatch(3);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            // Holds the first requests until the limit is reached
+            firstRequests.countDown();
+            firstRequests.await(5, TimeUnit.SECONDS);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return success;
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        AtomicInteger executed = new AtomicInteger();
+        Executor executor = command -> {
+            executed.incrementAndGet();
+            pool.execute(command);
+        };
+
+        // Execute
+        InsertResult result;
+        try {
+            result = writer.insert("test_dataset", "test_table")
+                    .rows(objects(20))
+                    .maxRowsPerRequest(2)
+                    .maxConcurrentRequests(3)
+                    .executor(executor)
+                    .execute();
+        } finally {
+            pool.shutdown();
+        }
+
+        // Verify
+        verify(bigquery, times(10)).insertAll(any(InsertAllRequest.class));
+        assertThat(executed.get()).isEqualTo(10);
+        assertThat(maxInFlight.get()).isEqualTo(3);
+        List<Integer> firstRows = new ArrayList<>();
+        for (InsertResult.Chunk chunk : result.getChunks()) {
+            firstRows.add(chunk.getFirstRow());
+        }
+        assertThat(firstRows).containsExactly(0, 2, 4, 6, 8, 10, 12, 14, 16, 18).inOrder();
+    }
+
+    @Test
+    public void testExecute_whenConcurrentChunksFindNoTable_thenCreateTableOnceAndResendThem() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        BigQueryException notFound = new BigQueryException(404, "Table not found", new BigQueryError("notFound", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class)))
+                .thenThrow(notFound, notFound, notFound)
+                .thenReturn(success);
+        when(bigquery.getTable(TableId.of("test_dataset", "test_table"))).thenReturn(null);
+        when(bigquery.create(any(TableInfo.class))).thenReturn(org.mockito.Mockito.mock(Table.class));
+
+        // Execute
+        InsertResult result = writer.insert("test_dataset", "test_table")
+                .rows(objects(6))
+                .maxRowsPerRequest(2)
+                .maxConcurrentRequests(3)
+                .execute();
+
+        // Verify
+        verify(bigquery, times(6)).insertAll(any(InsertAllRequest.class));
+        verify(bigquery).create(any(TableInfo.class));
+        assertThat(result.getChunks()).hasSize(3);
+        assertThat(result.getChunks().get(2).getFirstRow()).isEqualTo(4);
+    }
+
+    @Test
+    public void testMaxRowsPerRequest_whenNotPositive_thenThrowIllegalArgumentException() {
+        // Execute and Verify
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> writer.insert("test_dataset", "test_table").maxRowsPerRequest(0));
+    }
+
+    @Test
+    public void testEstimateRow_whenAsciiRow_thenNotBelowJsonSize() {
+        // Setup
+        TestSimpleObject object = new TestSimpleObject("a name with some text", 123456, true, 98.765);
+
+        // Execute
+        long estimate = RowSizeEstimator.estimateRow(BigQueryObjectWriter.insertRowContent(object));
+
+        // Verify
+        int json = new String(JsonRowEncoder.encode(object), StandardCharsets.UTF_8).length();
+        assertThat(estimate).isAtLeast((long) json);
+        assertThat(estimate).isAtMost(2L * json);
+    }
+
+    @Test
+    public void testExecute_whenRowsAreStoppedByAnInvalidRow_thenResendOnlyStoppedRows(@Mock InsertAllResponse partial) {
+        // Setup
+        Map<Long, List<BigQueryError>> errors = new HashMap<>();
+        errors.put(0L, Collections.singletonList(new BigQueryError("stopped", "", "")));
+        errors.put(1L, Collections.singletonList(new BigQueryError("invalid", "age", "bad value")));
+        errors.put(2L, Collections.singletonList(new BigQueryError("stopped", "", "")));
+        when(partial.hasErrors()).thenReturn(true);
+        when(partial.getInsertErrors()).thenReturn(errors);
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(partial).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        InsertException exception = Assertions.assertThrows(InsertException.class, () -> writer.insert("test_dataset", "test_table")
+                .rows(objects(4))
+                .maxConcurrentRequests(1)
+                .execute());
+
+        // Verify
+        verify(bigquery, times(2)).insertAll(requests.capture());
+        List<InsertAllRequest.RowToInsert> retried = requests.getAllValues().get(1).getRows();
+        assertThat(retried).hasSize(2);
+        assertThat(retried.get(0).getContent().get("name")).isEqualTo("row-0");
+        assertThat(retried.get(1).getContent().get("name")).isEqualTo("row-2");
+        InsertResult result = exception.getResult();
+        assertThat(result.getInsertErrors().keySet()).containsExactly(1L);
+        assertThat(result.getRetriedRowCount()).isEqualTo(2);
+        assertThat(result.isInserted(0)).isTrue();
+        assertThat(result.isInserted(1)).isFalse();
+        assertThat(result.getAttempts(2)).isEqualTo(2);
+        assertThat(result.getAttempts(3)).isEqualTo(1);
+        assertThat(result.getChunks().get(1).getAttempt()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExecute_whenTransientRowErrorsPersist_thenStopAfterMaxRowRetries(@Mock InsertAllResponse failure) {
+        // Setup
+        when(failure.hasErrors()).thenReturn(true);
+        when(failure.getInsertErrors()).thenReturn(Collections.singletonMap(0L,
+                Collections.singletonList(new BigQueryError("backendError", "", "try again"))));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(failure);
+
+        // Execute
+        InsertException exception = Assertions.assertThrows(InsertException.class, () -> writer.insert("test_dataset", "test_table")
+                .rows(objects(2))
+                .maxRowRetries(2)
+                .execute());
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(any(InsertAllRequest.class));
+        assertThat(exception.getResult().getInsertErrors().keySet()).containsExactly(0L);
+        assertThat(exception.getResult().getAttempts(0)).isEqualTo(3);
+        assertThat(exception.getResult().isInserted(1)).isTrue();
+    }
+
+    @Test
+    public void testExecute_whenMaxRowRetriesIsZero_thenDoNotResendRows(@Mock InsertAllResponse failure) {
+        // Setup
+        when(failure.hasErrors()).thenReturn(true);
+        when(failure.getInsertErrors()).thenReturn(Collections.singletonMap(0L,
+                Collections.singletonList(new BigQueryError("stopped", "", ""))));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(failure);
+
+        // Execute
+        Assertions.assertThrows(InsertException.class, () -> writer.insert("test_dataset", "test_table")
+                .rows(objects(2))
+                .maxRowRetries(0)
+                .execute());
+
+        // Verify
+        verify(bigquery, times(1)).insertAll(any(InsertAllRequest.class));
+    }
+
+    private static List<TestSimpleObject> objects(int count) {
+        List<TestSimpleObject> objects = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            objects.add(new TestSimpleObject("row-" + i, i, i % 2 == 0, i * 1.5));
+        }
+        return objects;
+    }
+}
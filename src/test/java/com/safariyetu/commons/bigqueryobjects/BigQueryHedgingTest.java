@@ -0,0 +1,211 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+@ExtendWith(MockitoExtension.class)
+public class BigQueryHedgingTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private InsertAllResponse success;
+
+    private BigQueryObjectWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        writer = new BigQueryObjectWriter(bigquery);
+    }
+
+    @Test
+    public void testExecute_whenRequestIsSlowerThanPercentile_thenHedgeWins() {
+        // Setup
+        CountDownLatch release = new CountDownLatch(1);
+        stubSlowCall(6, release);
+        HedgePolicy policy = policy(1.0);
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+        warmUp(policy);
+
+        // Execute
+        InsertResult result = insert(policy).execute();
+        release.countDown();
+
+        // Verify
+        assertThat(result.hasErrors()).isFalse();
+        assertThat(policy.getHedgesSent()).isEqualTo(1);
+        assertThat(policy.getHedgesWon()).isEqualTo(1);
+        verify(bigquery, times(7)).insertAll(requests.capture());
+        String primaryId = requests.getAllValues().get(5).getRows().get(0).getId();
+        String hedgeId = requests.getAllValues().get(6).getRows().get(0).getId();
+        assertThat(hedgeId).isEqualTo(primaryId);
+    }
+
+    @Test
+    public void testExecute_whenHedgeWins_thenHoldRequestSlotUntilRequestIsAnswered() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean slowCallDone = new AtomicBoolean();
+        AtomicBoolean nextSentAfterSlowCall = new AtomicBoolean();
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenAnswer(invocation -> {
+            int call = calls.incrementAndGet();
+            if (call == 6) {
+                Thread.sleep(100);
+                slowCallDone.set(true);
+            } else if (call == 8) {
+                nextSentAfterSlowCall.set(slowCallDone.get());
+            }
+            return success;
+        });
+        HedgePolicy policy = policy(1.0);
+        warmUp(policy);
+
+        // Execute
+        insert(policy)
+                .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.0), new TestSimpleObject("b", 2, true, 2.0)))
+                .maxRowsPerRequest(1)
+                .maxConcurrentRequests(1)
+                .execute();
+
+        // Verify
+        assertThat(policy.getHedgesWon()).isEqualTo(1);
+        assertThat(nextSentAfterSlowCall.get()).isTrue();
+    }
+
+    @Test
+    public void testExecute_whenHedgeRateIsExhausted_thenWaitForRequest() {
+        // Setup
+        CountDownLatch release = new CountDownLatch(0);
+        stubSlowCall(6, release);
+        HedgePolicy policy = policy(0.0);
+        warmUp(policy);
+
+        // Execute
+        insert(policy).execute();
+
+        // Verify
+        assertThat(policy.getRequestCount()).isEqualTo(6);
+        assertThat(policy.getHedgesSent()).isEqualTo(0);
+        verify(bigquery, times(6)).insertAll(any(InsertAllRequest.class));
+    }
+
+    @Test
+    public void testExecute_whenHedgingWithoutInsertIds_thenThrowIllegalStateException() {
+        // Execute
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("John", 30, true, 95.5))
+                .hedging(HedgePolicy.newBuilder().build())
+                .execute());
+
+        // Verify
+        verify(bigquery, never()).insertAll(any(InsertAllRequest.class));
+    }
+
+    @Test
+    public void testExecute_whenHedgingWithNullInsertIds_thenThrowIllegalStateException() {
+        // Execute
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("John", 30, true, 95.5))
+                .insertIds(InsertIdStrategy.none())
+                .hedging(HedgePolicy.newBuilder().build())
+                .execute());
+
+        // Verify
+        verify(bigquery, never()).insertAll(any(InsertAllRequest.class));
+    }
+
+    @Test
+    public void testExecute_whenExecutorIsBoundedToConcurrentRequests_thenComplete() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Execute
+        try {
+            InsertResult result = writer.insert("test_dataset", "test_table")
+                    .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.0), new TestSimpleObject("b", 2, true, 2.0)))
+                    .insertIds(InsertIdStrategy.randomUuid())
+                    .maxRowsPerRequest(1)
+                    .maxConcurrentRequests(2)
+                    .executor(executor)
+                    .hedging(HedgePolicy.newBuilder().build())
+                    .executeAsync()
+                    .get(10, TimeUnit.SECONDS);
+
+            // Verify
+            assertThat(result.hasErrors()).isFalse();
+            verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stubs insertAll to answer at once, except for the given call that waits 100 ms and for the latch.
+     */
+    private void stubSlowCall(int slowCall, CountDownLatch release) {
+        when(success.hasErrors()).thenReturn(false);
+        AtomicInteger calls = new AtomicInteger();
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == slowCall) {
+                Thread.sleep(100);
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return success;
+        });
+    }
+
+    /**
+     * A policy hedging requests slower than the median of the last 5 requests, after at least 20 ms.
+     */
+    private static HedgePolicy policy(double maxHedgeRate) {
+        return HedgePolicy.newBuilder()
+                .percentile(0.5)
+                .minDelay(20, TimeUnit.MILLISECONDS)
+                .window(5, 5)
+                .maxHedgeRate(maxHedgeRate)
+                .build();
+    }
+
+    private void warmUp(HedgePolicy policy) {
+        for (int i = 0; i < 5; i++) {
+            insert(policy).execute();
+        }
+        assertThat(policy.getHedgesSent()).isEqualTo(0);
+    }
+
+    private BigQueryObjectWriter.InsertBuilder insert(HedgePolicy policy) {
+        return writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("John", 30, true, 95.5))
+                .insertIds(InsertIdStrategy.randomUuid())
+                .hedging(policy);
+    }
+}
@@ -0,0 +1,245 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.parquet.example.data.Group;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.FormatOptions;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.JobStatus;
+import com.google.cloud.bigquery.TableDataWriteChannel;
+import com.google.cloud.bigquery.TimePartitioning;
+import com.google.cloud.bigquery.WriteChannelConfiguration;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestComplexObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+@ExtendWith(MockitoExtension.class)
+public class BigQueryLoadTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private TableDataWriteChannel channel;
+
+    @Mock
+    private Job job;
+
+    @Mock
+    private JobStatus jobStatus;
+
+    @TempDir
+    Path stagingDirectory;
+
+    private BigQueryObjectWriter writer;
+    private ByteArrayOutputStream uploaded;
+
+    @BeforeEach
+    void setUp() {
+        writer = new BigQueryObjectWriter(bigquery);
+        uploaded = new ByteArrayOutputStream();
+    }
+
+    @Test
+    public void testLoad_whenRowsAreAdded_thenUploadCompressedJsonAndWaitForJob() throws Exception {
+        // Setup
+        stubUpload(null);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.5), new TestSimpleObject("b", 2, false, 2.5)))
+                .stagingDirectory(stagingDirectory)
+                .load();
+
+        // Verify
+        ArgumentCaptor<WriteChannelConfiguration> configuration = ArgumentCaptor.forClass(WriteChannelConfiguration.class);
+        verify(bigquery).writer(configuration.capture());
+        assertThat(configuration.getValue().getFormat()).isEqualTo(FormatOptions.json().getType());
+        assertThat(configuration.getValue().getSchema()).isEqualTo(writer.getSchemaFromObjects(Collections.singletonList(new TestSimpleObject("a", 1, true, 1.5))));
+        assertThat(configuration.getValue().getWriteDisposition()).isEqualTo(JobInfo.WriteDisposition.WRITE_APPEND);
+        assertThat(configuration.getValue().getCreateDisposition()).isEqualTo(JobInfo.CreateDisposition.CREATE_IF_NEEDED);
+        assertThat(configuration.getValue().getSchemaUpdateOptions()).containsExactly(JobInfo.SchemaUpdateOption.ALLOW_FIELD_ADDITION);
+        assertThat(gunzip(uploaded.toByteArray())).isEqualTo(
+                "{\"name\":\"a\",\"age\":1,\"active\":true,\"score\":1.5}\n"
+                + "{\"name\":\"b\",\"age\":2,\"active\":false,\"score\":2.5}\n");
+        verify(channel).close();
+        verify(job).waitFor();
+        verify(bigquery, never()).insertAll(any());
+        try (Stream<Path> staged = Files.list(stagingDirectory)) {
+            assertThat(staged.count()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testLoad_whenTruncatingPartitionedTable_thenConfigurePartitioningAndClustering() throws Exception {
+        // Setup
+        stubUpload(null);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .row(new TestComplexObject("id", null, null, null, null))
+                .partitionBy("timestamp", TimePartitioning.Type.HOUR)
+                .clusterBy("id")
+                .writeDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+                .stagingDirectory(stagingDirectory)
+                .load();
+
+        // Verify
+        ArgumentCaptor<WriteChannelConfiguration> configuration = ArgumentCaptor.forClass(WriteChannelConfiguration.class);
+        verify(bigquery).writer(configuration.capture());
+        assertThat(configuration.getValue().getWriteDisposition()).isEqualTo(JobInfo.WriteDisposition.WRITE_TRUNCATE);
+        assertThat(configuration.getValue().getSchemaUpdateOptions()).isNull();
+        assertThat(configuration.getValue().getTimePartitioning().getType()).isEqualTo(TimePartitioning.Type.HOUR);
+        assertThat(configuration.getValue().getTimePartitioning().getField()).isEqualTo("timestamp");
+        assertThat(configuration.getValue().getClustering().getFields()).containsExactly("id");
+        assertThat(gunzip(uploaded.toByteArray())).isEqualTo("{\"id\":\"id\"}\n");
+    }
+
+    @Test
+    public void testLoad_whenJobFails_thenThrowRuntimeExceptionAndDeleteStagedFile() throws Exception {
+        // Setup
+        stubUpload(new BigQueryError("invalid", "location", "bad rows"));
+
+        // Execute and Verify
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("a", 1, true, 1.5))
+                .stagingDirectory(stagingDirectory)
+                .load());
+        assertThat(exception).hasMessageThat().contains("bad rows");
+        try (Stream<Path> staged = Files.list(stagingDirectory)) {
+            assertThat(staged.count()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testLoad_whenAvroFormat_thenUploadAvroFileWithLogicalTypes() throws Exception {
+        // Setup
+        stubUpload(null);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.5), new TestSimpleObject("b", 2, false, 2.5)))
+                .loadFormat(LoadFormat.AVRO)
+                .stagingDirectory(stagingDirectory)
+                .load();
+
+        // Verify
+        ArgumentCaptor<WriteChannelConfiguration> configuration = ArgumentCaptor.forClass(WriteChannelConfiguration.class);
+        verify(bigquery).writer(configuration.capture());
+        assertThat(configuration.getValue().getFormat()).isEqualTo(FormatOptions.avro().getType());
+        assertThat(configuration.getValue().getUseAvroLogicalTypes()).isTrue();
+        assertThat(configuration.getValue().getSchema()).isNull();
+        List<String> names = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(new SeekableByteArrayInput(uploaded.toByteArray()), new GenericDatumReader<>())) {
+            reader.forEach(record -> names.add(record.get("name").toString()));
+        }
+        assertThat(names).containsExactly("a", "b").inOrder();
+    }
+
+    @Test
+    public void testLoad_whenAvroFormatWithMixedClasses_thenThrowIllegalArgumentException() {
+        // Execute and Verify
+        Assertions.assertThrows(IllegalArgumentException.class, () -> writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("a", 1, true, 1.5))
+                .row(new TestComplexObject("id", null, null, null, null))
+                .loadFormat(LoadFormat.AVRO)
+                .load());
+        verify(bigquery, never()).writer(any(WriteChannelConfiguration.class));
+    }
+
+    @Test
+    public void testLoad_whenParquetFormat_thenUploadParquetFileWithListInference() throws Exception {
+        // Setup
+        stubUpload(null);
+        Path uploadedFile = stagingDirectory.resolve("uploaded.parquet");
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.5), new TestSimpleObject("b", 2, false, 2.5)))
+                .loadFormat(LoadFormat.PARQUET)
+                .stagingDirectory(stagingDirectory)
+                .load();
+
+        // Verify
+        ArgumentCaptor<WriteChannelConfiguration> configuration = ArgumentCaptor.forClass(WriteChannelConfiguration.class);
+        verify(bigquery).writer(configuration.capture());
+        assertThat(configuration.getValue().getFormat()).isEqualTo(FormatOptions.parquet().getType());
+        assertThat(configuration.getValue().toString()).contains("enableListInference=true");
+        Files.write(uploadedFile, uploaded.toByteArray());
+        List<String> names = new ArrayList<>();
+        for (Group row : ParquetRowWriterTest.read(uploadedFile)) {
+            names.add(row.getString("name", 0));
+        }
+        assertThat(names).containsExactly("a", "b").inOrder();
+    }
+
+    @Test
+    public void testLoad_whenRowsAreEmpty_thenDoNothing() {
+        // Execute
+        writer.insert("test_dataset", "test_table").load();
+
+        // Verify
+        verify(bigquery, never()).writer(any(WriteChannelConfiguration.class));
+    }
+
+    private void stubUpload(BigQueryError error) throws Exception {
+        when(bigquery.writer(any(WriteChannelConfiguration.class))).thenReturn(channel);
+        when(channel.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            int length = buffer.remaining();
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            uploaded.write(bytes);
+            return length;
+        });
+        when(channel.getJob()).thenReturn(job);
+        when(job.waitFor()).thenReturn(job);
+        when(job.getStatus()).thenReturn(jobStatus);
+        when(jobStatus.getError()).thenReturn(error);
+    }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
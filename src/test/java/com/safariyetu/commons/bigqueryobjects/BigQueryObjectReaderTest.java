@@ -24,6 +24,7 @@ import com.google.cloud.bigquery.FieldValueList;
 import com.google.cloud.bigquery.LegacySQLTypeName;
 import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.TableResult;
+import com.google.common.base.Throwables;
 import com.google.common.truth.Truth;
 import com.safariyetu.commons.bigqueryobjects.BigQueryObjectReader;
 
@@ -152,6 +153,73 @@ public class BigQueryObjectReaderTest {
         Truth.assertThat(second.active).isFalse();
     }
 
+    @Test
+    public void read_whenPrimitiveArrayFields_thenFillArraysFromRepeatedValues(@Mock TableResult tableResult) {
+        // Setup
+        Schema schema = BigQueryObjectWriter.schemaOf(BigQueryWriterTest.TestPrimitiveArrayObject.class);
+        List<FieldValueList> rows = Arrays.asList(
+            createFieldValueList(schema, "latency", repeated("1", "2"), repeated("10", "20", "30"),
+                    repeated("0.5"), repeated("0.25", "1.5"), repeated("true", "false"))
+        );
+
+        when(tableResult.getSchema()).thenReturn(schema);
+        when(tableResult.iterateAll()).thenReturn(rows);
+
+        // Execute
+        List<BigQueryWriterTest.TestPrimitiveArrayObject> result =
+                BigQueryObjectReader.of(BigQueryWriterTest.TestPrimitiveArrayObject.class).read(tableResult);
+
+        // Verify
+        BigQueryWriterTest.TestPrimitiveArrayObject object = result.get(0);
+        Truth.assertThat(readField(object, "counts")).isEqualTo(new int[] {1, 2});
+        Truth.assertThat(readField(object, "buckets")).isEqualTo(new long[] {10L, 20L, 30L});
+        Truth.assertThat(readField(object, "samples")).isEqualTo(new double[] {0.5});
+        Truth.assertThat(readField(object, "weights")).isEqualTo(new float[] {0.25f, 1.5f});
+        Truth.assertThat(readField(object, "flags")).isEqualTo(new boolean[] {true, false});
+    }
+
+    @Test
+    public void read_whenPrimitiveArrayValueDoesNotFitElementType_thenThrowInsteadOfTruncating(@Mock TableResult tableResult) {
+        // Setup
+        Schema schema = BigQueryObjectWriter.schemaOf(BigQueryWriterTest.TestPrimitiveArrayObject.class);
+        List<FieldValueList> rows = Arrays.asList(
+            createFieldValueList(schema, "latency", repeated("1", "3000000000"), repeated("10"),
+                    repeated("0.5"), repeated("0.25"), repeated("true"))
+        );
+        when(tableResult.getSchema()).thenReturn(schema);
+        when(tableResult.iterateAll()).thenReturn(rows);
+
+        // Execute
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class,
+                () -> BigQueryObjectReader.of(BigQueryWriterTest.TestPrimitiveArrayObject.class).read(tableResult));
+
+        // Verify
+        Truth.assertThat(Throwables.getCausalChain(e).stream().anyMatch(cause -> cause instanceof ArithmeticException)).isTrue();
+    }
+
+    @Test
+    public void read_whenFloatArrayValueIsBeyondFloatRange_thenThrowInsteadOfOverflowing(@Mock TableResult tableResult) {
+        // Setup
+        Schema schema = BigQueryObjectWriter.schemaOf(BigQueryWriterTest.TestPrimitiveArrayObject.class);
+        List<FieldValueList> rows = Arrays.asList(
+            createFieldValueList(schema, "latency", repeated("1"), repeated("10"),
+                    repeated("0.5"), repeated("1e300"), repeated("true"))
+        );
+        when(tableResult.getSchema()).thenReturn(schema);
+        when(tableResult.iterateAll()).thenReturn(rows);
+
+        // Execute
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class,
+                () -> BigQueryObjectReader.of(BigQueryWriterTest.TestPrimitiveArrayObject.class).read(tableResult));
+
+        // Verify
+        Truth.assertThat(Throwables.getCausalChain(e).stream().anyMatch(cause -> cause instanceof ArithmeticException)).isTrue();
+    }
+
+    private static Object readField(Object object, String name) {
+        return DeserializationPlan.forClass(object.getClass()).accessor(name).get(object);
+    }
+
     @Test
     public void read_whenComplexTypes_thenMapsToPojoCorrectly(@Mock TableResult tableResult) {
         // Setup
@@ -440,6 +508,14 @@ public class BigQueryObjectReaderTest {
     }
 
     // Helper methods (same as before)
+    private static FieldValue repeated(String... values) {
+        List<FieldValue> elements = new ArrayList<>();
+        for (String value : values) {
+            elements.add(FieldValue.of(FieldValue.Attribute.PRIMITIVE, value));
+        }
+        return FieldValue.of(FieldValue.Attribute.REPEATED, elements);
+    }
+
     private FieldValueList createFieldValueList(Schema schema, Object... values) {
         List<FieldValue> fieldValues = new ArrayList<>();
         for (int i = 0; i < values.length; i++) {
@@ -448,6 +524,8 @@ public class BigQueryObjectReaderTest {
             
             if (value == null) {
                 fieldValue = FieldValue.of(FieldValue.Attribute.PRIMITIVE, null);
+            } else if (value instanceof FieldValue) {
+                fieldValue = (FieldValue) value;
             } else if (value instanceof String) {
                 fieldValue = FieldValue.of(FieldValue.Attribute.PRIMITIVE, value.toString());
             } else if (value instanceof Long) {
@@ -0,0 +1,207 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteSettings;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+@ExtendWith(MockitoExtension.class)
+public class BigQueryRetryTest {
+
+    private static final BigQueryException RATE_LIMITED =
+            new BigQueryException(403, "Exceeded rate limits", new BigQueryError("rateLimitExceeded", "", ""));
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private InsertAllResponse success;
+
+    private RetryPolicy.Builder policy;
+
+    @BeforeEach
+    public void setUp() {
+        policy = RetryPolicy.newBuilder()
+                .initialBackoff(1, TimeUnit.MILLISECONDS)
+                .maxBackoff(2, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testExecute_whenRequestFailsTransiently_thenRetryWithBackoff() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        BigQueryException backendError = new BigQueryException(503, "Backend error", new BigQueryError("backendError", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(RATE_LIMITED).thenThrow(backendError).thenReturn(success);
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery, null, policy.build());
+
+        // Execute
+        InsertResult result = writer.insert("test_dataset", "test_table").row(row()).execute();
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(any(InsertAllRequest.class));
+        assertThat(result.hasErrors()).isFalse();
+    }
+
+    @Test
+    public void testExecute_whenFailureIsNotTransient_thenFailWithoutRetry() {
+        // Setup
+        BigQueryException invalid = new BigQueryException(400, "Invalid request", new BigQueryError("invalid", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(invalid);
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery, null, policy.build());
+
+        // Execute
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> writer.insert("test_dataset", "test_table").row(row()).execute());
+
+        // Verify
+        verify(bigquery, times(1)).insertAll(any(InsertAllRequest.class));
+        assertThat(exception).hasCauseThat().isSameInstanceAs(invalid);
+    }
+
+    @Test
+    public void testExecute_whenTransientFailurePersists_thenStopAfterMaxAttempts() {
+        // Setup
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(RATE_LIMITED);
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery, null, policy.maxAttempts(3).build());
+
+        // Execute
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> writer.insert("test_dataset", "test_table").row(row()).execute());
+
+        // Verify
+        verify(bigquery, times(3)).insertAll(any(InsertAllRequest.class));
+        assertThat(exception).hasMessageThat().contains("after 3 attempts");
+    }
+
+    @Test
+    public void testExecute_whenRetryBudgetIsExhausted_thenStopRetryingAcrossInserts() {
+        // Setup
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(RATE_LIMITED);
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery, null, policy.retryBudget(2, 0.1).build());
+
+        // Execute
+        Assertions.assertThrows(RuntimeException.class, () -> writer.insert("test_dataset", "first").row(row()).execute());
+        Assertions.assertThrows(RuntimeException.class, () -> writer.insert("test_dataset", "second").row(row()).execute());
+
+        // Verify
+        // The first insert spends both retries, the second one is not retried.
+        verify(bigquery, times(4)).insertAll(any(InsertAllRequest.class));
+    }
+
+    @Test
+    public void testExecute_whenTableCreationFailsTransiently_thenRetryCreation() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        BigQueryException notFound = new BigQueryException(404, "Table not found", new BigQueryError("notFound", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(notFound).thenReturn(success);
+        when(bigquery.getTable(TableId.of("test_dataset", "test_table"))).thenThrow(RATE_LIMITED).thenReturn(null);
+        when(bigquery.create(any(TableInfo.class))).thenReturn(mock(Table.class));
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery, null, policy.build());
+
+        // Execute
+        writer.insert("test_dataset", "test_table").row(row()).execute();
+
+        // Verify
+        verify(bigquery, times(2)).getTable(TableId.of("test_dataset", "test_table"));
+        verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+    }
+
+    @Test
+    public void testExecute_whenPolicyIsNone_thenDoNotRetry() {
+        // Setup
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(RATE_LIMITED);
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery, null, RetryPolicy.none());
+
+        // Execute
+        Assertions.assertThrows(RuntimeException.class, () -> writer.insert("test_dataset", "test_table").row(row()).execute());
+
+        // Verify
+        verify(bigquery, times(1)).insertAll(any(InsertAllRequest.class));
+        verify(bigquery, never()).getTable(any(TableId.class));
+    }
+
+    @Test
+    public void testExecute_whenStorageWriteAppendFailsTransiently_thenRetryWithBackoff() throws Exception {
+        // Setup
+        BigQueryStorageWriteTest.FakeBigQueryWrite fakeWrite = new BigQueryStorageWriteTest.FakeBigQueryWrite();
+        fakeWrite.responses.add(Status.UNAVAILABLE.withDescription("Connection reset"));
+        fakeWrite.responses.add(Status.RESOURCE_EXHAUSTED.withDescription("Quota exceeded"));
+        String serverName = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(serverName).directExecutor().addService(fakeWrite).build().start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        BigQueryWriteClient writeClient = BigQueryWriteClient.create(BigQueryWriteSettings.newBuilder()
+                .setTransportChannelProvider(FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .build());
+
+        // Execute
+        try (BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery, writeClient, policy.build())) {
+            InsertResult result = writer.insert("test_dataset", "test_table")
+                    .toStream("projects/test-project/datasets/test_dataset/tables/test_table/streams/s1")
+                    .row(row())
+                    .execute();
+
+            // Verify
+            assertThat(result.hasErrors()).isFalse();
+            assertThat(fakeWrite.requests).hasSize(3);
+        } finally {
+            writeClient.close();
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBackoffMillis_whenRetriesGrow_thenStayWithinExponentialCeiling() {
+        // Setup
+        RetryPolicy retryPolicy = RetryPolicy.newBuilder()
+                .initialBackoff(100, TimeUnit.MILLISECONDS)
+                .maxBackoff(1, TimeUnit.SECONDS)
+                .build();
+
+        // Execute & Verify
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryPolicy.backoffMillis(1)).isAtMost(100L);
+            assertThat(retryPolicy.backoffMillis(3)).isAtMost(400L);
+            assertThat(retryPolicy.backoffMillis(40)).isAtMost(1000L);
+            assertThat(retryPolicy.backoffMillis(40)).isAtLeast(0L);
+        }
+    }
+
+    private static TestSimpleObject row() {
+        return new TestSimpleObject("John", 30, true, 95.5);
+    }
+}
@@ -0,0 +1,284 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.TableInfo;
+import com.google.cloud.bigquery.storage.v1.AppendRowsRequest;
+import com.google.cloud.bigquery.storage.v1.AppendRowsResponse;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteGrpc;
+import com.google.cloud.bigquery.storage.v1.BigQueryWriteSettings;
+import com.google.cloud.bigquery.storage.v1.GetWriteStreamRequest;
+import com.google.cloud.bigquery.storage.v1.RowError;
+import com.google.cloud.bigquery.storage.v1.WriteStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DynamicMessage;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+@ExtendWith(MockitoExtension.class)
+public class BigQueryStorageWriteTest {
+
+    private static final String DEFAULT_STREAM = "projects/test-project/datasets/test_dataset/tables/test_table/_default";
+
+    @Mock
+    private BigQuery bigquery;
+
+    private FakeBigQueryWrite fakeWrite;
+    private Server server;
+    private ManagedChannel channel;
+    private BigQueryWriteClient writeClient;
+    private BigQueryObjectWriter writer;
+
+    /**
+     * An in-process Storage Write API service that records append requests and answers them
+     * with queued responses, or with successful appends once the queue is empty.
+     */
+    static class FakeBigQueryWrite extends BigQueryWriteGrpc.BigQueryWriteImplBase {
+        final List<AppendRowsRequest> requests = new CopyOnWriteArrayList<>();
+        final Deque<Object> responses = new ArrayDeque<>();
+        final AtomicInteger connections = new AtomicInteger();
+
+        @Override
+        public void getWriteStream(GetWriteStreamRequest request, StreamObserver<WriteStream> responseObserver) {
+            responseObserver.onNext(WriteStream.newBuilder().setName(request.getName()).setLocation("us").build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public StreamObserver<AppendRowsRequest> appendRows(StreamObserver<AppendRowsResponse> responseObserver) {
+            connections.incrementAndGet();
+            return new StreamObserver<AppendRowsRequest>() {
+                @Override
+                public void onNext(AppendRowsRequest request) {
+                    requests.add(request);
+                    Object response = responses.isEmpty() ? AppendRowsResponse.getDefaultInstance() : responses.poll();
+                    if (response instanceof Status) {
+                        responseObserver.onError(((Status) response).asRuntimeException());
+                    } else {
+                        responseObserver.onNext((AppendRowsResponse) response);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fakeWrite = new FakeBigQueryWrite();
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName).directExecutor().addService(fakeWrite).build().start();
+        channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        writeClient = BigQueryWriteClient.create(BigQueryWriteSettings.newBuilder()
+                .setTransportChannelProvider(FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+                .setCredentialsProvider(NoCredentialsProvider.create())
+                .build());
+        writer = new BigQueryObjectWriter(bigquery, writeClient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.close();
+        writeClient.close();
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testExecute_whenStorageWriteMode_thenAppendProtoRowsToDefaultStream() throws Exception {
+        // Setup
+        stubProjectId();
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .writeMode(WriteMode.STORAGE_WRITE)
+                .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.5), new TestSimpleObject("b", 2, false, 2.5)))
+                .execute();
+
+        // Verify
+        assertThat(fakeWrite.requests).hasSize(1);
+        AppendRowsRequest request = fakeWrite.requests.get(0);
+        assertThat(request.getWriteStream()).isEqualTo(DEFAULT_STREAM);
+        assertThat(request.getProtoRows().getWriterSchema().getProtoDescriptor())
+                .isEqualTo(ProtoRowEncoder.forClass(TestSimpleObject.class).getDescriptorProto());
+        assertThat(request.getProtoRows().getRows().getSerializedRowsCount()).isEqualTo(2);
+        DynamicMessage first = DynamicMessage.parseFrom(ProtoRowEncoder.forClass(TestSimpleObject.class).getDescriptor(),
+                request.getProtoRows().getRows().getSerializedRows(0));
+        assertThat(first).isEqualTo(ProtoRowEncoder.forClass(TestSimpleObject.class).encode(new TestSimpleObject("a", 1, true, 1.5)));
+        verify(bigquery, never()).insertAll(any());
+    }
+
+    @Test
+    public void testExecute_whenStreamIsSet_thenAppendToApplicationStream() {
+        // Setup
+        String stream = "projects/test-project/datasets/test_dataset/tables/test_table/streams/s1";
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .toStream(stream)
+                .row(new TestSimpleObject("a", 1, true, 1.5))
+                .execute();
+
+        // Verify
+        assertThat(fakeWrite.requests).hasSize(1);
+        assertThat(fakeWrite.requests.get(0).getWriteStream()).isEqualTo(stream);
+    }
+
+    @Test
+    public void testExecute_whenRowsAreRejected_thenAppendStoppedRowsAgain() {
+        // Setup
+        stubProjectId();
+        fakeWrite.responses.add(AppendRowsResponse.newBuilder()
+                .setError(com.google.rpc.Status.newBuilder().setCode(Status.Code.INVALID_ARGUMENT.value()).setMessage("row errors"))
+                .addRowErrors(RowError.newBuilder().setIndex(1).setCode(RowError.RowErrorCode.FIELDS_ERROR).setMessage("bad value"))
+                .build());
+
+        // Execute and Verify
+        InsertException exception = Assertions.assertThrows(InsertException.class, () -> writer.insert("test_dataset", "test_table")
+                .writeMode(WriteMode.STORAGE_WRITE)
+                .rows(Arrays.asList(new TestSimpleObject("a", 1, true, 1.5), new TestSimpleObject("b", 2, false, 2.5)))
+                .execute());
+        InsertResult result = exception.getResult();
+        assertThat(result.getFailedRowCount()).isEqualTo(1);
+        assertThat(result.getInsertErrors().get(1L).get(0).getReason()).isEqualTo("invalid");
+        assertThat(result.getInsertErrors().get(1L).get(0).getMessage()).isEqualTo("bad value");
+        assertThat(result.getInsertErrors()).doesNotContainKey(0L);
+        assertThat(fakeWrite.requests).hasSize(2);
+        assertThat(fakeWrite.requests.get(1).getProtoRows().getRows().getSerializedRowsCount()).isEqualTo(1);
+        verify(bigquery, never()).create(any(TableInfo.class));
+    }
+
+    @Test
+    public void testExecute_whenStorageWriteWithInsertIdsOrHedging_thenThrowIllegalStateException() {
+        // Execute and Verify
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.insert("test_dataset", "test_table")
+                .writeMode(WriteMode.STORAGE_WRITE)
+                .insertIds(InsertIdStrategy.randomUuid())
+                .row(new TestSimpleObject("a", 1, true, 1.5))
+                .execute());
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.insert("test_dataset", "test_table")
+                .writeMode(WriteMode.STORAGE_WRITE)
+                .hedging(HedgePolicy.newBuilder().build())
+                .row(new TestSimpleObject("a", 1, true, 1.5))
+                .execute());
+        assertThat(fakeWrite.requests).isEmpty();
+    }
+
+    @Test
+    public void testExecute_whenTableNotFound_thenCreateTableAndRetryAppend() {
+        // Setup
+        stubProjectId();
+        fakeWrite.responses.add(Status.NOT_FOUND.withDescription("Table not found"));
+        when(bigquery.getTable(any(com.google.cloud.bigquery.TableId.class))).thenReturn(null);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .writeMode(WriteMode.STORAGE_WRITE)
+                .row(new TestSimpleObject("a", 1, true, 1.5))
+                .execute();
+
+        // Verify
+        verify(bigquery).create(any(TableInfo.class));
+        assertThat(fakeWrite.requests).hasSize(2);
+    }
+
+    @Test
+    public void testExecute_whenInsertsShareStreamAndClass_thenReuseConnection() {
+        // Setup
+        stubProjectId();
+
+        // Execute
+        for (int i = 0; i < 3; i++) {
+            writer.insert("test_dataset", "test_table")
+                    .writeMode(WriteMode.STORAGE_WRITE)
+                    .row(new TestSimpleObject("a" + i, i, true, 1.5))
+                    .execute();
+        }
+
+        // Verify
+        assertThat(fakeWrite.requests).hasSize(3);
+        assertThat(fakeWrite.connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAppend_whenRowsExceedRequestSize_thenSplitIntoRequests() {
+        // Setup
+        long rowBytes = CodedOutputStream.computeBytesSize(1,
+                ProtoRowEncoder.forClass(TestSimpleObject.class).encode(new TestSimpleObject("a", 1, true, 1.5)).toByteString());
+        List<Object> rows = Arrays.asList(new TestSimpleObject("a", 1, true, 1.5), new TestSimpleObject("b", 2, false, 2.5),
+                new TestSimpleObject("c", 3, true, 3.5));
+        List<InsertResult.Chunk> chunks = new ArrayList<>();
+
+        // Execute
+        try (StorageWriteAppender appender = new StorageWriteAppender(writeClient, rowBytes * 2)) {
+            appender.append(DEFAULT_STREAM, rows, Arrays.asList(0, 1, 2), chunks);
+        }
+
+        // Verify
+        assertThat(fakeWrite.requests).hasSize(2);
+        assertThat(fakeWrite.requests.get(0).getProtoRows().getRows().getSerializedRowsCount()).isEqualTo(2);
+        assertThat(fakeWrite.requests.get(1).getProtoRows().getRows().getSerializedRowsCount()).isEqualTo(1);
+        assertThat(chunks).hasSize(2);
+        assertThat(chunks.get(1).getRows()).asList().containsExactly(2);
+    }
+
+    @Test
+    public void testExecute_whenWriterHasNoWriteClient_thenThrowIllegalStateException() {
+        // Setup
+        BigQueryObjectWriter insertAllOnly = new BigQueryObjectWriter(bigquery);
+
+        // Execute and Verify
+        Assertions.assertThrows(IllegalStateException.class, () -> insertAllOnly.insert("test_dataset", "test_table")
+                .writeMode(WriteMode.STORAGE_WRITE)
+                .row(new TestSimpleObject("a", 1, true, 1.5))
+                .execute());
+    }
+
+    private void stubProjectId() {
+        when(bigquery.getOptions()).thenReturn(BigQueryOptions.newBuilder()
+                .setProjectId("test-project")
+                .setCredentials(NoCredentials.getInstance())
+                .build());
+    }
+}
@@ -0,0 +1,187 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+@ExtendWith(MockitoExtension.class)
+public class BigQuerySubscriberTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private InsertAllResponse success;
+
+    @Mock
+    private Flow.Subscription subscription;
+
+    private BigQueryObjectWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        writer = new BigQueryObjectWriter(bigquery);
+    }
+
+    @Test
+    public void testOnComplete_whenPublisherCompletes_thenInsertAllRowsInBatches() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenAnswer(invocation -> {
+            batchSizes.add(invocation.<InsertAllRequest>getArgument(0).getRows().size());
+            return success;
+        });
+        BigQuerySubscriber<TestSimpleObject> subscriber = writer.<TestSimpleObject>subscriber("test_dataset", "test_table")
+                .maxBatchRows(2)
+                .maxInFlight(1)
+                .build();
+
+        // Execute
+        try (SubmissionPublisher<TestSimpleObject> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            for (int i = 0; i < 5; i++) {
+                publisher.submit(row("row" + i));
+            }
+        }
+        long inserted = subscriber.getCompletion().get(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertThat(inserted).isEqualTo(5L);
+        assertThat(batchSizes).containsExactly(2, 2, 1).inOrder();
+    }
+
+    @Test
+    public void testOnNext_whenInsertsAreInFlight_thenRequestRowsOnlyAfterTheyFinish() throws Exception {
+        // Setup
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return success;
+        });
+        BigQuerySubscriber<TestSimpleObject> subscriber = writer.<TestSimpleObject>subscriber("test_dataset", "test_table")
+                .maxBatchRows(2)
+                .maxInFlight(1)
+                .build();
+        subscriber.onSubscribe(subscription);
+
+        // Execute
+        subscriber.onNext(row("a"));
+        subscriber.onNext(row("b"));
+        started.await(5, TimeUnit.SECONDS);
+        verify(subscription, times(1)).request(2);
+        release.countDown();
+
+        // Verify
+        verify(subscription, timeout(5000).times(2)).request(2);
+        subscriber.onComplete();
+        assertThat(subscriber.getCompletion().get(5, TimeUnit.SECONDS)).isEqualTo(2L);
+    }
+
+    @Test
+    public void testOnNext_whenInsertFails_thenCancelSubscriptionAndFailCompletion(@Mock InsertAllResponse failure) {
+        // Setup
+        when(failure.hasErrors()).thenReturn(true);
+        when(failure.getInsertErrors()).thenReturn(Collections.singletonMap(0L,
+                Collections.singletonList(new BigQueryError("invalid", "name", "bad value"))));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(failure);
+        BigQuerySubscriber<TestSimpleObject> subscriber = writer.<TestSimpleObject>subscriber("test_dataset", "test_table")
+                .maxBatchRows(1)
+                .executor(Runnable::run)
+                .build();
+        subscriber.onSubscribe(subscription);
+
+        // Execute
+        subscriber.onNext(row("a"));
+
+        // Verify
+        verify(subscription).cancel();
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> subscriber.getCompletion().get());
+        assertThat(e.getCause()).isInstanceOf(InsertException.class);
+    }
+
+    @Test
+    public void testOnNext_whenRowCannotBeConverted_thenCancelSubscriptionAndFailCompletion() {
+        // Setup
+        IllegalStateException conversionFailure = new IllegalStateException("Cannot encode the value");
+        TypeCodecs.register(TypeCodec.of(Unencodable.class, LegacySQLTypeName.STRING,
+                value -> { throw conversionFailure; }, value -> new Unencodable()));
+        BigQuerySubscriber<TestUnencodableObject> subscriber = writer.<TestUnencodableObject>subscriber("test_dataset", "test_table")
+                .build();
+        subscriber.onSubscribe(subscription);
+
+        // Execute
+        subscriber.onNext(new TestUnencodableObject());
+
+        // Verify
+        verify(subscription).cancel();
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> subscriber.getCompletion().get());
+        assertThat(e.getCause()).isSameInstanceAs(conversionFailure);
+    }
+
+    @Test
+    public void testOnNext_whenInsertFinishesSynchronously_thenRequestRowsOutsideTheLock() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        BigQuerySubscriber<TestSimpleObject> subscriber = writer.<TestSimpleObject>subscriber("test_dataset", "test_table")
+                .maxBatchRows(1)
+                .maxInFlight(1)
+                .executor(Runnable::run)
+                .build();
+        List<Boolean> requestedUnderLock = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> requestedUnderLock.add(Thread.holdsLock(subscriber))).when(subscription).request(anyLong());
+        subscriber.onSubscribe(subscription);
+
+        // Execute
+        subscriber.onNext(row("a"));
+        subscriber.onNext(row("b"));
+        subscriber.onComplete();
+
+        // Verify
+        assertThat(subscriber.getCompletion().get(5, TimeUnit.SECONDS)).isEqualTo(2L);
+        assertThat(requestedUnderLock).containsExactly(false, false, false);
+    }
+
+    private static TestSimpleObject row(String name) {
+        return new TestSimpleObject(name, 30, true, 95.5);
+    }
+
+    public static class Unencodable {
+    }
+
+    public static class TestUnencodableObject {
+        private Unencodable value = new Unencodable();
+    }
+}
@@ -25,6 +25,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -98,6 +99,27 @@ public class BigQueryWriterTest {
         }
     }
 
+    public static class TestPrimitiveArrayObject {
+        private String name;
+        private int[] counts;
+        private long[] buckets;
+        private double[] samples;
+        private float[] weights;
+        private boolean[] flags;
+
+        public TestPrimitiveArrayObject() {
+        }
+
+        public TestPrimitiveArrayObject(String name, int[] counts, long[] buckets, double[] samples, float[] weights, boolean[] flags) {
+            this.name = name;
+            this.counts = counts;
+            this.buckets = buckets;
+            this.samples = samples;
+            this.weights = weights;
+            this.flags = flags;
+        }
+    }
+
     @Test
     public void testExecute_whenRowsAreEmpty_thenDoNothing() {
         // Execute
@@ -198,6 +220,38 @@ public class BigQueryWriterTest {
         verify(bigquery).create(any(TableInfo.class));
     }
 
+    @Test
+    public void testExecute_whenSubclassOverridesFields_thenCreateTableWithOverriddenFields() {
+        // Setup
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery) {
+            @Override
+            public List<Field> getFieldsFromClass(Class<?> clazz) {
+                List<Field> fields = new ArrayList<>(super.getFieldsFromClass(clazz));
+                fields.add(Field.of("ingested_at", LegacySQLTypeName.TIMESTAMP));
+                return fields;
+            }
+        };
+        BigQueryException notFoundException = new BigQueryException(404, "Table not found", new BigQueryError("notFound", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class)))
+                .thenThrow(notFoundException)
+                .thenReturn(mockInsertAllResponse(false));
+        when(bigquery.getTable(TableId.of("test_dataset", "test_table"))).thenReturn(null);
+        Table createdTable = createMockTable();
+        when(bigquery.create(any(TableInfo.class))).thenReturn(createdTable);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .row(new TestSimpleObject("John", 30, true, 95.5))
+                .execute();
+
+        // Verify
+        ArgumentCaptor<TableInfo> created = ArgumentCaptor.forClass(TableInfo.class);
+        verify(bigquery).create(created.capture());
+        Schema schema = created.getValue().getDefinition().getSchema();
+        assertThat(schema.getFields()).hasSize(5);
+        assertThat(schema.getFields().get("ingested_at").getType()).isEqualTo(LegacySQLTypeName.TIMESTAMP);
+    }
+
     @Test
     public void testExecute_whenSchemaMismatch_thenUpdateTableAndRetrySuccess() {
         // Setup
@@ -304,6 +358,36 @@ public class BigQueryWriterTest {
         assertThat(itemsList.get(0)).isInstanceOf(Map.class);
     }
 
+    @Test
+    public void testObjectToMap_whenObjectHasPrimitiveArrays_thenMapRepeatedFields() {
+        // Setup
+        long[] buckets = {1L, 5L, 20L};
+        TestPrimitiveArrayObject object = new TestPrimitiveArrayObject("latency", new int[] {1, 2},
+                buckets, new double[] {0.5, 1.5}, new float[] {0.25f}, new boolean[] {true, false});
+
+        // Execute
+        Schema schema = bigQueryHelper.getSchemaFromObjects(Arrays.asList(object));
+        Map<String, Object> result = bigQueryHelper.objectToMap(object);
+        buckets[0] = 99L;
+        String json = new String(bigQueryHelper.objectToJson(object), java.nio.charset.StandardCharsets.UTF_8);
+
+        // Verify
+        assertThat(schema.getFields().get("counts").getType()).isEqualTo(LegacySQLTypeName.INTEGER);
+        assertThat(schema.getFields().get("buckets").getType()).isEqualTo(LegacySQLTypeName.INTEGER);
+        assertThat(schema.getFields().get("samples").getType()).isEqualTo(LegacySQLTypeName.FLOAT);
+        assertThat(schema.getFields().get("weights").getType()).isEqualTo(LegacySQLTypeName.FLOAT);
+        assertThat(schema.getFields().get("flags").getType()).isEqualTo(LegacySQLTypeName.BOOLEAN);
+        for (String name : Arrays.asList("counts", "buckets", "samples", "weights", "flags")) {
+            assertThat(schema.getFields().get(name).getMode()).isEqualTo(Field.Mode.REPEATED);
+        }
+        assertThat((List<?>) result.get("counts")).containsExactly(1, 2).inOrder();
+        assertThat((List<?>) result.get("buckets")).containsExactly(1L, 5L, 20L).inOrder();
+        assertThat((List<?>) result.get("samples")).containsExactly(0.5, 1.5).inOrder();
+        assertThat((List<?>) result.get("flags")).containsExactly(true, false).inOrder();
+        assertThat(json).isEqualTo("{\"name\":\"latency\",\"counts\":[1,2],\"buckets\":[99,5,20],"
+                + "\"samples\":[0.5,1.5],\"weights\":[0.25],\"flags\":[true,false]}");
+    }
+
     @Test
     public void testGetSchemaFromClass_whenSimpleObject_thenCorrectlyMapFields() {
         // Execute
@@ -342,6 +426,26 @@ public class BigQueryWriterTest {
         assertThat(nestedField.getSubFields()).hasSize(4); // Fields from TestSimpleObject
     }
 
+    @Test
+    public void testGetFieldsFromClass_whenSubclassOverridesType_thenUseOverriddenType() {
+        // Setup
+        BigQueryObjectWriter writer = new BigQueryObjectWriter(bigquery) {
+            @Override
+            public LegacySQLTypeName getTypeFromClass(Class<?> clazz) {
+                return clazz == double.class ? LegacySQLTypeName.NUMERIC : super.getTypeFromClass(clazz);
+            }
+        };
+
+        // Execute
+        List<com.google.cloud.bigquery.Field> fields = writer.getFieldsFromClass(TestComplexObject.class);
+
+        // Verify
+        com.google.cloud.bigquery.Field nested = fields.stream().filter(f -> f.getName().equals("nested")).findFirst().orElseThrow();
+        assertThat(nested.getSubFields().get("score").getType()).isEqualTo(LegacySQLTypeName.NUMERIC);
+        assertThat(nested.getSubFields().get("name").getType()).isEqualTo(LegacySQLTypeName.STRING);
+        assertThat(bigQueryHelper.getFieldsFromClass(TestSimpleObject.class).get(3).getType()).isEqualTo(LegacySQLTypeName.FLOAT);
+    }
+
     @Test
     public void testGetSchemaFromObjects_whenEmptyList_thenThrowIllegalArgumentException() {
         // Execute and Verify
@@ -737,6 +841,51 @@ public class BigQueryWriterTest {
         assertThat(fieldModes.get("doubleList")).isEqualTo(com.google.cloud.bigquery.Field.Mode.REPEATED);
     }
 
+    @Test
+    public void testObjectToMap_whenCalledRepeatedly_thenReuseCachedPlan() {
+        // Setup
+        TestSimpleObject first = new TestSimpleObject("John", 30, true, 95.5);
+        TestSimpleObject second = new TestSimpleObject("Jane", 25, false, 88.2);
+
+        // Execute
+        Map<String, Object> firstResult = bigQueryHelper.objectToMap(first);
+        Map<String, Object> secondResult = bigQueryHelper.objectToMap(second);
+
+        // Verify
+        assertThat(SerializationPlan.forClass(TestSimpleObject.class))
+                .isSameInstanceAs(SerializationPlan.forClass(TestSimpleObject.class));
+        assertThat(firstResult).containsExactly("name", "John", "age", 30, "active", true, "score", 95.5);
+        assertThat(secondResult).containsExactly("name", "Jane", "age", 25, "active", false, "score", 88.2);
+    }
+
+    public static class TestSelfReferencingObject {
+        private String name;
+        private List<TestSelfReferencingObject> children;
+    }
+
+    @Test
+    public void testGetSchemaFromObjects_whenCalledRepeatedly_thenReuseCachedSchema() {
+        // Setup
+        List<Object> objects = Arrays.asList(new TestComplexObject("id", null, null, null, null));
+
+        // Execute
+        Schema first = bigQueryHelper.getSchemaFromObjects(objects);
+        Schema second = bigQueryHelper.getSchemaFromObjects(objects);
+
+        // Verify
+        assertThat(second).isSameInstanceAs(first);
+        assertThat(first.getFields().get("nested").getSubFields())
+                .isSameInstanceAs(BigQueryObjectWriter.schemaOf(TestSimpleObject.class).getFields());
+    }
+
+    @Test
+    public void testGetFieldsFromClass_whenClassReferencesItself_thenThrowIllegalArgumentException() {
+        // Execute and Verify
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> bigQueryHelper.getFieldsFromClass(TestSelfReferencingObject.class));
+        assertThat(e).hasMessageThat().contains("self-referencing");
+    }
+
     // Helper methods for creating mocks
     private InsertAllResponse mockInsertAllResponse(boolean hasErrors) {
         InsertAllResponse response = org.mockito.Mockito.mock(InsertAllResponse.class);
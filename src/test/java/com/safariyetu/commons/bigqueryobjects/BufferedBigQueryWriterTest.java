@@ -0,0 +1,451 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+@ExtendWith(MockitoExtension.class)
+public class BufferedBigQueryWriterTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private InsertAllResponse success;
+
+    private BigQueryObjectWriter writer;
+
+    // Counted down when the first insertAll of stubBlockedInserts starts.
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        writer = new BigQueryObjectWriter(bigquery);
+    }
+
+    @Test
+    public void testAdd_whenBatchReachesMaxRows_thenFlushInBackground() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+        BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .maxBatchRows(3)
+                .linger(1, TimeUnit.HOURS)
+                .build();
+
+        // Execute
+        for (int i = 0; i < 4; i++) {
+            buffered.add(new TestSimpleObject("row-" + i, i, true, 1.0));
+        }
+
+        // Verify
+        verify(bigquery, timeout(5000)).insertAll(requests.capture());
+        assertThat(requests.getValue().getRows()).hasSize(3);
+        assertThat(requests.getValue().getRows().get(0).getContent().get("name")).isEqualTo("row-0");
+        assertThat(buffered.getBufferedRowCount()).isEqualTo(1);
+        buffered.close();
+        verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+    }
+
+    @Test
+    public void testAdd_whenLingerTimeElapses_thenFlushPartialBatch() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        try (BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .maxBatchRows(100)
+                .linger(20, TimeUnit.MILLISECONDS)
+                .build()) {
+            buffered.add(new TestSimpleObject("John", 30, true, 95.5));
+            buffered.add(new TestSimpleObject("Jane", 25, false, 88.0));
+
+            // Verify
+            verify(bigquery, timeout(5000)).insertAll(requests.capture());
+            assertThat(requests.getValue().getRows()).hasSize(2);
+            assertThat(buffered.getBufferedRowCount()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testAdd_whenBatchReachesMaxBytes_thenFlushBeforeMaxRows() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        TestSimpleObject row = new TestSimpleObject("John", 30, true, 95.5);
+        long rowBytes = RowSizeEstimator.estimateRow(writer.objectToMap(row));
+
+        // Execute
+        try (BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .maxBatchRows(100)
+                .maxBatchBytes(rowBytes * 2)
+                .linger(1, TimeUnit.HOURS)
+                .build()) {
+            for (int i = 0; i < 5; i++) {
+                buffered.add(row);
+            }
+
+            // Verify
+            verify(bigquery, timeout(5000).times(2)).insertAll(any(InsertAllRequest.class));
+            assertThat(buffered.getBufferedRowCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testAdd_whenManyProducerThreads_thenEveryRowIsSentOnce() throws Exception {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        List<String> names = Collections.synchronizedList(new ArrayList<>());
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenAnswer(invocation -> {
+            InsertAllRequest request = invocation.getArgument(0);
+            for (InsertAllRequest.RowToInsert row : request.getRows()) {
+                names.add((String) row.getContent().get("name"));
+            }
+            return success;
+        });
+        BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .maxBatchRows(7)
+                .linger(5, TimeUnit.MILLISECONDS)
+                .build();
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+
+        // Execute
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            producers.execute(() -> {
+                for (int i = 0; i < 250; i++) {
+                    buffered.add(new TestSimpleObject(producer + "-" + i, i, true, 1.0));
+                }
+            });
+        }
+        producers.shutdown();
+        assertThat(producers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        buffered.close();
+
+        // Verify
+        assertThat(names).hasSize(1000);
+        assertThat(new HashSet<>(names)).hasSize(1000);
+    }
+
+    @Test
+    public void testFlush_whenRowsAreRejected_thenPassInsertExceptionToErrorHandler(@Mock InsertAllResponse failure) {
+        // Setup
+        when(failure.hasErrors()).thenReturn(true);
+        when(failure.getInsertErrors()).thenReturn(Collections.singletonMap(0L,
+                Collections.singletonList(new BigQueryError("invalid", "name", "bad value"))));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(failure);
+        List<RuntimeException> errors = new ArrayList<>();
+        BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .onError(errors::add)
+                .build();
+        buffered.add(new TestSimpleObject("John", 30, true, 95.5));
+
+        // Execute
+        buffered.close();
+
+        // Verify
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0)).isInstanceOf(InsertException.class);
+        Assertions.assertThrows(IllegalStateException.class, () -> buffered.add(new TestSimpleObject("Jane", 25, false, 88.0)));
+    }
+
+    @Test
+    public void testAdd_whenBufferIsFullAndPolicyIsBlock_thenWaitForSentBatches() throws Exception {
+        // Setup
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> names = stubBlockedInserts(release);
+        BufferedBigQueryWriter buffered = budgetedWriter(OverflowPolicy.BLOCK);
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+        buffered.add(row("a"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        buffered.add(row("b"));
+
+        // Execute
+        Future<?> blocked = producer.submit(() -> buffered.add(row("c")));
+
+        // Verify
+        Assertions.assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        buffered.close();
+        producer.shutdown();
+        assertThat(names).containsExactly("a", "b", "c").inOrder();
+        assertThat(buffered.getBufferedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void testAdd_whenBufferIsFullAndPolicyIsFail_thenRejectRow() throws Exception {
+        // Setup
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> names = stubBlockedInserts(release);
+        BufferedBigQueryWriter buffered = budgetedWriter(OverflowPolicy.FAIL);
+        buffered.add(row("a"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        buffered.add(row("b"));
+
+        // Execute
+        Assertions.assertThrows(RejectedExecutionException.class, () -> buffered.add(row("c")));
+
+        // Verify
+        release.countDown();
+        buffered.close();
+        assertThat(names).containsExactly("a", "b").inOrder();
+    }
+
+    @Test
+    public void testAdd_whenBufferIsFullAndPolicyIsDropOldest_thenDropOldestQueuedRow() throws Exception {
+        // Setup
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> names = stubBlockedInserts(release);
+        BufferedBigQueryWriter buffered = budgetedWriter(OverflowPolicy.DROP_OLDEST);
+        buffered.add(row("a"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        buffered.add(row("b"));
+
+        // Execute
+        buffered.add(row("c"));
+
+        // Verify
+        release.countDown();
+        buffered.close();
+        assertThat(names).containsExactly("a", "c").inOrder();
+        assertThat(buffered.getDroppedRowCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAdd_whenBufferIsFullAndPolicyIsDropNewest_thenDropAddedRow() throws Exception {
+        // Setup
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> names = stubBlockedInserts(release);
+        BufferedBigQueryWriter buffered = budgetedWriter(OverflowPolicy.DROP_NEWEST);
+        buffered.add(row("a"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        buffered.add(row("b"));
+
+        // Execute
+        buffered.add(row("c"));
+
+        // Verify
+        release.countDown();
+        buffered.close();
+        assertThat(names).containsExactly("a", "b").inOrder();
+        assertThat(buffered.getDroppedRowCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFlush_whenBigQueryIsUnavailable_thenSpoolRowsAndReplayThemInOrder(@TempDir Path spoolDirectory) {
+        // Setup
+        writer = new BigQueryObjectWriter(bigquery, null, RetryPolicy.none());
+        when(success.hasErrors()).thenReturn(false);
+        List<String> names = Collections.synchronizedList(new ArrayList<>());
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        when(bigquery.insertAll(any(InsertAllRequest.class)))
+                .thenThrow(new BigQueryException(503, "Service unavailable"))
+                .thenAnswer(invocation -> {
+                    InsertAllRequest request = invocation.getArgument(0);
+                    for (InsertAllRequest.RowToInsert row : request.getRows()) {
+                        names.add((String) row.getContent().get("name"));
+                        ids.add(row.getId());
+                    }
+                    return success;
+                });
+        List<RuntimeException> errors = new ArrayList<>();
+        BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .insertIds(InsertIdStrategy.contentHash())
+                .spool(spoolDirectory, 1024 * 1024)
+                .onError(errors::add)
+                .build();
+        buffered.add(row("a"));
+        buffered.flush();
+        long spooledBytes = buffered.getSpooledBytes();
+        buffered.add(row("b"));
+
+        // Execute
+        buffered.close();
+
+        // Verify
+        assertThat(spooledBytes).isGreaterThan(0L);
+        assertThat(errors).isEmpty();
+        assertThat(names).containsExactly("a", "b").inOrder();
+        assertThat(ids).containsExactly(InsertIdStrategy.contentHash().insertId(row("a")),
+                InsertIdStrategy.contentHash().insertId(row("b"))).inOrder();
+        assertThat(buffered.getSpooledBytes()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testClose_whenReplayFailsPartway_thenKeepOnlyUnsentRowsSpooled(@TempDir Path spoolDirectory) {
+        // Setup
+        writer = new BigQueryObjectWriter(bigquery, null, RetryPolicy.none());
+        spoolRows(spoolDirectory, "a", "b", "c");
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class)))
+                .thenReturn(success)
+                .thenThrow(new BigQueryException(503, "Service unavailable"));
+        List<RuntimeException> errors = new ArrayList<>();
+        BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .maxBatchRows(1)
+                .spool(spoolDirectory, 1024 * 1024)
+                .onError(errors::add)
+                .build();
+
+        // Execute
+        buffered.close();
+
+        // Verify
+        assertThat(errors).isEmpty();
+        verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+        try (RowSpool spool = new RowSpool(spoolDirectory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            List<String> names = new ArrayList<>();
+            for (RowSpool.SpooledRow row : spool.oldest().getRows()) {
+                names.add((String) row.getContent().get("name"));
+            }
+            assertThat(names).containsExactly("b", "c").inOrder();
+        }
+    }
+
+    @Test
+    public void testClose_whenTableIsMissingOnReplay_thenCreateTableWithInsertOptions(@TempDir Path spoolDirectory) {
+        // Setup
+        writer = new BigQueryObjectWriter(bigquery, null, RetryPolicy.none());
+        spoolRows(spoolDirectory, "a");
+        when(success.hasErrors()).thenReturn(false);
+        BigQueryException notFound = new BigQueryException(404, "Table not found", new BigQueryError("notFound", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(notFound).thenReturn(success);
+        when(bigquery.getTable(TableId.of("test_dataset", "test_table"))).thenReturn(null);
+        when(bigquery.create(any(TableInfo.class))).thenReturn(mock(Table.class));
+        List<RuntimeException> errors = new ArrayList<>();
+        BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .insertOptions(insert -> insert.clusterBy("name"))
+                .spool(spoolDirectory, 1024 * 1024)
+                .onError(errors::add)
+                .build();
+
+        // Execute
+        buffered.close();
+
+        // Verify
+        ArgumentCaptor<TableInfo> created = ArgumentCaptor.forClass(TableInfo.class);
+        verify(bigquery).create(created.capture());
+        StandardTableDefinition definition = created.getValue().getDefinition();
+        assertThat(definition.getClustering().getFields()).containsExactly("name");
+        assertThat(definition.getSchema().getFields().get("name")).isNotNull();
+        verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+        assertThat(errors).isEmpty();
+        assertThat(buffered.getSpooledBytes()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testFlush_whenRequestIsRefused_thenPassFailureToHandlerWithoutSpooling(@TempDir Path spoolDirectory) {
+        // Setup
+        writer = new BigQueryObjectWriter(bigquery, null, RetryPolicy.none());
+        when(success.hasErrors()).thenReturn(false);
+        BigQueryException invalid = new BigQueryException(400, "Invalid request", new BigQueryError("invalid", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(invalid).thenReturn(success);
+        List<RuntimeException> errors = new ArrayList<>();
+        BufferedBigQueryWriter buffered = writer.buffered("test_dataset", "test_table")
+                .insertIds(InsertIdStrategy.contentHash())
+                .spool(spoolDirectory, 1024 * 1024)
+                .onError(errors::add)
+                .build();
+
+        // Execute
+        buffered.add(row("a"));
+        buffered.flush();
+        long spooledBytes = buffered.getSpooledBytes();
+        buffered.add(row("b"));
+        buffered.flush();
+
+        // Verify
+        assertThat(spooledBytes).isEqualTo(0L);
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0)).hasCauseThat().isSameInstanceAs(invalid);
+        verify(bigquery, times(2)).insertAll(any(InsertAllRequest.class));
+        buffered.close();
+    }
+
+    /**
+     * Stubs insertAll to wait for the release latch, recording the names of the inserted rows.
+     */
+    private List<String> stubBlockedInserts(CountDownLatch release) {
+        when(success.hasErrors()).thenReturn(false);
+        List<String> names = Collections.synchronizedList(new ArrayList<>());
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            InsertAllRequest request = invocation.getArgument(0);
+            for (InsertAllRequest.RowToInsert row : request.getRows()) {
+                names.add((String) row.getContent().get("name"));
+            }
+            return success;
+        });
+        return names;
+    }
+
+    /**
+     * A writer sending every row in its own batch, with room for two rows.
+     */
+    private BufferedBigQueryWriter budgetedWriter(OverflowPolicy policy) {
+        return writer.buffered("test_dataset", "test_table")
+                .maxBatchRows(1)
+                .maxBufferedBytes(RowSizeEstimator.estimateRow(writer.objectToMap(row("a"))) * 2)
+                .overflowPolicy(policy)
+                .build();
+    }
+
+    private static void spoolRows(Path spoolDirectory, String... names) {
+        List<String> classes = new ArrayList<>();
+        List<Map<String, Object>> contents = new ArrayList<>();
+        for (String name : names) {
+            classes.add(TestSimpleObject.class.getName());
+            contents.add(BigQueryObjectWriter.insertRowContent(row(name)));
+        }
+        try (RowSpool spool = new RowSpool(spoolDirectory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            spool.append(Collections.nCopies(names.length, (String) null), classes, contents);
+        }
+    }
+
+    private static TestSimpleObject row(String name) {
+        return new TestSimpleObject(name, 30, true, 95.5);
+    }
+}
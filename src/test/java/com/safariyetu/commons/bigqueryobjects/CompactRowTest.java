@@ -0,0 +1,52 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CompactRowTest {
+
+    private static final CompactRow.Layout LAYOUT = new CompactRow.Layout(new String[] {"id", "name", "score"});
+
+    @Test
+    public void testGet_whenValueIsNull_thenTreatKeyAsAbsent() {
+        // Execute
+        CompactRow row = new CompactRow(LAYOUT, new Object[] {"a-1", null, 2.5});
+
+        // Verify
+        assertThat(row).hasSize(2);
+        assertThat(row.get("id")).isEqualTo("a-1");
+        assertThat(row.containsKey("name")).isFalse();
+        assertThat(row.get("unknown")).isNull();
+        assertThat(row.keySet()).containsExactly("id", "score").inOrder();
+    }
+
+    @Test
+    public void testEquals_whenComparedWithHashMap_thenBehaveLikeAnyMap() {
+        // Setup
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("id", "a-1");
+        expected.put("score", 2.5);
+
+        // Execute
+        CompactRow row = new CompactRow(LAYOUT, new Object[] {"a-1", null, 2.5});
+
+        // Verify
+        assertThat(row).isEqualTo(expected);
+        assertThat(row.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(new CompactRow(LAYOUT, new Object[3])).isEmpty();
+    }
+
+    @Test
+    public void testPut_whenCalled_thenThrowUnsupportedOperationException() {
+        // Setup
+        CompactRow row = new CompactRow(LAYOUT, new Object[] {"a-1", null, null});
+
+        // Execute and Verify
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> row.put("name", "x"));
+    }
+}
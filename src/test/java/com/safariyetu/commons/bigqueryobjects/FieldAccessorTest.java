@@ -0,0 +1,79 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class FieldAccessorTest {
+
+    public static class TestPrimitivesObject {
+        private int intField;
+        private long longField;
+        private double doubleField;
+        private boolean booleanField;
+        private String stringField;
+        private final String finalField = "fixed";
+    }
+
+    @Test
+    public void testPrimitiveAccess_whenSetAndGetUnboxed_thenRoundTripValues() throws Exception {
+        // Setup
+        TestPrimitivesObject object = new TestPrimitivesObject();
+        FieldAccessor intAccessor = accessor("intField");
+        FieldAccessor longAccessor = accessor("longField");
+        FieldAccessor doubleAccessor = accessor("doubleField");
+        FieldAccessor booleanAccessor = accessor("booleanField");
+
+        // Execute
+        intAccessor.setInt(object, 42);
+        longAccessor.setLong(object, 9_000_000_000L);
+        doubleAccessor.setDouble(object, 3.5);
+        booleanAccessor.setBoolean(object, true);
+
+        // Verify
+        assertThat(intAccessor.getKind()).isEqualTo(FieldAccessor.Kind.INT);
+        assertThat(intAccessor.getInt(object)).isEqualTo(42);
+        assertThat(longAccessor.getLong(object)).isEqualTo(9_000_000_000L);
+        assertThat(doubleAccessor.getDouble(object)).isEqualTo(3.5);
+        assertThat(booleanAccessor.getBoolean(object)).isTrue();
+        assertThat(intAccessor.get(object)).isEqualTo(42);
+    }
+
+    @Test
+    public void testObjectAccess_whenSetAndGet_thenRoundTripValues() throws Exception {
+        // Setup
+        TestPrimitivesObject object = new TestPrimitivesObject();
+        FieldAccessor stringAccessor = accessor("stringField");
+        FieldAccessor intAccessor = accessor("intField");
+
+        // Execute
+        stringAccessor.set(object, "value");
+        intAccessor.set(object, 7);
+
+        // Verify
+        assertThat(stringAccessor.getKind()).isEqualTo(FieldAccessor.Kind.OTHER);
+        assertThat(stringAccessor.get(object)).isEqualTo("value");
+        assertThat(object.intField).isEqualTo(7);
+    }
+
+    @Test
+    public void testSet_whenValueHasWrongType_thenThrowClassCastException() throws Exception {
+        // Setup
+        TestPrimitivesObject object = new TestPrimitivesObject();
+        FieldAccessor stringAccessor = accessor("stringField");
+
+        // Execute and Verify
+        Assertions.assertThrows(ClassCastException.class, () -> stringAccessor.set(object, 42));
+    }
+
+    @Test
+    public void testGet_whenFieldIsFinal_thenReadValue() throws Exception {
+        // Execute and Verify
+        assertThat(accessor("finalField").get(new TestPrimitivesObject())).isEqualTo("fixed");
+    }
+
+    private FieldAccessor accessor(String name) throws NoSuchFieldException {
+        return new FieldAccessor(TestPrimitivesObject.class.getDeclaredField(name));
+    }
+}
@@ -0,0 +1,252 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.TableResult;
+import com.google.common.collect.ImmutableList;
+
+public class GeneratedRowsTest {
+
+    @BigQueryRow
+    public static class TestGeneratedItem {
+        String name;
+        int quantity;
+
+        public TestGeneratedItem() {}
+
+        public TestGeneratedItem(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    @BigQueryRow
+    public static class TestGeneratedOrder {
+        private String id;
+        private long total;
+        private boolean paid;
+        private BigDecimal amount;
+        private LocalDate day;
+        private Instant createdAt;
+        private Date updatedAt;
+        private List<String> tags;
+        private List<TestGeneratedItem> items;
+        private TestGeneratedItem primaryItem;
+
+        public TestGeneratedOrder() {}
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public long getTotal() { return total; }
+        public void setTotal(long total) { this.total = total; }
+        public boolean isPaid() { return paid; }
+        public void setPaid(boolean paid) { this.paid = paid; }
+        public BigDecimal getAmount() { return amount; }
+        public void setAmount(BigDecimal amount) { this.amount = amount; }
+        public LocalDate getDay() { return day; }
+        public void setDay(LocalDate day) { this.day = day; }
+        public Instant getCreatedAt() { return createdAt; }
+        public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+        public Date getUpdatedAt() { return updatedAt; }
+        public void setUpdatedAt(Date updatedAt) { this.updatedAt = updatedAt; }
+        public List<String> getTags() { return tags; }
+        public void setTags(List<String> tags) { this.tags = tags; }
+        public List<TestGeneratedItem> getItems() { return items; }
+        public void setItems(List<TestGeneratedItem> items) { this.items = items; }
+        public TestGeneratedItem getPrimaryItem() { return primaryItem; }
+        public void setPrimaryItem(TestGeneratedItem primaryItem) { this.primaryItem = primaryItem; }
+    }
+
+    @BigQueryRow
+    public static class TestGeneratedPrices {
+        List<BigDecimal> prices;
+        List<BigInteger> counts;
+        List<Long> ids;
+    }
+
+    @BigQueryRow
+    public static class TestGeneratedValues {
+        short small;
+        Short boxedSmall;
+        UUID id;
+        ZonedDateTime zonedTime;
+        OffsetDateTime offsetTime;
+        BigInteger count;
+        byte[] payload;
+    }
+
+    @BigQueryRow
+    public static class TestNotGeneratedObject {
+        private String hidden;
+    }
+
+    @Test
+    public void testWriterFor_whenClassIsAnnotated_thenReturnGeneratedWriter() {
+        assertThat(GeneratedRows.writerFor(TestGeneratedOrder.class)).isNotNull();
+        assertThat(GeneratedRows.readerFor(TestGeneratedOrder.class)).isNotNull();
+        assertThat(GeneratedRows.writerFor(TestNotGeneratedObject.class)).isNull();
+        assertThat(GeneratedRows.readerFor(TestNotGeneratedObject.class)).isNull();
+        assertThat(GeneratedRows.writerFor(String.class)).isNull();
+    }
+
+    @Test
+    public void testObjectToMap_whenGeneratedWriterExists_thenMatchReflectivePlan() {
+        // Setup
+        TestGeneratedOrder order = createOrder();
+
+        // Execute
+        Map<String, Object> generated = new BigQueryObjectWriter(null).objectToMap(order);
+        Map<String, Object> reflective = SerializationPlan.forClass(TestGeneratedOrder.class).toMap(order);
+
+        // Verify
+        assertThat(generated).isEqualTo(reflective);
+        assertThat(generated.get("amount")).isEqualTo("12.50");
+        assertThat(generated.get("updatedAt")).isEqualTo("2024-01-02T03:04:05Z");
+        assertThat((List<?>) generated.get("items")).hasSize(2);
+    }
+
+    @Test
+    public void testObjectToMap_whenCollectionHasDecimals_thenMatchReflectivePlan() {
+        // Setup
+        TestGeneratedPrices prices = new TestGeneratedPrices();
+        prices.prices = Arrays.asList(new BigDecimal("1E+3"), new BigDecimal("0.50"));
+        prices.counts = Arrays.asList(BigInteger.TEN);
+        prices.ids = Arrays.asList(1L, 2L);
+
+        // Execute
+        Map<String, Object> generated = GeneratedRows.writerFor(TestGeneratedPrices.class).toMap(prices);
+        Map<String, Object> reflective = SerializationPlan.forClass(TestGeneratedPrices.class).toMap(prices);
+
+        // Verify
+        assertThat(generated).isEqualTo(reflective);
+        assertThat((List<?>) generated.get("prices")).containsExactly("1000", "0.50").inOrder();
+        assertThat((List<?>) generated.get("counts")).containsExactly("10");
+        assertThat((List<?>) generated.get("ids")).containsExactly(1L, 2L).inOrder();
+    }
+
+    @Test
+    public void testGetFieldsFromClass_whenGeneratedWriterExists_thenMatchReflectiveSchema() {
+        // Setup
+        List<Field> reflective = new ArrayList<>();
+        for (java.lang.reflect.Field field : TestGeneratedOrder.class.getDeclaredFields()) {
+            reflective.add(BigQueryObjectWriter.fieldOf(field));
+        }
+
+        // Execute
+        List<Field> generated = new BigQueryObjectWriter(null).getFieldsFromClass(TestGeneratedOrder.class);
+
+        // Verify
+        assertThat(generated).isEqualTo(reflective);
+    }
+
+    @Test
+    public void testGeneratedWriter_whenFieldsHaveBuiltInCodecs_thenMatchReflectiveSchemaAndPlan() {
+        // Setup
+        TestGeneratedValues values = new TestGeneratedValues();
+        values.small = 7;
+        values.boxedSmall = 8;
+        values.id = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+        values.zonedTime = ZonedDateTime.parse("2024-03-01T12:15:30+02:00[Africa/Nairobi]");
+        values.offsetTime = OffsetDateTime.parse("2024-03-01T12:15:30+02:00");
+        values.count = BigInteger.TEN;
+        values.payload = "hi".getBytes(StandardCharsets.UTF_8);
+        List<Field> reflective = new ArrayList<>();
+        for (java.lang.reflect.Field field : TestGeneratedValues.class.getDeclaredFields()) {
+            reflective.add(BigQueryObjectWriter.fieldOf(field));
+        }
+
+        // Execute
+        RowWriter<TestGeneratedValues> writer = GeneratedRows.writerFor(TestGeneratedValues.class);
+        List<Field> generated = writer.fields();
+        Map<String, Object> row = writer.toMap(values);
+
+        // Verify
+        assertThat(generated).isEqualTo(reflective);
+        assertThat(generated.get(0).getType()).isEqualTo(LegacySQLTypeName.INTEGER);
+        assertThat(row).isEqualTo(SerializationPlan.forClass(TestGeneratedValues.class).toMap(values));
+    }
+
+    @Test
+    public void testRead_whenGeneratedReaderExists_thenPopulatePojo() {
+        // Setup
+        Schema itemSchema = Schema.of(
+            Field.of("name", LegacySQLTypeName.STRING),
+            Field.of("quantity", LegacySQLTypeName.INTEGER)
+        );
+        Schema schema = Schema.of(
+            Field.of("id", LegacySQLTypeName.STRING),
+            Field.of("total", LegacySQLTypeName.INTEGER),
+            Field.of("paid", LegacySQLTypeName.BOOLEAN),
+            Field.of("createdAt", LegacySQLTypeName.TIMESTAMP),
+            Field.newBuilder("tags", LegacySQLTypeName.STRING).setMode(Field.Mode.REPEATED).build(),
+            Field.of("primaryItem", LegacySQLTypeName.RECORD, itemSchema.getFields())
+        );
+        FieldValueList row = FieldValueList.of(ImmutableList.of(
+            FieldValue.of(FieldValue.Attribute.PRIMITIVE, "order-1"),
+            FieldValue.of(FieldValue.Attribute.PRIMITIVE, "42"),
+            FieldValue.of(FieldValue.Attribute.PRIMITIVE, "true"),
+            FieldValue.of(FieldValue.Attribute.PRIMITIVE, "2024-01-02 03:04:05 UTC"),
+            FieldValue.of(FieldValue.Attribute.REPEATED, ImmutableList.of(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "a"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "b"))),
+            FieldValue.of(FieldValue.Attribute.RECORD, FieldValueList.of(ImmutableList.of(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "widget"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "3")), itemSchema.getFields()))
+        ), schema.getFields());
+        TableResult result = TableResult.newBuilder()
+                .setSchema(schema)
+                .setTotalRows(1L)
+                .setPageNoSchema(new BigQueryObjectReader.MockPage(Arrays.asList(row)))
+                .build();
+
+        // Execute
+        List<TestGeneratedOrder> orders = BigQueryObjectReader.of(TestGeneratedOrder.class).read(result);
+
+        // Verify
+        assertThat(orders).hasSize(1);
+        TestGeneratedOrder order = orders.get(0);
+        assertThat(order.getId()).isEqualTo("order-1");
+        assertThat(order.getTotal()).isEqualTo(42L);
+        assertThat(order.isPaid()).isTrue();
+        assertThat(order.getCreatedAt()).isEqualTo(Instant.parse("2024-01-02T03:04:05Z"));
+        assertThat(order.getTags()).containsExactly("a", "b").inOrder();
+        assertThat(order.getPrimaryItem().name).isEqualTo("widget");
+        assertThat(order.getPrimaryItem().quantity).isEqualTo(3);
+    }
+
+    private TestGeneratedOrder createOrder() {
+        TestGeneratedOrder order = new TestGeneratedOrder();
+        order.setId("order-1");
+        order.setTotal(42L);
+        order.setPaid(true);
+        order.setAmount(new BigDecimal("12.50"));
+        order.setDay(LocalDate.of(2024, 1, 2));
+        order.setCreatedAt(Instant.parse("2024-01-02T03:04:05Z"));
+        order.setUpdatedAt(Date.from(Instant.parse("2024-01-02T03:04:05Z")));
+        order.setTags(Arrays.asList("a", "b"));
+        order.setItems(Arrays.asList(new TestGeneratedItem("widget", 3), new TestGeneratedItem("gadget", 1)));
+        order.setPrimaryItem(new TestGeneratedItem("widget", 3));
+        return order;
+    }
+}
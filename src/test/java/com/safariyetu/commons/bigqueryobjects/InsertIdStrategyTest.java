@@ -0,0 +1,147 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.cloud.bigquery.InsertAllResponse;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+@ExtendWith(MockitoExtension.class)
+public class InsertIdStrategyTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    @Mock
+    private InsertAllResponse success;
+
+    private BigQueryObjectWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        RetryPolicy policy = RetryPolicy.newBuilder()
+                .initialBackoff(1, TimeUnit.MILLISECONDS)
+                .maxBackoff(1, TimeUnit.MILLISECONDS)
+                .build();
+        writer = new BigQueryObjectWriter(bigquery, null, policy);
+    }
+
+    @Test
+    public void testExecute_whenRequestIsRetried_thenResendSameRandomInsertIds() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        BigQueryException timeout = new BigQueryException(504, "Deadline exceeded", new BigQueryError("timeout", "", ""));
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(timeout).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .rows(Arrays.asList(row("John"), row("Jane")))
+                .insertIds(InsertIdStrategy.randomUuid())
+                .execute();
+
+        // Verify
+        verify(bigquery, times(2)).insertAll(requests.capture());
+        List<InsertAllRequest.RowToInsert> first = requests.getAllValues().get(0).getRows();
+        List<InsertAllRequest.RowToInsert> second = requests.getAllValues().get(1).getRows();
+        assertThat(first.get(0).getId()).isNotNull();
+        assertThat(first.get(0).getId()).isNotEqualTo(first.get(1).getId());
+        assertThat(second.get(0).getId()).isEqualTo(first.get(0).getId());
+        assertThat(second.get(1).getId()).isEqualTo(first.get(1).getId());
+    }
+
+    @Test
+    public void testExecute_whenRowIsRetried_thenKeepItsInsertId(@Mock InsertAllResponse partial) {
+        // Setup
+        when(partial.hasErrors()).thenReturn(true);
+        when(partial.getInsertErrors()).thenReturn(Collections.singletonMap(1L,
+                Collections.singletonList(new BigQueryError("stopped", "", ""))));
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(partial).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> requests = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .rows(Arrays.asList(row("John"), row("Jane")))
+                .insertIds(InsertIdStrategy.randomUuid())
+                .execute();
+
+        // Verify
+        verify(bigquery, times(2)).insertAll(requests.capture());
+        List<InsertAllRequest.RowToInsert> retried = requests.getAllValues().get(1).getRows();
+        assertThat(retried).hasSize(1);
+        assertThat(retried.get(0).getId()).isEqualTo(requests.getAllValues().get(0).getRows().get(1).getId());
+    }
+
+    @Test
+    public void testExecute_whenStrategyIsKey_thenUseKeyOfRow() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> request = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        writer.insert("test_dataset", "test_table")
+                .row(row("John"))
+                .insertIds(InsertIdStrategy.<TestSimpleObject>key(object -> "event-" + object.hashCode()))
+                .execute();
+
+        // Verify
+        verify(bigquery).insertAll(request.capture());
+        assertThat(request.getValue().getRows().get(0).getId()).startsWith("event-");
+    }
+
+    @Test
+    public void testExecute_whenStrategyIsNone_thenSendRowsWithoutInsertId() {
+        // Setup
+        when(success.hasErrors()).thenReturn(false);
+        when(bigquery.insertAll(any(InsertAllRequest.class))).thenReturn(success);
+        ArgumentCaptor<InsertAllRequest> request = ArgumentCaptor.forClass(InsertAllRequest.class);
+
+        // Execute
+        writer.insert("test_dataset", "test_table").row(row("John")).execute();
+
+        // Verify
+        verify(bigquery).insertAll(request.capture());
+        assertThat(request.getValue().getRows().get(0).getId()).isNull();
+    }
+
+    @Test
+    public void testContentHash_whenRowsAreEqual_thenGiveSameId() {
+        // Setup
+        InsertIdStrategy strategy = InsertIdStrategy.contentHash();
+
+        // Execute
+        String john = strategy.insertId(row("John"));
+        String johnAgain = strategy.insertId(row("John"));
+        String jane = strategy.insertId(row("Jane"));
+
+        // Verify
+        assertThat(john).isEqualTo(johnAgain);
+        assertThat(john).isNotEqualTo(jane);
+        assertThat(john.length()).isAtMost(128);
+    }
+
+    private static TestSimpleObject row(String name) {
+        return new TestSimpleObject(name, 30, true, 95.5);
+    }
+}
@@ -0,0 +1,96 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestCollectionObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestComplexObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+public class JsonRowEncoderTest {
+
+    public static class TestTextObject {
+        private String text;
+        private Long count;
+        private Float ratio;
+        private Date created;
+        private double value;
+
+        public TestTextObject(String text, Long count, Float ratio, Date created, double value) {
+            this.text = text;
+            this.count = count;
+            this.ratio = ratio;
+            this.created = created;
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void testEncode_whenObjectHasComplexTypes_thenWriteSameConversionsAsObjectToMap() {
+        // Setup
+        TestComplexObject object = new TestComplexObject("id-1", LocalDate.of(2024, 3, 1),
+                Instant.parse("2024-03-01T10:15:30Z"), new BigDecimal("1E+3"),
+                new TestSimpleObject("nested", 30, true, 2.0));
+
+        // Execute
+        String json = new String(JsonRowEncoder.encode(object), StandardCharsets.UTF_8);
+
+        // Verify
+        assertThat(json).isEqualTo("{\"id\":\"id-1\",\"date\":\"2024-03-01\",\"timestamp\":\"2024-03-01T10:15:30Z\","
+                + "\"amount\":\"1000\",\"nested\":{\"name\":\"nested\",\"age\":30,\"active\":true,\"score\":2.0}}");
+    }
+
+    @Test
+    public void testEncode_whenObjectHasCollections_thenWriteArrays() {
+        // Setup
+        TestCollectionObject object = new TestCollectionObject("books", Arrays.asList("a", "b"),
+                Arrays.asList(new TestSimpleObject("x", 1, false, -0.5)));
+
+        // Execute
+        String json = new String(JsonRowEncoder.encode(object), StandardCharsets.UTF_8);
+
+        // Verify
+        assertThat(json).isEqualTo("{\"category\":\"books\",\"tags\":[\"a\",\"b\"],"
+                + "\"items\":[{\"name\":\"x\",\"age\":1,\"active\":false,\"score\":-0.5}]}");
+    }
+
+    @Test
+    public void testEncode_whenValuesNeedEscapingOrAreNull_thenEscapeAndOmitNulls() {
+        // Setup
+        TestTextObject object = new TestTextObject("quote\" slash\\ line\n tab\t \u0001 \u00e9 \u20ac \ud83d\ude00",
+                null, 1.5f, new Date(0), Double.NaN);
+
+        // Execute
+        String json = new String(JsonRowEncoder.encode(object), StandardCharsets.UTF_8);
+
+        // Verify
+        assertThat(json).isEqualTo("{\"text\":\"quote\\\" slash\\\\ line\\n tab\\t \\u0001 \u00e9 \u20ac \ud83d\ude00\","
+                + "\"ratio\":1.5,\"created\":\"1970-01-01T00:00:00Z\",\"value\":\"NaN\"}");
+    }
+
+    @Test
+    public void testWriteRows_whenMultipleObjects_thenWriteNewlineDelimitedJson() throws Exception {
+        // Setup
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        // Execute
+        long written = JsonRowEncoder.writeRows(Arrays.asList(
+                new TestSimpleObject("a", 1, true, 1.25),
+                new TestSimpleObject("b", Integer.MIN_VALUE, false, 1e20)), stream);
+
+        // Verify
+        String ndjson = stream.toString("UTF-8");
+        assertThat(ndjson).isEqualTo("{\"name\":\"a\",\"age\":1,\"active\":true,\"score\":1.25}\n"
+                + "{\"name\":\"b\",\"age\":-2147483648,\"active\":false,\"score\":1.0E20}\n");
+        assertThat(written).isEqualTo(stream.size());
+    }
+}
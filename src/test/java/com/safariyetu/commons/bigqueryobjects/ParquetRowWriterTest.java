@@ -0,0 +1,190 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.api.ReadSupport;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.Type;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestCollectionObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestComplexObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestPrimitiveArrayObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+public class ParquetRowWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testParquetSchemaOf_whenObjectHasComplexTypes_thenUseLogicalTypesAndGroups() {
+        // Execute
+        MessageType schema = ParquetRowWriter.parquetSchemaOf(BigQueryObjectWriter.schemaOf(TestComplexObject.class), "TestComplexObject");
+
+        // Verify
+        assertThat(schema.getType("id").getRepetition()).isEqualTo(Type.Repetition.OPTIONAL);
+        assertThat(schema.getType("id").getLogicalTypeAnnotation()).isEqualTo(LogicalTypeAnnotation.stringType());
+        assertThat(schema.getType("date").getLogicalTypeAnnotation()).isEqualTo(LogicalTypeAnnotation.dateType());
+        assertThat(schema.getType("timestamp").getLogicalTypeAnnotation())
+                .isEqualTo(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MICROS));
+        assertThat(schema.getType("amount").getLogicalTypeAnnotation()).isEqualTo(LogicalTypeAnnotation.decimalType(9, 38));
+        assertThat(schema.getType("nested").isPrimitive()).isFalse();
+        assertThat(schema.getType("nested").asGroupType().getType("age").asPrimitiveType().getPrimitiveTypeName().name()).isEqualTo("INT64");
+    }
+
+    @Test
+    public void testWrite_whenObjectHasComplexTypes_thenFileReadsBackWithExactValues() throws Exception {
+        // Setup
+        Path file = directory.resolve("complex.parquet");
+        TestComplexObject object = new TestComplexObject("id-1", LocalDate.of(2024, 3, 1),
+                Instant.parse("2024-03-01T10:15:30.5Z"), new BigDecimal("12.34"), new TestSimpleObject("nested", 30, true, 2.0));
+
+        // Execute
+        try (ParquetRowWriter writer = ParquetRowWriter.open(TestComplexObject.class, file)) {
+            writer.write(object);
+            writer.write(new TestComplexObject("id-2", null, null, null, null));
+        }
+
+        // Verify
+        List<Group> rows = read(file);
+        assertThat(rows).hasSize(2);
+        Group first = rows.get(0);
+        assertThat(first.getString("id", 0)).isEqualTo("id-1");
+        assertThat(first.getInteger("date", 0)).isEqualTo((int) LocalDate.of(2024, 3, 1).toEpochDay());
+        assertThat(first.getLong("timestamp", 0)).isEqualTo(1709288130500000L);
+        assertThat(new BigInteger(first.getBinary("amount", 0).getBytes())).isEqualTo(new BigInteger("12340000000"));
+        Group nested = first.getGroup("nested", 0);
+        assertThat(nested.getString("name", 0)).isEqualTo("nested");
+        assertThat(nested.getLong("age", 0)).isEqualTo(30L);
+        assertThat(nested.getBoolean("active", 0)).isTrue();
+        assertThat(nested.getDouble("score", 0)).isEqualTo(2.0);
+        Group second = rows.get(1);
+        assertThat(second.getFieldRepetitionCount("date")).isEqualTo(0);
+        assertThat(second.getFieldRepetitionCount("nested")).isEqualTo(0);
+    }
+
+    @Test
+    public void testWrite_whenRepeatedFields_thenWriteListsWithoutNullElements() throws Exception {
+        // Setup
+        Path file = directory.resolve("collections.parquet");
+        TestCollectionObject object = new TestCollectionObject("books", Arrays.asList("a", null, "b"),
+                Collections.singletonList(new TestSimpleObject("item", 1, false, 0.5)));
+
+        // Execute
+        try (ParquetRowWriter writer = ParquetRowWriter.open(TestCollectionObject.class, file)) {
+            writer.writeAll(Arrays.asList(object, new TestCollectionObject("empty", null, null)));
+        }
+
+        // Verify
+        List<Group> rows = read(file);
+        Group tags = rows.get(0).getGroup("tags", 0);
+        assertThat(tags.getFieldRepetitionCount("list")).isEqualTo(2);
+        assertThat(tags.getGroup("list", 1).getString("element", 0)).isEqualTo("b");
+        Group item = rows.get(0).getGroup("items", 0).getGroup("list", 0).getGroup("element", 0);
+        assertThat(item.getString("name", 0)).isEqualTo("item");
+        assertThat(rows.get(1).getGroup("tags", 0).getFieldRepetitionCount("list")).isEqualTo(0);
+    }
+
+    @Test
+    public void testWrite_whenPrimitiveArrayFields_thenWriteListsOfElements() throws Exception {
+        // Setup
+        Path file = directory.resolve("arrays.parquet");
+        TestPrimitiveArrayObject object = new TestPrimitiveArrayObject("latency", new int[] {1, 2},
+                new long[] {10L, 20L, 30L}, new double[] {0.5}, new float[] {0.25f}, new boolean[] {true, false});
+
+        // Execute
+        try (ParquetRowWriter writer = ParquetRowWriter.open(TestPrimitiveArrayObject.class, file)) {
+            writer.write(object);
+            writer.write(new TestPrimitiveArrayObject("empty", new int[0], null, null, null, null));
+        }
+
+        // Verify
+        List<Group> rows = read(file);
+        Group buckets = rows.get(0).getGroup("buckets", 0);
+        assertThat(buckets.getFieldRepetitionCount("list")).isEqualTo(3);
+        assertThat(buckets.getGroup("list", 2).getLong("element", 0)).isEqualTo(30L);
+        assertThat(rows.get(0).getGroup("counts", 0).getGroup("list", 1).getLong("element", 0)).isEqualTo(2L);
+        assertThat(rows.get(0).getGroup("weights", 0).getGroup("list", 0).getDouble("element", 0)).isEqualTo(0.25);
+        assertThat(rows.get(0).getGroup("flags", 0).getGroup("list", 1).getBoolean("element", 0)).isFalse();
+        assertThat(rows.get(1).getGroup("counts", 0).getFieldRepetitionCount("list")).isEqualTo(0);
+        assertThat(rows.get(1).getGroup("buckets", 0).getFieldRepetitionCount("list")).isEqualTo(0);
+    }
+
+    @Test
+    public void testWrite_whenRowsExceedRowGroupSize_thenFlushRowGroupsWithDictionaryStrings() throws Exception {
+        // Setup
+        Path file = directory.resolve("groups.parquet");
+        List<TestSimpleObject> objects = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            objects.add(new TestSimpleObject("name-" + (i % 4), i, i % 2 == 0, i * 0.5));
+        }
+
+        // Execute
+        try (ParquetRowWriter writer = ParquetRowWriter.open(TestSimpleObject.class, new LocalOutputFile(file), CompressionCodecName.SNAPPY, 16 * 1024)) {
+            writer.writeAll(objects);
+        }
+
+        // Verify
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+            List<BlockMetaData> rowGroups = reader.getFooter().getBlocks();
+            assertThat(rowGroups.size()).isGreaterThan(1);
+            long rowCount = 0;
+            for (BlockMetaData rowGroup : rowGroups) {
+                rowCount += rowGroup.getRowCount();
+                ColumnChunkMetaData name = rowGroup.getColumns().get(0);
+                assertThat(name.getPath().toDotString()).isEqualTo("name");
+                assertThat(name.hasDictionaryPage()).isTrue();
+            }
+            assertThat(rowCount).isEqualTo(20_000L);
+        }
+    }
+
+    @Test
+    public void testWrite_whenObjectOfAnotherClass_thenThrowIllegalArgumentException() throws Exception {
+        // Setup
+        try (ParquetRowWriter writer = ParquetRowWriter.open(TestSimpleObject.class, directory.resolve("simple.parquet"))) {
+            // Execute and Verify
+            Assertions.assertThrows(IllegalArgumentException.class, () -> writer.write(new TestCollectionObject("c", null, null)));
+        }
+    }
+
+    static List<Group> read(Path file) throws Exception {
+        List<Group> rows = new ArrayList<>();
+        ParquetReader.Builder<Group> builder = new ParquetReader.Builder<Group>(new LocalInputFile(file)) {
+            @Override
+            protected ReadSupport<Group> getReadSupport() {
+                return new GroupReadSupport();
+            }
+        };
+        try (ParquetReader<Group> reader = builder.build()) {
+            Group row;
+            while ((row = reader.read()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,117 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.cloud.bigquery.storage.v1.BigDecimalByteStringEncoder;
+import com.google.cloud.bigquery.storage.v1.CivilTimeEncoder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSelfReferencingObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+public class ProtoRowEncoderTest {
+
+    public static class TestTemporalObject {
+        private Instant createdAt;
+        private LocalDateTime localDateTime;
+        private LocalTime localTime;
+        private LocalDate localDate;
+        private BigDecimal amount;
+        private Long count;
+        private List<TestSimpleObject> items;
+        private List<Integer> scores;
+
+        public TestTemporalObject(Instant createdAt, LocalDateTime localDateTime, LocalTime localTime, LocalDate localDate,
+                BigDecimal amount, Long count, List<TestSimpleObject> items, List<Integer> scores) {
+            this.createdAt = createdAt;
+            this.localDateTime = localDateTime;
+            this.localTime = localTime;
+            this.localDate = localDate;
+            this.amount = amount;
+            this.count = count;
+            this.items = items;
+            this.scores = scores;
+        }
+    }
+
+    @Test
+    public void testGetDescriptorProto_whenClassHasNestedRecords_thenDeclareNestedTypes() {
+        // Execute
+        DescriptorProto descriptor = ProtoRowEncoder.forClass(TestTemporalObject.class).getDescriptorProto();
+
+        // Verify
+        assertThat(descriptor.getFieldList()).hasSize(8);
+        assertThat(descriptor.getField(0).getName()).isEqualTo("createdAt");
+        assertThat(descriptor.getField(0).getType()).isEqualTo(FieldDescriptorProto.Type.TYPE_INT64);
+        assertThat(descriptor.getField(3).getType()).isEqualTo(FieldDescriptorProto.Type.TYPE_INT32);
+        assertThat(descriptor.getField(4).getType()).isEqualTo(FieldDescriptorProto.Type.TYPE_BYTES);
+        FieldDescriptorProto items = descriptor.getField(6);
+        assertThat(items.getLabel()).isEqualTo(FieldDescriptorProto.Label.LABEL_REPEATED);
+        assertThat(items.getType()).isEqualTo(FieldDescriptorProto.Type.TYPE_MESSAGE);
+        assertThat(descriptor.getNestedTypeList()).hasSize(1);
+        assertThat(descriptor.getNestedType(0).getName()).isEqualTo(items.getTypeName());
+        assertThat(descriptor.getNestedType(0).getFieldList()).hasSize(4);
+        assertThat(descriptor.getField(7).getLabel()).isEqualTo(FieldDescriptorProto.Label.LABEL_REPEATED);
+    }
+
+    @Test
+    public void testEncode_whenObjectHasAllTypes_thenUseStorageWriteRepresentations() {
+        // Setup
+        Instant instant = Instant.parse("2024-03-01T10:15:30.123456Z");
+        LocalDateTime localDateTime = LocalDateTime.of(2024, 3, 1, 10, 15, 30);
+        LocalTime localTime = LocalTime.of(10, 15, 30);
+        LocalDate localDate = LocalDate.of(2024, 3, 1);
+        TestTemporalObject object = new TestTemporalObject(instant, localDateTime, localTime, localDate,
+                new BigDecimal("12.34"), null, Arrays.asList(new TestSimpleObject("item", 3, true, 1.5)), Arrays.asList(1, 2));
+        ProtoRowEncoder encoder = ProtoRowEncoder.forClass(TestTemporalObject.class);
+        Descriptor descriptor = encoder.getDescriptor();
+
+        // Execute
+        DynamicMessage message = encoder.encode(object);
+
+        // Verify
+        assertThat(message.getField(descriptor.findFieldByName("createdAt"))).isEqualTo(1709288130123456L);
+        assertThat(message.getField(descriptor.findFieldByName("localDateTime")))
+                .isEqualTo(CivilTimeEncoder.encodePacked64DatetimeMicrosLocalDateTime(localDateTime));
+        assertThat(message.getField(descriptor.findFieldByName("localTime")))
+                .isEqualTo(CivilTimeEncoder.encodePacked64TimeMicrosLocalTime(localTime));
+        assertThat(message.getField(descriptor.findFieldByName("localDate"))).isEqualTo((int) localDate.toEpochDay());
+        assertThat(BigDecimalByteStringEncoder.decodeNumericByteString(
+                (ByteString) message.getField(descriptor.findFieldByName("amount")))).isEqualToIgnoringScale("12.34");
+        assertThat(message.hasField(descriptor.findFieldByName("count"))).isFalse();
+        assertThat(message.getField(descriptor.findFieldByName("scores"))).isEqualTo(Arrays.asList(1L, 2L));
+
+        DynamicMessage item = (DynamicMessage) message.getRepeatedField(descriptor.findFieldByName("items"), 0);
+        Descriptor itemDescriptor = item.getDescriptorForType();
+        assertThat(item.getField(itemDescriptor.findFieldByName("name"))).isEqualTo("item");
+        assertThat(item.getField(itemDescriptor.findFieldByName("age"))).isEqualTo(3L);
+        assertThat(item.getField(itemDescriptor.findFieldByName("active"))).isEqualTo(true);
+        assertThat(item.getField(itemDescriptor.findFieldByName("score"))).isEqualTo(1.5);
+    }
+
+    @Test
+    public void testForClass_whenCalledRepeatedly_thenReuseCachedEncoder() {
+        // Execute and Verify
+        assertThat(ProtoRowEncoder.forClass(TestSimpleObject.class)).isSameInstanceAs(ProtoRowEncoder.forClass(TestSimpleObject.class));
+    }
+
+    @Test
+    public void testForClass_whenClassReferencesItself_thenThrowIllegalArgumentException() {
+        // Execute and Verify
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ProtoRowEncoder.forClass(TestSelfReferencingObject.class));
+    }
+}
@@ -0,0 +1,107 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.gson.Gson;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestCollectionObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestComplexObject;
+import com.safariyetu.commons.bigqueryobjects.BigQueryWriterTest.TestSimpleObject;
+
+/**
+ * Compares the map conversion of {@link BigQueryObjectWriter#objectToMap(Object)} with the direct
+ * JSON encoding of {@link JsonRowEncoder}. The map benchmarks include serializing the map to JSON,
+ * as a JSON-based transport would have to. Not run by the tests, run it with the main method from
+ * the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowEncodingBenchmark {
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final Gson gson = new Gson();
+    private BigQueryObjectWriter writer;
+    private TestComplexObject complexObject;
+    private List<TestCollectionObject> batch;
+
+    @Setup
+    public void setup() {
+        writer = new BigQueryObjectWriter(null);
+        complexObject = new TestComplexObject("order-1", LocalDate.of(2024, 3, 1),
+                Instant.parse("2024-03-01T10:15:30Z"), new BigDecimal("1234.50"),
+                new TestSimpleObject("customer", 42, true, 98.5));
+        batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(new TestCollectionObject("category-" + i, Arrays.asList("a", "b", "c"),
+                    Arrays.asList(new TestSimpleObject("item-" + i, i, i % 2 == 0, i * 0.5),
+                            new TestSimpleObject("other-" + i, -i, false, 1.0))));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> objectToMap() {
+        return writer.objectToMap(complexObject);
+    }
+
+    @Benchmark
+    public String objectToMapAsJson() {
+        return gson.toJson(writer.objectToMap(complexObject));
+    }
+
+    @Benchmark
+    public byte[] objectToJson() {
+        return writer.objectToJson(complexObject);
+    }
+
+    @Benchmark
+    public void batchToMapsAsJson(Blackhole blackhole) {
+        for (TestCollectionObject object : batch) {
+            blackhole.consume(gson.toJson(writer.objectToMap(object)));
+        }
+    }
+
+    @Benchmark
+    public long batchToNdjson() throws IOException {
+        return writer.writeJsonRows(batch, DISCARD);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RowEncodingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
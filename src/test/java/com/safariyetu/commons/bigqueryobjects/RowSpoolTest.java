@@ -0,0 +1,152 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RowSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testOldest_whenSpoolIsReopened_thenReadRowsInOrder() {
+        // Setup
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, 64)) {
+            spool.append(Arrays.asList("id-1", null), classes(2), Arrays.asList(content("a", 1), content("b", 2)));
+            spool.append(Collections.singletonList("id-3"), classes(1), Collections.singletonList(content("c", 3)));
+        }
+
+        // Execute
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, 64)) {
+            RowSpool.Segment first = spool.oldest();
+            spool.remove(first);
+            RowSpool.Segment second = spool.oldest();
+            spool.remove(second);
+
+            // Verify
+            assertThat(first.getRows()).hasSize(2);
+            assertThat(first.getRows().get(0).getInsertId()).isEqualTo("id-1");
+            assertThat(first.getRows().get(0).getContent()).containsExactly("name", "a", "count", new BigDecimal(1));
+            assertThat(first.getRows().get(0).getRowClass()).isEqualTo(RowSpoolTest.class.getName());
+            assertThat(first.getRows().get(1).getInsertId()).isNull();
+            assertThat(second.getRows().get(0).getInsertId()).isEqualTo("id-3");
+            assertThat(spool.isEmpty()).isTrue();
+            assertThat(spool.size()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    public void testAppend_whenRowsExceedMaxBytes_thenReturnFalse() {
+        // Setup
+        try (RowSpool spool = new RowSpool(directory, 64, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            List<Map<String, Object>> rows = Arrays.asList(content("a", 1), content("b", 2), content("c", 3));
+
+            // Execute
+            boolean appended = spool.append(Arrays.asList(null, null, null), classes(3), rows);
+
+            // Verify
+            assertThat(appended).isFalse();
+            assertThat(spool.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    public void testOldest_whenLastRecordIsTruncated_thenIgnoreIt() throws IOException {
+        // Setup
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            spool.append(Arrays.asList("id-1", "id-2"), classes(2), Arrays.asList(content("a", 1), content("b", 2)));
+        }
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        // Execute
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            RowSpool.Segment oldest = spool.oldest();
+
+            // Verify
+            assertThat(oldest.getRows()).hasSize(1);
+            assertThat(oldest.getRows().get(0).getInsertId()).isEqualTo("id-1");
+            assertThat(oldest.getSkippedBytes()).isGreaterThan(0L);
+        }
+    }
+
+    @Test
+    public void testOldest_whenRowsWereAcknowledged_thenReadOnlyTheOthersAfterReopening() {
+        // Setup
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            spool.append(Arrays.asList("id-1", "id-2", "id-3"), classes(3),
+                    Arrays.asList(content("a", 1), content("b", 2), content("c", 3)));
+            spool.acknowledge(spool.oldest(), 2);
+        }
+
+        // Execute
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            RowSpool.Segment oldest = spool.oldest();
+            spool.remove(oldest);
+
+            // Verify
+            assertThat(oldest.getRows()).hasSize(1);
+            assertThat(oldest.getRows().get(0).getInsertId()).isEqualTo("id-3");
+            assertThat(spool.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    public void testOldest_whenRecordIsCorrupt_thenReportSkippedBytes() throws IOException {
+        // Setup
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            spool.append(Arrays.asList("id-1", "id-2", "id-3"), classes(3),
+                    Arrays.asList(content("a", 1), content("b", 2), content("c", 3)));
+        }
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        long size = bytes.length;
+        // Corrupt the last byte of the content of the second record.
+        bytes[2 * bytes.length / 3 - 2] ^= 0x7f;
+        Files.write(segment, bytes);
+
+        // Execute
+        try (RowSpool spool = new RowSpool(directory, 1024 * 1024, RowSpool.DEFAULT_SEGMENT_BYTES)) {
+            RowSpool.Segment oldest = spool.oldest();
+
+            // Verify
+            assertThat(oldest.getRows()).hasSize(1);
+            assertThat(oldest.getSkippedBytes()).isEqualTo(size - size / 3);
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList()).get(0);
+        }
+    }
+
+    private static List<String> classes(int rows) {
+        return Collections.nCopies(rows, RowSpoolTest.class.getName());
+    }
+
+    private static Map<String, Object> content(String name, int count) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("name", name);
+        content.put("count", count);
+        return content;
+    }
+}
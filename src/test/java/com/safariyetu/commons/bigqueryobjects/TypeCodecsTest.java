@@ -0,0 +1,188 @@
+package com.safariyetu.commons.bigqueryobjects;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.TableResult;
+
+@ExtendWith(MockitoExtension.class)
+public class TypeCodecsTest {
+
+    @Mock
+    private BigQuery bigquery;
+
+    public enum Status {
+        ACTIVE {
+            @Override
+            public String toString() {
+                return "Active";
+            }
+        },
+        SUSPENDED
+    }
+
+    /**
+     * A value type without a built-in codec, stored as a NUMERIC amount.
+     */
+    public static final class Money {
+        private final BigDecimal amount;
+
+        public Money(BigDecimal amount) {
+            this.amount = amount;
+        }
+    }
+
+    public static class TestValueTypesObject {
+        private Status status;
+        private UUID id;
+        private OffsetDateTime offsetTime;
+        private ZonedDateTime zonedTime;
+        private byte[] payload;
+        private List<Status> history;
+
+        public TestValueTypesObject() {
+        }
+
+        public TestValueTypesObject(Status status, UUID id, OffsetDateTime offsetTime, ZonedDateTime zonedTime,
+                byte[] payload, List<Status> history) {
+            this.status = status;
+            this.id = id;
+            this.offsetTime = offsetTime;
+            this.zonedTime = zonedTime;
+            this.payload = payload;
+            this.history = history;
+        }
+    }
+
+    public static class TestMoneyObject {
+        private Money price;
+
+        public TestMoneyObject() {
+        }
+
+        public TestMoneyObject(Money price) {
+            this.price = price;
+        }
+    }
+
+    @Test
+    public void testGetSchema_whenFieldsHaveBuiltInValueTypes_thenUseCodecColumnTypes() {
+        // Execute
+        Schema schema = BigQueryObjectWriter.schemaOf(TestValueTypesObject.class);
+
+        // Verify
+        assertThat(schema.getFields().get("status").getType()).isEqualTo(LegacySQLTypeName.STRING);
+        assertThat(schema.getFields().get("id").getType()).isEqualTo(LegacySQLTypeName.STRING);
+        assertThat(schema.getFields().get("offsetTime").getType()).isEqualTo(LegacySQLTypeName.TIMESTAMP);
+        assertThat(schema.getFields().get("zonedTime").getType()).isEqualTo(LegacySQLTypeName.TIMESTAMP);
+        assertThat(schema.getFields().get("payload").getType()).isEqualTo(LegacySQLTypeName.BYTES);
+        assertThat(schema.getFields().get("history").getType()).isEqualTo(LegacySQLTypeName.STRING);
+        assertThat(schema.getFields().get("history").getMode()).isEqualTo(Field.Mode.REPEATED);
+    }
+
+    @Test
+    public void testObjectToMap_whenFieldsHaveBuiltInValueTypes_thenEncodeWithCodecs() {
+        // Setup
+        UUID id = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+        OffsetDateTime time = OffsetDateTime.of(2024, 3, 1, 12, 15, 30, 0, ZoneOffset.ofHours(2));
+        TestValueTypesObject object = new TestValueTypesObject(Status.ACTIVE, id, time,
+                time.atZoneSameInstant(ZoneId.of("Europe/Paris")), "hi".getBytes(StandardCharsets.UTF_8),
+                Arrays.asList(Status.SUSPENDED, Status.ACTIVE));
+
+        // Execute
+        Map<String, Object> map = new BigQueryObjectWriter(bigquery).objectToMap(object);
+        String json = new String(new BigQueryObjectWriter(bigquery).objectToJson(object), StandardCharsets.UTF_8);
+
+        // Verify
+        assertThat(map.get("status")).isEqualTo("ACTIVE");
+        assertThat(map.get("id")).isEqualTo("123e4567-e89b-12d3-a456-426614174000");
+        assertThat(map.get("offsetTime")).isEqualTo("2024-03-01T10:15:30Z");
+        assertThat(map.get("zonedTime")).isEqualTo("2024-03-01T10:15:30Z");
+        assertThat(map.get("payload")).isEqualTo(Base64.getEncoder().encodeToString("hi".getBytes(StandardCharsets.UTF_8)));
+        assertThat(map.get("history")).isEqualTo(Arrays.asList("SUSPENDED", "ACTIVE"));
+        assertThat(json).isEqualTo("{\"status\":\"ACTIVE\",\"id\":\"123e4567-e89b-12d3-a456-426614174000\","
+                + "\"offsetTime\":\"2024-03-01T10:15:30Z\",\"zonedTime\":\"2024-03-01T10:15:30Z\","
+                + "\"payload\":\"aGk=\",\"history\":[\"SUSPENDED\",\"ACTIVE\"]}");
+    }
+
+    @Test
+    public void testRead_whenFieldsHaveBuiltInValueTypes_thenDecodeWithCodecs(@Mock TableResult tableResult) {
+        // Setup
+        Schema schema = BigQueryObjectWriter.schemaOf(TestValueTypesObject.class);
+        FieldValueList row = FieldValueList.of(Arrays.asList(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "SUSPENDED"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "123e4567-e89b-12d3-a456-426614174000"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "2024-03-01T10:15:30Z"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "2024-03-01T10:15:30Z"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "aGk="),
+                FieldValue.of(FieldValue.Attribute.REPEATED, Collections.singletonList(
+                        FieldValue.of(FieldValue.Attribute.PRIMITIVE, "ACTIVE")))),
+                schema.getFields());
+        when(tableResult.getSchema()).thenReturn(schema);
+        when(tableResult.iterateAll()).thenReturn(Collections.singletonList(row));
+
+        // Execute
+        TestValueTypesObject result = BigQueryObjectReader.of(TestValueTypesObject.class).read(tableResult).get(0);
+
+        // Verify
+        assertThat(result.status).isEqualTo(Status.SUSPENDED);
+        assertThat(result.id).isEqualTo(UUID.fromString("123e4567-e89b-12d3-a456-426614174000"));
+        assertThat(result.offsetTime.toInstant()).isEqualTo(Instant.parse("2024-03-01T10:15:30Z"));
+        assertThat(result.zonedTime.toInstant()).isEqualTo(Instant.parse("2024-03-01T10:15:30Z"));
+        assertThat(new String(result.payload, StandardCharsets.UTF_8)).isEqualTo("hi");
+        assertThat(result.history).containsExactly(Status.ACTIVE);
+    }
+
+    @Test
+    public void testRegister_whenCustomCodec_thenWriteAndReadAsCodecColumnType(@Mock TableResult tableResult) {
+        // Setup
+        TypeCodecs.register(TypeCodec.of(Money.class, LegacySQLTypeName.NUMERIC,
+                money -> money.amount, value -> new Money(new BigDecimal(value.getStringValue()))));
+        Schema schema = BigQueryObjectWriter.schemaOf(TestMoneyObject.class);
+        when(tableResult.getSchema()).thenReturn(schema);
+        when(tableResult.iterateAll()).thenReturn(Collections.singletonList(FieldValueList.of(
+                Collections.singletonList(FieldValue.of(FieldValue.Attribute.PRIMITIVE, "9.50")), schema.getFields())));
+
+        // Execute
+        Map<String, Object> map = new BigQueryObjectWriter(bigquery).objectToMap(new TestMoneyObject(new Money(new BigDecimal("12.30"))));
+        TestMoneyObject result = BigQueryObjectReader.of(TestMoneyObject.class).read(tableResult).get(0);
+
+        // Verify
+        assertThat(schema.getFields().get("price").getType()).isEqualTo(LegacySQLTypeName.NUMERIC);
+        assertThat(map.get("price")).isEqualTo("12.30");
+        assertThat(result.price.amount).isEqualTo(new BigDecimal("9.50"));
+    }
+
+    @Test
+    public void testRegister_whenTypeHasBuiltInCodec_thenThrowIllegalArgumentException() {
+        // Execute and Verify
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TypeCodecs.register(
+                TypeCodec.of(String.class, LegacySQLTypeName.STRING, value -> value, FieldValue::getStringValue)));
+    }
+}